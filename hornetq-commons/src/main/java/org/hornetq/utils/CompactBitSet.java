@@ -0,0 +1,229 @@
+/*
+ * Copyright 2005-2014 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.hornetq.utils;
+
+import java.util.Arrays;
+
+/**
+ * A set of non negative ints that stays small whether it is sparse or dense.
+ * <p/>
+ * The values are split in chunks of 65536 by their upper 16 bits. Each chunk holds its lower 16 bits in a sorted
+ * {@code short[]} while it has up to 4096 values (2 bytes per value), and in a 8 KB bitmap beyond that, as the
+ * bitmap is then the smaller of the two. This is the layout of Roaring bitmaps, without the run containers.
+ * <p/>
+ * This class is not thread safe.
+ */
+public final class CompactBitSet
+{
+   private static final int MAX_ARRAY_SIZE = 4096;
+
+   private static final int BITMAP_WORDS = 65536 / 64;
+
+   private static final short[] EMPTY_ARRAY = new short[0];
+
+   // the upper 16 bits of the chunks, sorted
+   private int[] keys = new int[0];
+
+   private Chunk[] chunks = new Chunk[0];
+
+   private int cardinality;
+
+   /**
+    * @return true if the value was not in the set yet
+    */
+   public boolean add(final int value)
+   {
+      checkValue(value);
+
+      int key = value >>> 16;
+
+      int i = Arrays.binarySearch(keys, key);
+
+      if (i < 0)
+      {
+         i = -i - 1;
+
+         keys = insert(keys, i, key);
+
+         Chunk[] newChunks = new Chunk[chunks.length + 1];
+         System.arraycopy(chunks, 0, newChunks, 0, i);
+         System.arraycopy(chunks, i, newChunks, i + 1, chunks.length - i);
+         newChunks[i] = new Chunk();
+         chunks = newChunks;
+      }
+
+      if (chunks[i].add((short) value))
+      {
+         cardinality++;
+         return true;
+      }
+
+      return false;
+   }
+
+   public boolean contains(final int value)
+   {
+      if (value < 0)
+      {
+         return false;
+      }
+
+      int i = Arrays.binarySearch(keys, value >>> 16);
+
+      return i >= 0 && chunks[i].contains((short) value);
+   }
+
+   public int cardinality()
+   {
+      return cardinality;
+   }
+
+   public boolean isEmpty()
+   {
+      return cardinality == 0;
+   }
+
+   public void clear()
+   {
+      keys = new int[0];
+      chunks = new Chunk[0];
+      cardinality = 0;
+   }
+
+   @Override
+   public String toString()
+   {
+      return "CompactBitSet(cardinality=" + cardinality + ", chunks=" + chunks.length + ")";
+   }
+
+   private static void checkValue(final int value)
+   {
+      if (value < 0)
+      {
+         throw new IllegalArgumentException("value must not be negative, was " + value);
+      }
+   }
+
+   private static int[] insert(final int[] array, final int index, final int value)
+   {
+      int[] newArray = new int[array.length + 1];
+      System.arraycopy(array, 0, newArray, 0, index);
+      System.arraycopy(array, index, newArray, index + 1, array.length - index);
+      newArray[index] = value;
+      return newArray;
+   }
+
+   private static final class Chunk
+   {
+      // sorted as unsigned values, the first size elements are used. null once it's a bitmap
+      private short[] array = EMPTY_ARRAY;
+
+      private int size;
+
+      private long[] bitmap;
+
+      boolean add(final short low)
+      {
+         if (bitmap != null)
+         {
+            return setBit(bitmap, low & 0xffff);
+         }
+
+         int i = search(low & 0xffff);
+
+         if (i >= 0)
+         {
+            return false;
+         }
+
+         if (size == MAX_ARRAY_SIZE)
+         {
+            bitmap = new long[BITMAP_WORDS];
+
+            for (int j = 0; j < size; j++)
+            {
+               setBit(bitmap, array[j] & 0xffff);
+            }
+
+            array = null;
+
+            return setBit(bitmap, low & 0xffff);
+         }
+
+         i = -i - 1;
+
+         if (size == array.length)
+         {
+            array = Arrays.copyOf(array, Math.min(MAX_ARRAY_SIZE, Math.max(4, size * 2)));
+         }
+
+         System.arraycopy(array, i, array, i + 1, size - i);
+         array[i] = low;
+         size++;
+
+         return true;
+      }
+
+      boolean contains(final short low)
+      {
+         if (bitmap != null)
+         {
+            int bit = low & 0xffff;
+            return (bitmap[bit >>> 6] & (1L << bit)) != 0;
+         }
+
+         return search(low & 0xffff) >= 0;
+      }
+
+      private int search(final int value)
+      {
+         int low = 0;
+         int high = size - 1;
+
+         while (low <= high)
+         {
+            int mid = (low + high) >>> 1;
+            int midValue = array[mid] & 0xffff;
+
+            if (midValue < value)
+            {
+               low = mid + 1;
+            }
+            else if (midValue > value)
+            {
+               high = mid - 1;
+            }
+            else
+            {
+               return mid;
+            }
+         }
+
+         return -(low + 1);
+      }
+
+      private static boolean setBit(final long[] bitmap, final int bit)
+      {
+         long mask = 1L << bit;
+
+         if ((bitmap[bit >>> 6] & mask) != 0)
+         {
+            return false;
+         }
+
+         bitmap[bit >>> 6] |= mask;
+
+         return true;
+      }
+   }
+}
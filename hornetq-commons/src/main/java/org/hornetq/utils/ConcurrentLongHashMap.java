@@ -0,0 +1,474 @@
+/*
+ * Copyright 2005-2014 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.hornetq.utils;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A concurrent map of primitive long keys, meant for indexes holding millions of entries.
+ * <p/>
+ * The keys are never boxed and there are no entry objects: every segment is an open addressing table made of a
+ * {@code long[]} for the keys and an {@code Object[]} for the values, using linear probing. Entries are removed
+ * by shifting back the following ones, so a table never fills up with deleted slots, and a segment shrinks again
+ * when most of its entries were removed. This makes the memory used proportional to the number of entries, about
+ * 16 to 32 bytes per entry (plus the values) instead of the 80 or so bytes of a
+ * {@link java.util.concurrent.ConcurrentHashMap} entry with its boxed key.
+ * <p/>
+ * Writers lock the segment they change. Reads don't lock: a segment has a version, odd while it is being changed,
+ * and a read is only trusted when the version was even and the same before and after it, so lookups on the journal
+ * hot path never contend with each other and rarely with writers. A read that keeps racing with writers falls back to
+ * the segment's monitor. Null values are not allowed. {@link #size()} and {@link #keys()} are not atomic across
+ * segments.
+ */
+public final class ConcurrentLongHashMap<V>
+{
+   private static final int DEFAULT_CONCURRENCY_LEVEL = 16;
+
+   private static final int MIN_SEGMENT_CAPACITY = 16;
+
+   /**
+    * Number of times a read is tried without locking before it takes the segment's monitor
+    */
+   private static final int OPTIMISTIC_READS = 4;
+
+   private final Segment<V>[] segments;
+
+   public ConcurrentLongHashMap()
+   {
+      this(DEFAULT_CONCURRENCY_LEVEL);
+   }
+
+   /**
+    * @param concurrencyLevel the number of segments, rounded up to a power of two
+    */
+   @SuppressWarnings("unchecked")
+   public ConcurrentLongHashMap(final int concurrencyLevel)
+   {
+      if (concurrencyLevel <= 0)
+      {
+         throw new IllegalArgumentException("concurrencyLevel must be positive, was " + concurrencyLevel);
+      }
+
+      int numberOfSegments = 1;
+
+      while (numberOfSegments < concurrencyLevel)
+      {
+         numberOfSegments <<= 1;
+      }
+
+      segments = new Segment[numberOfSegments];
+
+      for (int i = 0; i < numberOfSegments; i++)
+      {
+         segments[i] = new Segment<V>();
+      }
+   }
+
+   public V get(final long key)
+   {
+      long hash = hash(key);
+
+      return segmentFor(hash).get(key, (int) hash);
+   }
+
+   public boolean containsKey(final long key)
+   {
+      return get(key) != null;
+   }
+
+   /**
+    * @return the previous value, or null if there was none
+    */
+   public V put(final long key, final V value)
+   {
+      if (value == null)
+      {
+         throw new NullPointerException();
+      }
+
+      long hash = hash(key);
+
+      return segmentFor(hash).put(key, (int) hash, value);
+   }
+
+   /**
+    * @return the removed value, or null if there was none
+    */
+   public V remove(final long key)
+   {
+      long hash = hash(key);
+
+      return segmentFor(hash).remove(key, (int) hash);
+   }
+
+   public void putAll(final ConcurrentLongHashMap<V> other)
+   {
+      for (Segment<V> segment : other.segments)
+      {
+         long[] keys;
+
+         Object[] values;
+
+         synchronized (segment)
+         {
+            Table table = segment.table;
+
+            keys = new long[table.capacity];
+
+            values = new Object[table.capacity];
+
+            for (int i = 0; i < table.capacity; i++)
+            {
+               keys[i] = table.keys.get(i);
+
+               values[i] = table.values.get(i);
+            }
+         }
+
+         for (int i = 0; i < values.length; i++)
+         {
+            if (values[i] != null)
+            {
+               @SuppressWarnings("unchecked")
+               V value = (V) values[i];
+
+               put(keys[i], value);
+            }
+         }
+      }
+   }
+
+   public int size()
+   {
+      int size = 0;
+
+      for (Segment<V> segment : segments)
+      {
+         synchronized (segment)
+         {
+            size += segment.size;
+         }
+      }
+
+      return size;
+   }
+
+   public boolean isEmpty()
+   {
+      return size() == 0;
+   }
+
+   public void clear()
+   {
+      for (Segment<V> segment : segments)
+      {
+         segment.clear();
+      }
+   }
+
+   /**
+    * @return a copy of the keys, in no particular order
+    */
+   public long[] keys()
+   {
+      long[] keys = new long[16];
+
+      int size = 0;
+
+      for (Segment<V> segment : segments)
+      {
+         synchronized (segment)
+         {
+            if (size + segment.size > keys.length)
+            {
+               keys = Arrays.copyOf(keys, Math.max(keys.length * 2, size + segment.size));
+            }
+
+            Table table = segment.table;
+
+            for (int i = 0; i < table.capacity; i++)
+            {
+               if (table.values.get(i) != null)
+               {
+                  keys[size++] = table.keys.get(i);
+               }
+            }
+         }
+      }
+
+      return Arrays.copyOf(keys, size);
+   }
+
+   @Override
+   public String toString()
+   {
+      return "ConcurrentLongHashMap(size=" + size() + ")";
+   }
+
+   private Segment<V> segmentFor(final long hash)
+   {
+      // the upper bits select the segment, the lower bits the slot within it
+      return segments[(int) (hash >>> 32) & (segments.length - 1)];
+   }
+
+   private static long hash(final long key)
+   {
+      // the finalizer of MurmurHash3, spreading sequential ids over the whole table
+      long hash = key;
+      hash ^= hash >>> 33;
+      hash *= 0xff51afd7ed558ccdL;
+      hash ^= hash >>> 33;
+      hash *= 0xc4ceb9fe1a85ec53L;
+      hash ^= hash >>> 33;
+      return hash;
+   }
+
+   /**
+    * An open addressing table, a slot is empty when its value is null. Its slots are read and written as volatiles, so
+    * a reader seeing a change also sees the segment version changed before it.
+    */
+   private static final class Table
+   {
+      private final int capacity;
+
+      private final AtomicLongArray keys;
+
+      private final AtomicReferenceArray<Object> values;
+
+      private Table(final int capacity)
+      {
+         this.capacity = capacity;
+
+         keys = new AtomicLongArray(capacity);
+
+         values = new AtomicReferenceArray<Object>(capacity);
+      }
+
+      private Object get(final long key, final int hash)
+      {
+         int mask = capacity - 1;
+
+         int i = hash & mask;
+
+         // the load is kept under 3/4 even while the table is changed, so there is always an empty slot to stop at
+         while (true)
+         {
+            Object value = values.get(i);
+
+            if (value == null || keys.get(i) == key)
+            {
+               return value;
+            }
+
+            i = (i + 1) & mask;
+         }
+      }
+   }
+
+   private static final class Segment<V>
+   {
+      private volatile Table table;
+
+      /**
+       * Odd while a writer changes the table, written holding this
+       */
+      private volatile int version;
+
+      // guarded by this
+      private int size;
+
+      private Segment()
+      {
+         table = new Table(MIN_SEGMENT_CAPACITY);
+      }
+
+      @SuppressWarnings("unchecked")
+      private V get(final long key, final int hash)
+      {
+         for (int attempt = 0; attempt < OPTIMISTIC_READS; attempt++)
+         {
+            int before = version;
+
+            if ((before & 1) == 0)
+            {
+               Object value = table.get(key, hash);
+
+               if (version == before)
+               {
+                  return (V) value;
+               }
+            }
+         }
+
+         synchronized (this)
+         {
+            return (V) table.get(key, hash);
+         }
+      }
+
+      @SuppressWarnings("unchecked")
+      private synchronized V put(final long key, final int hash, final V value)
+      {
+         Table table = this.table;
+
+         int mask = table.capacity - 1;
+
+         int i = hash & mask;
+
+         while (table.values.get(i) != null)
+         {
+            if (table.keys.get(i) == key)
+            {
+               // replacing a value in its slot can't make a reader miss a key
+               return (V) table.values.getAndSet(i, value);
+            }
+
+            i = (i + 1) & mask;
+         }
+
+         version++;
+
+         try
+         {
+            table.keys.set(i, key);
+
+            table.values.set(i, value);
+
+            size++;
+
+            // keeping the load under 3/4 so the probes stay short
+            if (size * 4 > table.capacity * 3)
+            {
+               rehash(table, table.capacity * 2);
+            }
+         }
+         finally
+         {
+            version++;
+         }
+
+         return null;
+      }
+
+      @SuppressWarnings("unchecked")
+      private synchronized V remove(final long key, final int hash)
+      {
+         Table table = this.table;
+
+         int mask = table.capacity - 1;
+
+         int gap = hash & mask;
+
+         while (true)
+         {
+            if (table.values.get(gap) == null)
+            {
+               return null;
+            }
+
+            if (table.keys.get(gap) == key)
+            {
+               break;
+            }
+
+            gap = (gap + 1) & mask;
+         }
+
+         V removed = (V) table.values.get(gap);
+
+         version++;
+
+         try
+         {
+            // Shift back the entries following the removed one, so no lookup stops early at the freed slot
+            for (int i = (gap + 1) & mask; table.values.get(i) != null; i = (i + 1) & mask)
+            {
+               long moved = table.keys.get(i);
+
+               int ideal = (int) hash(moved) & mask;
+
+               // the entry can fill the gap unless its ideal slot is cyclically within (gap, i]
+               boolean between = gap <= i ? gap < ideal && ideal <= i : gap < ideal || ideal <= i;
+
+               if (!between)
+               {
+                  table.keys.set(gap, moved);
+                  table.values.set(gap, table.values.get(i));
+                  gap = i;
+               }
+            }
+
+            table.values.set(gap, null);
+
+            table.keys.set(gap, 0);
+
+            size--;
+
+            if (table.capacity > MIN_SEGMENT_CAPACITY && size * 8 < table.capacity)
+            {
+               rehash(table, table.capacity / 2);
+            }
+         }
+         finally
+         {
+            version++;
+         }
+
+         return removed;
+      }
+
+      private synchronized void clear()
+      {
+         version++;
+
+         table = new Table(MIN_SEGMENT_CAPACITY);
+
+         size = 0;
+
+         version++;
+      }
+
+      private void rehash(final Table old, final int capacity)
+      {
+         Table table = new Table(capacity);
+
+         int mask = capacity - 1;
+
+         for (int j = 0; j < old.capacity; j++)
+         {
+            Object value = old.values.get(j);
+
+            if (value != null)
+            {
+               long key = old.keys.get(j);
+
+               int i = (int) hash(key) & mask;
+
+               while (table.values.get(i) != null)
+               {
+                  i = (i + 1) & mask;
+               }
+
+               // not visible to readers before the table is published below
+               table.keys.lazySet(i, key);
+
+               table.values.lazySet(i, value);
+            }
+         }
+
+         this.table = table;
+      }
+   }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2005-2014 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.hornetq.utils;
+
+import java.util.BitSet;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CompactBitSetTest extends Assert
+{
+   @Test
+   public void testAddContains()
+   {
+      CompactBitSet set = new CompactBitSet();
+
+      assertTrue(set.isEmpty());
+      assertFalse(set.contains(0));
+      assertFalse(set.contains(-1));
+
+      assertTrue(set.add(0));
+      assertTrue(set.add(65535));
+      assertTrue(set.add(65536));
+      assertTrue(set.add(Integer.MAX_VALUE));
+      assertFalse(set.add(65536));
+
+      assertEquals(4, set.cardinality());
+      assertTrue(set.contains(0));
+      assertTrue(set.contains(65535));
+      assertTrue(set.contains(65536));
+      assertTrue(set.contains(Integer.MAX_VALUE));
+      assertFalse(set.contains(1));
+      assertFalse(set.contains(65537));
+
+      set.clear();
+
+      assertTrue(set.isEmpty());
+      assertFalse(set.contains(0));
+   }
+
+   @Test(expected = IllegalArgumentException.class)
+   public void testNegative()
+   {
+      new CompactBitSet().add(-1);
+   }
+
+   @Test
+   public void testSparseAndDense()
+   {
+      CompactBitSet set = new CompactBitSet();
+
+      BitSet expected = new BitSet();
+
+      Random random = new Random(1);
+
+      // the first chunk turns into a bitmap, the others stay sparse
+      for (int i = 0; i < 50000; i++)
+      {
+         int value = i % 5 == 0 ? random.nextInt(200000) : random.nextInt(20000);
+
+         assertEquals(!expected.get(value), set.add(value));
+
+         expected.set(value);
+      }
+
+      assertEquals(expected.cardinality(), set.cardinality());
+
+      for (int i = 0; i < 200000; i++)
+      {
+         assertEquals(expected.get(i), set.contains(i));
+      }
+   }
+}
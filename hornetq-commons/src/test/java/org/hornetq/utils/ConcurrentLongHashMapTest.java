@@ -0,0 +1,311 @@
+/*
+ * Copyright 2005-2014 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.hornetq.utils;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ConcurrentLongHashMapTest extends Assert
+{
+   @Test
+   public void testPutGetRemove()
+   {
+      ConcurrentLongHashMap<String> map = new ConcurrentLongHashMap<String>();
+
+      assertTrue(map.isEmpty());
+      assertNull(map.get(1));
+      assertNull(map.remove(1));
+
+      assertNull(map.put(1, "one"));
+      assertNull(map.put(-1, "minus one"));
+      assertNull(map.put(0, "zero"));
+      assertNull(map.put(Long.MAX_VALUE, "max"));
+
+      assertEquals(4, map.size());
+      assertEquals("one", map.get(1));
+      assertEquals("minus one", map.get(-1));
+      assertEquals("zero", map.get(0));
+      assertEquals("max", map.get(Long.MAX_VALUE));
+      assertTrue(map.containsKey(0));
+      assertFalse(map.containsKey(2));
+
+      assertEquals("one", map.put(1, "uno"));
+      assertEquals(4, map.size());
+      assertEquals("uno", map.get(1));
+
+      assertEquals("zero", map.remove(0));
+      assertNull(map.get(0));
+      assertEquals(3, map.size());
+
+      long[] keys = map.keys();
+      Arrays.sort(keys);
+      assertArrayEquals(new long[]{-1, 1, Long.MAX_VALUE}, keys);
+
+      map.clear();
+
+      assertTrue(map.isEmpty());
+      assertNull(map.get(1));
+   }
+
+   @Test
+   public void testGrowAndShrink()
+   {
+      // a single segment, so every entry goes through the same table
+      ConcurrentLongHashMap<Long> map = new ConcurrentLongHashMap<Long>(1);
+
+      Map<Long, Long> expected = new HashMap<Long, Long>();
+
+      Random random = new Random(1);
+
+      for (int i = 0; i < 100000; i++)
+      {
+         long key = random.nextInt(20000);
+
+         if (random.nextBoolean())
+         {
+            assertEquals(expected.put(key, (long) i), map.put(key, (long) i));
+         }
+         else
+         {
+            assertEquals(expected.remove(key), map.remove(key));
+         }
+      }
+
+      assertEquals(expected.size(), map.size());
+
+      for (Map.Entry<Long, Long> entry : expected.entrySet())
+      {
+         assertEquals(entry.getValue(), map.get(entry.getKey()));
+      }
+
+      for (long key : map.keys())
+      {
+         assertEquals(expected.remove(key), map.remove(key));
+      }
+
+      assertTrue(expected.isEmpty());
+      assertTrue(map.isEmpty());
+   }
+
+   @Test
+   public void testPutAll()
+   {
+      ConcurrentLongHashMap<String> map = new ConcurrentLongHashMap<String>();
+      ConcurrentLongHashMap<String> other = new ConcurrentLongHashMap<String>();
+
+      for (long i = 0; i < 1000; i++)
+      {
+         map.put(i, "map");
+         other.put(i + 500, "other");
+      }
+
+      map.putAll(other);
+
+      assertEquals(1500, map.size());
+      assertEquals("map", map.get(0));
+      assertEquals("other", map.get(500));
+      assertEquals("other", map.get(1499));
+      assertEquals(1000, other.size());
+   }
+
+   @Test
+   public void testConcurrentUpdates() throws Exception
+   {
+      final ConcurrentLongHashMap<Integer> map = new ConcurrentLongHashMap<Integer>(4);
+
+      final int threads = 8;
+
+      final int keysPerThread = 10000;
+
+      final CountDownLatch start = new CountDownLatch(1);
+
+      final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+
+      Thread[] workers = new Thread[threads];
+
+      for (int t = 0; t < threads; t++)
+      {
+         final int thread = t;
+
+         workers[t] = new Thread()
+         {
+            @Override
+            public void run()
+            {
+               try
+               {
+                  start.await();
+
+                  for (int i = 0; i < keysPerThread; i++)
+                  {
+                     map.put(i * threads + thread, i);
+                  }
+
+                  for (int i = 0; i < keysPerThread; i += 2)
+                  {
+                     assertEquals(Integer.valueOf(i), map.remove(i * threads + thread));
+                  }
+               }
+               catch (Throwable e)
+               {
+                  failure.set(e);
+               }
+            }
+         };
+
+         workers[t].start();
+      }
+
+      start.countDown();
+
+      for (Thread worker : workers)
+      {
+         worker.join();
+      }
+
+      assertNull(failure.get());
+
+      assertEquals(threads * keysPerThread / 2, map.size());
+
+      for (int t = 0; t < threads; t++)
+      {
+         for (int i = 0; i < keysPerThread; i++)
+         {
+            assertEquals(i % 2 == 0 ? null : Integer.valueOf(i), map.get(i * threads + t));
+         }
+      }
+   }
+
+   @Test
+   public void testConcurrentReadsAndWrites() throws Exception
+   {
+      // a single segment, so the readers race every shift and rehash of the writers
+      final ConcurrentLongHashMap<Long> map = new ConcurrentLongHashMap<Long>(1);
+
+      final int stableKeys = 100;
+
+      for (long key = 0; key < stableKeys; key++)
+      {
+         map.put(key, key);
+      }
+
+      final int writers = 2;
+
+      final int readers = 2;
+
+      final long deadline = System.currentTimeMillis() + 1000;
+
+      final CountDownLatch start = new CountDownLatch(1);
+
+      final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+
+      Thread[] threads = new Thread[writers + readers];
+
+      for (int t = 0; t < writers; t++)
+      {
+         final int writer = t;
+
+         threads[t] = new Thread()
+         {
+            @Override
+            public void run()
+            {
+               try
+               {
+                  start.await();
+
+                  Random random = new Random(writer);
+
+                  while (System.currentTimeMillis() < deadline)
+                  {
+                     // adding keys among the stable ones and removing them again, shifting the stable keys back
+                     for (int i = 0; i < 50; i++)
+                     {
+                        long key = stableKeys + random.nextInt(10000) * writers + writer;
+                        map.put(key, key);
+                        assertEquals(Long.valueOf(key), map.remove(key));
+                     }
+
+                     // growing and shrinking the table
+                     for (long i = 0; i < 1000; i++)
+                     {
+                        long key = stableKeys + i * writers + writer;
+                        map.put(key, key);
+                     }
+
+                     for (long i = 0; i < 1000; i++)
+                     {
+                        long key = stableKeys + i * writers + writer;
+                        assertEquals(Long.valueOf(key), map.remove(key));
+                     }
+                  }
+               }
+               catch (Throwable e)
+               {
+                  failure.set(e);
+               }
+            }
+         };
+      }
+
+      for (int t = writers; t < threads.length; t++)
+      {
+         threads[t] = new Thread()
+         {
+            @Override
+            public void run()
+            {
+               try
+               {
+                  start.await();
+
+                  while (System.currentTimeMillis() < deadline)
+                  {
+                     for (long key = 0; key < stableKeys; key++)
+                     {
+                        assertEquals(Long.valueOf(key), map.get(key));
+                     }
+                  }
+               }
+               catch (Throwable e)
+               {
+                  failure.set(e);
+               }
+            }
+         };
+      }
+
+      for (Thread thread : threads)
+      {
+         thread.start();
+      }
+
+      start.countDown();
+
+      for (Thread thread : threads)
+      {
+         thread.join();
+      }
+
+      assertNull(failure.get());
+
+      assertEquals(stableKeys, map.size());
+   }
+}
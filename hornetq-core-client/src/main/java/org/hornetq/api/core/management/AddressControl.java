@@ -70,6 +70,26 @@ public interface AddressControl
     */
    long getNumberOfBytesPerPage() throws Exception;
 
+   /**
+    * Returns the size in bytes of the pages cached in memory for the cursors of this address.
+    */
+   long getPageCacheSize() throws Exception;
+
+   /**
+    * Returns the number of times the cursors of this address found the page they needed in the page cache.
+    */
+   long getPageCacheHits() throws Exception;
+
+   /**
+    * Returns the number of times the cursors of this address had to read a page from disk.
+    */
+   long getPageCacheMisses() throws Exception;
+
+   /**
+    * Returns the number of pages evicted from the page cache of this address to stay within its limits.
+    */
+   long getPageCacheEvictions() throws Exception;
+
    /**
     * Returns the names of all bindings (both queues and diverts) bound to this address
     */
@@ -135,6 +135,23 @@ public interface HornetQServerControl
     */
    int getJournalBufferTimeout();
 
+   /**
+    * Returns the timeout (in nanoseconds) currently used to flush internal buffers on the journal.
+    * <br>
+    * It differs from {@link #getJournalBufferTimeout()} when the timeout is adapted to a target latency.
+    */
+   int getJournalBufferCurrentTimeout();
+
+   /**
+    * Returns the number of times the internal buffer of the journal was flushed.
+    */
+   long getJournalBufferFlushCount();
+
+   /**
+    * Returns the number of times the internal buffer of the journal was flushed with a sync.
+    */
+   long getJournalBufferSyncFlushCount();
+
    /**
     * do any clients failover on a server shutdown
     */
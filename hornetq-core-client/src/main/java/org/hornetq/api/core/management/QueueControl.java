@@ -65,6 +65,12 @@ public interface QueueControl
     */
    long getScheduledCount();
 
+   /**
+    * Returns the number of messages in this queue waiting for their redelivery delay.
+    * They are part of the {@link #getScheduledCount() scheduled messages}.
+    */
+   long getDelayedRedeliveryCount();
+
    /**
     * Returns the number of consumers consuming messages from this queue.
     */
@@ -32,4 +32,19 @@ public interface LinkedList<E>
    void clear();
 
    int size();
+
+   /**
+    * Sets the supplier of the element IDs used by {@link #getWithID(long)} and {@link #removeWithID(long)}.
+    */
+   void setIDSupplier(IDSupplier<E> supplier);
+
+   /**
+    * Enables or disables an index of the elements by ID, making {@link #getWithID(long)} and
+    * {@link #removeWithID(long)} constant time instead of a scan of the list. It requires an ID supplier.
+    */
+   void setIDIndex(boolean enabled);
+
+   E getWithID(long id);
+
+   E removeWithID(long id);
 }
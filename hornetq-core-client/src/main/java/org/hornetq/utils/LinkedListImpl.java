@@ -13,6 +13,8 @@
 package org.hornetq.utils;
 
 import java.lang.reflect.Array;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.NoSuchElementException;
 
 
@@ -43,6 +45,11 @@ public class LinkedListImpl<E> implements LinkedList<E>
 
    private int nextIndex;
 
+   private IDSupplier<E> idSupplier;
+
+   // Only created when the ID index is enabled
+   private Map<Long, Node<E>> nodesByID;
+
    public LinkedListImpl()
    {
       iters = createIteratorArray(INITIAL_ITERATOR_ARRAY_SIZE);
@@ -58,6 +65,11 @@ public class LinkedListImpl<E> implements LinkedList<E>
 
       head.next = node;
 
+      if (nodesByID != null)
+      {
+         index(node);
+      }
+
       if (size == 0)
       {
          tail = node;
@@ -87,6 +99,11 @@ public class LinkedListImpl<E> implements LinkedList<E>
 
          tail = node;
 
+         if (nodesByID != null)
+         {
+            index(node);
+         }
+
          size++;
       }
    }
@@ -112,6 +129,11 @@ public class LinkedListImpl<E> implements LinkedList<E>
       tail = head.next = null;
 
       size = 0;
+
+      if (nodesByID != null)
+      {
+         nodesByID.clear();
+      }
    }
 
    public int size()
@@ -124,6 +146,66 @@ public class LinkedListImpl<E> implements LinkedList<E>
       return new Iterator();
    }
 
+   public void setIDSupplier(IDSupplier<E> supplier)
+   {
+      this.idSupplier = supplier;
+
+      if (nodesByID != null)
+      {
+         // the IDs may have changed, rebuild the index
+         setIDIndex(false);
+
+         setIDIndex(supplier != null);
+      }
+   }
+
+   public void setIDIndex(boolean enabled)
+   {
+      if (!enabled)
+      {
+         nodesByID = null;
+      }
+      else if (nodesByID == null)
+      {
+         if (idSupplier == null)
+         {
+            throw new IllegalStateException("An IDSupplier is required to index the list by ID");
+         }
+
+         nodesByID = new HashMap<Long, Node<E>>();
+
+         Node<E> node = head.next;
+
+         while (node != null)
+         {
+            index(node);
+
+            node = node.next;
+         }
+      }
+   }
+
+   public E getWithID(long id)
+   {
+      Node<E> node = getNodeWithID(id);
+
+      return node == null ? null : node.val;
+   }
+
+   public E removeWithID(long id)
+   {
+      Node<E> node = getNodeWithID(id);
+
+      if (node == null)
+      {
+         return null;
+      }
+
+      removeAfter(node.prev);
+
+      return node.val;
+   }
+
    public String toString()
    {
       StringBuilder str = new StringBuilder("LinkedListImpl [ ");
@@ -155,6 +237,67 @@ public class LinkedListImpl<E> implements LinkedList<E>
       return (Iterator[])Array.newInstance(Iterator.class, size);
    }
 
+   private Node<E> getNodeWithID(long id)
+   {
+      if (nodesByID != null)
+      {
+         return nodesByID.get(id);
+      }
+
+      if (idSupplier == null)
+      {
+         throw new IllegalStateException("An IDSupplier is required to look up elements by ID");
+      }
+
+      Node<E> node = head.next;
+
+      while (node != null && idSupplier.getID(node.val) != id)
+      {
+         node = node.next;
+      }
+
+      return node;
+   }
+
+   private void index(Node<E> node)
+   {
+      // the elements sharing an ID are chained, so removing one leaves the others indexed
+      node.sameID = nodesByID.put(idSupplier.getID(node.val), node);
+   }
+
+   private void unindex(Node<E> node)
+   {
+      Long id = idSupplier.getID(node.val);
+
+      Node<E> indexed = nodesByID.get(id);
+
+      if (indexed == node)
+      {
+         if (node.sameID == null)
+         {
+            nodesByID.remove(id);
+         }
+         else
+         {
+            nodesByID.put(id, node.sameID);
+         }
+      }
+      else
+      {
+         while (indexed != null && indexed.sameID != node)
+         {
+            indexed = indexed.sameID;
+         }
+
+         if (indexed != null)
+         {
+            indexed.sameID = node.sameID;
+         }
+      }
+
+      node.sameID = null;
+   }
+
    private void removeAfter(Node<E> node)
    {
       Node<E> toRemove = node.next;
@@ -173,6 +316,11 @@ public class LinkedListImpl<E> implements LinkedList<E>
 
       size--;
 
+      if (nodesByID != null)
+      {
+         unindex(toRemove);
+      }
+
       if (toRemove.iterCount != 0)
       {
          LinkedListImpl.this.nudgeIterators(toRemove);
@@ -253,6 +401,9 @@ public class LinkedListImpl<E> implements LinkedList<E>
 
       Node<E> prev;
 
+      // the previously indexed element with the same ID, while indexed by ID
+      Node<E> sameID;
+
       final E val;
 
       int iterCount;
@@ -35,4 +35,18 @@ public interface PriorityLinkedList<T>
    LinkedListIterator<T> iterator();
 
    boolean isEmpty();
+
+   /**
+    * @see LinkedList#setIDSupplier(IDSupplier)
+    */
+   void setIDSupplier(IDSupplier<T> supplier);
+
+   /**
+    * @see LinkedList#setIDIndex(boolean)
+    */
+   void setIDIndex(boolean enabled);
+
+   T getWithID(long id);
+
+   T removeWithID(long id);
 }
@@ -148,6 +148,61 @@ public class PriorityLinkedListImpl<T> implements PriorityLinkedList<T>
       return new PriorityLinkedListIterator();
    }
 
+   public void setIDSupplier(final IDSupplier<T> supplier)
+   {
+      for (LinkedListImpl<T> list : levels)
+      {
+         list.setIDSupplier(supplier);
+      }
+   }
+
+   public void setIDIndex(final boolean enabled)
+   {
+      for (LinkedListImpl<T> list : levels)
+      {
+         list.setIDIndex(enabled);
+      }
+   }
+
+   public T getWithID(final long id)
+   {
+      for (int i = highestPriority; i >= 0; i--)
+      {
+         T t = levels[i].getWithID(id);
+
+         if (t != null)
+         {
+            return t;
+         }
+      }
+
+      return null;
+   }
+
+   public T removeWithID(final long id)
+   {
+      for (int i = highestPriority; i >= 0; i--)
+      {
+         LinkedListImpl<T> ll = levels[i];
+
+         T t = ll.removeWithID(id);
+
+         if (t != null)
+         {
+            size--;
+
+            if (ll.size() == 0 && highestPriority == i)
+            {
+               highestPriority--;
+            }
+
+            return t;
+         }
+      }
+
+      return null;
+   }
+
    private class PriorityLinkedListIterator implements LinkedListIterator<T>
    {
       private int index;
@@ -259,16 +314,14 @@ public class PriorityLinkedListImpl<T> implements PriorityLinkedList<T>
 
          lastIter.remove();
 
-         // This next statement would be the equivalent of:
-         // if (index == highestPriority && levels[index].size() == 0)
-         // However we have to keep checking all the previous levels
-         // otherwise we would cache a max that will not exist
-         // what would make us eventually having hasNext() returning false
-         // as a bug
+         // highestPriority is only lowered to the next level with elements, poll and the lookups by ID start from it
          // Part of the fix for HORNETQ-705
-         for (int i = index; i >= 0 && levels[index].size() == 0; i--)
+         if (index == highestPriority)
          {
-            highestPriority = i;
+            while (highestPriority > 0 && levels[highestPriority].size() == 0)
+            {
+               highestPriority--;
+            }
          }
 
          size--;
@@ -15,6 +15,8 @@ package org.hornetq.core.journal;
 import java.nio.ByteBuffer;
 import java.util.List;
 
+import org.hornetq.core.journal.impl.TimedBuffer;
+
 /**
  *
  * A SequentialFileFactory
@@ -64,6 +66,11 @@ public interface SequentialFileFactory
 
    void deactivateBuffer();
 
+   /**
+    * @return the buffer batching the writes on the files of this factory, or {@code null} if they aren't buffered
+    */
+   TimedBuffer getTimedBuffer();
+
    // To be used in tests only
    ByteBuffer wrapBuffer(byte[] bytes);
 
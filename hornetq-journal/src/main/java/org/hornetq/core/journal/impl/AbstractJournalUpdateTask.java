@@ -26,6 +26,7 @@ import org.hornetq.core.journal.impl.dataformat.ByteArrayEncoding;
 import org.hornetq.core.journal.impl.dataformat.JournalAddRecord;
 import org.hornetq.core.journal.impl.dataformat.JournalInternalRecord;
 import org.hornetq.utils.ConcurrentHashSet;
+import org.hornetq.utils.ConcurrentLongHashMap;
 
 /**
  *
@@ -57,7 +58,11 @@ public abstract class AbstractJournalUpdateTask implements JournalReaderCallback
 
    private HornetQBuffer writingChannel;
 
-   private final Set<Long> recordsSnapshot = new ConcurrentHashSet<Long>();
+   // Not copied, the caller must not change it once the task is created
+   private final ConcurrentLongHashMap<?> recordsSnapshot;
+
+   // Records added to the snapshot while the task is running
+   private final Set<Long> addedRecords = new ConcurrentHashSet<Long>();
 
    protected final List<JournalFile> newDataFiles = new ArrayList<JournalFile>();
 
@@ -68,7 +73,7 @@ public abstract class AbstractJournalUpdateTask implements JournalReaderCallback
    protected AbstractJournalUpdateTask(final SequentialFileFactory fileFactory,
                                        final JournalImpl journal,
                                        final JournalFilesRepository filesRepository,
-                                       final Set<Long> recordsSnapshot,
+                                       final ConcurrentLongHashMap<?> recordsSnapshot,
                                        final long nextOrderingID)
    {
       super();
@@ -76,7 +81,7 @@ public abstract class AbstractJournalUpdateTask implements JournalReaderCallback
       this.filesRepository = filesRepository;
       this.fileFactory = fileFactory;
       this.nextOrderingID = nextOrderingID;
-      this.recordsSnapshot.addAll(recordsSnapshot);
+      this.recordsSnapshot = recordsSnapshot;
    }
 
    // Public --------------------------------------------------------
@@ -192,7 +197,7 @@ public abstract class AbstractJournalUpdateTask implements JournalReaderCallback
 
    public boolean lookupRecord(final long id)
    {
-      return recordsSnapshot.contains(id);
+      return recordsSnapshot.containsKey(id) || addedRecords.contains(id);
    }
 
    // Package protected ---------------------------------------------
@@ -223,7 +228,7 @@ public abstract class AbstractJournalUpdateTask implements JournalReaderCallback
 
    protected void addToRecordsSnaptshot(final long id)
    {
-      recordsSnapshot.add(id);
+      addedRecords.add(id);
    }
 
    /**
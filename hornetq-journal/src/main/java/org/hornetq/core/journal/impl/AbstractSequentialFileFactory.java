@@ -166,6 +166,11 @@ abstract class AbstractSequentialFileFactory implements SequentialFileFactory
       }
    }
 
+   public TimedBuffer getTimedBuffer()
+   {
+      return timedBuffer;
+   }
+
    public void releaseBuffer(final ByteBuffer buffer)
    {
    }
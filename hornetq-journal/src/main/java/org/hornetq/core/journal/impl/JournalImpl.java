@@ -24,8 +24,10 @@ import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
@@ -35,6 +37,7 @@ import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
@@ -65,6 +68,7 @@ import org.hornetq.core.journal.impl.dataformat.JournalRollbackRecordTX;
 import org.hornetq.journal.HornetQJournalBundle;
 import org.hornetq.journal.HornetQJournalLogger;
 import org.hornetq.utils.ConcurrentHashSet;
+import org.hornetq.utils.ConcurrentLongHashMap;
 import org.hornetq.utils.DataConstants;
 
 /**
@@ -111,6 +115,9 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
    // FileID(Long) + JournalVersion + UserVersion
    public static final int SIZE_HEADER = DataConstants.SIZE_LONG + DataConstants.SIZE_INT + DataConstants.SIZE_INT;
 
+   // The most appends a thread holding lockAppend will run on behalf of others before releasing it
+   private static final int MAX_APPEND_BATCH = 1024;
+
    private static final int BASIC_SIZE = DataConstants.SIZE_BYTE + DataConstants.SIZE_INT + DataConstants.SIZE_INT;
 
    public static final int SIZE_ADD_RECORD = JournalImpl.BASIC_SIZE + DataConstants.SIZE_LONG +
@@ -163,6 +170,8 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
 
    private volatile boolean autoReclaim = true;
 
+   private volatile int loadThreads = 1;
+
    private final int userVersion;
 
    private final int minFiles;
@@ -176,7 +185,7 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
    private final JournalFilesRepository filesRepository;
 
    // Compacting may replace this structure
-   private final ConcurrentMap<Long, JournalRecord> records = new ConcurrentHashMap<Long, JournalRecord>();
+   private volatile ConcurrentLongHashMap<JournalRecord> records = new ConcurrentLongHashMap<JournalRecord>();
 
    // Compacting may replace this structure
    private final ConcurrentMap<Long, JournalTransaction> transactions = new ConcurrentHashMap<Long, JournalTransaction>();
@@ -197,6 +206,9 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
    // After a record is appended, the usedFile can't be changed until the positives and negatives are updated
    private final ReentrantLock lockAppend = new ReentrantLock();
 
+   // Appends waiting for lockAppend. Whichever thread acquires it runs them in order (see appendAndWait)
+   private final Queue<PendingAppend> pendingAppends = new ConcurrentLinkedQueue<PendingAppend>();
+
    /**
     * We don't lock the journal during the whole compacting operation. During compacting we only
     * lock it (i) when gathering the initial structure, and (ii) when replicating the structures
@@ -345,7 +357,7 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
       latch.await();
    }
 
-   public Map<Long, JournalRecord> getRecords()
+   public ConcurrentLongHashMap<JournalRecord> getRecords()
    {
       return records;
    }
@@ -783,33 +795,32 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
 
       try
       {
-         JournalInternalRecord addRecord = new JournalAddRecord(true, id, recordType, record);
+         final JournalInternalRecord addRecord = new JournalAddRecord(true, id, recordType, record);
 
          if (callback != null)
          {
             callback.storeLineUp();
          }
 
-         lockAppend.lock();
-         try
+         appendAndWait(new PendingAppend()
          {
-            JournalFile usedFile = appendRecord(addRecord, false, sync, null, callback);
-
-            if (JournalImpl.TRACE_RECORDS)
+            @Override
+            void append() throws Exception
             {
-               JournalImpl.traceRecord("appendAddRecord::id=" + id +
-                                          ", userRecordType=" +
-                                          recordType +
-                                          ", usedFile = " +
-                                          usedFile);
-            }
+               JournalFile usedFile = appendRecord(addRecord, false, sync, null, callback);
 
-            records.put(id, new JournalRecord(usedFile, addRecord.getEncodeSize()));
-         }
-         finally
-         {
-            lockAppend.unlock();
-         }
+               if (JournalImpl.TRACE_RECORDS)
+               {
+                  JournalImpl.traceRecord("appendAddRecord::id=" + id +
+                                             ", userRecordType=" +
+                                             recordType +
+                                             ", usedFile = " +
+                                             usedFile);
+               }
+
+               records.put(id, new JournalRecord(usedFile, addRecord.getEncodeSize()));
+            }
+         });
       }
       finally
       {
@@ -830,7 +841,7 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
 
       try
       {
-         JournalRecord jrnRecord = records.get(id);
+         final JournalRecord jrnRecord = records.get(id);
 
          if (jrnRecord == null)
          {
@@ -840,42 +851,41 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
             }
          }
 
-         JournalInternalRecord updateRecord = new JournalAddRecord(false, id, recordType, record);
+         final JournalInternalRecord updateRecord = new JournalAddRecord(false, id, recordType, record);
 
          if (callback != null)
          {
             callback.storeLineUp();
          }
 
-         lockAppend.lock();
-         try
+         appendAndWait(new PendingAppend()
          {
-            JournalFile usedFile = appendRecord(updateRecord, false, sync, null, callback);
-
-            if (JournalImpl.TRACE_RECORDS)
+            @Override
+            void append() throws Exception
             {
-               JournalImpl.traceRecord("appendUpdateRecord::id=" + id +
-                                          ", userRecordType=" +
-                                          recordType +
-                                          ", usedFile = " +
-                                          usedFile);
-            }
+               JournalFile usedFile = appendRecord(updateRecord, false, sync, null, callback);
 
-            // record== null here could only mean there is a compactor, and computing the delete should be done after
-            // compacting is done
-            if (jrnRecord == null)
-            {
-               compactor.addCommandUpdate(id, usedFile, updateRecord.getEncodeSize());
-            }
-            else
-            {
-               jrnRecord.addUpdateFile(usedFile, updateRecord.getEncodeSize());
+               if (JournalImpl.TRACE_RECORDS)
+               {
+                  JournalImpl.traceRecord("appendUpdateRecord::id=" + id +
+                                             ", userRecordType=" +
+                                             recordType +
+                                             ", usedFile = " +
+                                             usedFile);
+               }
+
+               // record== null here could only mean there is a compactor, and computing the delete should be done after
+               // compacting is done
+               if (jrnRecord == null)
+               {
+                  compactor.addCommandUpdate(id, usedFile, updateRecord.getEncodeSize());
+               }
+               else
+               {
+                  jrnRecord.addUpdateFile(usedFile, updateRecord.getEncodeSize());
+               }
             }
-         }
-         finally
-         {
-            lockAppend.unlock();
-         }
+         });
       }
       finally
       {
@@ -893,7 +903,7 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
       try
       {
 
-         JournalRecord record = null;
+         final JournalRecord record;
 
          if (compactor == null)
          {
@@ -910,41 +920,41 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
             {
                throw new IllegalStateException("Cannot find add info " + id + " on compactor or current records");
             }
+
+            record = null;
          }
 
-         JournalInternalRecord deleteRecord = new JournalDeleteRecord(id);
+         final JournalInternalRecord deleteRecord = new JournalDeleteRecord(id);
 
          if (callback != null)
          {
             callback.storeLineUp();
          }
 
-         lockAppend.lock();
-         try
+         appendAndWait(new PendingAppend()
          {
-            JournalFile usedFile = appendRecord(deleteRecord, false, sync, null, callback);
-
-            if (JournalImpl.TRACE_RECORDS)
+            @Override
+            void append() throws Exception
             {
-               JournalImpl.traceRecord("appendDeleteRecord::id=" + id + ", usedFile = " + usedFile);
-            }
+               JournalFile usedFile = appendRecord(deleteRecord, false, sync, null, callback);
 
-            // record== null here could only mean there is a compactor, and computing the delete should be done after
-            // compacting is done
-            if (record == null)
-            {
-               compactor.addCommandDelete(id, usedFile);
-            }
-            else
-            {
-               record.delete(usedFile);
-            }
+               if (JournalImpl.TRACE_RECORDS)
+               {
+                  JournalImpl.traceRecord("appendDeleteRecord::id=" + id + ", usedFile = " + usedFile);
+               }
 
-         }
-         finally
-         {
-            lockAppend.unlock();
-         }
+               // record== null here could only mean there is a compactor, and computing the delete should be done after
+               // compacting is done
+               if (record == null)
+               {
+                  compactor.addCommandDelete(id, usedFile);
+               }
+               else
+               {
+                  record.delete(usedFile);
+               }
+            }
+         });
       }
       finally
       {
@@ -964,32 +974,31 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
 
       try
       {
-         JournalInternalRecord addRecord = new JournalAddRecordTX(true, txID, id, recordType, record);
+         final JournalInternalRecord addRecord = new JournalAddRecordTX(true, txID, id, recordType, record);
 
-         JournalTransaction tx = getTransactionInfo(txID);
+         final JournalTransaction tx = getTransactionInfo(txID);
 
-         lockAppend.lock();
-         try
+         appendAndWait(new PendingAppend()
          {
-            JournalFile usedFile = appendRecord(addRecord, false, false, tx, null);
-
-            if (JournalImpl.TRACE_RECORDS)
+            @Override
+            void append() throws Exception
             {
-               JournalImpl.traceRecord("appendAddRecordTransactional:txID=" + txID +
-                                          ",id=" +
-                                          id +
-                                          ", userRecordType=" +
-                                          recordType +
-                                          ", usedFile = " +
-                                          usedFile);
-            }
+               JournalFile usedFile = appendRecord(addRecord, false, false, tx, null);
 
-            tx.addPositive(usedFile, id, addRecord.getEncodeSize());
-         }
-         finally
-         {
-            lockAppend.unlock();
-         }
+               if (JournalImpl.TRACE_RECORDS)
+               {
+                  JournalImpl.traceRecord("appendAddRecordTransactional:txID=" + txID +
+                                             ",id=" +
+                                             id +
+                                             ", userRecordType=" +
+                                             recordType +
+                                             ", usedFile = " +
+                                             usedFile);
+               }
+
+               tx.addPositive(usedFile, id, addRecord.getEncodeSize());
+            }
+         });
       }
       finally
       {
@@ -1022,32 +1031,31 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
 
       try
       {
-         JournalInternalRecord updateRecordTX = new JournalAddRecordTX(false, txID, id, recordType, record);
+         final JournalInternalRecord updateRecordTX = new JournalAddRecordTX(false, txID, id, recordType, record);
 
-         JournalTransaction tx = getTransactionInfo(txID);
+         final JournalTransaction tx = getTransactionInfo(txID);
 
-         lockAppend.lock();
-         try
+         appendAndWait(new PendingAppend()
          {
-            JournalFile usedFile = appendRecord(updateRecordTX, false, false, tx, null);
-
-            if (JournalImpl.TRACE_RECORDS)
+            @Override
+            void append() throws Exception
             {
-               JournalImpl.traceRecord("appendUpdateRecordTransactional::txID=" + txID +
-                                          ",id=" +
-                                          id +
-                                          ", userRecordType=" +
-                                          recordType +
-                                          ", usedFile = " +
-                                          usedFile);
-            }
+               JournalFile usedFile = appendRecord(updateRecordTX, false, false, tx, null);
 
-            tx.addPositive(usedFile, id, updateRecordTX.getEncodeSize());
-         }
-         finally
-         {
-            lockAppend.unlock();
-         }
+               if (JournalImpl.TRACE_RECORDS)
+               {
+                  JournalImpl.traceRecord("appendUpdateRecordTransactional::txID=" + txID +
+                                             ",id=" +
+                                             id +
+                                             ", userRecordType=" +
+                                             recordType +
+                                             ", usedFile = " +
+                                             usedFile);
+               }
+
+               tx.addPositive(usedFile, id, updateRecordTX.getEncodeSize());
+            }
+         });
       }
       finally
       {
@@ -1065,30 +1073,29 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
 
       try
       {
-         JournalInternalRecord deleteRecordTX = new JournalDeleteRecordTX(txID, id, record);
+         final JournalInternalRecord deleteRecordTX = new JournalDeleteRecordTX(txID, id, record);
 
-         JournalTransaction tx = getTransactionInfo(txID);
+         final JournalTransaction tx = getTransactionInfo(txID);
 
-         lockAppend.lock();
-         try
+         appendAndWait(new PendingAppend()
          {
-            JournalFile usedFile = appendRecord(deleteRecordTX, false, false, tx, null);
-
-            if (JournalImpl.TRACE_RECORDS)
+            @Override
+            void append() throws Exception
             {
-               JournalImpl.traceRecord("appendDeleteRecordTransactional::txID=" + txID +
-                                          ", id=" +
-                                          id +
-                                          ", usedFile = " +
-                                          usedFile);
-            }
+               JournalFile usedFile = appendRecord(deleteRecordTX, false, false, tx, null);
 
-            tx.addNegative(usedFile, id);
-         }
-         finally
-         {
-            lockAppend.unlock();
-         }
+               if (JournalImpl.TRACE_RECORDS)
+               {
+                  JournalImpl.traceRecord("appendDeleteRecordTransactional::txID=" + txID +
+                                             ", id=" +
+                                             id +
+                                             ", usedFile = " +
+                                             usedFile);
+               }
+
+               tx.addNegative(usedFile, id);
+            }
+         });
       }
       finally
       {
@@ -1121,9 +1128,9 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
 
       try
       {
-         JournalTransaction tx = getTransactionInfo(txID);
+         final JournalTransaction tx = getTransactionInfo(txID);
 
-         JournalInternalRecord prepareRecord =
+         final JournalInternalRecord prepareRecord =
             new JournalCompleteRecordTX(TX_RECORD_TYPE.PREPARE, txID, transactionData);
 
          if (callback != null)
@@ -1131,22 +1138,21 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
             callback.storeLineUp();
          }
 
-         lockAppend.lock();
-         try
+         appendAndWait(new PendingAppend()
          {
-            JournalFile usedFile = appendRecord(prepareRecord, true, sync, tx, callback);
-
-            if (JournalImpl.TRACE_RECORDS)
+            @Override
+            void append() throws Exception
             {
-               JournalImpl.traceRecord("appendPrepareRecord::txID=" + txID + ", usedFile = " + usedFile);
-            }
+               JournalFile usedFile = appendRecord(prepareRecord, true, sync, tx, callback);
 
-            tx.prepare(usedFile);
-         }
-         finally
-         {
-            lockAppend.unlock();
-         }
+               if (JournalImpl.TRACE_RECORDS)
+               {
+                  JournalImpl.traceRecord("appendPrepareRecord::txID=" + txID + ", usedFile = " + usedFile);
+               }
+
+               tx.prepare(usedFile);
+            }
+         });
 
       }
       finally
@@ -1174,36 +1180,35 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
 
       try
       {
-         JournalTransaction tx = transactions.remove(txID);
+         final JournalTransaction tx = transactions.remove(txID);
 
          if (tx == null)
          {
             throw new IllegalStateException("Cannot find tx with id " + txID);
          }
 
-         JournalInternalRecord commitRecord = new JournalCompleteRecordTX(TX_RECORD_TYPE.COMMIT, txID, null);
+         final JournalInternalRecord commitRecord = new JournalCompleteRecordTX(TX_RECORD_TYPE.COMMIT, txID, null);
 
          if (callback != null && lineUpContext)
          {
             callback.storeLineUp();
          }
 
-         lockAppend.lock();
-         try
+         appendAndWait(new PendingAppend()
          {
-            JournalFile usedFile = appendRecord(commitRecord, true, sync, tx, callback);
-
-            if (JournalImpl.TRACE_RECORDS)
+            @Override
+            void append() throws Exception
             {
-               JournalImpl.traceRecord("appendCommitRecord::txID=" + txID + ", usedFile = " + usedFile);
-            }
+               JournalFile usedFile = appendRecord(commitRecord, true, sync, tx, callback);
 
-            tx.commit(usedFile);
-         }
-         finally
-         {
-            lockAppend.unlock();
-         }
+               if (JournalImpl.TRACE_RECORDS)
+               {
+                  JournalImpl.traceRecord("appendCommitRecord::txID=" + txID + ", usedFile = " + usedFile);
+               }
+
+               tx.commit(usedFile);
+            }
+         });
 
       }
       finally
@@ -1219,35 +1224,32 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
 
       journalLock.readLock().lock();
 
-      JournalTransaction tx = null;
-
       try
       {
-         tx = transactions.remove(txID);
+         final JournalTransaction tx = transactions.remove(txID);
 
          if (tx == null)
          {
             throw new IllegalStateException("Cannot find tx with id " + txID);
          }
 
-         JournalInternalRecord rollbackRecord = new JournalRollbackRecordTX(txID);
+         final JournalInternalRecord rollbackRecord = new JournalRollbackRecordTX(txID);
 
          if (callback != null)
          {
             callback.storeLineUp();
          }
 
-         lockAppend.lock();
-         try
+         appendAndWait(new PendingAppend()
          {
-            JournalFile usedFile = appendRecord(rollbackRecord, false, sync, tx, callback);
+            @Override
+            void append() throws Exception
+            {
+               JournalFile usedFile = appendRecord(rollbackRecord, false, sync, tx, callback);
 
-            tx.rollback(usedFile);
-         }
-         finally
-         {
-            lockAppend.unlock();
-         }
+               tx.rollback(usedFile);
+            }
+         });
 
       }
       finally
@@ -1500,10 +1502,12 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
                   return;
                }
 
+               // The current records are handed over to the compactor and replaced by an empty map, rather than
+               // copied and cleared, so the time holding the lock doesn't grow with the number of records
                compactor = new JournalCompactor(fileFactory,
                                                 this,
                                                 filesRepository,
-                                                records.keySet(),
+                                                records,
                                                 dataFilesToProcess.get(0).getFileID());
 
                for (Map.Entry<Long, JournalTransaction> entry : transactions.entrySet())
@@ -1514,7 +1518,7 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
 
                // We will calculate the new records during compacting, what will take the position the records will take
                // after compacting
-               records.clear();
+               records = new ConcurrentLongHashMap<JournalRecord>();
             }
             finally
             {
@@ -1564,11 +1568,13 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
 
                newDatafiles = localCompactor.getNewDataFiles();
 
-               // Restore newRecords created during compacting
-               for (Map.Entry<Long, JournalRecord> newRecordEntry : localCompactor.getNewRecords().entrySet())
-               {
-                  records.put(newRecordEntry.getKey(), newRecordEntry.getValue());
-               }
+               // Restore newRecords created during compacting. Only the records added while compacting are copied,
+               // the compacted records replace the current map as a whole
+               ConcurrentLongHashMap<JournalRecord> compactedRecords = localCompactor.getNewRecords();
+
+               compactedRecords.putAll(records);
+
+               records = compactedRecords;
 
                // Restore compacted dataFiles
                for (int i = newDatafiles.size() - 1; i >= 0; i--)
@@ -1734,13 +1740,17 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
       // AtomicLong is used only as a reference, not as an Atomic value
       final AtomicLong maxID = new AtomicLong(-1);
 
+      final ParallelJournalFileReader parallelReader = loadThreads > 1 && orderedFiles.size() > 1
+         ? new ParallelJournalFileReader(fileFactory, orderedFiles, loadThreads)
+         : null;
+
       for (final JournalFile file : orderedFiles)
       {
          JournalImpl.trace("Loading file " + file.getFile().getFileName());
 
          final AtomicBoolean hasData = new AtomicBoolean(false);
 
-         int resultLastPost = JournalImpl.readJournalFile(fileFactory, file, new JournalReaderCallback()
+         int resultLastPost = readJournalFile(parallelReader, file, new JournalReaderCallback()
          {
 
             private void checkID(final long id)
@@ -2182,6 +2192,26 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
       this.autoReclaim = autoReclaim;
    }
 
+   /**
+    * Sets the number of threads reading and decoding journal files while loading.
+    * <p/>
+    * With more than one thread the files are read ahead in parallel, but their records are still applied in file
+    * order on the loading thread.
+    */
+   public void setLoadThreads(final int loadThreads)
+   {
+      if (loadThreads < 1)
+      {
+         throw new IllegalArgumentException("loadThreads must be at least 1, was " + loadThreads);
+      }
+      this.loadThreads = loadThreads;
+   }
+
+   public int getLoadThreads()
+   {
+      return loadThreads;
+   }
+
    public final boolean isAutoReclaim()
    {
       return autoReclaim;
@@ -2336,7 +2366,7 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
          }
          finally
          {
-            lockAppend.unlock();
+            unlockAppend();
          }
       }
       finally
@@ -2451,7 +2481,7 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
          }
          finally
          {
-            lockAppend.unlock();
+            unlockAppend();
          }
       }
       finally
@@ -2759,6 +2789,86 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
       buffer.writeLong(fileID);
    }
 
+   /**
+    * Runs the append while holding {@link #lockAppend} and returns once it's done.
+    * <p/>
+    * Appends are queued and whichever thread gets the lock runs all the queued appends in a batch, while the
+    * others wait for theirs to be done instead of each one acquiring the lock in turn. The caller must hold the
+    * journalLock read lock until this returns, as the append may be run by another thread.
+    */
+   private void appendAndWait(final PendingAppend append) throws Exception
+   {
+      pendingAppends.add(append);
+
+      while (!append.done)
+      {
+         if (lockAppend.tryLock())
+         {
+            try
+            {
+               runPendingAppends();
+            }
+            finally
+            {
+               unlockAppend();
+            }
+         }
+         else
+         {
+            // Whoever holds the lock will either run it or wake us up when releasing the lock
+            LockSupport.park(this);
+         }
+      }
+
+      if (append.error instanceof Exception)
+      {
+         throw (Exception) append.error;
+      }
+      else if (append.error != null)
+      {
+         throw (Error) append.error;
+      }
+   }
+
+   private void runPendingAppends()
+   {
+      PendingAppend append;
+
+      for (int i = 0; i < MAX_APPEND_BATCH && (append = pendingAppends.poll()) != null; i++)
+      {
+         try
+         {
+            append.append();
+         }
+         catch (Throwable e)
+         {
+            append.error = e;
+         }
+
+         append.done = true;
+
+         if (append.owner != Thread.currentThread())
+         {
+            LockSupport.unpark(append.owner);
+         }
+      }
+   }
+
+   /**
+    * Releases {@link #lockAppend}, waking up the first queued append (if any) so its thread can take the lock.
+    */
+   private void unlockAppend()
+   {
+      lockAppend.unlock();
+
+      PendingAppend next = pendingAppends.peek();
+
+      if (next != null)
+      {
+         LockSupport.unpark(next.owner);
+      }
+   }
+
    /**
     * @param completeTransaction If the appendRecord is for a prepare or commit, where we should
     *                            update the number of pendingTransactions on the current file
@@ -2874,6 +2984,17 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
       return tx;
    }
 
+   private int readJournalFile(final ParallelJournalFileReader parallelReader,
+                               final JournalFile file,
+                               final JournalReaderCallback reader) throws Exception
+   {
+      if (parallelReader == null)
+      {
+         return JournalImpl.readJournalFile(fileFactory, file, reader);
+      }
+      return parallelReader.replay(file, reader);
+   }
+
    /**
     * @throws Exception
     */
@@ -2967,6 +3088,24 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
    // Inner classes
    // ---------------------------------------------------------------------------
 
+   /**
+    * An append queued for {@link #lockAppend}, see {@link #appendAndWait(PendingAppend)}
+    */
+   private abstract static class PendingAppend
+   {
+      private final Thread owner = Thread.currentThread();
+
+      // error is written before done
+      private Throwable error;
+
+      private volatile boolean done;
+
+      /**
+       * Called while holding lockAppend, possibly by another thread than the owner
+       */
+      abstract void append() throws Exception;
+   }
+
    // Used on Load
    private static final class TransactionHolder
    {
@@ -3048,7 +3187,7 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
          }
          finally
          {
-            lockAppend.unlock();
+            unlockAppend();
          }
       }
    }
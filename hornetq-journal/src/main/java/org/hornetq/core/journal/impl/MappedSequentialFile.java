@@ -0,0 +1,626 @@
+/*
+ * Copyright 2005-2014 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.hornetq.core.journal.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.Executor;
+
+import org.hornetq.api.core.HornetQException;
+import org.hornetq.api.core.HornetQExceptionType;
+import org.hornetq.api.core.HornetQIOErrorException;
+import org.hornetq.api.core.HornetQIllegalStateException;
+import org.hornetq.core.journal.IOAsyncTask;
+import org.hornetq.core.journal.SequentialFile;
+import org.hornetq.core.journal.SequentialFileFactory;
+import org.hornetq.journal.HornetQJournalBundle;
+import org.hornetq.journal.HornetQJournalLogger;
+
+/**
+ * A SequentialFile writing and reading through a {@link MappedByteBuffer}.
+ * <p/>
+ * Writes are copied into the mapping on the caller's thread, and a sync forces the mapping to disk. When a write
+ * goes past the end of the mapping (e.g. on page files, which are not pre-filled) the file is mapped again with some
+ * extra room, and that extra room is truncated away when the file is closed.
+ * <p/>
+ * Mappings are unmapped as soon as they are released, rather than when they are garbage collected, so files that are
+ * opened and closed often don't hold on to mapped regions and file handles. Where that isn't possible (a JVM without
+ * the cleaner of direct buffers), a closed file keeps the extra room, since a mapped file can't be truncated on
+ * every platform.
+ * <p/>
+ * Syncs and callbacks are executed on the writer executor, in the same order as the writes. A sync that finds the
+ * data already forced by a previous sync doesn't force it again.
+ */
+public final class MappedSequentialFile extends AbstractSequentialFile
+{
+   /**
+    * Minimum number of bytes a mapping grows by when a write goes past its end
+    */
+   private static final int MIN_GROWTH = 1024 * 1024;
+
+   /**
+    * Guards the mapping. Syncs run on the writer executor, which {@link #close()} waits for while holding the
+    * file's monitor, so they can't synchronize on the file itself.
+    */
+   private final Object mapLock = new Object();
+
+   private RandomAccessFile rfile;
+
+   private FileChannel channel;
+
+   private MappedByteBuffer mappedBuffer;
+
+   /**
+    * End of the data in the file, the mapping (and the file while it is open) may be larger than this
+    */
+   private volatile long length;
+
+   private volatile long syncedPosition;
+
+   private boolean grown;
+
+   private boolean asyncCallbacks;
+
+   /**
+    * Syncs forcing a mapping out of the lock, a mapping is only unmapped when there are none. Guarded by mapLock
+    */
+   private int syncing;
+
+   private final int maxIO;
+
+   public MappedSequentialFile(final SequentialFileFactory factory,
+                               final String directory,
+                               final String fileName,
+                               final int maxIO,
+                               final Executor writerExecutor)
+   {
+      super(directory, new File(directory + "/" + fileName), factory, writerExecutor);
+      this.maxIO = maxIO;
+   }
+
+   public MappedSequentialFile(final SequentialFileFactory factory,
+                               final File file,
+                               final int maxIO,
+                               final Executor writerExecutor)
+   {
+      super(file.getParent(), new File(file.getPath()), factory, writerExecutor);
+      this.maxIO = maxIO;
+   }
+
+   public int getAlignment()
+   {
+      return 1;
+   }
+
+   public int calculateBlockStart(final int position)
+   {
+      return position;
+   }
+
+   public synchronized boolean isOpen()
+   {
+      return channel != null;
+   }
+
+   public synchronized void open() throws IOException
+   {
+      open(maxIO, true);
+   }
+
+   public synchronized void open(final int maxIO, final boolean useExecutor) throws IOException
+   {
+      try
+      {
+         synchronized (mapLock)
+         {
+            rfile = new RandomAccessFile(getFile(), "rw");
+
+            channel = rfile.getChannel();
+
+            fileSize = channel.size();
+
+            length = fileSize;
+
+            syncedPosition = fileSize;
+
+            grown = false;
+
+            // like a newly opened channel, reads and writes start at the beginning of the file
+            position.set(0);
+
+            mappedBuffer = null;
+
+            map(fileSize);
+         }
+      }
+      catch (IOException e)
+      {
+         factory.onIOError(new HornetQIOErrorException(e.getMessage(), e), e.getMessage(), this);
+         throw e;
+      }
+
+      asyncCallbacks = writerExecutor != null && useExecutor;
+   }
+
+   public synchronized void fill(final int position, final int size, final byte fillCharacter) throws IOException
+   {
+      try
+      {
+         synchronized (mapLock)
+         {
+            ensureMapped(position + size, true);
+
+            for (int i = position; i < position + size; i++)
+            {
+               mappedBuffer.put(i, fillCharacter);
+            }
+
+            mappedBuffer.force();
+
+            if (grown)
+            {
+               channel.force(false);
+               grown = false;
+            }
+         }
+      }
+      catch (IOException e)
+      {
+         factory.onIOError(new HornetQIOErrorException(e.getMessage(), e), e.getMessage(), this);
+         throw e;
+      }
+
+      length = Math.max(length, position + size);
+
+      fileSize = length;
+   }
+
+   public synchronized void waitForClose() throws InterruptedException
+   {
+      while (isOpen())
+      {
+         wait();
+      }
+   }
+
+   @Override
+   public synchronized void close() throws IOException, InterruptedException, HornetQException
+   {
+      super.close();
+
+      synchronized (mapLock)
+      {
+         try
+         {
+            if (channel != null)
+            {
+               while (syncing > 0)
+               {
+                  mapLock.wait();
+               }
+
+               boolean unmapped = mappedBuffer == null || unmap(mappedBuffer);
+
+               mappedBuffer = null;
+
+               // the mapping may have grown past the data
+               if (unmapped && channel.size() > length)
+               {
+                  channel.truncate(length);
+               }
+
+               channel.close();
+            }
+
+            if (rfile != null)
+            {
+               rfile.close();
+            }
+         }
+         catch (IOException e)
+         {
+            factory.onIOError(new HornetQIOErrorException(e.getMessage(), e), e.getMessage(), this);
+            throw e;
+         }
+
+         channel = null;
+
+         rfile = null;
+      }
+
+      notifyAll();
+   }
+
+   public int read(final ByteBuffer bytes) throws Exception
+   {
+      return read(bytes, null);
+   }
+
+   public synchronized int read(final ByteBuffer bytes, final IOAsyncTask callback) throws HornetQIllegalStateException
+   {
+      if (channel == null)
+      {
+         throw new HornetQIllegalStateException("File " + this.getFileName() + " has a null channel");
+      }
+
+      int bytesRead = 0;
+
+      synchronized (mapLock)
+      {
+         long readPosition = position.get();
+
+         if (mappedBuffer != null && readPosition < length)
+         {
+            ByteBuffer source = mappedBuffer.duplicate();
+
+            source.position((int) readPosition);
+            source.limit((int) Math.min(length, readPosition + bytes.remaining()));
+
+            bytesRead = source.remaining();
+
+            bytes.put(source);
+
+            position.addAndGet(bytesRead);
+         }
+      }
+
+      if (callback != null)
+      {
+         callback.done();
+      }
+
+      bytes.flip();
+
+      return bytesRead;
+   }
+
+   public void sync() throws IOException
+   {
+      MappedByteBuffer buffer;
+
+      FileChannel fileChannel;
+
+      long written;
+
+      boolean syncMetadata;
+
+      synchronized (mapLock)
+      {
+         buffer = mappedBuffer;
+         fileChannel = channel;
+         written = position.get();
+         syncMetadata = grown;
+         grown = false;
+         syncing++;
+      }
+
+      // forcing happens out of the lock, so writes can keep being copied into the mapping meanwhile
+      try
+      {
+         if (buffer != null && fileChannel != null)
+         {
+            buffer.force();
+
+            if (syncMetadata)
+            {
+               // the length of the file changed
+               fileChannel.force(false);
+            }
+         }
+      }
+      catch (IOException e)
+      {
+         factory.onIOError(new HornetQIOErrorException(e.getMessage(), e), e.getMessage(), this);
+         throw e;
+      }
+      finally
+      {
+         synchronized (mapLock)
+         {
+            if (--syncing == 0)
+            {
+               mapLock.notifyAll();
+            }
+         }
+      }
+
+      syncedPosition = written;
+   }
+
+   public long size() throws IOException
+   {
+      if (!isOpen())
+      {
+         return getFile().length();
+      }
+
+      return length;
+   }
+
+   @Override
+   public String toString()
+   {
+      return "MappedSequentialFile " + getFile();
+   }
+
+   public SequentialFile cloneFile()
+   {
+      return new MappedSequentialFile(factory, getFile(), maxIO, writerExecutor);
+   }
+
+   public void writeDirect(final ByteBuffer bytes, final boolean sync, final IOAsyncTask callback)
+   {
+      if (callback == null)
+      {
+         throw new NullPointerException("callback parameter need to be set");
+      }
+
+      try
+      {
+         internalWrite(bytes, sync, callback);
+      }
+      catch (Exception e)
+      {
+         callback.onError(HornetQExceptionType.GENERIC_EXCEPTION.getCode(), e.getMessage());
+      }
+   }
+
+   public void writeDirect(final ByteBuffer bytes, final boolean sync) throws Exception
+   {
+      internalWrite(bytes, sync, null);
+   }
+
+   public void writeInternal(final ByteBuffer bytes) throws Exception
+   {
+      internalWrite(bytes, true, null);
+   }
+
+   @Override
+   protected ByteBuffer newBuffer(int size, final int limit)
+   {
+      // as on NIO the buffer is copied, there's no need to allocate the entire size of the timed buffer
+      size = limit;
+
+      return super.newBuffer(size, limit);
+   }
+
+   private void internalWrite(final ByteBuffer bytes, final boolean sync, final IOAsyncTask callback) throws IOException, HornetQIOErrorException
+   {
+      final long end;
+
+      try
+      {
+         end = copyToMap(bytes);
+      }
+      catch (IOException e)
+      {
+         factory.onIOError(new HornetQIOErrorException(e.getMessage(), e), e.getMessage(), this);
+         if (callback != null)
+         {
+            callback.onError(HornetQExceptionType.IO_ERROR.getCode(), e.getMessage());
+            return;
+         }
+         throw e;
+      }
+
+      if (end < 0)
+      {
+         if (callback != null)
+         {
+            callback.onError(HornetQExceptionType.IO_ERROR.getCode(), "File not opened");
+            return;
+         }
+         throw HornetQJournalBundle.BUNDLE.fileNotOpened();
+      }
+
+      if (asyncCallbacks && callback != null)
+      {
+         writerExecutor.execute(new Runnable()
+         {
+            public void run()
+            {
+               try
+               {
+                  complete(end, sync, callback);
+               }
+               catch (IOException e)
+               {
+                  HornetQJournalLogger.LOGGER.errorSubmittingWrite(e);
+                  callback.onError(HornetQExceptionType.IO_ERROR.getCode(), e.getMessage());
+               }
+               catch (Throwable e)
+               {
+                  HornetQJournalLogger.LOGGER.errorSubmittingWrite(e);
+                  callback.onError(HornetQExceptionType.IO_ERROR.getCode(), e.getMessage());
+               }
+            }
+         });
+      }
+      else
+      {
+         complete(end, sync, callback);
+      }
+   }
+
+   private void complete(final long end, final boolean sync, final IOAsyncTask callback) throws IOException
+   {
+      if (sync && syncedPosition < end)
+      {
+         sync();
+      }
+
+      if (callback != null)
+      {
+         callback.done();
+      }
+   }
+
+   /**
+    * @return the position after the copied bytes, or -1 if the file is not opened
+    */
+   private long copyToMap(final ByteBuffer bytes) throws IOException
+   {
+      synchronized (mapLock)
+      {
+         if (channel == null)
+         {
+            return -1;
+         }
+
+         long writePosition = position.get();
+
+         long end = writePosition + bytes.remaining();
+
+         ensureMapped(end, false);
+
+         ByteBuffer target = mappedBuffer.duplicate();
+
+         target.position((int) writePosition);
+
+         target.put(bytes);
+
+         position.set(end);
+
+         if (end > length)
+         {
+            length = end;
+         }
+
+         return end;
+      }
+   }
+
+   private void ensureMapped(final long required, final boolean exact) throws IOException
+   {
+      long mapped = mappedBuffer == null ? 0 : mappedBuffer.capacity();
+
+      if (required > mapped)
+      {
+         map(exact ? required : Math.max(required, mapped + Math.max(mapped, MIN_GROWTH)));
+         grown = true;
+      }
+   }
+
+   private void map(final long size) throws IOException
+   {
+      if (size > Integer.MAX_VALUE)
+      {
+         throw new IOException("File " + getFileName() + " is too large to be mapped: " + size + " bytes");
+      }
+
+      if (size > 0)
+      {
+         MappedByteBuffer previous = mappedBuffer;
+
+         mappedBuffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+
+         // a sync may still be forcing the previous mapping, it is left to the GC then
+         if (previous != null && syncing == 0)
+         {
+            unmap(previous);
+         }
+      }
+   }
+
+   /**
+    * @return false if the JVM doesn't allow unmapping the buffer, it is then unmapped when garbage collected
+    */
+   private static boolean unmap(final MappedByteBuffer buffer)
+   {
+      try
+      {
+         if (Unmapper.INVOKE_CLEANER != null)
+         {
+            Unmapper.INVOKE_CLEANER.invoke(Unmapper.UNSAFE, buffer);
+
+            return true;
+         }
+
+         if (Unmapper.CLEANER != null)
+         {
+            Object cleaner = Unmapper.CLEANER.invoke(buffer);
+
+            if (cleaner != null)
+            {
+               Unmapper.CLEAN.invoke(cleaner);
+            }
+
+            return true;
+         }
+      }
+      catch (Exception e)
+      {
+         HornetQJournalLogger.LOGGER.debug("Couldn't unmap " + buffer, e);
+      }
+
+      return false;
+   }
+
+   /**
+    * The cleaner of the direct buffers, through sun.misc.Unsafe#invokeCleaner since Java 9 or
+    * sun.nio.ch.DirectBuffer#cleaner before. Looked up once, the methods are null if neither is available.
+    */
+   private static final class Unmapper
+   {
+      static final Object UNSAFE;
+
+      static final Method INVOKE_CLEANER;
+
+      static final Method CLEANER;
+
+      static final Method CLEAN;
+
+      static
+      {
+         Object unsafe = null;
+         Method invokeCleaner = null;
+         Method cleaner = null;
+         Method clean = null;
+
+         try
+         {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            unsafe = theUnsafe.get(null);
+         }
+         catch (Exception e)
+         {
+            invokeCleaner = null;
+
+            try
+            {
+               cleaner = Class.forName("sun.nio.ch.DirectBuffer").getMethod("cleaner");
+               clean = Class.forName("sun.misc.Cleaner").getMethod("clean");
+            }
+            catch (Exception e2)
+            {
+               cleaner = null;
+               clean = null;
+            }
+         }
+
+         UNSAFE = unsafe;
+         INVOKE_CLEANER = invokeCleaner;
+         CLEANER = cleaner;
+         CLEAN = clean;
+      }
+   }
+}
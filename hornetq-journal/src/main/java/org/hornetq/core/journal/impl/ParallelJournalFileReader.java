@@ -0,0 +1,276 @@
+/*
+ * Copyright 2005-2014 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.hornetq.core.journal.impl;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.Future;
+
+import org.hornetq.core.journal.RecordInfo;
+import org.hornetq.core.journal.SequentialFileFactory;
+
+/**
+ * Reads and decodes journal files on a {@link ForkJoinPool} while {@link JournalImpl#load} replays them.
+ * <p/>
+ * At most {@code threads} files are read ahead of the one being replayed, so only a bounded number of decoded files
+ * is held in memory. Each file is decoded into the sequence of callbacks {@link JournalImpl#readJournalFile} makes,
+ * and {@link #replay(JournalFile, JournalReaderCallback)} makes them again on the loading thread, file by file in
+ * the order the files were given. The resulting journal state is therefore the same as the one of a sequential load.
+ */
+final class ParallelJournalFileReader
+{
+   private final SequentialFileFactory fileFactory;
+
+   private final List<JournalFile> files;
+
+   private final ForkJoinPool pool;
+
+   private final LinkedList<Future<RecordedFile>> pending = new LinkedList<Future<RecordedFile>>();
+
+   private int nextFile;
+
+   ParallelJournalFileReader(final SequentialFileFactory fileFactory, final List<JournalFile> files, final int threads)
+   {
+      this.fileFactory = fileFactory;
+      this.files = files;
+      pool = new ForkJoinPool(threads, new ForkJoinPool.ForkJoinWorkerThreadFactory()
+      {
+         public ForkJoinWorkerThread newThread(final ForkJoinPool pool)
+         {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("JournalImpl::Loader-" + thread.getPoolIndex());
+            return thread;
+         }
+      }, null, false);
+
+      for (int i = 0; i < threads; i++)
+      {
+         readNext();
+      }
+   }
+
+   /**
+    * Makes on {@code callback} the calls read from {@code file}, which must be the next file in the list.
+    *
+    * @return the position after the last record of the file, as returned by {@link JournalImpl#readJournalFile}
+    */
+   int replay(final JournalFile file, final JournalReaderCallback callback) throws Exception
+   {
+      try
+      {
+         Future<RecordedFile> future = pending.poll();
+
+         readNext();
+
+         RecordedFile recorded;
+         try
+         {
+            recorded = future.get();
+         }
+         catch (ExecutionException e)
+         {
+            if (e.getCause() instanceof Exception)
+            {
+               throw (Exception) e.getCause();
+            }
+            throw e;
+         }
+
+         if (recorded.file != file)
+         {
+            throw new IllegalStateException("Journal file " + file.getFile().getFileName() +
+                                               " replayed out of order, expected " +
+                                               recorded.file.getFile().getFileName());
+         }
+
+         recorded.replay(callback);
+
+         if (pending.isEmpty())
+         {
+            close();
+         }
+
+         return recorded.lastDataPos;
+      }
+      catch (Exception e)
+      {
+         close();
+         throw e;
+      }
+   }
+
+   void close()
+   {
+      pool.shutdownNow();
+   }
+
+   private void readNext()
+   {
+      if (nextFile < files.size())
+      {
+         final JournalFile file = files.get(nextFile++);
+
+         pending.add(pool.submit(new Callable<RecordedFile>()
+         {
+            public RecordedFile call() throws Exception
+            {
+               RecordedFile recorded = new RecordedFile(file);
+               recorded.lastDataPos = JournalImpl.readJournalFile(fileFactory, file, recorded);
+               return recorded;
+            }
+         }));
+      }
+   }
+
+   private static final class RecordedCall
+   {
+      private final byte type;
+
+      private final long transactionID;
+
+      private final RecordInfo info;
+
+      private final byte[] extraData;
+
+      private final int numberOfRecords;
+
+      RecordedCall(final byte type,
+                   final long transactionID,
+                   final RecordInfo info,
+                   final byte[] extraData,
+                   final int numberOfRecords)
+      {
+         this.type = type;
+         this.transactionID = transactionID;
+         this.info = info;
+         this.extraData = extraData;
+         this.numberOfRecords = numberOfRecords;
+      }
+   }
+
+   private static final class RecordedFile implements JournalReaderCallback
+   {
+      private static final byte MARK_AS_DATA_FILE = 0;
+
+      private final JournalFile file;
+
+      private final List<RecordedCall> calls = new ArrayList<RecordedCall>();
+
+      private int lastDataPos;
+
+      RecordedFile(final JournalFile file)
+      {
+         this.file = file;
+      }
+
+      void replay(final JournalReaderCallback callback) throws Exception
+      {
+         for (RecordedCall call : calls)
+         {
+            switch (call.type)
+            {
+               case JournalImpl.ADD_RECORD:
+                  callback.onReadAddRecord(call.info);
+                  break;
+               case JournalImpl.UPDATE_RECORD:
+                  callback.onReadUpdateRecord(call.info);
+                  break;
+               case JournalImpl.DELETE_RECORD:
+                  callback.onReadDeleteRecord(call.transactionID);
+                  break;
+               case JournalImpl.ADD_RECORD_TX:
+                  callback.onReadAddRecordTX(call.transactionID, call.info);
+                  break;
+               case JournalImpl.UPDATE_RECORD_TX:
+                  callback.onReadUpdateRecordTX(call.transactionID, call.info);
+                  break;
+               case JournalImpl.DELETE_RECORD_TX:
+                  callback.onReadDeleteRecordTX(call.transactionID, call.info);
+                  break;
+               case JournalImpl.PREPARE_RECORD:
+                  callback.onReadPrepareRecord(call.transactionID, call.extraData, call.numberOfRecords);
+                  break;
+               case JournalImpl.COMMIT_RECORD:
+                  callback.onReadCommitRecord(call.transactionID, call.numberOfRecords);
+                  break;
+               case JournalImpl.ROLLBACK_RECORD:
+                  callback.onReadRollbackRecord(call.transactionID);
+                  break;
+               case MARK_AS_DATA_FILE:
+                  callback.markAsDataFile(file);
+                  break;
+               default:
+                  throw new IllegalStateException("Unexpected recorded call " + call.type);
+            }
+         }
+
+         calls.clear();
+      }
+
+      public void onReadAddRecord(final RecordInfo info) throws Exception
+      {
+         calls.add(new RecordedCall(JournalImpl.ADD_RECORD, 0, info, null, 0));
+      }
+
+      public void onReadUpdateRecord(final RecordInfo recordInfo) throws Exception
+      {
+         calls.add(new RecordedCall(JournalImpl.UPDATE_RECORD, 0, recordInfo, null, 0));
+      }
+
+      public void onReadDeleteRecord(final long recordID) throws Exception
+      {
+         // the record id is kept on the transaction id slot
+         calls.add(new RecordedCall(JournalImpl.DELETE_RECORD, recordID, null, null, 0));
+      }
+
+      public void onReadAddRecordTX(final long transactionID, final RecordInfo recordInfo) throws Exception
+      {
+         calls.add(new RecordedCall(JournalImpl.ADD_RECORD_TX, transactionID, recordInfo, null, 0));
+      }
+
+      public void onReadUpdateRecordTX(final long transactionID, final RecordInfo recordInfo) throws Exception
+      {
+         calls.add(new RecordedCall(JournalImpl.UPDATE_RECORD_TX, transactionID, recordInfo, null, 0));
+      }
+
+      public void onReadDeleteRecordTX(final long transactionID, final RecordInfo recordInfo) throws Exception
+      {
+         calls.add(new RecordedCall(JournalImpl.DELETE_RECORD_TX, transactionID, recordInfo, null, 0));
+      }
+
+      public void onReadPrepareRecord(final long transactionID, final byte[] extraData, final int numberOfRecords) throws Exception
+      {
+         calls.add(new RecordedCall(JournalImpl.PREPARE_RECORD, transactionID, null, extraData, numberOfRecords));
+      }
+
+      public void onReadCommitRecord(final long transactionID, final int numberOfRecords) throws Exception
+      {
+         calls.add(new RecordedCall(JournalImpl.COMMIT_RECORD, transactionID, null, null, numberOfRecords));
+      }
+
+      public void onReadRollbackRecord(final long transactionID) throws Exception
+      {
+         calls.add(new RecordedCall(JournalImpl.ROLLBACK_RECORD, transactionID, null, null, 0));
+      }
+
+      public void markAsDataFile(final JournalFile file)
+      {
+         calls.add(new RecordedCall(MARK_AS_DATA_FILE, 0, null, null, 0));
+      }
+   }
+}
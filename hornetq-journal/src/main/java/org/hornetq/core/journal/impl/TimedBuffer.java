@@ -42,6 +42,9 @@ public class TimedBuffer
    // The number of tries on sleep before switching to spin
    public static final int MAX_CHECKS_ON_SLEEP = 20;
 
+   // The shortest timeout the adaptive policy will choose, in nanoseconds
+   public static final int MIN_ADAPTIVE_TIMEOUT = 10000;
+
    // Attributes ----------------------------------------------------
 
    private TimedBufferObserver bufferObserver;
@@ -63,6 +66,8 @@ public class TimedBuffer
 
    private volatile int timeout;
 
+   private final int configuredTimeout;
+
    // used to measure sync requests. When a sync is requested, it shouldn't take more than timeout to happen
    private volatile boolean pendingSync = false;
 
@@ -83,6 +88,18 @@ public class TimedBuffer
 
    private final AtomicLong flushesDone = new AtomicLong(0);
 
+   private final AtomicLong syncFlushesDone = new AtomicLong(0);
+
+   // When greater than 0 the timeout is adapted to keep the commit latency (timeout + sync) within this target
+   private volatile int targetLatency = 0;
+
+   // averages used by the adaptive policy, in nanoseconds
+   private volatile long averageSyncLatency = 0;
+
+   private volatile long averageSyncInterval = 0;
+
+   private long lastSyncRequest = 0;
+
    private Timer logRatesTimer;
 
    private TimerTask logRatesTimerTask;
@@ -119,6 +136,8 @@ public class TimedBuffer
       callbacks = new ArrayList<IOAsyncTask>();
 
       this.timeout = timeout;
+
+      configuredTimeout = timeout;
    }
 
    // for Debug purposes
@@ -282,6 +301,18 @@ public class TimedBuffer
 
       if (sync)
       {
+         if (targetLatency > 0)
+         {
+            long now = System.nanoTime();
+
+            if (lastSyncRequest != 0)
+            {
+               averageSyncInterval = average(averageSyncInterval, now - lastSyncRequest);
+            }
+
+            lastSyncRequest = now;
+         }
+
          pendingSync = true;
 
          startSpin();
@@ -324,6 +355,16 @@ public class TimedBuffer
 
             bufferToFlush.put(buffer.toByteBuffer().array(), 0, pos);
 
+            if (pendingSync)
+            {
+               syncFlushesDone.incrementAndGet();
+
+               if (targetLatency > 0)
+               {
+                  callbacks.add(new SyncLatencyCallback(System.nanoTime()));
+               }
+            }
+
             bufferObserver.flushBuffer(bufferToFlush, pendingSync, callbacks);
 
             stopSpin();
@@ -342,14 +383,113 @@ public class TimedBuffer
       }
    }
 
+   /**
+    * Makes the timeout adaptive: the sync latency of the flushes and the interval between sync requests are
+    * measured, and the timeout is chosen so a synced record is written within {@code targetLatency} nanoseconds.
+    * <p/>
+    * When sync requests arrive slower than the time left after a sync, waiting would not batch anything and the
+    * buffer is flushed as soon as possible, otherwise it waits for as much of the target as the sync leaves.
+    *
+    * @param targetLatency in nanoseconds, 0 to use the fixed timeout
+    */
+   public synchronized void setTargetLatency(final int targetLatency)
+   {
+      if (targetLatency < 0)
+      {
+         throw new IllegalArgumentException("targetLatency must be positive, was " + targetLatency);
+      }
+
+      if (targetLatency == 0 && this.targetLatency > 0)
+      {
+         timeout = configuredTimeout;
+      }
+
+      this.targetLatency = targetLatency;
+   }
+
+   public int getTargetLatency()
+   {
+      return targetLatency;
+   }
+
+   /**
+    * @return the timeout currently used, in nanoseconds
+    */
+   public int getTimeout()
+   {
+      return timeout;
+   }
+
+   public long getFlushCount()
+   {
+      return flushesDone.get();
+   }
+
+   /**
+    * @return the number of flushes which had a sync requested
+    */
+   public long getSyncFlushCount()
+   {
+      return syncFlushesDone.get();
+   }
+
    // Package protected ---------------------------------------------
 
    // Protected -----------------------------------------------------
 
    // Private -------------------------------------------------------
 
+   private static long average(final long average, final long sample)
+   {
+      // exponentially weighted, each sample counts for 1/8
+      return average == 0 ? sample : average + (sample - average) / 8;
+   }
+
+   private void syncDone(final long latency)
+   {
+      long syncLatency = average(averageSyncLatency, latency);
+
+      averageSyncLatency = syncLatency;
+
+      int target = targetLatency;
+
+      if (target > 0)
+      {
+         long window = target - syncLatency;
+
+         // not synchronized, as it's called back by the file's writer which a flush may be waiting on
+         long syncInterval = averageSyncInterval;
+
+         if (window < MIN_ADAPTIVE_TIMEOUT || syncInterval == 0 || syncInterval >= window)
+         {
+            window = MIN_ADAPTIVE_TIMEOUT;
+         }
+
+         timeout = (int) window;
+      }
+   }
+
    // Inner classes -------------------------------------------------
 
+   private final class SyncLatencyCallback implements IOAsyncTask
+   {
+      private final long flushTime;
+
+      private SyncLatencyCallback(final long flushTime)
+      {
+         this.flushTime = flushTime;
+      }
+
+      public void done()
+      {
+         syncDone(System.nanoTime() - flushTime);
+      }
+
+      public void onError(final int errorCode, final String errorMessage)
+      {
+      }
+   }
+
    private class LogRatesTimerTask extends TimerTask
    {
       private boolean closed;
@@ -403,9 +543,6 @@ public class TimedBuffer
       int failedChecks = 0;
       long timeBefore = 0;
 
-      final int sleepMillis = timeout / 1000000; // truncates
-      final int sleepNanos = timeout % 1000000;
-
 
       public void run()
       {
@@ -466,9 +603,12 @@ public class TimedBuffer
                timeBefore = System.nanoTime();
             }
 
+            // the timeout may change when it's adaptive
+            final int currentTimeout = timeout;
+
             try
             {
-               sleep(sleepMillis, sleepNanos);
+               sleep(currentTimeout / 1000000, currentTimeout % 1000000);
             }
             catch (InterruptedException e)
             {
@@ -485,7 +625,7 @@ public class TimedBuffer
                long realTimeSleep = System.nanoTime() - timeBefore;
 
                // I'm letting the real time to be up to 50% than the requested sleep.
-               if (realTimeSleep > timeout * 1.5)
+               if (realTimeSleep > currentTimeout * 1.5)
                {
                   failedChecks++;
                }
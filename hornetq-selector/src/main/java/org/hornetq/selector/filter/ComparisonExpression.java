@@ -45,6 +45,11 @@ public abstract class ComparisonExpression extends BinaryExpression implements B
       convertStringExpressions = CONVERT_STRING_EXPRESSIONS.get() != null;
    }
 
+   public boolean isConvertStringExpressions()
+   {
+      return convertStringExpressions;
+   }
+
    public static BooleanExpression createBetween(Expression value, Expression left, Expression right)
    {
       return LogicExpression.createAND(createGreaterThanEqual(value, left), createLessThanEqual(value, right));
@@ -79,7 +84,7 @@ public abstract class ComparisonExpression extends BinaryExpression implements B
       REGEXP_CONTROL_CHARS.add(Character.valueOf('!'));
    }
 
-   static class LikeExpression extends UnaryExpression implements BooleanExpression
+   public static class LikeExpression extends UnaryExpression implements BooleanExpression
    {
 
       Pattern likePattern;
@@ -131,6 +136,11 @@ public abstract class ComparisonExpression extends BinaryExpression implements B
          likePattern = Pattern.compile(regexp.toString(), Pattern.DOTALL);
       }
 
+      public Pattern getLikePattern()
+      {
+         return likePattern;
+      }
+
       /**
        * @see org.apache.activemq.filter.UnaryExpression#getExpressionSymbol()
        */
@@ -66,85 +66,108 @@ public abstract class UnaryExpression implements Expression
 
    public static BooleanExpression createInExpression(PropertyExpression right, List<Object> elements, final boolean not)
    {
+      return new InExpression(right, elements, not);
+   }
+
+   public static class InExpression extends BooleanUnaryExpression
+   {
+      private final Collection<Object> inList;
+
+      private final boolean not;
 
-      // Use a HashSet if there are many elements.
-      Collection<Object> t;
-      if (elements.size() == 0)
+      public InExpression(PropertyExpression right, List<Object> elements, boolean not)
       {
-         t = null;
+         super(right);
+
+         // Use a HashSet if there are many elements.
+         if (elements.size() == 0)
+         {
+            inList = null;
+         }
+         else if (elements.size() < 5)
+         {
+            inList = elements;
+         }
+         else
+         {
+            inList = new HashSet<Object>(elements);
+         }
+
+         this.not = not;
       }
-      else if (elements.size() < 5)
+
+      public Object evaluate(Filterable message) throws FilterException
       {
-         t = elements;
+
+         Object rvalue = right.evaluate(message);
+         if (rvalue == null)
+         {
+            return null;
+         }
+         if (rvalue.getClass() != String.class)
+         {
+            return null;
+         }
+
+         if ((inList != null && inList.contains(rvalue)) ^ not)
+         {
+            return Boolean.TRUE;
+         }
+         else
+         {
+            return Boolean.FALSE;
+         }
+
       }
-      else
+
+      /**
+       * @return the values of the list, null if it is empty
+       */
+      public Collection<Object> getInList()
       {
-         t = new HashSet<Object>(elements);
+         return inList;
       }
-      final Collection<Object> inList = t;
 
-      return new BooleanUnaryExpression(right)
+      public boolean isNot()
       {
-         public Object evaluate(Filterable message) throws FilterException
-         {
-
-            Object rvalue = right.evaluate(message);
-            if (rvalue == null)
-            {
-               return null;
-            }
-            if (rvalue.getClass() != String.class)
-            {
-               return null;
-            }
+         return not;
+      }
 
-            if ((inList != null && inList.contains(rvalue)) ^ not)
-            {
-               return Boolean.TRUE;
-            }
-            else
+      public String toString()
+      {
+         StringBuffer answer = new StringBuffer();
+         answer.append(right);
+         answer.append(" ");
+         answer.append(getExpressionSymbol());
+         answer.append(" ( ");
+
+         int count = 0;
+         for (Iterator<Object> i = inList.iterator(); i.hasNext(); )
+         {
+            Object o = (Object) i.next();
+            if (count != 0)
             {
-               return Boolean.FALSE;
+               answer.append(", ");
             }
-
+            answer.append(o);
+            count++;
          }
 
-         public String toString()
-         {
-            StringBuffer answer = new StringBuffer();
-            answer.append(right);
-            answer.append(" ");
-            answer.append(getExpressionSymbol());
-            answer.append(" ( ");
-
-            int count = 0;
-            for (Iterator<Object> i = inList.iterator(); i.hasNext(); )
-            {
-               Object o = (Object) i.next();
-               if (count != 0)
-               {
-                  answer.append(", ");
-               }
-               answer.append(o);
-               count++;
-            }
+         answer.append(" )");
+         return answer.toString();
+      }
 
-            answer.append(" )");
-            return answer.toString();
+      public String getExpressionSymbol()
+      {
+         if (not)
+         {
+            return "NOT IN";
          }
-
-         public String getExpressionSymbol()
+         else
          {
-            if (not)
-            {
-               return "NOT IN";
-            }
-            else
-            {
-               return "IN";
-            }
+            return "IN";
          }
-      };
+      }
    }
 
    abstract static class BooleanUnaryExpression extends UnaryExpression implements BooleanExpression
@@ -182,6 +182,18 @@ public interface Configuration extends Serializable
     */
    Configuration setScheduledThreadPoolMaxSize(int maxSize);
 
+   /**
+    * Returns the tick (in milliseconds) of the timer wheel holding the scheduled messages of all the queues, or -1
+    * when each queue schedules its deliveries on the <em>scheduled</em> thread pool. <br>
+    * Default value is {@value org.hornetq.api.config.HornetQDefaultConfiguration#DEFAULT_SCHEDULED_DELIVERY_TIMER_WHEEL_TICK}.
+    */
+   long getScheduledDeliveryTimerWheelTick();
+
+   /**
+    * @see #getScheduledDeliveryTimerWheelTick()
+    */
+   Configuration setScheduledDeliveryTimerWheelTick(long tick);
+
    /**
     * Returns the interval time (in milliseconds) to invalidate security credentials. <br>
     * Default value is {@value org.hornetq.api.config.HornetQDefaultConfiguration#DEFAULT_SECURITY_INVALIDATION_INTERVAL}.
@@ -537,6 +549,19 @@ public interface Configuration extends Serializable
     */
    Configuration setPageMaxConcurrentIO(int maxIO);
 
+   /**
+    * The max memory (in bytes) used by the messages of all the addresses with the PAGE address full policy together.
+    * Beyond it the addresses that would take the longest to be consumed start paging, whatever their max-size-bytes.
+    * <p/>
+    * Default value is {@value org.hornetq.api.config.HornetQDefaultConfiguration#DEFAULT_GLOBAL_MAX_SIZE}, no limit.
+    */
+   long getGlobalMaxSize();
+
+   /**
+    * @see #getGlobalMaxSize()
+    */
+   Configuration setGlobalMaxSize(long globalMaxSize);
+
    /**
     * Returns the file system directory used to store journal log. <br>
     * Default value is {@value org.hornetq.api.config.HornetQDefaultConfiguration#DEFAULT_JOURNAL_DIR}.
@@ -604,6 +629,28 @@ public interface Configuration extends Serializable
     */
    Configuration setJournalCompactMinFiles(int minFiles);
 
+   /**
+    * Returns the number of threads reading the message journal files while loading it. <br>
+    * Default value is {@value org.hornetq.api.config.HornetQDefaultConfiguration#DEFAULT_JOURNAL_LOAD_THREADS}.
+    */
+   int getJournalLoadThreads();
+
+   /**
+    * Sets the number of threads reading the message journal files while loading it.
+    */
+   Configuration setJournalLoadThreads(int threads);
+
+   /**
+    * Returns the target latency (in nanoseconds) of synced writes on the journal, 0 when the journal buffer timeout is fixed. <br>
+    * Default value is {@value org.hornetq.api.config.HornetQDefaultConfiguration#DEFAULT_JOURNAL_BUFFER_TARGET_LATENCY}.
+    */
+   int getJournalBufferTargetLatency();
+
+   /**
+    * Sets the target latency (in nanoseconds) of synced writes on the journal, 0 to keep the journal buffer timeout fixed.
+    */
+   Configuration setJournalBufferTargetLatency(int targetLatency);
+
    /**
     * Returns the percentage of live data before compacting the journal. <br>
     * Default value is {@value org.hornetq.api.config.HornetQDefaultConfiguration#DEFAULT_JOURNAL_COMPACT_PERCENTAGE}.
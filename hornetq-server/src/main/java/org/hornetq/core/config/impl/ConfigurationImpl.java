@@ -74,6 +74,8 @@ public class ConfigurationImpl implements Configuration
 
    private int threadPoolMaxSize = HornetQDefaultConfiguration.getDefaultThreadPoolMaxSize();
 
+   private long scheduledDeliveryTimerWheelTick = HornetQDefaultConfiguration.getDefaultScheduledDeliveryTimerWheelTick();
+
    private long securityInvalidationInterval = HornetQDefaultConfiguration.getDefaultSecurityInvalidationInterval();
 
    private boolean securityEnabled = HornetQDefaultConfiguration.isDefaultSecurityEnabled();
@@ -122,6 +124,8 @@ public class ConfigurationImpl implements Configuration
 
    private int maxConcurrentPageIO = HornetQDefaultConfiguration.getDefaultMaxConcurrentPageIo();
 
+   private long globalMaxSize = HornetQDefaultConfiguration.getDefaultGlobalMaxSize();
+
    protected String largeMessagesDirectory = HornetQDefaultConfiguration.getDefaultLargeMessagesDir();
 
    protected String bindingsDirectory = HornetQDefaultConfiguration.getDefaultBindingsDirectory();
@@ -140,6 +144,10 @@ public class ConfigurationImpl implements Configuration
 
    protected int journalCompactMinFiles = HornetQDefaultConfiguration.getDefaultJournalCompactMinFiles();
 
+   protected int journalLoadThreads = HornetQDefaultConfiguration.getDefaultJournalLoadThreads();
+
+   protected int journalBufferTargetLatency = HornetQDefaultConfiguration.getDefaultJournalBufferTargetLatency();
+
    protected int journalCompactPercentage = HornetQDefaultConfiguration.getDefaultJournalCompactPercentage();
 
    protected int journalFileSize = HornetQDefaultConfiguration.getDefaultJournalFileSize();
@@ -278,6 +286,17 @@ public class ConfigurationImpl implements Configuration
       return this;
    }
 
+   public long getScheduledDeliveryTimerWheelTick()
+   {
+      return scheduledDeliveryTimerWheelTick;
+   }
+
+   public ConfigurationImpl setScheduledDeliveryTimerWheelTick(final long tick)
+   {
+      scheduledDeliveryTimerWheelTick = tick;
+      return this;
+   }
+
    public int getThreadPoolMaxSize()
    {
       return threadPoolMaxSize;
@@ -565,6 +584,19 @@ public class ConfigurationImpl implements Configuration
       return this;
    }
 
+   @Override
+   public long getGlobalMaxSize()
+   {
+      return globalMaxSize;
+   }
+
+   @Override
+   public ConfigurationImpl setGlobalMaxSize(final long globalMaxSize)
+   {
+      this.globalMaxSize = globalMaxSize;
+      return this;
+   }
+
 
    public String getJournalDirectory()
    {
@@ -901,6 +933,28 @@ public class ConfigurationImpl implements Configuration
       return this;
    }
 
+   public int getJournalLoadThreads()
+   {
+      return journalLoadThreads;
+   }
+
+   public ConfigurationImpl setJournalLoadThreads(final int threads)
+   {
+      this.journalLoadThreads = threads;
+      return this;
+   }
+
+   public int getJournalBufferTargetLatency()
+   {
+      return journalBufferTargetLatency;
+   }
+
+   public ConfigurationImpl setJournalBufferTargetLatency(final int targetLatency)
+   {
+      this.journalBufferTargetLatency = targetLatency;
+      return this;
+   }
+
    public ConfigurationImpl setJournalCompactPercentage(final int percentage)
    {
       journalCompactPercentage = percentage;
@@ -1370,6 +1424,8 @@ public class ConfigurationImpl implements Configuration
       result = prime * result + journalBufferTimeout_AIO;
       result = prime * result + journalBufferTimeout_NIO;
       result = prime * result + journalCompactMinFiles;
+      result = prime * result + journalLoadThreads;
+      result = prime * result + journalBufferTargetLatency;
       result = prime * result + journalCompactPercentage;
       result = prime * result + ((journalDirectory == null) ? 0 : journalDirectory.hashCode());
       result = prime * result + journalFileSize;
@@ -1388,6 +1444,7 @@ public class ConfigurationImpl implements Configuration
                         ((managementNotificationAddress == null) ? 0 : managementNotificationAddress.hashCode());
       result = prime * result + (maskPassword ? 1231 : 1237);
       result = prime * result + maxConcurrentPageIO;
+      result = prime * result + (int)(globalMaxSize ^ (globalMaxSize >>> 32));
       result = prime * result + (int)(memoryMeasureInterval ^ (memoryMeasureInterval >>> 32));
       result = prime * result + memoryWarningThreshold;
       result = prime * result + (messageCounterEnabled ? 1231 : 1237);
@@ -1406,6 +1463,7 @@ public class ConfigurationImpl implements Configuration
       result = prime * result + ((queueConfigurations == null) ? 0 : queueConfigurations.hashCode());
       result = prime * result + (runSyncSpeedTest ? 1231 : 1237);
       result = prime * result + scheduledThreadPoolMaxSize;
+      result = prime * result + (int)(scheduledDeliveryTimerWheelTick ^ (scheduledDeliveryTimerWheelTick >>> 32));
       result = prime * result + (securityEnabled ? 1231 : 1237);
       result = prime * result + (int)(securityInvalidationInterval ^ (securityInvalidationInterval >>> 32));
       result = prime * result + ((securitySettings == null) ? 0 : securitySettings.hashCode());
@@ -1563,6 +1621,10 @@ public class ConfigurationImpl implements Configuration
          return false;
       if (journalCompactMinFiles != other.journalCompactMinFiles)
          return false;
+      if (journalLoadThreads != other.journalLoadThreads)
+         return false;
+      if (journalBufferTargetLatency != other.journalBufferTargetLatency)
+         return false;
       if (journalCompactPercentage != other.journalCompactPercentage)
          return false;
       if (journalDirectory == null)
@@ -1615,6 +1677,8 @@ public class ConfigurationImpl implements Configuration
          return false;
       if (maxConcurrentPageIO != other.maxConcurrentPageIO)
          return false;
+      if (globalMaxSize != other.globalMaxSize)
+         return false;
       if (memoryMeasureInterval != other.memoryMeasureInterval)
          return false;
       if (memoryWarningThreshold != other.memoryWarningThreshold)
@@ -1668,6 +1732,8 @@ public class ConfigurationImpl implements Configuration
          return false;
       if (scheduledThreadPoolMaxSize != other.scheduledThreadPoolMaxSize)
          return false;
+      if (scheduledDeliveryTimerWheelTick != other.scheduledDeliveryTimerWheelTick)
+         return false;
       if (securityEnabled != other.securityEnabled)
          return false;
       if (securityInvalidationInterval != other.securityInvalidationInterval)
@@ -146,7 +146,8 @@ public final class Validators
       public void validate(final String name, final Object value)
       {
          String val = (String) value;
-         if (val == null || !val.equals(JournalType.NIO.toString()) && !val.equals(JournalType.ASYNCIO.toString()))
+         if (val == null || !val.equals(JournalType.NIO.toString()) && !val.equals(JournalType.ASYNCIO.toString()) &&
+            !val.equals(JournalType.MAPPED.toString()))
          {
             throw HornetQMessageBundle.BUNDLE.invalidJournalType(val);
          }
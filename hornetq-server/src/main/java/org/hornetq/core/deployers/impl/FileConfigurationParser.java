@@ -148,6 +148,24 @@ public final class FileConfigurationParser extends XMLConfigurationUtil
 
    private static final String SLOW_CONSUMER_POLICY_NODE_NAME = "slow-consumer-policy";
 
+   private static final String MESSAGE_ID_INDEX_NODE_NAME = "message-id-index";
+
+   private static final String COMPACT_ID_CACHE_NODE_NAME = "compact-id-cache";
+
+   private static final String ID_CACHE_EXPIRY_NODE_NAME = "id-cache-expiry";
+
+   private static final String ID_CACHE_BLOOM_FILTER_NODE_NAME = "id-cache-bloom-filter";
+
+   private static final String PAGE_INDEX_NODE_NAME = "page-index";
+
+   private static final String PAGE_CACHE_MAX_BYTES_NODE_NAME = "page-cache-max-bytes";
+
+   private static final String PAGE_READ_AHEAD_NODE_NAME = "page-read-ahead";
+
+   private static final String PAGE_COMPRESSION_NODE_NAME = "page-compression";
+
+   private static final String READY_CONSUMER_DELIVERY_NODE_NAME = "ready-consumer-delivery";
+
    // Attributes ----------------------------------------------------
 
    private boolean validateAIO = false;
@@ -461,6 +479,10 @@ public final class FileConfigurationParser extends XMLConfigurationUtil
       config.setScheduledThreadPoolMaxSize(getInteger(e, "scheduled-thread-pool-max-size",
                                                       config.getScheduledThreadPoolMaxSize(), Validators.GT_ZERO));
 
+      config.setScheduledDeliveryTimerWheelTick(getLong(e, "scheduled-delivery-timer-wheel-tick",
+                                                        config.getScheduledDeliveryTimerWheelTick(),
+                                                        Validators.MINUS_ONE_OR_GT_ZERO));
+
       config.setThreadPoolMaxSize(getInteger(e, "thread-pool-max-size", config.getThreadPoolMaxSize(),
                                              Validators.MINUS_ONE_OR_GT_ZERO));
 
@@ -724,6 +746,9 @@ public final class FileConfigurationParser extends XMLConfigurationUtil
                                                config.getPageMaxConcurrentIO(),
                                                Validators.MINUS_ONE_OR_GT_ZERO));
 
+      config.setGlobalMaxSize(getLong(e, "global-max-size", config.getGlobalMaxSize(),
+                                      Validators.MINUS_ONE_OR_GT_ZERO));
+
       config.setPagingDirectory(getString(e,
                                           "paging-directory",
                                           config.getPagingDirectory(),
@@ -762,6 +787,10 @@ public final class FileConfigurationParser extends XMLConfigurationUtil
             config.setJournalType(JournalType.NIO);
          }
       }
+      else if (s.equals(JournalType.MAPPED.toString()))
+      {
+         config.setJournalType(JournalType.MAPPED);
+      }
 
       config.setJournalSyncTransactional(getBoolean(e,
                                                     "journal-sync-transactional",
@@ -812,6 +841,10 @@ public final class FileConfigurationParser extends XMLConfigurationUtil
       config.setJournalCompactMinFiles(getInteger(e, "journal-compact-min-files", config.getJournalCompactMinFiles(),
                                                   Validators.GE_ZERO));
 
+      config.setJournalLoadThreads(getInteger(e, "journal-load-threads", config.getJournalLoadThreads(), Validators.GT_ZERO));
+
+      config.setJournalBufferTargetLatency(getInteger(e, "journal-buffer-target-latency", config.getJournalBufferTargetLatency(), Validators.GE_ZERO));
+
       config.setJournalCompactPercentage(getInteger(e,
                                                     "journal-compact-percentage",
                                                     config.getJournalCompactPercentage(),
@@ -1135,6 +1168,42 @@ public final class FileConfigurationParser extends XMLConfigurationUtil
             SlowConsumerPolicy policy = Enum.valueOf(SlowConsumerPolicy.class, value);
             addressSettings.setSlowConsumerPolicy(policy);
          }
+         else if (MESSAGE_ID_INDEX_NODE_NAME.equalsIgnoreCase(name))
+         {
+            addressSettings.setMessageIDIndex(XMLUtil.parseBoolean(child));
+         }
+         else if (COMPACT_ID_CACHE_NODE_NAME.equalsIgnoreCase(name))
+         {
+            addressSettings.setCompactIDCache(XMLUtil.parseBoolean(child));
+         }
+         else if (ID_CACHE_EXPIRY_NODE_NAME.equalsIgnoreCase(name))
+         {
+            addressSettings.setIDCacheExpiry(XMLUtil.parseLong(child));
+         }
+         else if (ID_CACHE_BLOOM_FILTER_NODE_NAME.equalsIgnoreCase(name))
+         {
+            addressSettings.setIDCacheBloomFilter(XMLUtil.parseBoolean(child));
+         }
+         else if (PAGE_INDEX_NODE_NAME.equalsIgnoreCase(name))
+         {
+            addressSettings.setPageIndex(XMLUtil.parseBoolean(child));
+         }
+         else if (PAGE_CACHE_MAX_BYTES_NODE_NAME.equalsIgnoreCase(name))
+         {
+            addressSettings.setPageCacheMaxBytes(XMLUtil.parseLong(child));
+         }
+         else if (PAGE_READ_AHEAD_NODE_NAME.equalsIgnoreCase(name))
+         {
+            addressSettings.setPageReadAhead(XMLUtil.parseInt(child));
+         }
+         else if (PAGE_COMPRESSION_NODE_NAME.equalsIgnoreCase(name))
+         {
+            addressSettings.setPageCompression(XMLUtil.parseBoolean(child));
+         }
+         else if (READY_CONSUMER_DELIVERY_NODE_NAME.equalsIgnoreCase(name))
+         {
+            addressSettings.setReadyConsumerDelivery(XMLUtil.parseBoolean(child));
+         }
       }
       return setting;
    }
@@ -0,0 +1,797 @@
+/*
+ * Copyright 2005-2014 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.hornetq.core.filter.impl;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import org.hornetq.api.core.FilterConstants;
+import org.hornetq.api.core.SimpleString;
+import org.hornetq.core.server.ServerMessage;
+import org.hornetq.selector.LRUCache;
+import org.hornetq.selector.filter.BooleanExpression;
+import org.hornetq.selector.filter.ComparisonExpression;
+import org.hornetq.selector.filter.ConstantExpression;
+import org.hornetq.selector.filter.Expression;
+import org.hornetq.selector.filter.FilterException;
+import org.hornetq.selector.filter.Filterable;
+import org.hornetq.selector.filter.LogicExpression;
+import org.hornetq.selector.filter.PropertyExpression;
+import org.hornetq.selector.filter.UnaryExpression;
+
+/**
+ * Compiles the expression tree of a selector into a tree of nodes specialised for their operands, evaluated
+ * directly on a {@link ServerMessage}.
+ * <p/>
+ * A property is looked up in the message properties with a {@link SimpleString} built once, string values are
+ * compared as {@link SimpleString}s instead of being converted to {@link String}s, and a property compared to a
+ * numeric constant is compared as a primitive with the same conversions as the {@link ComparisonExpression}. The
+ * message headers (HQPriority, HQTimestamp...) are read without boxing. Nodes evaluate to {@link #TRUE},
+ * {@link #FALSE} or {@link #UNKNOWN} for the SQL null.
+ * <p/>
+ * The parts of the expression it doesn't know (arithmetic, XPath, comparisons of two properties...) are evaluated by
+ * the expression tree itself, on the {@link Filterable} of the message.
+ */
+final class FilterCompiler
+{
+   static final int FALSE = 0;
+
+   static final int TRUE = 1;
+
+   static final int UNKNOWN = -1;
+
+   private static final int EQUAL = 0;
+
+   private static final int GREATER_THAN = 1;
+
+   private static final int GREATER_THAN_EQUAL = 2;
+
+   private static final int LESS_THAN = 3;
+
+   private static final int LESS_THAN_EQUAL = 4;
+
+   // guarded by itself
+   private static final LRUCache<String, Node> cache = new LRUCache<String, Node>(100);
+
+   private FilterCompiler()
+   {
+   }
+
+   /**
+    * @return the compiled expression of the filter, shared by all the filters with the same string
+    */
+   static Node compile(final String filterString, final BooleanExpression expression)
+   {
+      synchronized (cache)
+      {
+         Node node = cache.get(filterString);
+
+         if (node == null)
+         {
+            node = compile(expression);
+
+            cache.put(filterString, node);
+         }
+
+         return node;
+      }
+   }
+
+   /**
+    * @return the expression as it is, evaluated by its expression tree
+    */
+   static Node interpret(final BooleanExpression expression)
+   {
+      return new Interpreted(expression);
+   }
+
+   static Node compile(final BooleanExpression expression)
+   {
+      if (expression instanceof LogicExpression)
+      {
+         LogicExpression logic = (LogicExpression) expression;
+
+         Node left = compile((BooleanExpression) logic.getLeft());
+         Node right = compile((BooleanExpression) logic.getRight());
+
+         if ("AND".equals(logic.getExpressionSymbol()))
+         {
+            return new And(left, right);
+         }
+
+         if ("OR".equals(logic.getExpressionSymbol()))
+         {
+            return new Or(left, right);
+         }
+      }
+      else if (expression instanceof ComparisonExpression)
+      {
+         Node node = compileComparison((ComparisonExpression) expression);
+
+         if (node != null)
+         {
+            return node;
+         }
+      }
+      else if (expression instanceof ComparisonExpression.LikeExpression)
+      {
+         ComparisonExpression.LikeExpression like = (ComparisonExpression.LikeExpression) expression;
+
+         if (like.getRight() instanceof PropertyExpression)
+         {
+            return new Like(value((PropertyExpression) like.getRight()), like.getLikePattern());
+         }
+      }
+      else if (expression instanceof UnaryExpression.InExpression)
+      {
+         UnaryExpression.InExpression in = (UnaryExpression.InExpression) expression;
+
+         return new In(value((PropertyExpression) in.getRight()), in.getInList(), in.isNot());
+      }
+      else if (expression instanceof UnaryExpression)
+      {
+         UnaryExpression unary = (UnaryExpression) expression;
+
+         if ("NOT".equals(unary.getExpressionSymbol()))
+         {
+            return new Not(compile((BooleanExpression) unary.getRight()));
+         }
+
+         // a property used as a boolean
+         if ("".equals(unary.getExpressionSymbol()) && unary.getRight() instanceof PropertyExpression)
+         {
+            return new BooleanCast(value((PropertyExpression) unary.getRight()));
+         }
+      }
+      else if (expression instanceof ConstantExpression)
+      {
+         Object value = ((ConstantExpression) expression).getValue();
+
+         return new Constant(value == null ? UNKNOWN : value == Boolean.TRUE ? TRUE : FALSE);
+      }
+
+      return new Interpreted(expression);
+   }
+
+   // Private -------------------------------------------------------
+
+   /**
+    * Only a property on the left and a constant on the right, the conversions are different the other way around.
+    */
+   private static Node compileComparison(final ComparisonExpression comparison)
+   {
+      if (comparison.isConvertStringExpressions() || !(comparison.getLeft() instanceof PropertyExpression))
+      {
+         return null;
+      }
+
+      Value value = value((PropertyExpression) comparison.getLeft());
+
+      Object constant = constantValue(comparison.getRight());
+
+      int operator = operator(comparison.getExpressionSymbol());
+
+      if (operator == EQUAL)
+      {
+         if (comparison.getRight() == ConstantExpression.NULL)
+         {
+            return new IsNull(value);
+         }
+
+         if (constant instanceof String)
+         {
+            return new StringEquals(value, new SimpleString((String) constant));
+         }
+
+         if (constant instanceof Boolean)
+         {
+            return new BooleanEquals(value, (Boolean) constant);
+         }
+      }
+
+      if (operator == -1 || !(constant instanceof Integer || constant instanceof Long || constant instanceof Double))
+      {
+         return null;
+      }
+
+      if (value instanceof Header)
+      {
+         return new HeaderComparison((Header) value, operator, (Number) constant);
+      }
+
+      return new NumberComparison(value, operator, (Number) constant);
+   }
+
+   private static int operator(final String symbol)
+   {
+      if ("=".equals(symbol))
+      {
+         return EQUAL;
+      }
+      if (">".equals(symbol))
+      {
+         return GREATER_THAN;
+      }
+      if (">=".equals(symbol))
+      {
+         return GREATER_THAN_EQUAL;
+      }
+      if ("<".equals(symbol))
+      {
+         return LESS_THAN;
+      }
+      if ("<=".equals(symbol))
+      {
+         return LESS_THAN_EQUAL;
+      }
+      return -1;
+   }
+
+   /**
+    * @return the value of a constant, negated constants included, or null
+    */
+   private static Object constantValue(final Expression expression)
+   {
+      if (expression instanceof ConstantExpression)
+      {
+         return ((ConstantExpression) expression).getValue();
+      }
+
+      if (expression instanceof UnaryExpression && "-".equals(((UnaryExpression) expression).getExpressionSymbol()))
+      {
+         Object value = constantValue(((UnaryExpression) expression).getRight());
+
+         if (value instanceof Integer)
+         {
+            return Integer.valueOf(-((Integer) value).intValue());
+         }
+         if (value instanceof Long)
+         {
+            return Long.valueOf(-((Long) value).longValue());
+         }
+         if (value instanceof Double)
+         {
+            return Double.valueOf(-((Double) value).doubleValue());
+         }
+      }
+
+      return null;
+   }
+
+   private static Value value(final PropertyExpression property)
+   {
+      SimpleString name = new SimpleString(property.getName());
+
+      if (FilterConstants.HORNETQ_PRIORITY.equals(name))
+      {
+         return new Header()
+         {
+            @Override
+            long getLong(final ServerMessage message)
+            {
+               return message.getPriority();
+            }
+
+            @Override
+            Object get(final ServerMessage message)
+            {
+               return Integer.valueOf(message.getPriority());
+            }
+         };
+      }
+      else if (FilterConstants.HORNETQ_TIMESTAMP.equals(name))
+      {
+         return new Header()
+         {
+            @Override
+            long getLong(final ServerMessage message)
+            {
+               return message.getTimestamp();
+            }
+
+            @Override
+            Object get(final ServerMessage message)
+            {
+               return message.getTimestamp();
+            }
+         };
+      }
+      else if (FilterConstants.HORNETQ_EXPIRATION.equals(name))
+      {
+         return new Header()
+         {
+            @Override
+            long getLong(final ServerMessage message)
+            {
+               return message.getExpiration();
+            }
+
+            @Override
+            Object get(final ServerMessage message)
+            {
+               return message.getExpiration();
+            }
+         };
+      }
+      else if (FilterConstants.HORNETQ_SIZE.equals(name))
+      {
+         return new Header()
+         {
+            @Override
+            long getLong(final ServerMessage message)
+            {
+               return message.getEncodeSize();
+            }
+
+            @Override
+            Object get(final ServerMessage message)
+            {
+               return message.getEncodeSize();
+            }
+         };
+      }
+      else if (FilterConstants.HORNETQ_DURABLE.equals(name))
+      {
+         return new Value()
+         {
+            @Override
+            Object get(final ServerMessage message)
+            {
+               return message.isDurable() ? FilterConstants.DURABLE : FilterConstants.NON_DURABLE;
+            }
+         };
+      }
+      else if (FilterConstants.HORNETQ_USERID.equals(name))
+      {
+         return new Value()
+         {
+            @Override
+            Object get(final ServerMessage message)
+            {
+               return new SimpleString("ID:" + message.getUserID());
+            }
+         };
+      }
+
+      return new Property(name);
+   }
+
+   private static int test(final int operator, final int comparison)
+   {
+      boolean result;
+
+      switch (operator)
+      {
+         case EQUAL:
+            result = comparison == 0;
+            break;
+         case GREATER_THAN:
+            result = comparison > 0;
+            break;
+         case GREATER_THAN_EQUAL:
+            result = comparison >= 0;
+            break;
+         case LESS_THAN:
+            result = comparison < 0;
+            break;
+         default:
+            result = comparison <= 0;
+            break;
+      }
+
+      return result ? TRUE : FALSE;
+   }
+
+   private static int compare(final long value1, final long value2)
+   {
+      return value1 < value2 ? -1 : value1 == value2 ? 0 : 1;
+   }
+
+   // Inner classes -------------------------------------------------
+
+   /**
+    * A compiled expression.
+    */
+   abstract static class Node
+   {
+      /**
+       * @param filterable the same message, for the parts left to the expression tree
+       * @return {@link #TRUE}, {@link #FALSE} or {@link #UNKNOWN}
+       */
+      abstract int evaluate(ServerMessage message, Filterable filterable) throws FilterException;
+   }
+
+   /**
+    * An operand, a value as the expression tree would see it but for strings which are left as {@link SimpleString}s.
+    */
+   private abstract static class Value
+   {
+      abstract Object get(ServerMessage message);
+   }
+
+   private abstract static class Header extends Value
+   {
+      abstract long getLong(ServerMessage message);
+   }
+
+   private static final class Property extends Value
+   {
+      private final SimpleString name;
+
+      Property(final SimpleString name)
+      {
+         this.name = name;
+      }
+
+      @Override
+      Object get(final ServerMessage message)
+      {
+         return message.getObjectProperty(name);
+      }
+   }
+
+   private static final class Constant extends Node
+   {
+      private final int result;
+
+      Constant(final int result)
+      {
+         this.result = result;
+      }
+
+      @Override
+      int evaluate(final ServerMessage message, final Filterable filterable)
+      {
+         return result;
+      }
+   }
+
+   private static final class Interpreted extends Node
+   {
+      private final BooleanExpression expression;
+
+      Interpreted(final BooleanExpression expression)
+      {
+         this.expression = expression;
+      }
+
+      @Override
+      int evaluate(final ServerMessage message, final Filterable filterable) throws FilterException
+      {
+         Object result = expression.evaluate(filterable);
+
+         return result == null ? UNKNOWN : Boolean.TRUE.equals(result) ? TRUE : FALSE;
+      }
+   }
+
+   private static final class And extends Node
+   {
+      private final Node left;
+
+      private final Node right;
+
+      And(final Node left, final Node right)
+      {
+         this.left = left;
+         this.right = right;
+      }
+
+      @Override
+      int evaluate(final ServerMessage message, final Filterable filterable) throws FilterException
+      {
+         int result = left.evaluate(message, filterable);
+
+         if (result != TRUE)
+         {
+            return result;
+         }
+
+         return right.evaluate(message, filterable);
+      }
+   }
+
+   private static final class Or extends Node
+   {
+      private final Node left;
+
+      private final Node right;
+
+      Or(final Node left, final Node right)
+      {
+         this.left = left;
+         this.right = right;
+      }
+
+      @Override
+      int evaluate(final ServerMessage message, final Filterable filterable) throws FilterException
+      {
+         if (left.evaluate(message, filterable) == TRUE)
+         {
+            return TRUE;
+         }
+
+         return right.evaluate(message, filterable);
+      }
+   }
+
+   private static final class Not extends Node
+   {
+      private final Node node;
+
+      Not(final Node node)
+      {
+         this.node = node;
+      }
+
+      @Override
+      int evaluate(final ServerMessage message, final Filterable filterable) throws FilterException
+      {
+         int result = node.evaluate(message, filterable);
+
+         return result == UNKNOWN ? UNKNOWN : result == TRUE ? FALSE : TRUE;
+      }
+   }
+
+   private static final class BooleanCast extends Node
+   {
+      private final Value value;
+
+      BooleanCast(final Value value)
+      {
+         this.value = value;
+      }
+
+      @Override
+      int evaluate(final ServerMessage message, final Filterable filterable)
+      {
+         Object result = value.get(message);
+
+         if (result == null)
+         {
+            return UNKNOWN;
+         }
+
+         return Boolean.TRUE.equals(result) ? TRUE : FALSE;
+      }
+   }
+
+   private static final class IsNull extends Node
+   {
+      private final Value value;
+
+      IsNull(final Value value)
+      {
+         this.value = value;
+      }
+
+      @Override
+      int evaluate(final ServerMessage message, final Filterable filterable)
+      {
+         return value.get(message) == null ? TRUE : FALSE;
+      }
+   }
+
+   private static final class StringEquals extends Node
+   {
+      private final Value value;
+
+      private final SimpleString constant;
+
+      StringEquals(final Value value, final SimpleString constant)
+      {
+         this.value = value;
+         this.constant = constant;
+      }
+
+      @Override
+      int evaluate(final ServerMessage message, final Filterable filterable)
+      {
+         return constant.equals(value.get(message)) ? TRUE : FALSE;
+      }
+   }
+
+   private static final class BooleanEquals extends Node
+   {
+      private final Value value;
+
+      private final Boolean constant;
+
+      BooleanEquals(final Value value, final Boolean constant)
+      {
+         this.value = value;
+         this.constant = constant;
+      }
+
+      @Override
+      int evaluate(final ServerMessage message, final Filterable filterable)
+      {
+         return constant.equals(value.get(message)) ? TRUE : FALSE;
+      }
+   }
+
+   private static final class HeaderComparison extends Node
+   {
+      private final Header header;
+
+      private final int operator;
+
+      private final boolean floating;
+
+      private final long longConstant;
+
+      private final double doubleConstant;
+
+      HeaderComparison(final Header header, final int operator, final Number constant)
+      {
+         this.header = header;
+         this.operator = operator;
+         this.floating = constant instanceof Double;
+         this.longConstant = constant.longValue();
+         this.doubleConstant = constant.doubleValue();
+      }
+
+      @Override
+      int evaluate(final ServerMessage message, final Filterable filterable)
+      {
+         long value = header.getLong(message);
+
+         if (floating)
+         {
+            return test(operator, Double.compare(value, doubleConstant));
+         }
+
+         return test(operator, compare(value, longConstant));
+      }
+   }
+
+   /**
+    * A property compared to a number, converted as {@link ComparisonExpression} would.
+    */
+   private static final class NumberComparison extends Node
+   {
+      private final Value value;
+
+      private final int operator;
+
+      private final boolean floating;
+
+      private final long longConstant;
+
+      private final double doubleConstant;
+
+      NumberComparison(final Value value, final int operator, final Number constant)
+      {
+         this.value = value;
+         this.operator = operator;
+         this.floating = constant instanceof Double;
+         this.longConstant = constant.longValue();
+         this.doubleConstant = constant.doubleValue();
+      }
+
+      @Override
+      int evaluate(final ServerMessage message, final Filterable filterable)
+      {
+         Object result = value.get(message);
+
+         if (result == null)
+         {
+            // equality is false with null, not unknown
+            return operator == EQUAL ? FALSE : UNKNOWN;
+         }
+
+         Class<?> type = result.getClass();
+
+         if (type == Integer.class || type == Long.class || type == Short.class || type == Byte.class)
+         {
+            long number = ((Number) result).longValue();
+
+            if (floating)
+            {
+               return test(operator, Double.compare(number, doubleConstant));
+            }
+
+            return test(operator, compare(number, longConstant));
+         }
+
+         if (type == Double.class)
+         {
+            return test(operator, Double.compare(((Double) result).doubleValue(), doubleConstant));
+         }
+
+         if (type == Float.class)
+         {
+            float number = ((Float) result).floatValue();
+
+            if (floating)
+            {
+               return test(operator, Double.compare(number, doubleConstant));
+            }
+
+            return test(operator, Float.compare(number, longConstant));
+         }
+
+         return FALSE;
+      }
+   }
+
+   private static final class Like extends Node
+   {
+      private final Value value;
+
+      private final Pattern pattern;
+
+      Like(final Value value, final Pattern pattern)
+      {
+         this.value = value;
+         this.pattern = pattern;
+      }
+
+      @Override
+      int evaluate(final ServerMessage message, final Filterable filterable)
+      {
+         Object result = value.get(message);
+
+         if (result == null)
+         {
+            return UNKNOWN;
+         }
+
+         if (result.getClass() != SimpleString.class)
+         {
+            return FALSE;
+         }
+
+         // no need for a String, SimpleString is a CharSequence
+         return pattern.matcher((SimpleString) result).matches() ? TRUE : FALSE;
+      }
+   }
+
+   private static final class In extends Node
+   {
+      private final Value value;
+
+      private final Set<SimpleString> inList = new HashSet<SimpleString>();
+
+      private final boolean not;
+
+      In(final Value value, final Collection<Object> inList, final boolean not)
+      {
+         this.value = value;
+
+         if (inList != null)
+         {
+            for (Object element : inList)
+            {
+               this.inList.add(new SimpleString((String) element));
+            }
+         }
+
+         this.not = not;
+      }
+
+      @Override
+      int evaluate(final ServerMessage message, final Filterable filterable)
+      {
+         Object result = value.get(message);
+
+         if (result == null || result.getClass() != SimpleString.class)
+         {
+            return UNKNOWN;
+         }
+
+         return inList.contains(result) ^ not ? TRUE : FALSE;
+      }
+   }
+}
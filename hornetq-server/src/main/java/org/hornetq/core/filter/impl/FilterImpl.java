@@ -12,6 +12,9 @@
  */
 package org.hornetq.core.filter.impl;
 
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
 import org.hornetq.selector.filter.BooleanExpression;
 import org.hornetq.selector.filter.FilterException;
 import org.hornetq.selector.filter.Filterable;
@@ -60,10 +63,37 @@ public class FilterImpl implements Filter
 
    // Constants -----------------------------------------------------
 
+   private static final String HORNETQ_PREFIX = FilterConstants.HORNETQ_PREFIX.toString();
+
+   /**
+    * Set to evaluate the filters with their expression tree only, as before they were compiled
+    */
+   private static final boolean INTERPRET = System.getProperty("org.hornetq.opt.interpretFilters") != null;
+
+   /**
+    * The expression tree has no state, the same filter is evaluated at once by all the threads routing to its
+    * binding. Each thread reuses its own message wrapper.
+    */
+   private static final ThreadLocal<FilterableServerMessage> FILTERABLE = new ThreadLocal<FilterableServerMessage>()
+   {
+      @Override
+      protected FilterableServerMessage initialValue()
+      {
+         return new FilterableServerMessage();
+      }
+   };
+
    private final SimpleString sfilterString;
 
    private final BooleanExpression booleanExpression;
 
+   private final FilterCompiler.Node compiledExpression;
+
+   /**
+    * The identifiers of the expression, so evaluating it doesn't create a SimpleString per identifier
+    */
+   private final ConcurrentMap<String, SimpleString> identifiers = new ConcurrentHashMap<String, SimpleString>();
+
    // Static ---------------------------------------------------------
 
    /**
@@ -105,6 +135,8 @@ public class FilterImpl implements Filter
    {
       sfilterString = str;
       this.booleanExpression = expression;
+      this.compiledExpression = INTERPRET ? FilterCompiler.interpret(expression)
+         : FilterCompiler.compile(str.toString(), expression);
    }
 
    // Filter implementation ---------------------------------------------------------------------
@@ -114,18 +146,47 @@ public class FilterImpl implements Filter
       return sfilterString;
    }
 
-   public synchronized boolean match(final ServerMessage message)
+   public boolean match(final ServerMessage message)
+   {
+      return match(message, compiledExpression);
+   }
+
+   BooleanExpression getBooleanExpression()
+   {
+      return booleanExpression;
+   }
+
+   /**
+    * Evaluates an expression of this filter, compiled or not.
+    */
+   boolean match(final ServerMessage message, final FilterCompiler.Node expression)
    {
+      FilterableServerMessage filterable = FILTERABLE.get();
+
+      ServerMessage previousMessage = filterable.message;
+
+      FilterImpl previousFilter = filterable.filter;
+
+      filterable.message = message;
+
+      filterable.filter = this;
+
       try
       {
-         boolean result = booleanExpression.matches(new FilterableServerMessage(message));
-         return result;
+         return expression.evaluate(message, filterable) == FilterCompiler.TRUE;
       }
       catch (Exception e)
       {
          HornetQServerLogger.LOGGER.invalidFilter(e, sfilterString);
          return false;
       }
+      finally
+      {
+         // not holding on the message once evaluated
+         filterable.message = previousMessage;
+
+         filterable.filter = previousFilter;
+      }
    }
 
    @Override
@@ -165,6 +226,25 @@ public class FilterImpl implements Filter
 
    // Private --------------------------------------------------------------------------
 
+   private SimpleString getIdentifier(final String id)
+   {
+      SimpleString identifier = identifiers.get(id);
+
+      if (identifier == null)
+      {
+         identifier = new SimpleString(id);
+
+         SimpleString previous = identifiers.putIfAbsent(id, identifier);
+
+         if (previous != null)
+         {
+            identifier = previous;
+         }
+      }
+
+      return identifier;
+   }
+
    private static Object getHeaderFieldValue(final ServerMessage msg, final SimpleString fieldName)
    {
       if (FilterConstants.HORNETQ_USERID.equals(fieldName))
@@ -200,24 +280,22 @@ public class FilterImpl implements Filter
 
    private static class FilterableServerMessage implements Filterable
    {
-      private final ServerMessage message;
+      private ServerMessage message;
 
-      public FilterableServerMessage(ServerMessage message)
-      {
-         this.message = message;
-      }
+      private FilterImpl filter;
 
       @Override
       public Object getProperty(String id)
       {
+         SimpleString identifier = filter.getIdentifier(id);
          Object result = null;
-         if (id.startsWith(FilterConstants.HORNETQ_PREFIX.toString()))
+         if (id.startsWith(HORNETQ_PREFIX))
          {
-            result = getHeaderFieldValue(message, new SimpleString(id));
+            result = getHeaderFieldValue(message, identifier);
          }
          if (result == null)
          {
-            result = message.getObjectProperty(new SimpleString(id));
+            result = message.getObjectProperty(identifier);
          }
          if (result != null)
          {
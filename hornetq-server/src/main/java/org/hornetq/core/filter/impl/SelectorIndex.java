@@ -0,0 +1,258 @@
+/*
+ * Copyright 2005-2014 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.hornetq.core.filter.impl;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.hornetq.api.core.FilterConstants;
+import org.hornetq.api.core.SimpleString;
+import org.hornetq.core.filter.Filter;
+import org.hornetq.core.server.ServerMessage;
+import org.hornetq.selector.filter.BooleanExpression;
+import org.hornetq.selector.filter.ComparisonExpression;
+import org.hornetq.selector.filter.ConstantExpression;
+import org.hornetq.selector.filter.LogicExpression;
+import org.hornetq.selector.filter.PropertyExpression;
+import org.hornetq.selector.filter.UnaryExpression;
+
+/**
+ * Indexes items, like the bindings of an address, by a string property their filter requires, to find the few
+ * items whose filter may match a message without evaluating all the filters.
+ * <p/>
+ * A filter is indexable when it is a conjunction with a term like {@code region = 'X'} or
+ * {@code type IN ('a', 'b')}: it can only match a message whose property is one of these values. The item is indexed
+ * under the values of the most selective such term, and {@link #match(ServerMessage, Collection)} gives the items
+ * indexed under the values of the message properties. These are candidates only, their filter still has to be
+ * evaluated, but the items of the other values are not even looked at.
+ */
+public final class SelectorIndex<T>
+{
+   // property -> value -> items whose filter requires the property to have that value
+   private final ConcurrentMap<SimpleString, ConcurrentMap<SimpleString, Set<T>>> index =
+      new ConcurrentHashMap<SimpleString, ConcurrentMap<SimpleString, Set<T>>>();
+
+   // guarded by this
+   private final Map<T, Term> terms = new HashMap<T, Term>();
+
+   private volatile int size;
+
+   /**
+    * @return false if the filter can't be indexed, the item isn't added then
+    */
+   public synchronized boolean add(final T item, final Filter filter)
+   {
+      if (!(filter instanceof FilterImpl) || terms.containsKey(item))
+      {
+         return false;
+      }
+
+      Term term = indexableTerm(((FilterImpl) filter).getBooleanExpression());
+
+      if (term == null)
+      {
+         return false;
+      }
+
+      ConcurrentMap<SimpleString, Set<T>> values = index.get(term.property);
+
+      if (values == null)
+      {
+         values = new ConcurrentHashMap<SimpleString, Set<T>>();
+         index.put(term.property, values);
+      }
+
+      for (SimpleString value : term.values)
+      {
+         Set<T> items = values.get(value);
+
+         if (items == null)
+         {
+            items = Collections.newSetFromMap(new ConcurrentHashMap<T, Boolean>());
+            values.put(value, items);
+         }
+
+         items.add(item);
+      }
+
+      terms.put(item, term);
+
+      size++;
+
+      return true;
+   }
+
+   /**
+    * @return false if the item wasn't indexed
+    */
+   public synchronized boolean remove(final T item)
+   {
+      Term term = terms.remove(item);
+
+      if (term == null)
+      {
+         return false;
+      }
+
+      ConcurrentMap<SimpleString, Set<T>> values = index.get(term.property);
+
+      for (SimpleString value : term.values)
+      {
+         Set<T> items = values.get(value);
+
+         items.remove(item);
+
+         if (items.isEmpty())
+         {
+            values.remove(value);
+         }
+      }
+
+      if (values.isEmpty())
+      {
+         index.remove(term.property);
+      }
+
+      size--;
+
+      return true;
+   }
+
+   /**
+    * Adds to {@code candidates} the items whose filter may match the message.
+    */
+   public void match(final ServerMessage message, final Collection<? super T> candidates)
+   {
+      for (Map.Entry<SimpleString, ConcurrentMap<SimpleString, Set<T>>> entry : index.entrySet())
+      {
+         Object value = message.getObjectProperty(entry.getKey());
+
+         // only a string can be equal to a string
+         if (value instanceof SimpleString)
+         {
+            Set<T> items = entry.getValue().get(value);
+
+            if (items != null)
+            {
+               candidates.addAll(items);
+            }
+         }
+      }
+   }
+
+   public int size()
+   {
+      return size;
+   }
+
+   public boolean isEmpty()
+   {
+      return size == 0;
+   }
+
+   @Override
+   public synchronized String toString()
+   {
+      return "SelectorIndex(items=" + size + ", properties=" + index.keySet() + ")";
+   }
+
+   // Private -------------------------------------------------------
+
+   /**
+    * @return the term of the conjunction with the fewest values, null if there is none
+    */
+   private static Term indexableTerm(final BooleanExpression expression)
+   {
+      if (expression instanceof LogicExpression && "AND".equals(((LogicExpression) expression).getExpressionSymbol()))
+      {
+         LogicExpression and = (LogicExpression) expression;
+
+         Term left = indexableTerm((BooleanExpression) and.getLeft());
+         Term right = indexableTerm((BooleanExpression) and.getRight());
+
+         if (left == null || right != null && right.values.size() < left.values.size())
+         {
+            return right;
+         }
+
+         return left;
+      }
+
+      if (expression instanceof ComparisonExpression)
+      {
+         ComparisonExpression comparison = (ComparisonExpression) expression;
+
+         if ("=".equals(comparison.getExpressionSymbol()) && !comparison.isConvertStringExpressions() &&
+            comparison.getLeft() instanceof PropertyExpression && comparison.getRight() instanceof ConstantExpression)
+         {
+            Object value = ((ConstantExpression) comparison.getRight()).getValue();
+
+            if (value instanceof String)
+            {
+               return term((PropertyExpression) comparison.getLeft(), Collections.<Object>singletonList(value));
+            }
+         }
+      }
+      else if (expression instanceof UnaryExpression.InExpression)
+      {
+         UnaryExpression.InExpression in = (UnaryExpression.InExpression) expression;
+
+         if (!in.isNot())
+         {
+            Collection<Object> values = in.getInList();
+
+            return term((PropertyExpression) in.getRight(),
+                        values == null ? Collections.<Object>emptyList() : values);
+         }
+      }
+
+      return null;
+   }
+
+   private static Term term(final PropertyExpression property, final Collection<Object> values)
+   {
+      // the headers aren't properties of the message
+      if (property.getName().startsWith(FilterConstants.HORNETQ_PREFIX.toString()))
+      {
+         return null;
+      }
+
+      Set<SimpleString> strings = new HashSet<SimpleString>();
+
+      for (Object value : values)
+      {
+         strings.add(new SimpleString((String) value));
+      }
+
+      return new Term(new SimpleString(property.getName()), strings);
+   }
+
+   private static final class Term
+   {
+      final SimpleString property;
+
+      final Set<SimpleString> values;
+
+      Term(final SimpleString property, final Set<SimpleString> values)
+      {
+         this.property = property;
+         this.values = values;
+      }
+   }
+}
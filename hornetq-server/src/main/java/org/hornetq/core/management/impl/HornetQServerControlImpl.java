@@ -47,11 +47,13 @@ import org.hornetq.api.core.management.QueueControl;
 import org.hornetq.core.config.BridgeConfiguration;
 import org.hornetq.core.config.Configuration;
 import org.hornetq.core.config.DivertConfiguration;
+import org.hornetq.core.journal.impl.TimedBuffer;
 import org.hornetq.core.messagecounter.MessageCounterManager;
 import org.hornetq.core.messagecounter.impl.MessageCounterManagerImpl;
 import org.hornetq.core.persistence.StorageManager;
 import org.hornetq.core.persistence.config.PersistedAddressSetting;
 import org.hornetq.core.persistence.config.PersistedRoles;
+import org.hornetq.core.persistence.impl.journal.JournalStorageManager;
 import org.hornetq.core.postoffice.Binding;
 import org.hornetq.core.postoffice.DuplicateIDCache;
 import org.hornetq.core.postoffice.PostOffice;
@@ -292,6 +294,63 @@ public class HornetQServerControlImpl extends AbstractControl implements HornetQ
       }
    }
 
+   public int getJournalBufferCurrentTimeout()
+   {
+      checkStarted();
+
+      clearIO();
+      try
+      {
+         TimedBuffer buffer = getMessageJournalBuffer();
+
+         if (buffer == null)
+         {
+            return configuration.getJournalType() == JournalType.ASYNCIO ? configuration.getJournalBufferTimeout_AIO()
+                  : configuration.getJournalBufferTimeout_NIO();
+         }
+
+         return buffer.getTimeout();
+      }
+      finally
+      {
+         blockOnIO();
+      }
+   }
+
+   public long getJournalBufferFlushCount()
+   {
+      checkStarted();
+
+      clearIO();
+      try
+      {
+         TimedBuffer buffer = getMessageJournalBuffer();
+
+         return buffer == null ? 0 : buffer.getFlushCount();
+      }
+      finally
+      {
+         blockOnIO();
+      }
+   }
+
+   public long getJournalBufferSyncFlushCount()
+   {
+      checkStarted();
+
+      clearIO();
+      try
+      {
+         TimedBuffer buffer = getMessageJournalBuffer();
+
+         return buffer == null ? 0 : buffer.getSyncFlushCount();
+      }
+      finally
+      {
+         blockOnIO();
+      }
+   }
+
    public void setFailoverOnServerShutdown(boolean failoverOnServerShutdown)
    {
       checkStarted();
@@ -1631,6 +1690,15 @@ public class HornetQServerControlImpl extends AbstractControl implements HornetQ
       policy = addressSettings.getSlowConsumerPolicy() == SlowConsumerPolicy.NOTIFY ? "NOTIFY"
          : "KILL";
       settings.put("slowConsumerPolicy", policy);
+      settings.put("messageIDIndex", addressSettings.isMessageIDIndex());
+      settings.put("compactIDCache", addressSettings.isCompactIDCache());
+      settings.put("idCacheExpiry", addressSettings.getIDCacheExpiry());
+      settings.put("idCacheBloomFilter", addressSettings.isIDCacheBloomFilter());
+      settings.put("pageIndex", addressSettings.isPageIndex());
+      settings.put("pageCacheMaxBytes", addressSettings.getPageCacheMaxBytes());
+      settings.put("pageReadAhead", addressSettings.getPageReadAhead());
+      settings.put("pageCompression", addressSettings.isPageCompression());
+      settings.put("readyConsumerDelivery", addressSettings.isReadyConsumerDelivery());
 
       JSONObject jsonObject = new JSONObject(settings);
       return jsonObject.toString();
@@ -2043,6 +2111,16 @@ public class HornetQServerControlImpl extends AbstractControl implements HornetQ
 
    // Private -------------------------------------------------------
 
+   private TimedBuffer getMessageJournalBuffer()
+   {
+      if (storageManager instanceof JournalStorageManager)
+      {
+         return ((JournalStorageManager) storageManager).getMessageJournalBuffer();
+      }
+
+      return null;
+   }
+
    private synchronized void setMessageCounterEnabled(final boolean enable)
    {
       if (isStarted())
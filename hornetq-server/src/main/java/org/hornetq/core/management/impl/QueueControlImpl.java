@@ -299,6 +299,21 @@ public class QueueControlImpl extends AbstractControl implements QueueControl
       }
    }
 
+   public long getDelayedRedeliveryCount()
+   {
+      checkStarted();
+
+      clearIO();
+      try
+      {
+         return queue.getDelayedRedeliveryCount();
+      }
+      finally
+      {
+         blockOnIO();
+      }
+   }
+
    public String getDeadLetterAddress()
    {
       checkStarted();
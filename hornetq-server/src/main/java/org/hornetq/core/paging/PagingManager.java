@@ -15,6 +15,7 @@ package org.hornetq.core.paging;
 import java.util.Map;
 
 import org.hornetq.api.core.SimpleString;
+import org.hornetq.core.paging.impl.PageIOScheduler;
 import org.hornetq.core.server.HornetQComponent;
 import org.hornetq.core.settings.HierarchicalRepositoryChangeListener;
 
@@ -74,6 +75,24 @@ public interface PagingManager extends HornetQComponent, HierarchicalRepositoryC
 
    void resumeCleanup();
 
+   /**
+    * @return the scheduler sharing the page reads among the stores, or null if the reads aren't scheduled
+    */
+   PageIOScheduler getIOScheduler();
+
+   /**
+    * Called by the stores when the size of their messages in memory changes, so the manager can start paging on some
+    * of them when they take more than the global max size together.
+    */
+   void addGlobalSize(int size);
+
+   long getGlobalSize();
+
+   /**
+    * @return -1 if there is no global limit
+    */
+   long getGlobalMaxSize();
+
    /**
     * Lock the manager. This method should not be called during normal PagingManager usage.
     */
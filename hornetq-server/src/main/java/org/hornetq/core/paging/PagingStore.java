@@ -58,8 +58,25 @@ public interface PagingStore extends HornetQComponent
 
    long getPageSizeBytes();
 
+   /**
+    * @return whether the pages of this store are written with an index of their messages
+    */
+   boolean isPageIndex();
+
    long getAddressSize();
 
+   /**
+    * @return the total size of the messages removed from the address since the store was created, from which the
+    * {@link PagingManager} measures how fast it is consumed
+    */
+   long getReleasedSize();
+
+   /**
+    * @return the part of {@link #getAddressSize()} counted in the global size of the {@link PagingManager}, only the
+    * sizes added under the {@code PAGE} policy are
+    */
+   long getGlobalSizeContribution();
+
    long getMaxSize();
 
    void applySetting(AddressSettings addressSettings);
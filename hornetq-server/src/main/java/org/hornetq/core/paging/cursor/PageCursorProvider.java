@@ -65,6 +65,24 @@ public interface PageCursorProvider
 
    void setCacheMaxSize(int size);
 
+   /**
+    * @param maxBytes the maximum size of the cached pages, 0 or less for no limit
+    */
+   void setCacheMaxBytes(long maxBytes);
+
+   /**
+    * @param pages how many pages to read ahead of the cursors, 0 to disable read ahead
+    */
+   void setReadAhead(int pages);
+
+   long getCacheSizeInBytes();
+
+   long getCacheHits();
+
+   long getCacheMisses();
+
+   long getCacheEvictions();
+
    /**
     * @param pageCursorImpl
     */
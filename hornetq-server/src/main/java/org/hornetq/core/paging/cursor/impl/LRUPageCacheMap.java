@@ -0,0 +1,200 @@
+/*
+ * Copyright 2005-2014 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.hornetq.core.paging.cursor.impl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.hornetq.core.paging.cursor.PageCache;
+
+/**
+ * The page caches of a {@link PageCursorProviderImpl}, evicted in least recently used order when there are more
+ * than {@code maxElements} of them or when they take more than {@code maxBytes}.
+ * <p/>
+ * Unlike a {@link org.hornetq.utils.SoftValueHashMap} the caches are strongly referenced, so what is cached doesn't
+ * depend on the garbage collector. Live caches are never evicted, nor is the most recently used one as it was
+ * usually just loaded for a cursor. The size of a cache is the size of its page file, set once it was read.
+ * <p/>
+ * This class is not thread safe.
+ */
+public final class LRUPageCacheMap
+{
+   private final LinkedHashMap<Long, Entry> entries = new LinkedHashMap<Long, Entry>(16, 0.75f, true);
+
+   private int maxElements;
+
+   private long maxBytes;
+
+   private long sizeInBytes;
+
+   private long evictions;
+
+   /**
+    * @param maxElements 0 or less for no limit
+    * @param maxBytes    0 or less for no limit
+    */
+   public LRUPageCacheMap(final int maxElements, final long maxBytes)
+   {
+      this.maxElements = maxElements;
+      this.maxBytes = maxBytes;
+   }
+
+   public PageCache get(final long pageId)
+   {
+      Entry entry = entries.get(pageId);
+
+      return entry == null ? null : entry.cache;
+   }
+
+   public void put(final long pageId, final PageCache cache)
+   {
+      Entry old = entries.put(pageId, new Entry(cache));
+
+      if (old != null)
+      {
+         sizeInBytes -= old.size;
+      }
+
+      evict();
+   }
+
+   /**
+    * Sets the size of a cache once its page was read.
+    */
+   public void setSize(final long pageId, final long size)
+   {
+      Entry entry = entries.get(pageId);
+
+      if (entry != null)
+      {
+         sizeInBytes += size - entry.size;
+
+         entry.size = size;
+
+         evict();
+      }
+   }
+
+   public PageCache remove(final long pageId)
+   {
+      Entry entry = entries.remove(pageId);
+
+      if (entry == null)
+      {
+         return null;
+      }
+
+      sizeInBytes -= entry.size;
+
+      return entry.cache;
+   }
+
+   public boolean containsKey(final long pageId)
+   {
+      return entries.containsKey(pageId);
+   }
+
+   public void setMaxElements(final int maxElements)
+   {
+      this.maxElements = maxElements;
+      evict();
+   }
+
+   public int getMaxElements()
+   {
+      return maxElements;
+   }
+
+   public void setMaxBytes(final long maxBytes)
+   {
+      this.maxBytes = maxBytes;
+      evict();
+   }
+
+   public int size()
+   {
+      return entries.size();
+   }
+
+   public long getSizeInBytes()
+   {
+      return sizeInBytes;
+   }
+
+   public long getEvictions()
+   {
+      return evictions;
+   }
+
+   public Collection<PageCache> values()
+   {
+      ArrayList<PageCache> values = new ArrayList<PageCache>(entries.size());
+
+      for (Entry entry : entries.values())
+      {
+         values.add(entry.cache);
+      }
+
+      return values;
+   }
+
+   public void clear()
+   {
+      entries.clear();
+      sizeInBytes = 0;
+   }
+
+   private void evict()
+   {
+      Iterator<Map.Entry<Long, Entry>> iterator = entries.entrySet().iterator();
+
+      // the last entry is the most recently used one
+      int remaining = entries.size();
+
+      while (remaining > 1 && isOverLimit() && iterator.hasNext())
+      {
+         Entry entry = iterator.next().getValue();
+
+         remaining--;
+
+         if (!entry.cache.isLive())
+         {
+            iterator.remove();
+
+            sizeInBytes -= entry.size;
+
+            evictions++;
+         }
+      }
+   }
+
+   private boolean isOverLimit()
+   {
+      return maxElements > 0 && entries.size() > maxElements || maxBytes > 0 && sizeInBytes > maxBytes;
+   }
+
+   private static final class Entry
+   {
+      final PageCache cache;
+
+      long size;
+
+      Entry(final PageCache cache)
+      {
+         this.cache = cache;
+      }
+   }
+}
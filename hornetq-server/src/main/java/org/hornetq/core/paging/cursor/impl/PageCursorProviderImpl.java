@@ -22,6 +22,7 @@ import java.util.concurrent.atomic.AtomicInteger;
 
 import org.hornetq.core.filter.Filter;
 import org.hornetq.core.paging.PagedMessage;
+import org.hornetq.core.paging.PagingManager;
 import org.hornetq.core.paging.PagingStore;
 import org.hornetq.core.paging.cursor.PageCache;
 import org.hornetq.core.paging.cursor.PageCursorProvider;
@@ -30,12 +31,12 @@ import org.hornetq.core.paging.cursor.PageSubscription;
 import org.hornetq.core.paging.cursor.PagedReference;
 import org.hornetq.core.paging.cursor.PagedReferenceImpl;
 import org.hornetq.core.paging.impl.Page;
+import org.hornetq.core.paging.impl.PageIOScheduler;
 import org.hornetq.core.persistence.StorageManager;
 import org.hornetq.core.server.HornetQServerLogger;
 import org.hornetq.core.transaction.Transaction;
 import org.hornetq.core.transaction.impl.TransactionImpl;
 import org.hornetq.utils.FutureLatch;
-import org.hornetq.utils.SoftValueHashMap;
 /**
  * A PageProviderIMpl
  *
@@ -68,7 +69,21 @@ public class PageCursorProviderImpl implements PageCursorProvider
    // This is the same executor used at the PageStoreImpl. One Executor per pageStore
    private final Executor executor;
 
-   private final SoftValueHashMap<Long, PageCache> softCache;
+   // guards its own statistics as well
+   private final LRUPageCacheMap pageCaches;
+
+   private long cacheHits;
+
+   private long cacheMisses;
+
+   // how many pages are read ahead of the one a cursor is missing
+   private volatile int readAhead;
+
+   // the last page read ahead, or scheduled to be
+   private long readAheadPage = -1;
+
+   // the highest page requested by a cursor, i.e. the page of the fastest cursor
+   private long highestPage = -1;
 
    private final ConcurrentMap<Long, PageSubscription> activeCursors = new ConcurrentHashMap<Long, PageSubscription>();
 
@@ -84,7 +99,7 @@ public class PageCursorProviderImpl implements PageCursorProvider
       this.pagingStore = pagingStore;
       this.storageManager = storageManager;
       this.executor = executor;
-      this.softCache = new SoftValueHashMap<Long, PageCache>(maxCacheSize);
+      this.pageCaches = new LRUPageCacheMap(maxCacheSize, -1);
    }
 
    // Public --------------------------------------------------------
@@ -114,7 +129,25 @@ public class PageCursorProviderImpl implements PageCursorProvider
 
    public PagedMessage getMessage(final PagePosition pos)
    {
-      PageCache cache = getPageCache(pos.getPageNr());
+      PageCache cache;
+
+      synchronized (pageCaches)
+      {
+         cache = pageCaches.get(pos.getPageNr());
+      }
+
+      if (cache == null && pagingStore.isPageIndex() && pos.getPageNr() < pagingStore.getCurrentWritingPage())
+      {
+         // no need to read and cache the whole page for a single message if the page is indexed
+         PagedMessage message = readIndexedMessage(pos);
+
+         if (message != null)
+         {
+            return message;
+         }
+      }
+
+      cache = getPageCache(pos.getPageNr());
 
       if (cache == null || pos.getMessageNr() >= cache.getNumberOfMessages())
       {
@@ -133,19 +166,31 @@ public class PageCursorProviderImpl implements PageCursorProvider
    }
 
    public PageCache getPageCache(final long pageId)
+   {
+      return getPageCache(pageId, false);
+   }
+
+   private PageCache getPageCache(final long pageId, final boolean readingAhead)
    {
       try
       {
          boolean needToRead = false;
+         boolean newPage = false;
          PageCache cache = null;
-         synchronized (softCache)
+         synchronized (pageCaches)
          {
             if (pageId > pagingStore.getCurrentWritingPage())
             {
                return null;
             }
 
-            cache = softCache.get(pageId);
+            if (!readingAhead && pageId > highestPage)
+            {
+               highestPage = pageId;
+               newPage = true;
+            }
+
+            cache = pageCaches.get(pageId);
             if (cache == null)
             {
                if (!pagingStore.checkPageFileExists((int)pageId))
@@ -153,6 +198,11 @@ public class PageCursorProviderImpl implements PageCursorProvider
                   return null;
                }
 
+               if (!readingAhead)
+               {
+                  cacheMisses++;
+               }
+
                cache = createPageCache(pageId);
                needToRead = true;
                // anyone reading from this cache will have to wait reading to finish first
@@ -162,7 +212,11 @@ public class PageCursorProviderImpl implements PageCursorProvider
                {
                   HornetQServerLogger.LOGGER.trace("adding " + pageId +  " into cursor = " + this.pagingStore.getAddress());
                }
-               softCache.put(pageId, cache);
+               pageCaches.put(pageId, cache);
+            }
+            else if (!readingAhead)
+            {
+               cacheHits++;
             }
          }
 
@@ -171,15 +225,22 @@ public class PageCursorProviderImpl implements PageCursorProvider
          if (needToRead)
          {
             Page page = null;
+            boolean reading = false;
             try
             {
                page = pagingStore.createPage((int)pageId);
 
-               storageManager.beforePageRead();
+               beforePageRead(readingAhead);
+               reading = true;
                page.open();
 
                List<PagedMessage> pgdMessages = page.read(storageManager);
                cache.setMessages(pgdMessages.toArray(new PagedMessage[pgdMessages.size()]));
+
+               synchronized (pageCaches)
+               {
+                  pageCaches.setSize(pageId, page.getSize());
+               }
             }
             finally
             {
@@ -193,11 +254,20 @@ public class PageCursorProviderImpl implements PageCursorProvider
                catch (Throwable ignored)
                {
                }
-               storageManager.afterPageRead();
+               if (reading)
+               {
+                  afterPageRead(readingAhead, page.getSize());
+               }
                cache.unlock();
             }
          }
 
+         // the fastest cursor moved to another page, or a slower one had to read its page
+         if (!readingAhead && (needToRead || newPage))
+         {
+            scheduleReadAhead(pageId);
+         }
+
          return cache;
       }
       catch (Exception e)
@@ -206,32 +276,129 @@ public class PageCursorProviderImpl implements PageCursorProvider
       }
    }
 
+   /**
+    * @return the message read through the index of its page, or null if the page is not indexed
+    */
+   private PagedMessage readIndexedMessage(final PagePosition pos)
+   {
+      try
+      {
+         if (!pagingStore.checkPageFileExists((int)pos.getPageNr()))
+         {
+            return null;
+         }
+
+         Page page = pagingStore.createPage((int)pos.getPageNr());
+
+         if (!page.isIndexed())
+         {
+            return null;
+         }
+
+         beforePageRead(false);
+         PagedMessage message = null;
+         try
+         {
+            page.open();
+
+            List<PagedMessage> messages = page.read(storageManager, pos.getMessageNr(), 1);
+
+            message = messages == null ? null : messages.get(0);
+
+            return message;
+         }
+         finally
+         {
+            try
+            {
+               page.close();
+            }
+            catch (Throwable ignored)
+            {
+            }
+            afterPageRead(false, message == null ? 0 : message.getEncodeSize());
+         }
+      }
+      catch (Exception e)
+      {
+         throw new RuntimeException("Couldn't complete paging due to an IO Exception on Paging - " + e.getMessage(), e);
+      }
+   }
+
    public void addPageCache(PageCache cache)
    {
-      synchronized (softCache)
+      synchronized (pageCaches)
       {
-         softCache.put(cache.getPageId(), cache);
+         pageCaches.put(cache.getPageId(), cache);
       }
    }
 
    public void setCacheMaxSize(final int size)
    {
-      softCache.setMaxElements(size);
+      synchronized (pageCaches)
+      {
+         pageCaches.setMaxElements(size);
+      }
+   }
+
+   public void setCacheMaxBytes(final long maxBytes)
+   {
+      synchronized (pageCaches)
+      {
+         pageCaches.setMaxBytes(maxBytes);
+      }
+   }
+
+   public void setReadAhead(final int pages)
+   {
+      readAhead = pages;
    }
 
    public int getCacheSize()
    {
-      synchronized (softCache)
+      synchronized (pageCaches)
+      {
+         return pageCaches.size();
+      }
+   }
+
+   public long getCacheSizeInBytes()
+   {
+      synchronized (pageCaches)
       {
-         return softCache.size();
+         return pageCaches.getSizeInBytes();
+      }
+   }
+
+   public long getCacheHits()
+   {
+      synchronized (pageCaches)
+      {
+         return cacheHits;
+      }
+   }
+
+   public long getCacheMisses()
+   {
+      synchronized (pageCaches)
+      {
+         return cacheMisses;
+      }
+   }
+
+   public long getCacheEvictions()
+   {
+      synchronized (pageCaches)
+      {
+         return pageCaches.getEvictions();
       }
    }
 
    public void clearCache()
    {
-      synchronized (softCache)
+      synchronized (pageCaches)
       {
-         softCache.clear();
+         pageCaches.clear();
       }
    }
 
@@ -496,9 +663,9 @@ public class PageCursorProviderImpl implements PageCursorProvider
          {
             PageCache cache;
             PagedMessage[] pgdMessages;
-            synchronized (softCache)
+            synchronized (pageCaches)
             {
-               cache = softCache.get((long)depagedPage.getPageId());
+               cache = pageCaches.get((long)depagedPage.getPageId());
             }
 
             if (isTrace)
@@ -511,7 +678,7 @@ public class PageCursorProviderImpl implements PageCursorProvider
                // The page is not on cache any more
                // We need to read the page-file before deleting it
                // to make sure we remove any large-messages pending
-               storageManager.beforePageRead();
+               beforePageRead(false);
 
                List<PagedMessage> pgdMessagesList = null;
                try
@@ -529,7 +696,7 @@ public class PageCursorProviderImpl implements PageCursorProvider
                   {
                   }
 
-                  storageManager.afterPageRead();
+                  afterPageRead(false, depagedPage.getSize());
                }
                depagedPage.close();
                pgdMessages = pgdMessagesList.toArray(new PagedMessage[pgdMessagesList.size()]);
@@ -542,9 +709,9 @@ public class PageCursorProviderImpl implements PageCursorProvider
             depagedPage.delete(pgdMessages);
             onDeletePage(depagedPage);
 
-            synchronized (softCache)
+            synchronized (pageCaches)
             {
-               softCache.remove((long)depagedPage.getPageId());
+               pageCaches.remove((long)depagedPage.getPageId());
             }
          }
       }
@@ -633,7 +800,12 @@ public class PageCursorProviderImpl implements PageCursorProvider
    public void printDebug()
    {
       System.out.println("Debug information for PageCursorProviderImpl:");
-      for (PageCache cache : softCache.values())
+      Collection<PageCache> caches;
+      synchronized (pageCaches)
+      {
+         caches = pageCaches.values();
+      }
+      for (PageCache cache : caches)
       {
          System.out.println("Cache " + cache);
       }
@@ -651,6 +823,141 @@ public class PageCursorProviderImpl implements PageCursorProvider
 
    // Private -------------------------------------------------------
 
+   /**
+    * Reads the pages following a page a cursor moved to, on the executor, so the cursors moving to them don't have to
+    * wait for the disk. The read ahead is bounded so all the pages from the slowest cursor to the last one read ahead
+    * fit in the cache, otherwise it would evict pages still to be read by the slower cursors.
+    */
+   private void scheduleReadAhead(final long pageId)
+   {
+      final int pages = readAhead;
+
+      if (pages <= 0)
+      {
+         return;
+      }
+
+      final long firstPage;
+
+      synchronized (pageCaches)
+      {
+         // continuing after the pages already read ahead
+         firstPage = readAheadPage > pageId && readAheadPage < pageId + pages ? readAheadPage + 1 : pageId + 1;
+
+         if (firstPage > pageId + pages)
+         {
+            return;
+         }
+
+         readAheadPage = Math.max(readAheadPage, pageId + pages);
+      }
+
+      executor.execute(new Runnable()
+      {
+         public void run()
+         {
+            // the current page is live, there's nothing to read ahead
+            long lastPage = Math.min(pageId + pages, pagingStore.getCurrentWritingPage() - 1);
+
+            int maxElements;
+
+            synchronized (pageCaches)
+            {
+               maxElements = pageCaches.getMaxElements();
+            }
+
+            if (maxElements > 0)
+            {
+               long slowestPage = checkMinPage(cloneSubscriptions());
+
+               if (slowestPage != Long.MAX_VALUE)
+               {
+                  lastPage = Math.min(lastPage, Math.max(pageId, slowestPage) + maxElements - 1);
+               }
+            }
+
+            PageIOScheduler scheduler = getIOScheduler();
+
+            for (long page = firstPage; page <= lastPage && pagingStore.isStarted(); page++)
+            {
+               if (scheduler != null)
+               {
+                  final long nextPage = page;
+
+                  scheduler.execute(pagingStore, new Runnable()
+                  {
+                     public void run()
+                     {
+                        readAhead(nextPage);
+                     }
+                  });
+               }
+               else if (!readAhead(page))
+               {
+                  break;
+               }
+            }
+         }
+      });
+   }
+
+   /**
+    * @return false if the page doesn't exist
+    */
+   private boolean readAhead(final long pageId)
+   {
+      synchronized (pageCaches)
+      {
+         if (pageCaches.containsKey(pageId))
+         {
+            return true;
+         }
+      }
+
+      return !pagingStore.isStarted() || getPageCache(pageId, true) != null;
+   }
+
+   private PageIOScheduler getIOScheduler()
+   {
+      PagingManager pagingManager = pagingStore.getPagingManager();
+
+      return pagingManager == null ? null : pagingManager.getIOScheduler();
+   }
+
+   /**
+    * Waits for the I/O scheduler of the paging manager, if there is one, or else for the storage manager to allow the
+    * read.
+    *
+    * @param scheduled the read is a task of the I/O scheduler, it was already granted
+    */
+   private void beforePageRead(final boolean scheduled) throws Exception
+   {
+      PageIOScheduler scheduler = getIOScheduler();
+
+      if (scheduler == null)
+      {
+         storageManager.beforePageRead();
+      }
+      else if (!scheduled)
+      {
+         scheduler.beforeRead(pagingStore);
+      }
+   }
+
+   private void afterPageRead(final boolean scheduled, final long bytes) throws Exception
+   {
+      PageIOScheduler scheduler = getIOScheduler();
+
+      if (scheduler == null)
+      {
+         storageManager.afterPageRead();
+      }
+      else if (!scheduled)
+      {
+         scheduler.afterRead(pagingStore, bytes);
+      }
+   }
+
    /**
     * This method is synchronized because we want it to be atomic with the cursors being used
     */
@@ -14,14 +14,13 @@ package org.hornetq.core.paging.cursor.impl;
 
 import java.lang.ref.WeakReference;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.Set;
 import java.util.SortedMap;
 import java.util.TreeMap;
 import java.util.concurrent.Executor;
@@ -49,7 +48,7 @@ import org.hornetq.core.transaction.Transaction;
 import org.hornetq.core.transaction.TransactionOperationAbstract;
 import org.hornetq.core.transaction.TransactionPropertyIndexes;
 import org.hornetq.core.transaction.impl.TransactionImpl;
-import org.hornetq.utils.ConcurrentHashSet;
+import org.hornetq.utils.CompactBitSet;
 import org.hornetq.utils.FutureLatch;
 import org.hornetq.utils.LinkedListIterator;
 
@@ -320,22 +319,16 @@ final class PageSubscriptionImpl implements PageSubscription
          }
 
          // it will delete the page ack records
-         for (PagePosition pos : infoPG.acks)
+         for (long recordID : infoPG.clearACKs())
          {
-            if (pos.getRecordID() >= 0)
+            store.deleteCursorAcknowledgeTransactional(tx.getID(), recordID);
+            if (!persist)
             {
-               store.deleteCursorAcknowledgeTransactional(tx.getID(), pos.getRecordID());
-               if (!persist)
-               {
-                  // only need to set it once
-                  tx.setContainsPersistent();
-                  persist = true;
-               }
+               // only need to set it once
+               tx.setContainsPersistent();
+               persist = true;
             }
          }
-
-         infoPG.acks.clear();
-         infoPG.removedReferences.clear();
       }
 
       tx.addOperation(new TransactionOperationAbstract()
@@ -683,13 +676,10 @@ final class PageSubscriptionImpl implements PageSubscription
          {
             for (PageCursorInfo cursor : consumedPages.values())
             {
-               for (PagePosition info : cursor.acks)
+               for (long recordID : cursor.getACKRecordIDs())
                {
-                  if (info.getRecordID() >= 0)
-                  {
-                     isPersistent = true;
-                     store.deleteCursorAcknowledgeTransactional(tx, info.getRecordID());
-                  }
+                  isPersistent = true;
+                  store.deleteCursorAcknowledgeTransactional(tx, recordID);
                }
                PagePosition completeInfo = cursor.getCompleteInfo();
                if (completeInfo != null && completeInfo.getRecordID() >= 0)
@@ -825,21 +815,17 @@ final class PageSubscriptionImpl implements PageSubscription
             }
             info.setCompleteInfo(null);
          }
-         for (PagePosition deleteInfo : info.acks)
+         for (long recordID : info.clearACKs())
          {
-            if (deleteInfo.getRecordID() >= 0)
+            try
             {
-               try
-               {
-                  store.deleteCursorAcknowledge(deleteInfo.getRecordID());
-               }
-               catch (Exception e)
-               {
-                  HornetQServerLogger.LOGGER.warn("Error while deleting page-complete-record", e);
-               }
+               store.deleteCursorAcknowledge(recordID);
+            }
+            catch (Exception e)
+            {
+               HornetQServerLogger.LOGGER.warn("Error while deleting page-complete-record", e);
             }
          }
-         info.acks.clear();
       }
    }
 
@@ -1007,12 +993,17 @@ final class PageSubscriptionImpl implements PageSubscription
 
       private final long pageId;
 
-      // Confirmed ACKs on this page
-      private final Set<PagePosition> acks = Collections.synchronizedSet(new LinkedHashSet<PagePosition>());
+      // Confirmed ACKs on this page, by message number. Guarded by this object, as well as removedReferences
+      private final CompactBitSet acks = new CompactBitSet();
+
+      // The journal records of the ACKs, to be deleted along with the page
+      private long[] ackRecordIDs = new long[0];
+
+      private int numberOfACKRecords;
 
       private WeakReference<PageCache> cache;
 
-      private final Set<PagePosition> removedReferences = new ConcurrentHashSet<PagePosition>();
+      private final CompactBitSet removedReferences = new CompactBitSet();
 
       // The page was live at the time of the creation
       private final boolean wasLive;
@@ -1037,8 +1028,15 @@ final class PageSubscriptionImpl implements PageSubscription
 
       public boolean isAck(PagePosition position)
       {
-         return completePage != null ||
-                acks.contains(position);
+         if (completePage != null)
+         {
+            return true;
+         }
+
+         synchronized (this)
+         {
+            return acks.contains(position.getMessageNr());
+         }
       }
 
       @Override
@@ -1115,14 +1113,17 @@ final class PageSubscriptionImpl implements PageSubscription
          checkDone();
       }
 
-      public boolean isRemoved(final PagePosition pos)
+      public synchronized boolean isRemoved(final PagePosition pos)
       {
-         return removedReferences.contains(pos);
+         return removedReferences.contains(pos.getMessageNr());
       }
 
-      public void remove(final PagePosition position)
+      public synchronized void remove(final PagePosition position)
       {
-         removedReferences.add(position);
+         if (position.getMessageNr() >= 0)
+         {
+            removedReferences.add(position.getMessageNr());
+         }
       }
 
       public void addACK(final PagePosition posACK)
@@ -1157,10 +1158,49 @@ final class PageSubscriptionImpl implements PageSubscription
          }
       }
 
-      private boolean internalAddACK(final PagePosition posACK)
+      private synchronized boolean internalAddACK(final PagePosition posACK)
+      {
+         // Negative could mean a bookmark on the first element for the page (example -1)
+         if (posACK.getMessageNr() >= 0)
+         {
+            removedReferences.add(posACK.getMessageNr());
+
+            if (!acks.add(posACK.getMessageNr()))
+            {
+               return false;
+            }
+         }
+
+         if (posACK.getRecordID() >= 0)
+         {
+            if (numberOfACKRecords == ackRecordIDs.length)
+            {
+               ackRecordIDs = Arrays.copyOf(ackRecordIDs, Math.max(4, numberOfACKRecords * 2));
+            }
+            ackRecordIDs[numberOfACKRecords++] = posACK.getRecordID();
+         }
+
+         return true;
+      }
+
+      public synchronized long[] getACKRecordIDs()
       {
-         removedReferences.add(posACK);
-         return acks.add(posACK);
+         return Arrays.copyOf(ackRecordIDs, numberOfACKRecords);
+      }
+
+      /**
+       * @return the journal records of the ACKs that were cleared
+       */
+      public synchronized long[] clearACKs()
+      {
+         long[] recordIDs = getACKRecordIDs();
+
+         acks.clear();
+         removedReferences.clear();
+         ackRecordIDs = new long[0];
+         numberOfACKRecords = 0;
+
+         return recordIDs;
       }
 
       /**
@@ -12,11 +12,16 @@
  */
 package org.hornetq.core.paging.impl;
 
+import java.io.File;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
 
 import org.hornetq.api.core.HornetQBuffer;
 import org.hornetq.api.core.HornetQBuffers;
@@ -48,6 +53,13 @@ public final class Page implements Comparable<Page>
 
    private static final byte END_BYTE = (byte) '}';
 
+   /**
+    * Starts a record holding a deflated message, its size followed by the size of the message once inflated
+    */
+   private static final byte COMPRESSED_START_BYTE = (byte) '[';
+
+   private static final String INDEX_EXTENSION = ".index";
+
    // Attributes ----------------------------------------------------
 
    private final int pageId;
@@ -76,6 +88,31 @@ public final class Page implements Comparable<Page>
     */
    private Set<PageSubscriptionCounter> pendingCounters;
 
+   private boolean indexed;
+
+   /**
+    * The offset of every message in the file, while known, so the index can be written when the page is closed
+    */
+   private int[] offsets;
+
+   private boolean indexDirty;
+
+   private boolean compressed;
+
+   // created when first needed, ended on close
+   private Deflater deflater;
+
+   private Inflater inflater;
+
+   private int writeBufferSize;
+
+   /**
+    * The records written but not yet in the file, allocated on the first write
+    */
+   private HornetQBuffer writeBuffer;
+
+   private ByteBuffer writeBufferNIO;
+
    public Page(final SimpleString storeName,
                final StorageManager storageManager,
                final SequentialFileFactory factory,
@@ -99,6 +136,63 @@ public final class Page implements Comparable<Page>
       this.pageCache = pageCache;
    }
 
+   /**
+    * An indexed page keeps the offset of its messages in a file next to it, written when the page is closed, so
+    * single messages can be read through {@link #read(StorageManager, int, int)}.
+    */
+   public void setIndexed(final boolean indexed)
+   {
+      this.indexed = indexed;
+   }
+
+   public boolean isIndexed()
+   {
+      return indexed;
+   }
+
+   /**
+    * The messages written to a compressed page are deflated, each in its own record, when that makes them smaller.
+    * Compressed records are read whatever this is set to.
+    */
+   public void setCompressed(final boolean compressed)
+   {
+      this.compressed = compressed;
+   }
+
+   public boolean isCompressed()
+   {
+      return compressed;
+   }
+
+   /**
+    * With a write buffer the records are appended to a block of up to {@code writeBufferSize} bytes, written to the
+    * file when it is full or on {@link #flush()}, {@link #sync()} and {@link #close()}, so many small messages take
+    * a single write. 0 writes every record as it comes.
+    */
+   public synchronized void setWriteBufferSize(final int writeBufferSize)
+   {
+      this.writeBufferSize = writeBufferSize;
+   }
+
+   /**
+    * Writes the buffered records to the file.
+    */
+   public synchronized void flush() throws Exception
+   {
+      if (writeBuffer == null || writeBuffer.writerIndex() == 0 || !file.isOpen())
+      {
+         return;
+      }
+
+      ByteBuffer block = writeBufferNIO.duplicate();
+      block.position(0);
+      block.limit(writeBuffer.writerIndex());
+
+      writeBuffer.clear();
+
+      file.writeDirect(block, false);
+   }
+
    public synchronized List<PagedMessage> read(StorageManager storage) throws Exception
    {
       if (isDebug)
@@ -111,8 +205,12 @@ public final class Page implements Comparable<Page>
          throw HornetQMessageBundle.BUNDLE.invalidPageIO();
       }
 
+      flush();
+
       ArrayList<PagedMessage> messages = new ArrayList<PagedMessage>();
 
+      int[] readOffsets = indexed ? new int[16] : null;
+
       size.set((int) file.size());
       // Using direct buffer, as described on https://jira.jboss.org/browse/HORNETQ-467
       ByteBuffer directBuffer = storage.allocateDirectBuffer((int) file.size());
@@ -134,17 +232,17 @@ public final class Page implements Comparable<Page>
 
             byte byteRead = fileBuffer.readByte();
 
-            if (byteRead == Page.START_BYTE)
+            if (byteRead == Page.START_BYTE || byteRead == Page.COMPRESSED_START_BYTE)
             {
                if (fileBuffer.readerIndex() + DataConstants.SIZE_INT < fileBuffer.capacity())
                {
                   int messageSize = fileBuffer.readInt();
                   int oldPos = fileBuffer.readerIndex();
+                  PagedMessage msg;
                   if (fileBuffer.readerIndex() + messageSize < fileBuffer.capacity() &&
-                     fileBuffer.getByte(oldPos + messageSize) == Page.END_BYTE)
+                     fileBuffer.getByte(oldPos + messageSize) == Page.END_BYTE &&
+                     (msg = decodeMessage(byteRead, fileBuffer, messageSize)) != null)
                   {
-                     PagedMessage msg = new PagedMessageImpl();
-                     msg.decode(fileBuffer);
                      byte b = fileBuffer.readByte();
                      if (b != Page.END_BYTE)
                      {
@@ -158,6 +256,10 @@ public final class Page implements Comparable<Page>
                      {
                         HornetQServerLogger.LOGGER.trace("Reading message " + msg + " on pageId=" + this.pageId + " for address=" + storeName);
                      }
+                     if (readOffsets != null)
+                     {
+                        readOffsets = addOffset(readOffsets, messages.size(), position);
+                     }
                      messages.add(msg);
                   }
                   else
@@ -185,9 +287,133 @@ public final class Page implements Comparable<Page>
 
       numberOfMessages.set(messages.size());
 
+      if (readOffsets != null && !suspiciousRecords)
+      {
+         offsets = readOffsets;
+
+         // pages written before indexing was enabled, or not closed properly, get their index now
+         File indexFile = fileFactory.createSequentialFile(getIndexFileName(), 1).getJavaFile();
+         indexDirty = indexFile.length() != (long) messages.size() * DataConstants.SIZE_INT;
+      }
+
       return messages;
    }
 
+   /**
+    * Reads {@code count} messages starting at message {@code first}, using the index of the page.
+    *
+    * @return the messages, or null if the page has no (valid) index, in which case the whole page needs to be read
+    */
+   public synchronized List<PagedMessage> read(final StorageManager storage, final int first, final int count) throws Exception
+   {
+      if (!file.isOpen())
+      {
+         throw HornetQMessageBundle.BUNDLE.invalidPageIO();
+      }
+
+      SequentialFile indexFile = fileFactory.createSequentialFile(getIndexFileName(), 1);
+
+      if (!indexFile.exists())
+      {
+         return null;
+      }
+
+      flush();
+
+      int start;
+      int end;
+
+      indexFile.open();
+      try
+      {
+         int indexedMessages = (int) (indexFile.size() / DataConstants.SIZE_INT);
+
+         if (first < 0 || first >= indexedMessages)
+         {
+            return null;
+         }
+
+         start = readIndexEntry(indexFile, first);
+         // the range ends where the message following it starts
+         end = first + count < indexedMessages ? readIndexEntry(indexFile, first + count) : (int) file.size();
+      }
+      finally
+      {
+         indexFile.close();
+      }
+
+      if (start < 0 || end > file.size() || end - start < SIZE_RECORD)
+      {
+         return null;
+      }
+
+      ArrayList<PagedMessage> messages = new ArrayList<PagedMessage>(count);
+
+      ByteBuffer directBuffer = storage.allocateDirectBuffer(end - start);
+      HornetQBuffer fileBuffer = null;
+      try
+      {
+         file.position(start);
+         file.read(directBuffer);
+
+         directBuffer.rewind();
+
+         fileBuffer = HornetQBuffers.wrappedBuffer(directBuffer);
+         fileBuffer.writerIndex(fileBuffer.capacity());
+
+         while (fileBuffer.readable() && messages.size() < count)
+         {
+            // the index is only a hint, anything unexpected means the whole page has to be read
+            if (fileBuffer.readableBytes() < SIZE_RECORD)
+            {
+               return null;
+            }
+
+            byte recordStart = fileBuffer.readByte();
+
+            if (recordStart != Page.START_BYTE && recordStart != Page.COMPRESSED_START_BYTE)
+            {
+               return null;
+            }
+
+            int messageSize = fileBuffer.readInt();
+
+            if (messageSize < 0 || messageSize >= fileBuffer.readableBytes() ||
+               fileBuffer.getByte(fileBuffer.readerIndex() + messageSize) != Page.END_BYTE)
+            {
+               return null;
+            }
+
+            PagedMessage msg = decodeMessage(recordStart, fileBuffer, messageSize);
+            if (msg == null || fileBuffer.readByte() != Page.END_BYTE)
+            {
+               return null;
+            }
+            msg.initMessage(storage);
+            messages.add(msg);
+         }
+      }
+      finally
+      {
+         if (fileBuffer != null)
+         {
+            fileBuffer.byteBuf().unwrap().release();
+         }
+         storage.freeDirectBuffer(directBuffer);
+      }
+
+      return messages.size() == count ? messages : null;
+   }
+
+   private int readIndexEntry(final SequentialFile indexFile, final int message) throws Exception
+   {
+      ByteBuffer indexBuffer = fileFactory.newBuffer(DataConstants.SIZE_INT);
+      indexFile.position((long) message * DataConstants.SIZE_INT);
+      indexFile.read(indexBuffer);
+      indexBuffer.rewind();
+      return indexBuffer.getInt();
+   }
+
    public synchronized void write(final PagedMessage message) throws Exception
    {
       if (!file.isOpen())
@@ -196,22 +422,59 @@ public final class Page implements Comparable<Page>
          return;
       }
 
-      ByteBuffer buffer = fileFactory.newBuffer(message.getEncodeSize() + Page.SIZE_RECORD);
+      ByteBuffer buffer = compressed ? encodeCompressed(message) : null;
 
-      HornetQBuffer wrap = HornetQBuffers.wrappedBuffer(buffer);
-      wrap.clear();
+      if (offsets != null)
+      {
+         offsets = addOffset(offsets, numberOfMessages.get(), size.get());
 
-      wrap.writeByte(Page.START_BYTE);
-      wrap.writeInt(0);
-      int startIndex = wrap.writerIndex();
-      message.encode(wrap);
-      int endIndex = wrap.writerIndex();
-      wrap.setInt(1, endIndex - startIndex); // The encoded length
-      wrap.writeByte(Page.END_BYTE);
+         indexDirty = true;
+      }
+
+      int recordSize = buffer == null ? message.getEncodeSize() + Page.SIZE_RECORD : buffer.limit();
+
+      if (recordSize <= writeBufferSize)
+      {
+         if (writeBuffer == null)
+         {
+            writeBufferNIO = fileFactory.newBuffer(writeBufferSize);
+            writeBuffer = HornetQBuffers.wrappedBuffer(writeBufferNIO);
+            writeBuffer.clear();
+         }
+         else if (writeBuffer.writableBytes() < recordSize)
+         {
+            flush();
+         }
+
+         if (buffer == null)
+         {
+            recordSize = encodeRecord(message, writeBuffer);
+         }
+         else
+         {
+            buffer.rewind();
+            writeBuffer.writeBytes(buffer);
+         }
+      }
+      else
+      {
+         // bigger than a block, the records before it go first
+         flush();
+
+         if (buffer == null)
+         {
+            buffer = fileFactory.newBuffer(recordSize);
+
+            HornetQBuffer wrap = HornetQBuffers.wrappedBuffer(buffer);
+            wrap.clear();
+
+            encodeRecord(message, wrap);
+         }
 
-      buffer.rewind();
+         buffer.rewind();
 
-      file.writeDirect(buffer, false);
+         file.writeDirect(buffer, false);
+      }
 
       if (pageCache != null)
       {
@@ -219,13 +482,14 @@ public final class Page implements Comparable<Page>
       }
 
       numberOfMessages.incrementAndGet();
-      size.addAndGet(buffer.limit());
+      size.addAndGet(recordSize);
 
       storageManager.pageWrite(message, pageId);
    }
 
    public void sync() throws Exception
    {
+      flush();
       file.sync();
    }
 
@@ -237,6 +501,12 @@ public final class Page implements Comparable<Page>
       }
       size.set((int) file.size());
       file.position(0);
+
+      if (indexed && size.get() == 0)
+      {
+         // a new page, all the offsets will be known
+         offsets = new int[16];
+      }
    }
 
    public synchronized void close() throws Exception
@@ -251,8 +521,25 @@ public final class Page implements Comparable<Page>
          // leave it to the soft cache to decide when to release it now
          pageCache = null;
       }
+      flush();
+      writeBuffer = null;
+      writeBufferNIO = null;
       file.close();
 
+      writeIndex();
+
+      if (deflater != null)
+      {
+         deflater.end();
+         deflater = null;
+      }
+
+      if (inflater != null)
+      {
+         inflater.end();
+         inflater = null;
+      }
+
       Set<PageSubscriptionCounter> counters = getPendingCounters();
       if (counters != null)
       {
@@ -308,6 +595,15 @@ public final class Page implements Comparable<Page>
             file.delete();
          }
 
+         offsets = null;
+         indexDirty = false;
+
+         SequentialFile indexFile = fileFactory.createSequentialFile(getIndexFileName(), 1);
+         if (indexFile.exists())
+         {
+            indexFile.delete();
+         }
+
          return true;
       }
       catch (Exception e)
@@ -379,6 +675,119 @@ public final class Page implements Comparable<Page>
       return true;
    }
 
+   /**
+    * @return the size of the record
+    */
+   private static int encodeRecord(final PagedMessage message, final HornetQBuffer buffer)
+   {
+      int recordStart = buffer.writerIndex();
+      buffer.writeByte(Page.START_BYTE);
+      buffer.writeInt(0);
+      int startIndex = buffer.writerIndex();
+      message.encode(buffer);
+      int endIndex = buffer.writerIndex();
+      buffer.setInt(recordStart + 1, endIndex - startIndex); // The encoded length
+      buffer.writeByte(Page.END_BYTE);
+      return buffer.writerIndex() - recordStart;
+   }
+
+   /**
+    * @return the compressed record of the message, or null if deflating doesn't make it smaller
+    */
+   private ByteBuffer encodeCompressed(final PagedMessage message)
+   {
+      int encodeSize = message.getEncodeSize();
+
+      byte[] encoded = new byte[encodeSize];
+      HornetQBuffer wrap = HornetQBuffers.wrappedBuffer(encoded);
+      wrap.clear();
+      message.encode(wrap);
+
+      if (deflater == null)
+      {
+         deflater = new Deflater(Deflater.BEST_SPEED);
+      }
+
+      deflater.reset();
+      deflater.setInput(encoded, 0, wrap.writerIndex());
+      deflater.finish();
+
+      // not worth it unless it saves more than the size of the uncompressed length
+      byte[] deflated = new byte[encodeSize - DataConstants.SIZE_INT];
+      int deflatedSize = deflater.deflate(deflated);
+
+      if (!deflater.finished())
+      {
+         return null;
+      }
+
+      ByteBuffer buffer = fileFactory.newBuffer(deflatedSize + DataConstants.SIZE_INT + Page.SIZE_RECORD);
+      buffer.put(Page.COMPRESSED_START_BYTE);
+      buffer.putInt(DataConstants.SIZE_INT + deflatedSize);
+      buffer.putInt(encodeSize);
+      buffer.put(deflated, 0, deflatedSize);
+      buffer.put(Page.END_BYTE);
+
+      return buffer;
+   }
+
+   /**
+    * Decodes the message of a record, the buffer being positioned right after the size of the record.
+    *
+    * @return the message, or null if a compressed record couldn't be inflated
+    */
+   private PagedMessage decodeMessage(final byte recordStart, final HornetQBuffer buffer, final int recordSize)
+   {
+      PagedMessage msg = new PagedMessageImpl();
+
+      if (recordStart == Page.START_BYTE)
+      {
+         msg.decode(buffer);
+         return msg;
+      }
+
+      if (recordSize < DataConstants.SIZE_INT)
+      {
+         return null;
+      }
+
+      int encodeSize = buffer.readInt();
+
+      if (encodeSize < 0)
+      {
+         return null;
+      }
+
+      byte[] deflated = new byte[recordSize - DataConstants.SIZE_INT];
+      buffer.readBytes(deflated);
+
+      if (inflater == null)
+      {
+         inflater = new Inflater();
+      }
+
+      inflater.reset();
+      inflater.setInput(deflated);
+
+      byte[] encoded = new byte[encodeSize];
+
+      try
+      {
+         if (inflater.inflate(encoded) != encodeSize || !inflater.finished())
+         {
+            return null;
+         }
+      }
+      catch (DataFormatException e)
+      {
+         return null;
+      }
+
+      msg.decode(HornetQBuffers.wrappedBuffer(encoded));
+
+      return msg;
+   }
+
    /**
     * @param position
     * @param msgNumber
@@ -394,6 +803,69 @@ public final class Page implements Comparable<Page>
       return file;
    }
 
+   private String getIndexFileName()
+   {
+      String fileName = file.getFileName();
+      return fileName.substring(0, fileName.lastIndexOf('.')) + INDEX_EXTENSION;
+   }
+
+   private void writeIndex()
+   {
+      if (!indexDirty || offsets == null)
+      {
+         return;
+      }
+
+      indexDirty = false;
+
+      int messages = numberOfMessages.get();
+
+      try
+      {
+         SequentialFile indexFile = fileFactory.createSequentialFile(getIndexFileName(), 1);
+         if (indexFile.exists())
+         {
+            // an index left over from a previous run may be longer
+            indexFile.delete();
+         }
+         indexFile.open();
+         try
+         {
+            ByteBuffer buffer = fileFactory.newBuffer(messages * DataConstants.SIZE_INT);
+            buffer.clear();
+            for (int i = 0; i < messages; i++)
+            {
+               buffer.putInt(offsets[i]);
+            }
+            buffer.rewind();
+
+            indexFile.position(0);
+            indexFile.writeDirect(buffer, true);
+         }
+         finally
+         {
+            indexFile.close();
+         }
+      }
+      catch (Exception e)
+      {
+         // the page can still be read without an index
+         HornetQServerLogger.LOGGER.warn("Couldn't write the index of " + this, e);
+      }
+
+      offsets = null;
+   }
+
+   private static int[] addOffset(int[] offsets, final int messageNr, final int offset)
+   {
+      if (messageNr == offsets.length)
+      {
+         offsets = Arrays.copyOf(offsets, offsets.length * 2);
+      }
+      offsets[messageNr] = offset;
+      return offsets;
+   }
+
    /**
     * This will indicate a page that will need to be called on cleanup when the page has been closed and confirmed
     *
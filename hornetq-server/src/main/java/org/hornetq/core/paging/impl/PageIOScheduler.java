@@ -0,0 +1,381 @@
+/*
+ * Copyright 2005-2014 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.hornetq.core.paging.impl;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+import org.hornetq.api.core.SimpleString;
+import org.hornetq.core.paging.PagingStore;
+import org.hornetq.core.server.HornetQServerLogger;
+
+/**
+ * Shares the page reads of the paging stores of a {@link PagingManagerImpl}.
+ * <p/>
+ * At most {@code maxConcurrentIO} reads run at once. The others are granted with start time fair queuing: each store
+ * has a virtual finish time, advanced by the bytes it read divided by its weight, and the waiting store with the lowest
+ * one goes next. The weight grows with the backlog of the store (the log of its number of pages) and with the readers
+ * blocked on it, so a deep backlog with many consumers gets more of the disk without starving the other stores. While
+ * other stores are waiting, a store doesn't get more than its share of the concurrent reads.
+ * <p/>
+ * Reads done by the caller (a cursor missing the page cache, the cleanup reading a page before deleting it) block in
+ * {@link #beforeRead(PagingStore)} until granted. Reads that don't need to block anyone, like the read ahead, are
+ * given to {@link #execute(PagingStore, Runnable)} and run on the executor once granted, so they never use more than
+ * {@code maxConcurrentIO} of its threads.
+ */
+public final class PageIOScheduler
+{
+   private final int maxConcurrentIO;
+
+   private final Executor executor;
+
+   // guarded by this
+   private final Map<SimpleString, Flow> flows = new HashMap<SimpleString, Flow>();
+
+   private int running;
+
+   private long virtualTime;
+
+   private long grantedReads;
+
+   /**
+    * @param maxConcurrentIO the number of reads allowed at once, 0 or less for no limit
+    * @param executor        where the tasks given to {@link #execute(PagingStore, Runnable)} run
+    */
+   public PageIOScheduler(final int maxConcurrentIO, final Executor executor)
+   {
+      this.maxConcurrentIO = maxConcurrentIO <= 0 ? Integer.MAX_VALUE : maxConcurrentIO;
+      this.executor = executor;
+   }
+
+   /**
+    * Blocks until the store may read, to be followed by {@link #afterRead(PagingStore, long)} once the read is done.
+    */
+   public void beforeRead(final PagingStore store) throws InterruptedException
+   {
+      Request request = new Request(null);
+
+      int weight = backlogWeight(store);
+
+      synchronized (this)
+      {
+         Flow flow = getFlow(store, weight);
+
+         flow.waitingReaders++;
+
+         flow.requests.add(request);
+
+         dispatch();
+
+         try
+         {
+            while (!request.granted)
+            {
+               wait();
+            }
+         }
+         catch (InterruptedException e)
+         {
+            if (request.granted)
+            {
+               // it got the read anyway, the caller won't call afterRead
+               release(flow, 0);
+               dispatch();
+            }
+            else
+            {
+               flow.requests.remove(request);
+               flow.waitingReaders--;
+               removeIfIdle(flow);
+            }
+
+            throw e;
+         }
+      }
+   }
+
+   /**
+    * @param bytes what was read, to charge the store for it
+    */
+   public void afterRead(final PagingStore store, final long bytes)
+   {
+      synchronized (this)
+      {
+         Flow flow = flows.get(store.getStoreName());
+
+         if (flow != null && flow.running > 0)
+         {
+            release(flow, bytes);
+            dispatch();
+         }
+      }
+   }
+
+   /**
+    * Runs a read on the executor once the store may read.
+    */
+   public void execute(final PagingStore store, final Runnable read)
+   {
+      int weight = backlogWeight(store);
+
+      synchronized (this)
+      {
+         getFlow(store, weight).requests.add(new Request(read));
+
+         dispatch();
+      }
+   }
+
+   public synchronized int getRunningReads()
+   {
+      return running;
+   }
+
+   public synchronized long getGrantedReads()
+   {
+      return grantedReads;
+   }
+
+   public synchronized int getWaitingReads()
+   {
+      int waiting = 0;
+
+      for (Flow flow : flows.values())
+      {
+         waiting += flow.requests.size();
+      }
+
+      return waiting;
+   }
+
+   // Private -------------------------------------------------------
+
+   private static int backlogWeight(final PagingStore store)
+   {
+      return 1 + 31 - Integer.numberOfLeadingZeros(Math.max(0, store.getNumberOfPages()) + 1);
+   }
+
+   private Flow getFlow(final PagingStore store, final int backlogWeight)
+   {
+      Flow flow = flows.get(store.getStoreName());
+
+      if (flow == null)
+      {
+         flow = new Flow(store);
+         flow.finishTag = virtualTime;
+         flows.put(store.getStoreName(), flow);
+      }
+
+      flow.backlogWeight = backlogWeight;
+      flow.pageSize = Math.max(1, store.getPageSizeBytes());
+
+      return flow;
+   }
+
+   private void dispatch()
+   {
+      while (running < maxConcurrentIO)
+      {
+         int waitingFlows = 0;
+
+         for (Flow flow : flows.values())
+         {
+            if (!flow.requests.isEmpty())
+            {
+               waitingFlows++;
+            }
+         }
+
+         if (waitingFlows == 0)
+         {
+            return;
+         }
+
+         int share = Math.max(1, maxConcurrentIO / waitingFlows);
+
+         Flow next = null;
+
+         boolean nextUnderShare = false;
+
+         for (Flow flow : flows.values())
+         {
+            if (flow.requests.isEmpty())
+            {
+               continue;
+            }
+
+            boolean underShare = flow.running < share;
+
+            if (next == null || underShare && !nextUnderShare ||
+               underShare == nextUnderShare && startTag(flow) < startTag(next))
+            {
+               next = flow;
+               nextUnderShare = underShare;
+            }
+         }
+
+         grant(next);
+      }
+   }
+
+   private void grant(final Flow flow)
+   {
+      final Request request = flow.requests.poll();
+
+      // the start tag of the request in service is the virtual time
+      virtualTime = startTag(flow);
+
+      // charged for a whole page now, corrected on release with what was actually read
+      flow.finishTag = virtualTime + flow.cost(flow.pageSize);
+
+      flow.running++;
+
+      running++;
+
+      grantedReads++;
+
+      if (request.read == null)
+      {
+         flow.waitingReaders--;
+
+         request.granted = true;
+
+         notifyAll();
+
+         return;
+      }
+
+      try
+      {
+         executor.execute(new Runnable()
+         {
+            public void run()
+            {
+               try
+               {
+                  request.read.run();
+               }
+               catch (Throwable e)
+               {
+                  HornetQServerLogger.LOGGER.warn(e.getMessage(), e);
+               }
+               finally
+               {
+                  synchronized (PageIOScheduler.this)
+                  {
+                     release(flow, flow.pageSize);
+                     dispatch();
+                  }
+               }
+            }
+         });
+      }
+      catch (RuntimeException e)
+      {
+         // the executor is shutting down, the read won't happen
+         release(flow, flow.pageSize);
+      }
+   }
+
+   private void release(final Flow flow, final long bytes)
+   {
+      flow.finishTag += flow.cost(bytes) - flow.cost(flow.pageSize);
+
+      flow.running--;
+
+      running--;
+
+      removeIfIdle(flow);
+   }
+
+   /**
+    * A store that was idle doesn't get credit for the time it didn't read.
+    */
+   private long startTag(final Flow flow)
+   {
+      return Math.max(virtualTime, flow.finishTag);
+   }
+
+   private void removeIfIdle(final Flow flow)
+   {
+      // a flow that read more than its share keeps its finish tag until the others caught up
+      if (flow.running == 0 && flow.requests.isEmpty() && flow.finishTag <= virtualTime)
+      {
+         flows.remove(flow.store.getStoreName());
+      }
+   }
+
+   private static final class Request
+   {
+      final Runnable read;
+
+      boolean granted;
+
+      Request(final Runnable read)
+      {
+         this.read = read;
+      }
+   }
+
+   private static final class Flow
+   {
+      final PagingStore store;
+
+      final ArrayDeque<Request> requests = new ArrayDeque<Request>();
+
+      long finishTag;
+
+      int running;
+
+      int waitingReaders;
+
+      int backlogWeight;
+
+      long pageSize;
+
+      Flow(final PagingStore store)
+      {
+         this.store = store;
+      }
+
+      long cost(final long bytes)
+      {
+         return bytes / (backlogWeight + waitingReaders);
+      }
+   }
+
+   @Override
+   public synchronized String toString()
+   {
+      StringBuilder builder = new StringBuilder("PageIOScheduler(maxConcurrentIO=" + maxConcurrentIO + ", running=" +
+                                                   running + ", flows=");
+
+      Iterator<Flow> iterator = flows.values().iterator();
+
+      while (iterator.hasNext())
+      {
+         Flow flow = iterator.next();
+         builder.append(flow.store.getStoreName()).append("[running=").append(flow.running).append(", waiting=")
+            .append(flow.requests.size()).append("]");
+         if (iterator.hasNext())
+         {
+            builder.append(", ");
+         }
+      }
+
+      return builder.append(")").toString();
+   }
+}
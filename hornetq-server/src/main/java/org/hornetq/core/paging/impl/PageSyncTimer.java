@@ -12,17 +12,24 @@
  */
 package org.hornetq.core.paging.impl;
 
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
 import org.hornetq.api.core.HornetQExceptionType;
-import org.hornetq.core.paging.PagingStore;
 import org.hornetq.core.persistence.OperationContext;
+import org.hornetq.core.server.HornetQServerLogger;
 
 /**
  * This will batch multiple calls waiting to perform a sync in a single call.
+ * <p/>
+ * A timer is shared by the stores of a {@link PagingStoreFactoryNIO}. On every tick the page files with buffered
+ * writes are flushed, those with contexts waiting are synced, all together, and the contexts are completed.
  * @author clebertsuconic
  */
 final class PageSyncTimer
@@ -32,8 +39,6 @@ final class PageSyncTimer
 
    // Attributes ----------------------------------------------------
 
-   private final PagingStore store;
-
    private final ScheduledExecutorService scheduledExecutor;
 
    private boolean pendingSync;
@@ -48,66 +53,105 @@ final class PageSyncTimer
       }
    };
 
-   private final List<OperationContext> syncOperations = new LinkedList<OperationContext>();
+   private final Map<PagingStoreImpl, List<OperationContext>> syncOperations =
+      new LinkedHashMap<PagingStoreImpl, List<OperationContext>>();
+
+   private final Set<PagingStoreImpl> pendingFlushes = new LinkedHashSet<PagingStoreImpl>();
 
    // Static --------------------------------------------------------
 
    // Constructors --------------------------------------------------
 
-   PageSyncTimer(PagingStore store, ScheduledExecutorService scheduledExecutor, long timeSync)
+   PageSyncTimer(ScheduledExecutorService scheduledExecutor, long timeSync)
    {
-      this.store = store;
       this.scheduledExecutor = scheduledExecutor;
       this.timeSync = timeSync;
    }
 
    // Public --------------------------------------------------------
 
-   synchronized void addSync(OperationContext ctx)
+   synchronized void addSync(PagingStoreImpl store, OperationContext ctx)
    {
       ctx.pageSyncLineUp();
+      List<OperationContext> operations = syncOperations.get(store);
+      if (operations == null)
+      {
+         operations = new ArrayList<OperationContext>();
+         syncOperations.put(store, operations);
+      }
+      operations.add(ctx);
+      schedule();
+   }
+
+   /**
+    * The store has writes buffered, to be flushed on the next tick.
+    */
+   synchronized void addFlush(PagingStoreImpl store)
+   {
+      pendingFlushes.add(store);
+      schedule();
+   }
+
+   private void schedule()
+   {
       if (!pendingSync)
       {
          pendingSync = true;
          scheduledExecutor.schedule(runnable, timeSync, TimeUnit.NANOSECONDS);
       }
-      syncOperations.add(ctx);
    }
 
    private void tick()
    {
-      OperationContext [] pendingSyncsArray;
+      Map<PagingStoreImpl, List<OperationContext>> pendingSyncs;
+      PagingStoreImpl[] flushes;
       synchronized (this)
       {
-
          pendingSync = false;
-         pendingSyncsArray = new OperationContext[syncOperations.size()];
-         pendingSyncsArray = syncOperations.toArray(pendingSyncsArray);
+         pendingSyncs = new LinkedHashMap<PagingStoreImpl, List<OperationContext>>(syncOperations);
          syncOperations.clear();
+         flushes = pendingFlushes.toArray(new PagingStoreImpl[pendingFlushes.size()]);
+         pendingFlushes.clear();
       }
 
-      try
+      for (PagingStoreImpl store : flushes)
       {
-         if (pendingSyncsArray.length != 0)
+         // a sync flushes too
+         if (!pendingSyncs.containsKey(store))
          {
-            store.ioSync();
+            try
+            {
+               store.ioFlush();
+            }
+            catch (Exception e)
+            {
+               HornetQServerLogger.LOGGER.warn(e.getMessage(), e);
+            }
          }
       }
-      catch (Exception e)
+
+      for (Map.Entry<PagingStoreImpl, List<OperationContext>> entry : pendingSyncs.entrySet())
       {
-         for (OperationContext ctx : pendingSyncsArray)
+         try
          {
-            ctx.onError(HornetQExceptionType.IO_ERROR.getCode(), e.getMessage());
+            entry.getKey().ioSync();
          }
-      }
-      finally
-      {
-         // In case of failure, The context should propagate an exception to the client
-         // We send an exception to the client even on the case of a failure
-         // to avoid possible locks and the client not getting the exception back
-         for (OperationContext ctx : pendingSyncsArray)
+         catch (Exception e)
+         {
+            for (OperationContext ctx : entry.getValue())
+            {
+               ctx.onError(HornetQExceptionType.IO_ERROR.getCode(), e.getMessage());
+            }
+         }
+         finally
          {
-            ctx.pageSyncDone();
+            // In case of failure, The context should propagate an exception to the client
+            // We send an exception to the client even on the case of a failure
+            // to avoid possible locks and the client not getting the exception back
+            for (OperationContext ctx : entry.getValue())
+            {
+               ctx.pageSyncDone();
+            }
          }
       }
    }
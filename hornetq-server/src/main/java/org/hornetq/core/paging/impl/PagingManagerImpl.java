@@ -12,11 +12,16 @@
  */
 package org.hornetq.core.paging.impl;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import org.hornetq.api.core.SimpleString;
@@ -26,6 +31,7 @@ import org.hornetq.core.paging.PagingStore;
 import org.hornetq.core.paging.PagingStoreFactory;
 import org.hornetq.core.server.HornetQServerLogger;
 import org.hornetq.core.settings.HierarchicalRepository;
+import org.hornetq.core.settings.impl.AddressFullMessagePolicy;
 import org.hornetq.core.settings.impl.AddressSettings;
 
 /**
@@ -51,6 +57,25 @@ public final class PagingManagerImpl implements PagingManager
 
    private final PagingStoreFactory pagingStoreFactory;
 
+   private final PageIOScheduler ioScheduler;
+
+   private final long globalMaxSize;
+
+   private final AtomicLong globalSizeInBytes = new AtomicLong();
+
+   /**
+    * Only one thread at a time picks the stores to page, the others go on
+    */
+   private final AtomicBoolean checkingGlobalSize = new AtomicBoolean(false);
+
+   // guarded by checkingGlobalSize
+   private final Map<SimpleString, ConsumptionRate> consumptionRates = new HashMap<SimpleString, ConsumptionRate>();
+
+   // guarded by checkingGlobalSize
+   private long nextGlobalSizeCheck;
+
+   private final long startTime = System.currentTimeMillis();
+
    private volatile boolean cleanupEnabled = true;
 
    private final ConcurrentMap</*TransactionID*/Long, PageTransactionInfo> transactions =
@@ -61,14 +86,40 @@ public final class PagingManagerImpl implements PagingManager
 
    private static boolean isTrace = HornetQServerLogger.LOGGER.isTraceEnabled();
 
+   /**
+    * How long to wait before checking the global size again when all the stores that could page already are
+    */
+   private static final long GLOBAL_SIZE_CHECK_BACKOFF = 100;
+
+   /**
+    * The shortest interval to measure the consumption rate of a store over
+    */
+   private static final long MIN_RATE_INTERVAL = 1000;
+
    // Constructors
    // --------------------------------------------------------------------------------------------------------------------
 
    public PagingManagerImpl(final PagingStoreFactory pagingSPI,
                             final HierarchicalRepository<AddressSettings> addressSettingsRepository)
+   {
+      this(pagingSPI, addressSettingsRepository, null, -1);
+   }
+
+   /**
+    * @param ioScheduler   shares the page reads among the stores, when null they are only limited by the storage
+    *                      manager
+    * @param globalMaxSize the max size of the messages in memory of all the stores using the
+    *                      {@link AddressFullMessagePolicy#PAGE} policy together, -1 for no limit
+    */
+   public PagingManagerImpl(final PagingStoreFactory pagingSPI,
+                            final HierarchicalRepository<AddressSettings> addressSettingsRepository,
+                            final PageIOScheduler ioScheduler,
+                            final long globalMaxSize)
    {
       pagingStoreFactory = pagingSPI;
       this.addressSettingsRepository = addressSettingsRepository;
+      this.ioScheduler = ioScheduler;
+      this.globalMaxSize = globalMaxSize;
       addressSettingsRepository.registerListener(this);
    }
 
@@ -131,6 +182,35 @@ public final class PagingManagerImpl implements PagingManager
       }
    }
 
+   @Override
+   public PageIOScheduler getIOScheduler()
+   {
+      return ioScheduler;
+   }
+
+   @Override
+   public void addGlobalSize(final int size)
+   {
+      long globalSize = globalSizeInBytes.addAndGet(size);
+
+      if (size > 0 && globalMaxSize > 0 && globalSize > globalMaxSize)
+      {
+         checkGlobalSize();
+      }
+   }
+
+   @Override
+   public long getGlobalSize()
+   {
+      return globalSizeInBytes.get();
+   }
+
+   @Override
+   public long getGlobalMaxSize()
+   {
+      return globalMaxSize;
+   }
+
    public SimpleString[] getStoreNames()
    {
       Set<SimpleString> names = stores.keySet();
@@ -174,6 +254,8 @@ public final class PagingManagerImpl implements PagingManager
          if (store != null)
          {
             store.stop();
+            // the address size also counts what was added under the other policies
+            globalSizeInBytes.addAndGet(-store.getGlobalSizeContribution());
          }
       }
       finally
@@ -317,6 +399,99 @@ public final class PagingManagerImpl implements PagingManager
       }
    }
 
+   /**
+    * Starts paging on the stores that would take the longest to be consumed, until the ones left in memory fit in the
+    * global max size. The time a store takes to be consumed is its size divided by the rate its messages were removed
+    * since the last check, so the stores without consumers page first and the fast moving ones stay in memory.
+    */
+   private void checkGlobalSize()
+   {
+      long now = System.currentTimeMillis();
+
+      if (!checkingGlobalSize.compareAndSet(false, true))
+      {
+         return;
+      }
+
+      try
+      {
+         if (now < nextGlobalSizeCheck || !syncLock.readLock().tryLock())
+         {
+            return;
+         }
+
+         try
+         {
+            long excess = globalSizeInBytes.get() - globalMaxSize;
+
+            List<StoreUsage> candidates = new ArrayList<StoreUsage>();
+
+            for (PagingStore store : stores.values())
+            {
+               ConsumptionRate rate = consumptionRates.get(store.getStoreName());
+
+               if (rate == null)
+               {
+                  rate = new ConsumptionRate(startTime);
+                  consumptionRates.put(store.getStoreName(), rate);
+               }
+
+               rate.update(store.getReleasedSize(), now);
+
+               long size = store.getAddressSize();
+
+               if (store.isStarted() && size > 0 &&
+                  store.getAddressFullMessagePolicy() == AddressFullMessagePolicy.PAGE && !store.isPaging())
+               {
+                  candidates.add(new StoreUsage(store, size, rate.bytesPerSecond));
+               }
+            }
+
+            consumptionRates.keySet().retainAll(stores.keySet());
+
+            Collections.sort(candidates);
+
+            for (StoreUsage candidate : candidates)
+            {
+               if (excess <= 0)
+               {
+                  break;
+               }
+
+               try
+               {
+                  if (candidate.store.startPaging())
+                  {
+                     HornetQServerLogger.LOGGER.pageStoreStartGlobal(candidate.store.getStoreName(),
+                                                                     candidate.size,
+                                                                     globalSizeInBytes.get(),
+                                                                     globalMaxSize);
+                     excess -= candidate.size;
+                  }
+               }
+               catch (Exception e)
+               {
+                  HornetQServerLogger.LOGGER.warn(e.getMessage(), e);
+               }
+            }
+
+            if (excess > 0)
+            {
+               // every store that could page is paging, the size will go down as they are consumed
+               nextGlobalSizeCheck = now + GLOBAL_SIZE_CHECK_BACKOFF;
+            }
+         }
+         finally
+         {
+            syncLock.readLock().unlock();
+         }
+      }
+      finally
+      {
+         checkingGlobalSize.set(false);
+      }
+   }
+
    public void unlock()
    {
       syncLock.writeLock().unlock();
@@ -327,4 +502,66 @@ public final class PagingManagerImpl implements PagingManager
       syncLock.writeLock().lock();
    }
 
+   /**
+    * How fast the messages of a store are removed, averaged over the checks of the global size.
+    */
+   private static final class ConsumptionRate
+   {
+      private long lastReleasedSize;
+
+      private long lastUpdate;
+
+      private boolean measured;
+
+      double bytesPerSecond;
+
+      ConsumptionRate(final long since)
+      {
+         lastUpdate = since;
+      }
+
+      void update(final long releasedSize, final long now)
+      {
+         long elapsed = now - lastUpdate;
+
+         // too short to tell, unless it was never measured
+         if (measured && elapsed < MIN_RATE_INTERVAL)
+         {
+            return;
+         }
+
+         double rate = (releasedSize - lastReleasedSize) * 1000d / Math.max(1, elapsed);
+
+         bytesPerSecond = measured ? (bytesPerSecond + rate) / 2 : rate;
+         measured = true;
+         lastReleasedSize = releasedSize;
+         lastUpdate = now;
+      }
+   }
+
+   private static final class StoreUsage implements Comparable<StoreUsage>
+   {
+      final PagingStore store;
+
+      final long size;
+
+      // how long it would take to consume what the store holds in memory
+      final double drainTime;
+
+      StoreUsage(final PagingStore store, final long size, final double bytesPerSecond)
+      {
+         this.store = store;
+         this.size = size;
+         this.drainTime = bytesPerSecond > 0 ? size / bytesPerSecond : Double.POSITIVE_INFINITY;
+      }
+
+      public int compareTo(final StoreUsage other)
+      {
+         // the longest to drain first, then the biggest
+         int result = Double.compare(other.drainTime, drainTime);
+
+         return result != 0 ? result : Long.compare(other.size, size);
+      }
+   }
+
 }
@@ -27,6 +27,7 @@ import java.util.concurrent.ScheduledExecutorService;
 import org.hornetq.api.core.SimpleString;
 import org.hornetq.core.journal.IOCriticalErrorListener;
 import org.hornetq.core.journal.SequentialFileFactory;
+import org.hornetq.core.journal.impl.MappedSequentialFileFactory;
 import org.hornetq.core.journal.impl.NIOSequentialFileFactory;
 import org.hornetq.core.paging.PagingManager;
 import org.hornetq.core.paging.PagingStore;
@@ -61,28 +62,52 @@ public class PagingStoreFactoryNIO implements PagingStoreFactory
 
    private PagingManager pagingManager;
 
-   private final ScheduledExecutorService scheduledExecutor;
-
-   private final long syncTimeout;
+   /**
+    * Shared by all the stores, so the page files are synced together
+    */
+   private final PageSyncTimer syncTimer;
 
    private final StorageManager storageManager;
 
    private final IOCriticalErrorListener critialErrorListener;
 
+   private final boolean mappedFiles;
+
    public PagingStoreFactoryNIO(final StorageManager storageManager, final String directory,
                                 final long syncTimeout,
                                 final ScheduledExecutorService scheduledExecutor,
                                 final ExecutorFactory executorFactory,
                                 final boolean syncNonTransactional,
                                 final IOCriticalErrorListener critialErrorListener)
+   {
+      this(storageManager,
+           directory,
+           syncTimeout,
+           scheduledExecutor,
+           executorFactory,
+           syncNonTransactional,
+           critialErrorListener,
+           false);
+   }
+
+   /**
+    * @param mappedFiles whether page files are written and read through memory mapped files instead of NIO channels
+    */
+   public PagingStoreFactoryNIO(final StorageManager storageManager, final String directory,
+                                final long syncTimeout,
+                                final ScheduledExecutorService scheduledExecutor,
+                                final ExecutorFactory executorFactory,
+                                final boolean syncNonTransactional,
+                                final IOCriticalErrorListener critialErrorListener,
+                                final boolean mappedFiles)
    {
       this.storageManager = storageManager;
       this.directory = directory;
       this.executorFactory = executorFactory;
       this.syncNonTransactional = syncNonTransactional;
-      this.scheduledExecutor = scheduledExecutor;
-      this.syncTimeout = syncTimeout;
+      this.syncTimer = scheduledExecutor == null ? null : new PageSyncTimer(scheduledExecutor, syncTimeout);
       this.critialErrorListener = critialErrorListener;
+      this.mappedFiles = mappedFiles;
    }
 
    // Public --------------------------------------------------------
@@ -95,8 +120,7 @@ public class PagingStoreFactoryNIO implements PagingStoreFactory
    {
 
       return new PagingStoreImpl(address,
-                                 scheduledExecutor,
-                                 syncTimeout,
+                                 syncTimer,
                                  pagingManager,
                                  storageManager,
                                  null,
@@ -188,8 +212,7 @@ public class PagingStoreFactoryNIO implements PagingStoreFactory
             AddressSettings settings = addressSettingsRepository.getMatch(address.toString());
 
             PagingStore store = new PagingStoreImpl(address,
-                                                    scheduledExecutor,
-                                                    syncTimeout,
+                                                    syncTimer,
                                                     pagingManager,
                                                     storageManager,
                                                     factory,
@@ -208,6 +231,10 @@ public class PagingStoreFactoryNIO implements PagingStoreFactory
 
    private SequentialFileFactory newFileFactory(final String directoryName)
    {
+      if (mappedFiles)
+      {
+         return new MappedSequentialFileFactory(directory + File.separatorChar + directoryName, critialErrorListener);
+      }
       return new NIOSequentialFileFactory(directory + File.separatorChar + directoryName, false, critialErrorListener);
    }
 }
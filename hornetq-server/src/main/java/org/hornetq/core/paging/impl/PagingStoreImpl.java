@@ -89,6 +89,10 @@ public class PagingStoreImpl implements PagingStore
 
    private volatile AddressFullMessagePolicy addressFullMessagePolicy;
 
+   private volatile boolean pageIndex;
+
+   private volatile boolean pageCompression;
+
    private boolean printedDropMessagesWarning;
 
    private final PagingManager pagingManager;
@@ -98,6 +102,11 @@ public class PagingStoreImpl implements PagingStore
    // Bytes consumed by the queue on the memory
    private final AtomicLong sizeInBytes = new AtomicLong();
 
+   private final AtomicLong releasedSize = new AtomicLong();
+
+   // what addSize added to the global size of the paging manager
+   private final AtomicLong globalSizeContribution = new AtomicLong();
+
    private volatile int numberOfPages;
 
    private volatile int firstPageId;
@@ -120,6 +129,17 @@ public class PagingStoreImpl implements PagingStore
 
    private static final boolean isTrace = HornetQServerLogger.LOGGER.isTraceEnabled();
 
+   /**
+    * The largest block the writes to a page are buffered into before they reach the file, when there is a sync timer
+    * to flush them
+    */
+   private static final int PAGE_WRITE_BUFFER_SIZE = 64 * 1024;
+
+   /**
+    * Set when writes were buffered and the sync timer was asked to flush them
+    */
+   private final AtomicBoolean pendingFlush = new AtomicBoolean(false);
+
    public PagingStoreImpl(final SimpleString address,
                           final ScheduledExecutorService scheduledExecutor,
                           final long syncTimeout,
@@ -131,6 +151,33 @@ public class PagingStoreImpl implements PagingStore
                           final AddressSettings addressSettings,
                           final Executor executor,
                           final boolean syncNonTransactional)
+   {
+      this(address,
+           scheduledExecutor == null ? null : new PageSyncTimer(scheduledExecutor, syncTimeout),
+           pagingManager,
+           storageManager,
+           fileFactory,
+           storeFactory,
+           storeName,
+           addressSettings,
+           executor,
+           syncNonTransactional);
+   }
+
+   /**
+    * @param syncTimer batches the syncs of the store, and flushes its buffered writes, possibly shared with other
+    *                  stores. When null every sync and write goes straight to the page file.
+    */
+   PagingStoreImpl(final SimpleString address,
+                   final PageSyncTimer syncTimer,
+                   final PagingManager pagingManager,
+                   final StorageManager storageManager,
+                   final SequentialFileFactory fileFactory,
+                   final PagingStoreFactory storeFactory,
+                   final SimpleString storeName,
+                   final AddressSettings addressSettings,
+                   final Executor executor,
+                   final boolean syncNonTransactional)
    {
       if (pagingManager == null)
       {
@@ -165,20 +212,17 @@ public class PagingStoreImpl implements PagingStore
 
       this.syncNonTransactional = syncNonTransactional;
 
-      if (scheduledExecutor != null)
-      {
-         this.syncTimer = new PageSyncTimer(this, scheduledExecutor, syncTimeout);
-      }
-      else
-      {
-         this.syncTimer = null;
-      }
+      this.syncTimer = syncTimer;
 
       this.cursorProvider = new PageCursorProviderImpl(this,
          this.storageManager,
          executor,
          addressSettings.getPageCacheMaxSize());
 
+      cursorProvider.setCacheMaxBytes(addressSettings.getPageCacheMaxBytes());
+
+      cursorProvider.setReadAhead(addressSettings.getPageReadAhead());
+
    }
 
    /**
@@ -192,9 +236,15 @@ public class PagingStoreImpl implements PagingStore
 
       addressFullMessagePolicy = addressSettings.getAddressFullMessagePolicy();
 
+      pageIndex = addressSettings.isPageIndex();
+
+      pageCompression = addressSettings.isPageCompression();
+
       if (cursorProvider != null)
       {
          cursorProvider.setCacheMaxSize(addressSettings.getPageCacheMaxSize());
+         cursorProvider.setCacheMaxBytes(addressSettings.getPageCacheMaxBytes());
+         cursorProvider.setReadAhead(addressSettings.getPageReadAhead());
       }
    }
 
@@ -247,6 +297,16 @@ public class PagingStoreImpl implements PagingStore
       return sizeInBytes.get();
    }
 
+   public long getReleasedSize()
+   {
+      return releasedSize.get();
+   }
+
+   public long getGlobalSizeContribution()
+   {
+      return globalSizeContribution.get();
+   }
+
    public long getMaxSize()
    {
       return maxSize;
@@ -262,6 +322,11 @@ public class PagingStoreImpl implements PagingStore
       return pageSize;
    }
 
+   public boolean isPageIndex()
+   {
+      return pageIndex;
+   }
+
    public String getFolder()
    {
       SequentialFileFactory factoryUsed = this.fileFactory;
@@ -320,7 +385,7 @@ public class PagingStoreImpl implements PagingStore
    {
       if (syncTimer != null)
       {
-         syncTimer.addSync(storageManager.getContext());
+         syncTimer.addSync(this, storageManager.getContext());
       }
       else
       {
@@ -331,6 +396,9 @@ public class PagingStoreImpl implements PagingStore
 
    public void ioSync() throws Exception
    {
+      // the sync flushes what was buffered
+      pendingFlush.set(false);
+
       lock.readLock().lock();
 
       try
@@ -346,6 +414,28 @@ public class PagingStoreImpl implements PagingStore
       }
    }
 
+   /**
+    * Writes what is buffered for the current page to its file.
+    */
+   void ioFlush() throws Exception
+   {
+      pendingFlush.set(false);
+
+      lock.readLock().lock();
+
+      try
+      {
+         if (currentPage != null)
+         {
+            currentPage.flush();
+         }
+      }
+      finally
+      {
+         lock.readLock().unlock();
+      }
+   }
+
    public void processReload() throws Exception
    {
       cursorProvider.processReload();
@@ -590,6 +680,15 @@ public class PagingStoreImpl implements PagingStore
 
       Page page = new Page(storeName, storageManager, fileFactory, file, pageNumber);
 
+      page.setIndexed(pageIndex);
+
+      page.setCompressed(pageCompression);
+
+      if (syncTimer != null)
+      {
+         page.setWriteBufferSize((int) Math.min(PAGE_WRITE_BUFFER_SIZE, pageSize));
+      }
+
       // To create the file
       file.open();
 
@@ -795,6 +894,15 @@ public class PagingStoreImpl implements PagingStore
       {
          final long addressSize = sizeInBytes.addAndGet(size);
 
+         if (size < 0)
+         {
+            releasedSize.addAndGet(-size);
+         }
+
+         globalSizeContribution.addAndGet(size);
+
+         pagingManager.addGlobalSize(size);
+
          if (size > 0)
          {
             if (maxSize > 0 && addressSize > maxSize)
@@ -926,10 +1034,20 @@ public class PagingStoreImpl implements PagingStore
 
             currentPage.write(pagedMessage);
 
+            if (currentPage.isCompressed())
+            {
+               // the page is full when the file is, not when the messages before compression would be
+               currentPageSize.set(currentPage.getSize());
+            }
+
             if (tx == null && syncNonTransactional && message.isDurable())
             {
                sync();
             }
+            else if (syncTimer != null && pendingFlush.compareAndSet(false, true))
+            {
+               syncTimer.addFlush(this);
+            }
 
             if (isTrace)
             {
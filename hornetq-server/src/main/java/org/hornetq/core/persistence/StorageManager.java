@@ -186,6 +186,14 @@ public interface StorageManager extends IDGenerator, HornetQComponent
 
    void storeReferenceTransactional(long txID, long queueID, long messageID) throws Exception;
 
+   /**
+    * Stores references to durable queues and their messages in a transaction, as
+    * {@link #storeMessageTransactional(long, ServerMessage)} for the first reference of each message and
+    * {@link #storeReferenceTransactional(long, long, long)} for each reference would. The references of a message
+    * must follow each other, and it can't be a large message.
+    */
+   void storeMessagesTransactional(long txID, List<MessageReference> references) throws Exception;
+
    void storeAcknowledgeTransactional(long txID, long queueID, long messageID) throws Exception;
 
    void storeCursorAcknowledgeTransactional(long txID, long queueID, PagePosition position) throws Exception;
@@ -64,7 +64,9 @@ import org.hornetq.core.journal.TransactionFailureCallback;
 import org.hornetq.core.journal.impl.AIOSequentialFileFactory;
 import org.hornetq.core.journal.impl.JournalFile;
 import org.hornetq.core.journal.impl.JournalImpl;
+import org.hornetq.core.journal.impl.MappedSequentialFileFactory;
 import org.hornetq.core.journal.impl.NIOSequentialFileFactory;
+import org.hornetq.core.journal.impl.TimedBuffer;
 import org.hornetq.core.message.impl.MessageInternal;
 import org.hornetq.core.paging.PageTransactionInfo;
 import org.hornetq.core.paging.PagedMessage;
@@ -233,7 +235,8 @@ public class JournalStorageManager implements StorageManager
 
       executor = executorFactory.getExecutor();
 
-      if (config.getJournalType() != JournalType.NIO && config.getJournalType() != JournalType.ASYNCIO)
+      if (config.getJournalType() != JournalType.NIO && config.getJournalType() != JournalType.ASYNCIO &&
+         config.getJournalType() != JournalType.MAPPED)
       {
          throw HornetQMessageBundle.BUNDLE.invalidJournal();
       }
@@ -293,22 +296,39 @@ public class JournalStorageManager implements StorageManager
                                                   config.isLogJournalWriteRate(),
                                                   criticalErrorListener);
       }
+      else if (config.getJournalType() == JournalType.MAPPED)
+      {
+         HornetQServerLogger.LOGGER.journalUseMapped();
+         journalFF = new MappedSequentialFileFactory(journalDir,
+                                                     true,
+                                                     config.getJournalBufferSize_NIO(),
+                                                     config.getJournalBufferTimeout_NIO(),
+                                                     config.isLogJournalWriteRate(),
+                                                     criticalErrorListener);
+      }
       else
       {
          throw HornetQMessageBundle.BUNDLE.invalidJournalType2(config.getJournalType());
       }
 
+      if (config.getJournalBufferTargetLatency() > 0 && journalFF.getTimedBuffer() != null)
+      {
+         journalFF.getTimedBuffer().setTargetLatency(config.getJournalBufferTargetLatency());
+      }
+
       idGenerator = new BatchingIDGenerator(0, JournalStorageManager.CHECKPOINT_BATCH_SIZE, this);
 
-      Journal localMessage = new JournalImpl(config.getJournalFileSize(),
-                                             config.getJournalMinFiles(),
-                                             config.getJournalCompactMinFiles(),
-                                             config.getJournalCompactPercentage(),
-                                             journalFF,
-                                             "hornetq-data",
-                                             "hq",
-                                             config.getJournalType() == JournalType.ASYNCIO ? config.getJournalMaxIO_AIO()
-                                                : config.getJournalMaxIO_NIO());
+      JournalImpl localMessage = new JournalImpl(config.getJournalFileSize(),
+                                                 config.getJournalMinFiles(),
+                                                 config.getJournalCompactMinFiles(),
+                                                 config.getJournalCompactPercentage(),
+                                                 journalFF,
+                                                 "hornetq-data",
+                                                 "hq",
+                                                 config.getJournalType() == JournalType.ASYNCIO ? config.getJournalMaxIO_AIO()
+                                                    : config.getJournalMaxIO_NIO());
+
+      localMessage.setLoadThreads(config.getJournalLoadThreads());
 
       messageJournal = localMessage;
       originalMessageJournal = localMessage;
@@ -1145,6 +1165,38 @@ public class JournalStorageManager implements StorageManager
       }
    }
 
+   public void storeMessagesTransactional(final long txID, final List<MessageReference> references) throws Exception
+   {
+      readLock();
+      try
+      {
+         ServerMessage message = null;
+
+         for (MessageReference reference : references)
+         {
+            if (reference.getMessage() != message)
+            {
+               message = reference.getMessage();
+
+               if (message.getMessageID() <= 0)
+               {
+                  throw HornetQMessageBundle.BUNDLE.messageIdNotAssigned();
+               }
+
+               messageJournal.appendAddRecordTransactional(txID, message.getMessageID(), JournalRecordIds.ADD_MESSAGE,
+                                                           message);
+            }
+
+            messageJournal.appendUpdateRecordTransactional(txID, message.getMessageID(), JournalRecordIds.ADD_REF,
+                                                           new RefEncoding(reference.getQueue().getID()));
+         }
+      }
+      finally
+      {
+         readUnLock();
+      }
+   }
+
    public void storeAcknowledgeTransactional(final long txID, final long queueID, final long messageID) throws Exception
    {
       readLock();
@@ -2355,6 +2407,14 @@ public class JournalStorageManager implements StorageManager
       }
    }
 
+   /**
+    * @return the buffer batching the writes on the message journal, or {@code null} if they aren't buffered
+    */
+   public TimedBuffer getMessageJournalBuffer()
+   {
+      return journalFF.getTimedBuffer();
+   }
+
    @Override
    public ByteBuffer allocateDirectBuffer(int size)
    {
@@ -167,6 +167,11 @@ public class NullStorageManager implements StorageManager
    {
    }
 
+   @Override
+   public void storeMessagesTransactional(final long txID, final List<MessageReference> references) throws Exception
+   {
+   }
+
    @Override
    public void storeAcknowledge(final long queueID, final long messageID) throws Exception
    {
@@ -12,6 +12,7 @@
  */
 package org.hornetq.core.postoffice;
 
+import java.util.List;
 import java.util.Map;
 
 import org.hornetq.api.core.Pair;
@@ -74,6 +75,12 @@ public interface PostOffice extends HornetQComponent
 
    void route(ServerMessage message, RoutingContext context, boolean direct, boolean rejectDuplicates) throws Exception;
 
+   /**
+    * Routes a batch of messages in a transaction, looking up what is shared by the messages to the same address once
+    * and storing the messages together.
+    */
+   void route(List<ServerMessage> messages, Transaction tx, boolean direct, boolean rejectDuplicates) throws Exception;
+
    MessageReference reroute(ServerMessage message, Queue queue, Transaction tx) throws Exception;
 
    Pair<RoutingContext, ServerMessage> redistribute(ServerMessage message, final Queue originatingQueue, Transaction tx) throws Exception;
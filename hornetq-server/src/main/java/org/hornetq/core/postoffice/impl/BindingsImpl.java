@@ -17,8 +17,10 @@ import java.io.StringWriter;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CopyOnWriteArrayList;
@@ -26,6 +28,7 @@ import java.util.concurrent.CopyOnWriteArrayList;
 import org.hornetq.api.core.Message;
 import org.hornetq.api.core.SimpleString;
 import org.hornetq.core.filter.Filter;
+import org.hornetq.core.filter.impl.SelectorIndex;
 import org.hornetq.core.message.impl.MessageImpl;
 import org.hornetq.core.paging.PagingStore;
 import org.hornetq.core.postoffice.Binding;
@@ -53,6 +56,11 @@ public final class BindingsImpl implements Bindings
 
    private static boolean isTrace = HornetQServerLogger.LOGGER.isTraceEnabled();
 
+   /**
+    * Set to evaluate the filter of every binding when routing, as before they were indexed
+    */
+   private static final boolean NO_SELECTOR_INDEX = System.getProperty("org.hornetq.opt.noSelectorIndex") != null;
+
    private final ConcurrentMap<SimpleString, List<Binding>> routingNameBindingMap = new ConcurrentHashMap<SimpleString, List<Binding>>();
 
    private final Map<SimpleString, Integer> routingNamePositions = new ConcurrentHashMap<SimpleString, Integer>();
@@ -61,6 +69,17 @@ public final class BindingsImpl implements Bindings
 
    private final List<Binding> exclusiveBindings = new CopyOnWriteArrayList<Binding>();
 
+   /**
+    * The bindings whose filter requires a string property to have some values, as the subscriptions of a topic with
+    * selectors like "region = 'X'", indexed by these values
+    */
+   private final SelectorIndex<Binding> selectorIndex = new SelectorIndex<Binding>();
+
+   /**
+    * The routing names with bindings that aren't in the selector index, and how many
+    */
+   private final Map<SimpleString, Integer> unindexedRoutingNames = new ConcurrentHashMap<SimpleString, Integer>();
+
    private volatile boolean routeWhenNoConsumers;
 
    private final GroupingHandler groupingHandler;
@@ -123,6 +142,11 @@ public final class BindingsImpl implements Bindings
          }
 
          bindings.add(binding);
+
+         if (!selectorIndex.add(binding, binding.getFilter()))
+         {
+            addUnindexed(routingName);
+         }
       }
 
       bindingsMap.put(binding.getID(), binding);
@@ -155,6 +179,11 @@ public final class BindingsImpl implements Bindings
                routingNameBindingMap.remove(routingName);
             }
          }
+
+         if (!selectorIndex.remove(binding))
+         {
+            removeUnindexed(routingName);
+         }
       }
 
       bindingsMap.remove(binding.getID());
@@ -328,6 +357,14 @@ public final class BindingsImpl implements Bindings
             {
                HornetQServerLogger.LOGGER.trace("Routing message " + message + " on binding=" + this);
             }
+
+            if (!NO_SELECTOR_INDEX && !selectorIndex.isEmpty())
+            {
+               routeUsingSelectorIndex(message, context);
+
+               return;
+            }
+
             for (Map.Entry<SimpleString, List<Binding>> entry : routingNameBindingMap.entrySet())
             {
                SimpleString routingName = entry.getKey();
@@ -358,6 +395,77 @@ public final class BindingsImpl implements Bindings
       return "BindingsImpl [name=" + name + "]";
    }
 
+   /**
+    * Same as going through all the routing names, but for the routing names with only indexed bindings: they are
+    * left out unless one of their bindings may match.
+    */
+   private void routeUsingSelectorIndex(final ServerMessage message, final RoutingContext context) throws Exception
+   {
+      for (SimpleString routingName : unindexedRoutingNames.keySet())
+      {
+         routeToNextBinding(message, context, routingName);
+      }
+
+      List<Binding> candidates = new ArrayList<Binding>();
+
+      selectorIndex.match(message, candidates);
+
+      Set<SimpleString> routed = candidates.size() > 1 ? new HashSet<SimpleString>() : null;
+
+      for (Binding candidate : candidates)
+      {
+         SimpleString routingName = candidate.getRoutingName();
+
+         if (unindexedRoutingNames.containsKey(routingName) || routed != null && !routed.add(routingName))
+         {
+            continue;
+         }
+
+         routeToNextBinding(message, context, routingName);
+      }
+   }
+
+   private void routeToNextBinding(final ServerMessage message,
+                                   final RoutingContext context,
+                                   final SimpleString routingName) throws Exception
+   {
+      List<Binding> bindings = routingNameBindingMap.get(routingName);
+
+      if (bindings == null)
+      {
+         // removed while routing
+         return;
+      }
+
+      Binding theBinding = getNextBinding(message, routingName, bindings);
+
+      if (theBinding != null)
+      {
+         theBinding.route(message, context);
+      }
+   }
+
+   private synchronized void addUnindexed(final SimpleString routingName)
+   {
+      Integer count = unindexedRoutingNames.get(routingName);
+
+      unindexedRoutingNames.put(routingName, count == null ? 1 : count + 1);
+   }
+
+   private synchronized void removeUnindexed(final SimpleString routingName)
+   {
+      Integer count = unindexedRoutingNames.get(routingName);
+
+      if (count == null || count <= 1)
+      {
+         unindexedRoutingNames.remove(routingName);
+      }
+      else
+      {
+         unindexedRoutingNames.put(routingName, count - 1);
+      }
+   }
+
    /**
     * This code has a race on the assigned value to routing names.
     * <p/>
@@ -0,0 +1,615 @@
+/*
+ * Copyright 2005-2014 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.hornetq.core.postoffice.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.hornetq.api.core.Pair;
+import org.hornetq.api.core.SimpleString;
+import org.hornetq.core.persistence.StorageManager;
+import org.hornetq.core.postoffice.DuplicateIDCache;
+import org.hornetq.core.server.HornetQServerLogger;
+import org.hornetq.core.server.MessageReference;
+import org.hornetq.core.transaction.Transaction;
+import org.hornetq.core.transaction.TransactionOperationAbstract;
+
+/**
+ * A rotating cache of the last X duplicate ids, like {@link DuplicateIDCacheImpl}, meant for large caches.
+ * <p/>
+ * The ids are kept in a ring of parallel arrays (id, 64 bit hash, journal record id and optionally the time it was
+ * added) indexed by an open addressing table of ring positions, so there is no map entry, holder or boxed value per
+ * id. The ring grows as ids are added, up to the cache size.
+ * <p/>
+ * Ids can also expire after a while: an expired id is no longer reported by {@link #contains(byte[])} and is
+ * removed, along with its journal record, as new ids are added. Ids loaded from the journal are considered added at
+ * load time.
+ * <p/>
+ * Optionally a Bloom filter answers most lookups of ids that are not in the cache without taking the cache lock.
+ * As entries can't be removed from a Bloom filter, two generations are used: a new one is started every cache size
+ * additions, and the oldest one dropped, as no id outlives that many additions.
+ */
+public class CompactDuplicateIDCacheImpl implements DuplicateIDCache
+{
+   private static final int MIN_CAPACITY = 16;
+
+   private final SimpleString address;
+
+   private final int cacheSize;
+
+   private final StorageManager storageManager;
+
+   private final boolean persist;
+
+   // in milliseconds, 0 or less for ids that never expire
+   private final long expiry;
+
+   // The ring, from the oldest (tail) to the newest id. A null id is a deleted one, or a free slot
+   private byte[][] ids;
+
+   private long[] hashes;
+
+   private long[] recordIDs;
+
+   private long[] times;
+
+   private int tail;
+
+   private int count;
+
+   // ring positions + 1, 0 for an empty slot
+   private int[] table;
+
+   private volatile BloomFilter currentFilter;
+
+   private volatile BloomFilter previousFilter;
+
+   public CompactDuplicateIDCacheImpl(final SimpleString address,
+                                      final int size,
+                                      final StorageManager storageManager,
+                                      final boolean persist,
+                                      final long expiry,
+                                      final boolean bloomFilter)
+   {
+      this.address = address;
+
+      cacheSize = Math.max(1, size);
+
+      this.storageManager = storageManager;
+
+      this.persist = persist;
+
+      this.expiry = expiry;
+
+      allocate(Math.min(cacheSize, MIN_CAPACITY));
+
+      if (bloomFilter)
+      {
+         currentFilter = new BloomFilter(cacheSize);
+      }
+   }
+
+   public boolean contains(final byte[] duplID)
+   {
+      long hash = hash(duplID);
+
+      // current has to be read before previous, see rotateFilters
+      BloomFilter current = currentFilter;
+
+      if (current != null && !current.mightContain(hash))
+      {
+         BloomFilter previous = previousFilter;
+
+         if (previous == null || !previous.mightContain(hash))
+         {
+            return false;
+         }
+      }
+
+      synchronized (this)
+      {
+         int pos = find(duplID, hash);
+
+         return pos >= 0 && !isExpired(pos, System.currentTimeMillis());
+      }
+   }
+
+   public synchronized void addToCache(final byte[] duplID, final Transaction tx) throws Exception
+   {
+      long recordID = -1;
+
+      if (tx == null)
+      {
+         if (persist)
+         {
+            recordID = storageManager.generateID();
+            storageManager.storeDuplicateID(address, duplID, recordID);
+         }
+
+         addToCacheInMemory(duplID, recordID);
+      }
+      else
+      {
+         if (persist)
+         {
+            recordID = storageManager.generateID();
+            storageManager.storeDuplicateIDTransactional(tx.getID(), address, duplID, recordID);
+
+            tx.setContainsPersistent();
+         }
+
+         // For a tx, it's important that the entry is not added to the cache until commit
+         // since if the client fails then resends them tx we don't want it to get rejected
+         tx.addOperation(new AddDuplicateIDOperation(duplID, recordID));
+      }
+   }
+
+   public synchronized void deleteFromCache(final byte[] duplicateID) throws Exception
+   {
+      int pos = find(duplicateID, hash(duplicateID));
+
+      if (pos >= 0)
+      {
+         long recordID = recordIDs[pos];
+
+         remove(pos);
+
+         if (recordID >= 0)
+         {
+            storageManager.deleteDuplicateID(recordID);
+         }
+      }
+   }
+
+   public synchronized void load(final List<Pair<byte[], Long>> theIds) throws Exception
+   {
+      int loaded = 0;
+
+      long txID = -1;
+
+      for (Pair<byte[], Long> id : theIds)
+      {
+         if (loaded < cacheSize)
+         {
+            add(id.getA(), id.getB() != null ? id.getB() : -1);
+         }
+         else
+         {
+            // cache size has been reduced in config - delete the extra records
+            if (txID == -1)
+            {
+               txID = storageManager.generateID();
+            }
+
+            storageManager.deleteDuplicateIDTransactional(txID, id.getB());
+         }
+
+         loaded++;
+      }
+
+      if (txID != -1)
+      {
+         storageManager.commit(txID);
+      }
+   }
+
+   public void load(final Transaction tx, final byte[] duplID)
+   {
+      tx.addOperation(new AddDuplicateIDOperation(duplID, tx.getID()));
+   }
+
+   public synchronized void clear() throws Exception
+   {
+      if (count > 0)
+      {
+         long tx = storageManager.generateID();
+
+         for (int i = 0; i < count; i++)
+         {
+            int pos = position(i);
+
+            if (ids[pos] != null && recordIDs[pos] >= 0)
+            {
+               storageManager.deleteDuplicateIDTransactional(tx, recordIDs[pos]);
+            }
+         }
+
+         storageManager.commit(tx);
+      }
+
+      allocate(Math.min(cacheSize, MIN_CAPACITY));
+
+      if (currentFilter != null)
+      {
+         currentFilter = new BloomFilter(cacheSize);
+
+         previousFilter = null;
+      }
+   }
+
+   public synchronized List<Pair<byte[], Long>> getMap()
+   {
+      List<Pair<byte[], Long>> list = new ArrayList<Pair<byte[], Long>>(count);
+
+      for (int i = 0; i < count; i++)
+      {
+         int pos = position(i);
+
+         if (ids[pos] != null)
+         {
+            list.add(new Pair<byte[], Long>(ids[pos], recordIDs[pos] >= 0 ? recordIDs[pos] : null));
+         }
+      }
+
+      return list;
+   }
+
+   // Private -------------------------------------------------------
+
+   private synchronized void addToCacheInMemory(final byte[] duplID, final long recordID)
+   {
+      if (expiry > 0)
+      {
+         expire(System.currentTimeMillis());
+      }
+
+      add(duplID, recordID);
+   }
+
+   private void add(final byte[] duplID, final long recordID)
+   {
+      long hash = hash(duplID);
+
+      if (count == cacheSize)
+      {
+         evictOldest();
+      }
+      else if (count == ids.length)
+      {
+         grow();
+      }
+
+      int pos = position(count++);
+
+      ids[pos] = duplID;
+      hashes[pos] = hash;
+      recordIDs[pos] = recordID;
+
+      if (times != null)
+      {
+         times[pos] = System.currentTimeMillis();
+      }
+
+      insert(pos);
+
+      BloomFilter current = currentFilter;
+
+      if (current != null)
+      {
+         if (current.additions == cacheSize)
+         {
+            current = rotateFilters();
+         }
+
+         current.add(hash);
+      }
+   }
+
+   private void evictOldest()
+   {
+      int pos = tail;
+
+      // The id here might be null if it was explicit deleted
+      if (ids[pos] != null)
+      {
+         long recordID = recordIDs[pos];
+
+         remove(pos);
+
+         // Record already exists - we delete the old one and add the new one
+         // Note we can't use update since journal update doesn't let older records get
+         // reclaimed
+         if (recordID >= 0)
+         {
+            try
+            {
+               storageManager.deleteDuplicateID(recordID);
+            }
+            catch (Exception e)
+            {
+               HornetQServerLogger.LOGGER.errorDeletingDuplicateCache(e);
+            }
+         }
+      }
+
+      tail = (tail + 1) % ids.length;
+
+      count--;
+   }
+
+   private void expire(final long now)
+   {
+      while (count > 0 && (ids[tail] == null || isExpired(tail, now)))
+      {
+         evictOldest();
+      }
+   }
+
+   private boolean isExpired(final int pos, final long now)
+   {
+      return times != null && now - times[pos] >= expiry;
+   }
+
+   private int position(final int index)
+   {
+      return (tail + index) % ids.length;
+   }
+
+   private int find(final byte[] duplID, final long hash)
+   {
+      int mask = table.length - 1;
+
+      for (int i = (int) hash & mask; table[i] != 0; i = (i + 1) & mask)
+      {
+         int pos = table[i] - 1;
+
+         if (hashes[pos] == hash && Arrays.equals(ids[pos], duplID))
+         {
+            return pos;
+         }
+      }
+
+      return -1;
+   }
+
+   private void insert(final int pos)
+   {
+      int mask = table.length - 1;
+
+      int i = (int) hashes[pos] & mask;
+
+      while (table[i] != 0)
+      {
+         i = (i + 1) & mask;
+      }
+
+      table[i] = pos + 1;
+   }
+
+   private void remove(final int pos)
+   {
+      int mask = table.length - 1;
+
+      int gap = (int) hashes[pos] & mask;
+
+      while (table[gap] != pos + 1)
+      {
+         gap = (gap + 1) & mask;
+      }
+
+      // Shift back the slots following the removed one, so no lookup stops early at the freed slot
+      for (int i = (gap + 1) & mask; table[i] != 0; i = (i + 1) & mask)
+      {
+         int ideal = (int) hashes[table[i] - 1] & mask;
+
+         boolean between = gap <= i ? gap < ideal && ideal <= i : gap < ideal || ideal <= i;
+
+         if (!between)
+         {
+            table[gap] = table[i];
+            gap = i;
+         }
+      }
+
+      table[gap] = 0;
+
+      ids[pos] = null;
+   }
+
+   private void grow()
+   {
+      byte[][] oldIDs = ids;
+      long[] oldHashes = hashes;
+      long[] oldRecordIDs = recordIDs;
+      long[] oldTimes = times;
+      int oldTail = tail;
+      int oldCount = count;
+
+      allocate(Math.min(cacheSize, oldIDs.length * 2));
+
+      for (int i = 0; i < oldCount; i++)
+      {
+         int oldPos = (oldTail + i) % oldIDs.length;
+
+         ids[i] = oldIDs[oldPos];
+         hashes[i] = oldHashes[oldPos];
+         recordIDs[i] = oldRecordIDs[oldPos];
+
+         if (times != null)
+         {
+            times[i] = oldTimes[oldPos];
+         }
+
+         if (ids[i] != null)
+         {
+            insert(i);
+         }
+      }
+
+      count = oldCount;
+   }
+
+   private void allocate(final int capacity)
+   {
+      ids = new byte[capacity][];
+      hashes = new long[capacity];
+      recordIDs = new long[capacity];
+      times = expiry > 0 ? new long[capacity] : null;
+
+      // at most half full
+      int tableSize = MIN_CAPACITY;
+
+      while (tableSize < capacity * 2)
+      {
+         tableSize <<= 1;
+      }
+
+      table = new int[tableSize];
+
+      tail = 0;
+
+      count = 0;
+   }
+
+   private BloomFilter rotateFilters()
+   {
+      BloomFilter current = new BloomFilter(cacheSize);
+
+      // lookups read current then previous, so they always see the filter being replaced in one of them
+      previousFilter = currentFilter;
+
+      currentFilter = current;
+
+      return current;
+   }
+
+   private static long hash(final byte[] bytes)
+   {
+      // FNV-1a followed by the MurmurHash3 finalizer
+      long hash = 0xcbf29ce484222325L;
+
+      for (byte b : bytes)
+      {
+         hash ^= b & 0xff;
+         hash *= 0x100000001b3L;
+      }
+
+      hash ^= hash >>> 33;
+      hash *= 0xff51afd7ed558ccdL;
+      hash ^= hash >>> 33;
+      hash *= 0xc4ceb9fe1a85ec53L;
+      hash ^= hash >>> 33;
+
+      return hash;
+   }
+
+   // Inner classes -------------------------------------------------
+
+   private final class AddDuplicateIDOperation extends TransactionOperationAbstract
+   {
+      final byte[] duplID;
+
+      final long recordID;
+
+      volatile boolean done;
+
+      AddDuplicateIDOperation(final byte[] duplID, final long recordID)
+      {
+         this.duplID = duplID;
+         this.recordID = recordID;
+      }
+
+      private void process()
+      {
+         if (!done)
+         {
+            addToCacheInMemory(duplID, recordID);
+
+            done = true;
+         }
+      }
+
+      @Override
+      public void afterCommit(final Transaction tx)
+      {
+         process();
+      }
+
+      @Override
+      public List<MessageReference> getRelatedMessageReferences()
+      {
+         return null;
+      }
+   }
+
+   /**
+    * A Bloom filter sized for about 1% of false positives with {@code expectedAdditions} ids. Bits are only read
+    * and set atomically, so lookups don't need the cache lock.
+    */
+   private static final class BloomFilter
+   {
+      private static final int BITS_PER_ID = 10;
+
+      private static final int HASHES = 7;
+
+      private final AtomicLongArray bits;
+
+      private final int numberOfBits;
+
+      // only changed while holding the cache lock
+      private int additions;
+
+      BloomFilter(final int expectedAdditions)
+      {
+         long wanted = Math.max(64L, (long) expectedAdditions * BITS_PER_ID);
+
+         bits = new AtomicLongArray((int) Math.min(Integer.MAX_VALUE / 64, (wanted + 63) / 64));
+
+         numberOfBits = bits.length() * 64;
+      }
+
+      void add(final long hash)
+      {
+         int h1 = (int) hash;
+         int h2 = (int) (hash >>> 32);
+
+         for (int i = 0; i < HASHES; i++)
+         {
+            int bit = ((h1 + i * h2) & Integer.MAX_VALUE) % numberOfBits;
+
+            int word = bit >>> 6;
+
+            long mask = 1L << bit;
+
+            long value = bits.get(word);
+
+            while ((value & mask) == 0 && !bits.compareAndSet(word, value, value | mask))
+            {
+               value = bits.get(word);
+            }
+         }
+
+         additions++;
+      }
+
+      boolean mightContain(final long hash)
+      {
+         int h1 = (int) hash;
+         int h2 = (int) (hash >>> 32);
+
+         for (int i = 0; i < HASHES; i++)
+         {
+            int bit = ((h1 + i * h2) & Integer.MAX_VALUE) % numberOfBits;
+
+            if ((bits.get(bit >>> 6) & (1L << bit)) == 0)
+            {
+               return false;
+            }
+         }
+
+         return true;
+      }
+   }
+}
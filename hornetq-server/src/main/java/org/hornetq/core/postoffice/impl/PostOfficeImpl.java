@@ -648,7 +648,9 @@ public class PostOfficeImpl implements PostOffice, NotificationListener, Binding
 
       AtomicBoolean startedTX = new AtomicBoolean(false);
 
-      applyExpiryDelay(message, address);
+      AddressSettings addressSettings = addressSettingsRepository.getMatch(address.toString());
+
+      applyExpiryDelay(message, addressSettings);
 
       if (!checkDuplicateID(message, context, rejectDuplicates, startedTX))
       {
@@ -664,6 +666,104 @@ public class PostOfficeImpl implements PostOffice, NotificationListener, Binding
 
       Bindings bindings = addressManager.getBindingsForRoutingAddress(address);
 
+      routeToBindings(message, context, address, addressSettings, bindings, direct, startedTX, null);
+
+      if (startedTX.get())
+      {
+         context.getTransaction().commit();
+      }
+   }
+
+   /**
+    * Routes the messages in the transaction as routing each of them in turn would, but the bindings, paging store and
+    * address settings are looked up once for each run of messages to the same address. The references are added to
+    * the queues by a single operation of the transaction, and the messages stored in one go.
+    * <p/>
+    * Without a transaction, each message is routed on its own.
+    */
+   public void route(final List<ServerMessage> messages,
+                     final Transaction tx,
+                     final boolean direct,
+                     final boolean rejectDuplicates) throws Exception
+   {
+      if (tx == null)
+      {
+         for (ServerMessage message : messages)
+         {
+            route(message, (Transaction) null, direct, rejectDuplicates);
+         }
+
+         return;
+      }
+
+      RouteBatch batch = new RouteBatch(tx);
+
+      // there is a transaction already, it is never started here
+      AtomicBoolean startedTX = new AtomicBoolean(false);
+
+      SimpleString address = null;
+
+      PagingStore store = null;
+
+      AddressSettings addressSettings = null;
+
+      Bindings bindings = null;
+
+      try
+      {
+         for (ServerMessage message : messages)
+         {
+            // Sanity check
+            if (message.getRefCount() > 0)
+            {
+               throw new IllegalStateException("Message cannot be routed more than once");
+            }
+
+            if (!message.getAddress().equals(address))
+            {
+               address = message.getAddress();
+               store = pagingManager.getPageStore(address);
+               addressSettings = addressSettingsRepository.getMatch(address.toString());
+               bindings = addressManager.getBindingsForRoutingAddress(address);
+            }
+
+            message.setPagingStore(store);
+
+            applyExpiryDelay(message, addressSettings);
+
+            RoutingContext context = new RoutingContextImpl(tx);
+
+            if (!checkDuplicateID(message, context, rejectDuplicates, startedTX))
+            {
+               continue;
+            }
+
+            if (message.hasInternalProperties())
+            {
+               cleanupInternalPropertiesBeforeRouting(message);
+            }
+
+            routeToBindings(message, context, address, addressSettings, bindings, direct, startedTX, batch);
+         }
+
+         batch.store();
+      }
+      finally
+      {
+         // the references were counted, the transaction has to know them even if it is going to roll back
+         batch.addOperation();
+      }
+   }
+
+   private void routeToBindings(final ServerMessage message,
+                                final RoutingContext context,
+                                final SimpleString address,
+                                final AddressSettings addressSettings,
+                                final Bindings bindings,
+                                final boolean direct,
+                                final AtomicBoolean startedTX,
+                                final RouteBatch batch) throws Exception
+   {
       if (bindings != null)
       {
          bindings.route(message, context);
@@ -686,8 +786,6 @@ public class PostOfficeImpl implements PostOffice, NotificationListener, Binding
       {
          // Send to DLA if appropriate
 
-         AddressSettings addressSettings = addressSettingsRepository.getMatch(address.toString());
-
          boolean sendToDLA = addressSettings.isSendToDLAOnNoRoute();
 
          if (sendToDLA)
@@ -731,7 +829,7 @@ public class PostOfficeImpl implements PostOffice, NotificationListener, Binding
       {
          try
          {
-            processRoute(message, context, direct);
+            processRoute(message, context, direct, batch);
          }
          catch (HornetQAddressFullException e)
          {
@@ -746,17 +844,12 @@ public class PostOfficeImpl implements PostOffice, NotificationListener, Binding
             throw e;
          }
       }
-
-      if (startedTX.get())
-      {
-         context.getTransaction().commit();
-      }
    }
 
    // HORNETQ-1029
-   private void applyExpiryDelay(ServerMessage message, SimpleString address)
+   private void applyExpiryDelay(ServerMessage message, AddressSettings addressSettings)
    {
-      long expirationOverride = addressSettingsRepository.getMatch(address.toString()).getExpiryDelay();
+      long expirationOverride = addressSettings.getExpiryDelay();
 
       // A -1 <expiry-delay> means don't do anything
       if (expirationOverride >= 0)
@@ -834,7 +927,25 @@ public class PostOfficeImpl implements PostOffice, NotificationListener, Binding
 
       if (cache == null)
       {
-         cache = new DuplicateIDCacheImpl(address, idCacheSize, storageManager, persistIDCache);
+         // the bridge caches use the settings of the address they belong to
+         String match = address.startsWith(BRIDGE_CACHE_STR) ? address.toString()
+            .substring(BRIDGE_CACHE_STR.length()) : address.toString();
+
+         AddressSettings addressSettings = addressSettingsRepository.getMatch(match);
+
+         if (addressSettings.isCompactIDCache())
+         {
+            cache = new CompactDuplicateIDCacheImpl(address,
+                                                    idCacheSize,
+                                                    storageManager,
+                                                    persistIDCache,
+                                                    addressSettings.getIDCacheExpiry(),
+                                                    addressSettings.isIDCacheBloomFilter());
+         }
+         else
+         {
+            cache = new DuplicateIDCacheImpl(address, idCacheSize, storageManager, persistIDCache);
+         }
 
          DuplicateIDCache oldCache = duplicateIDCaches.putIfAbsent(address, cache);
 
@@ -1039,11 +1150,23 @@ public class PostOfficeImpl implements PostOffice, NotificationListener, Binding
    }
 
    public void processRoute(final ServerMessage message, final RoutingContext context, final boolean direct) throws Exception
+   {
+      processRoute(message, context, direct, null);
+   }
+
+   private void processRoute(final ServerMessage message,
+                             final RoutingContext context,
+                             final boolean direct,
+                             final RouteBatch batch) throws Exception
    {
       final List<MessageReference> refs = new ArrayList<MessageReference>();
 
       Transaction tx = context.getTransaction();
 
+      // the batch stores the plain durable messages and their references, the others are stored as they are routed
+      final boolean storeInBatch = batch != null && message.isDurable() && !message.isLargeMessage() &&
+         !message.containsProperty(Message.HDR_SCHEDULED_DELIVERY_TIME) && !hasAckedQueues(message, context);
+
       for (Map.Entry<SimpleString, RouteContextList> entry : context.getContexListing().entrySet())
       {
          PagingStore store = pagingManager.getPageStore(entry.getKey());
@@ -1101,7 +1224,13 @@ public class PostOfficeImpl implements PostOffice, NotificationListener, Binding
                reference.setScheduledDeliveryTime(scheduledDeliveryTime);
             }
 
-            if (message.isDurable())
+            if (storeInBatch)
+            {
+               message.incrementDurableRefCount();
+
+               batch.storeReference(reference);
+            }
+            else if (message.isDurable())
             {
                int durableRefCount = message.incrementDurableRefCount();
 
@@ -1150,7 +1279,11 @@ public class PostOfficeImpl implements PostOffice, NotificationListener, Binding
          }
       }
 
-      if (tx != null)
+      if (batch != null)
+      {
+         batch.addReferences(refs);
+      }
+      else if (tx != null)
       {
          tx.addOperation(new AddOperation(refs));
       }
@@ -1173,6 +1306,22 @@ public class PostOfficeImpl implements PostOffice, NotificationListener, Binding
       }
    }
 
+   private static boolean hasAckedQueues(final ServerMessage message, final RoutingContext context)
+   {
+      for (RouteContextList listing : context.getContexListing().values())
+      {
+         for (Queue queue : listing.getDurableQueues())
+         {
+            if (context.isAlreadyAcked(message.getAddress(), queue))
+            {
+               return true;
+            }
+         }
+      }
+
+      return false;
+   }
+
    /**
     * @param tx
     * @param message
@@ -1266,11 +1415,7 @@ public class PostOfficeImpl implements PostOffice, NotificationListener, Binding
          {
             HornetQServerLogger.LOGGER.duplicateMessageDetectedThruBridge(message);
 
-            if (context.getTransaction() != null)
-            {
-               context.getTransaction().markAsRollbackOnly(new HornetQDuplicateIdException());
-            }
-
+            // a bridge resends what it couldn't confirm, in its transactions too, so only the duplicate is dropped
             message.decrementRefCount();
 
             return false;
@@ -1440,6 +1585,54 @@ public class PostOfficeImpl implements PostOffice, NotificationListener, Binding
       }
    }
 
+   /**
+    * What the messages routed in a transaction by {@link #route(List, Transaction, boolean, boolean)} leave for the end:
+    * the references to add to the queues and the references to durable queues to store.
+    */
+   private final class RouteBatch
+   {
+      private final Transaction tx;
+
+      private final List<MessageReference> refs = new ArrayList<MessageReference>();
+
+      private final List<MessageReference> durableRefs = new ArrayList<MessageReference>();
+
+      RouteBatch(final Transaction tx)
+      {
+         this.tx = tx;
+      }
+
+      void addReferences(final List<MessageReference> references)
+      {
+         refs.addAll(references);
+      }
+
+      void storeReference(final MessageReference reference)
+      {
+         durableRefs.add(reference);
+      }
+
+      void store() throws Exception
+      {
+         if (!durableRefs.isEmpty())
+         {
+            storageManager.storeMessagesTransactional(tx.getID(), durableRefs);
+
+            tx.setContainsPersistent();
+
+            durableRefs.clear();
+         }
+      }
+
+      void addOperation()
+      {
+         if (!refs.isEmpty())
+         {
+            tx.addOperation(new AddOperation(refs));
+         }
+      }
+   }
+
    public static final class AddOperation implements TransactionOperation
    {
       private final List<MessageReference> refs;
@@ -162,6 +162,14 @@ public class SimpleAddressManager implements AddressManager
       }
    }
 
+   /**
+    * Removes the mappings of an address as a whole, leaving its bindings as they are for a routing that already got them
+    */
+   protected Bindings removeMappings(final SimpleString address)
+   {
+      return mappings.remove(address);
+   }
+
    protected Binding removeMapping(final SimpleString bindableName, final Bindings bindings)
    {
       Binding theBinding = null;
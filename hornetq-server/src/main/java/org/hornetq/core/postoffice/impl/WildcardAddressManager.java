@@ -12,10 +12,18 @@
  */
 package org.hornetq.core.postoffice.impl;
 
-import java.util.Collection;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.hornetq.api.core.SimpleString;
 import org.hornetq.core.postoffice.Address;
@@ -26,6 +34,17 @@ import org.hornetq.core.transaction.Transaction;
 
 /**
  * extends the simple manager to allow wildcard addresses to be used.
+ * <p/>
+ * The wildcard addresses with bindings are kept in a trie of their parts, where {@code *} and {@code #} are nodes
+ * of their own, so the wildcard addresses matching an address are found walking the trie along its parts. The trie
+ * is never changed in place, the nodes along the changed path are copied and the new root published, so routing
+ * walks it without locking.
+ * <p/>
+ * An address with bindings of its own also gets a copy of the bindings of the wildcard addresses matching it, as it
+ * always did. The bindings of the other addresses, only routed to through wildcards, are resolved when routing and
+ * kept in a concurrent cache of about the {@code maxResolvedAddresses} most recently used ones, so routing to
+ * millions of distinct addresses, as one per device, doesn't keep an entry for each of them. Once the cache is full
+ * the addresses not used since the last sweep are evicted, as a clock approximates the least recently used ones.
  *
  * @author <a href="mailto:andy.taylor@jboss.org">Andy Taylor</a>
  */
@@ -41,17 +60,47 @@ public class WildcardAddressManager extends SimpleAddressManager
 
    static final SimpleString ANY_WORDS_SIMPLESTRING = new SimpleString("#");
 
+   public static final int DEFAULT_MAX_RESOLVED_ADDRESSES = 10000;
+
+   private final BindingsFactory bindingsFactory;
+
+   /**
+    * The wildcard addresses with bindings, replaced holding this
+    */
+   private volatile Node root = Node.EMPTY;
+
+   private volatile int wildcardBindings;
+
+   private final int maxResolvedAddresses;
+
    /**
-    * These are all the addresses, we use this so we can link back from the actual address to its linked wilcard addresses
-    * or vice versa
+    * The bindings of the addresses only routed to through wildcards, null if none matches
     */
-   private final Map<SimpleString, Address> addresses = new ConcurrentHashMap<SimpleString, Address>();
+   private final ConcurrentMap<SimpleString, Resolved> resolved = new ConcurrentHashMap<SimpleString, Resolved>();
 
-   private final Map<SimpleString, Address> wildCardAddresses = new ConcurrentHashMap<SimpleString, Address>();
+   private final AtomicBoolean evicting = new AtomicBoolean(false);
+
+   /**
+    * Where the last eviction stopped, guarded by evicting
+    */
+   private Iterator<Resolved> clock;
+
+   /**
+    * Changed with the bindings before the resolved ones are removed, so that bindings resolved before aren't cached.
+    * Written holding this
+    */
+   private volatile long version;
 
    public WildcardAddressManager(final BindingsFactory bindingsFactory)
+   {
+      this(bindingsFactory, DEFAULT_MAX_RESOLVED_ADDRESSES);
+   }
+
+   public WildcardAddressManager(final BindingsFactory bindingsFactory, final int maxResolvedAddresses)
    {
       super(bindingsFactory);
+      this.bindingsFactory = bindingsFactory;
+      this.maxResolvedAddresses = maxResolvedAddresses;
    }
 
    @Override
@@ -59,63 +108,97 @@ public class WildcardAddressManager extends SimpleAddressManager
    {
       Bindings bindings = super.getBindingsForRoutingAddress(address);
 
-      // this should only happen if we're routing to an address that has no mappings when we're running checkAllowable
-      if (bindings == null && !wildCardAddresses.isEmpty())
+      if (bindings != null || wildcardBindings == 0 || containsWildCard(address))
       {
-         Address add = addAndUpdateAddressMap(address);
-         if (!add.containsWildCard())
+         return bindings;
+      }
+
+      Resolved cached = resolved.get(address);
+
+      if (cached != null)
+      {
+         if (!cached.used)
          {
-            for (Address destAdd : add.getLinkedAddresses())
-            {
-               Bindings b = super.getBindingsForRoutingAddress(destAdd.getAddress());
-               if (b != null)
-               {
-                  Collection<Binding> theBindings = b.getBindings();
-                  for (Binding theBinding : theBindings)
-                  {
-                     super.addMappingInternal(address, theBinding);
-                  }
-               }
-            }
+            cached.used = true;
          }
-         bindings = super.getBindingsForRoutingAddress(address);
+
+         return cached.bindings;
+      }
+
+      long resolvedVersion = version;
+
+      bindings = resolve(address);
+
+      Resolved entry = new Resolved(bindings);
+
+      resolved.put(address, entry);
+
+      if (version != resolvedVersion)
+      {
+         // the bindings changed while resolving, the removal may have missed this entry
+         resolved.remove(address, entry);
+      }
+      else if (resolved.size() > maxResolvedAddresses)
+      {
+         evict();
       }
+
       return bindings;
    }
 
    /**
     * If the address to add the binding to contains a wildcard then a copy of the binding (with the same underlying queue)
-    * will be added to the actual mappings. Otherwise the binding is added as normal.
+    * will be added to the mappings of the addresses with bindings it matches. Otherwise the binding is added as normal.
     *
     * @param binding the binding to add
     * @return true if the address was a new mapping
     */
    @Override
-   public boolean addBinding(final Binding binding) throws Exception
+   public synchronized boolean addBinding(final Binding binding) throws Exception
    {
-      boolean exists = super.addBinding(binding);
-      if (!exists)
+      SimpleString address = binding.getAddress();
+
+      if (containsWildCard(address))
       {
-         Address add = addAndUpdateAddressMap(binding.getAddress());
-         if (add.containsWildCard())
+         boolean exists = super.addBinding(binding);
+
+         Address add = addWildcard(address);
+
+         for (SimpleString destAddress : boundAddresses())
          {
-            for (Address destAdd : add.getLinkedAddresses())
+            if (new AddressImpl(destAddress).matches(add))
             {
-               super.addMappingInternal(destAdd.getAddress(), binding);
+               super.addMappingInternal(destAddress, binding);
             }
          }
-         else
+
+         invalidate(null);
+
+         return exists;
+      }
+
+      boolean newAddress = super.getBindingsForRoutingAddress(address) == null;
+
+      boolean exists = super.addBinding(binding);
+
+      if (newAddress)
+      {
+         for (Node node : matchingWildcards(address))
          {
-            for (Address destAdd : add.getLinkedAddresses())
+            Bindings bindings = super.getBindingsForRoutingAddress(node.address.getAddress());
+
+            if (bindings != null)
             {
-               Bindings bindings = super.getBindingsForRoutingAddress(destAdd.getAddress());
                for (Binding b : bindings.getBindings())
                {
-                  super.addMappingInternal(binding.getAddress(), b);
+                  super.addMappingInternal(address, b);
                }
             }
          }
       }
+
+      invalidate(address);
+
       return exists;
    }
 
@@ -127,131 +210,400 @@ public class WildcardAddressManager extends SimpleAddressManager
     * @return true if this was the last mapping for a specific address
     */
    @Override
-   public Binding removeBinding(final SimpleString uniqueName, Transaction tx) throws Exception
+   public synchronized Binding removeBinding(final SimpleString uniqueName, Transaction tx) throws Exception
    {
       Binding binding = super.removeBinding(uniqueName, tx);
-      if (binding != null)
+
+      if (binding == null)
       {
-         Address add = getAddress(binding.getAddress());
-         if (add.containsWildCard())
+         return null;
+      }
+
+      SimpleString address = binding.getAddress();
+
+      if (containsWildCard(address))
+      {
+         Address add = removeWildcard(address);
+
+         for (SimpleString destAddress : boundAddresses())
          {
-            for (Address theAddress : add.getLinkedAddresses())
+            if (new AddressImpl(destAddress).matches(add))
             {
-               super.removeBindingInternal(theAddress.getAddress(), uniqueName);
+               removeCopy(destAddress, uniqueName);
             }
          }
-         removeAndUpdateAddressMap(add);
+
+         invalidate(null);
       }
+      else
+      {
+         Bindings bindings = super.getBindingsForRoutingAddress(address);
+
+         // the copies of the wildcard bindings are left, it is now only routed to through wildcards
+         if (bindings != null && !hasOwnBindings(address, bindings))
+         {
+            removeMappings(address);
+         }
+
+         invalidate(address);
+      }
+
       return binding;
    }
 
    @Override
-   public void clear()
+   public synchronized void clear()
    {
       super.clear();
-      addresses.clear();
-      wildCardAddresses.clear();
+      root = Node.EMPTY;
+      wildcardBindings = 0;
+      invalidate(null);
    }
 
-   private Address getAddress(final SimpleString address)
+   /**
+    * For tests only
+    */
+   public int getResolvedAddressCount()
    {
-      Address add = new AddressImpl(address);
-      Address actualAddress;
-      if (add.containsWildCard())
+      return resolved.size();
+   }
+
+   // Private -------------------------------------------------------
+
+   private static boolean containsWildCard(final SimpleString address)
+   {
+      return address.contains(SINGLE_WORD) || address.contains(ANY_WORDS);
+   }
+
+   private Bindings resolve(final SimpleString address) throws Exception
+   {
+      List<Binding> matching = new ArrayList<Binding>();
+
+      for (Node node : matchingWildcards(address))
+      {
+         Bindings bindings = super.getBindingsForRoutingAddress(node.address.getAddress());
+
+         if (bindings != null)
+         {
+            matching.addAll(bindings.getBindings());
+         }
+      }
+
+      if (matching.isEmpty())
       {
-         actualAddress = wildCardAddresses.get(address);
+         return null;
       }
-      else
+
+      Bindings bindings = bindingsFactory.createBindings(address);
+
+      for (Binding binding : matching)
       {
-         actualAddress = addresses.get(address);
+         bindings.addBinding(binding);
       }
-      return actualAddress != null ? actualAddress : add;
+
+      return bindings;
    }
 
-   private synchronized Address addAndUpdateAddressMap(final SimpleString address)
+   /**
+    * Must be called holding this
+    */
+   private void invalidate(final SimpleString address)
    {
-      Address add = new AddressImpl(address);
-      Address actualAddress;
-      if (add.containsWildCard())
+      version++;
+
+      if (address == null)
       {
-         actualAddress = wildCardAddresses.get(address);
+         resolved.clear();
       }
       else
       {
-         actualAddress = addresses.get(address);
+         resolved.remove(address);
       }
-      if (actualAddress == null)
+   }
+
+   /**
+    * Sweeps the resolved addresses until there are no more than the maximum, evicting those not used since the last
+    * sweep went over them. A sweep already running in another thread is left to do it.
+    */
+   private void evict()
+   {
+      if (!evicting.compareAndSet(false, true))
       {
-         actualAddress = add;
-         addAddress(address, actualAddress);
+         return;
       }
-      if (actualAddress.containsWildCard())
+
+      try
       {
-         for (Address destAdd : addresses.values())
+         while (resolved.size() > maxResolvedAddresses)
          {
-            if (destAdd.matches(actualAddress))
+            if (clock == null || !clock.hasNext())
+            {
+               clock = resolved.values().iterator();
+
+               if (!clock.hasNext())
+               {
+                  return;
+               }
+            }
+
+            Resolved entry = clock.next();
+
+            if (entry.used)
             {
-               destAdd.addLinkedAddress(actualAddress);
-               actualAddress.addLinkedAddress(destAdd);
+               entry.used = false;
+            }
+            else
+            {
+               clock.remove();
             }
          }
       }
-      else
+      finally
       {
-         for (Address destAdd : wildCardAddresses.values())
-         {
-            if (actualAddress.matches(destAdd))
-            {
-               destAdd.addLinkedAddress(actualAddress);
-               actualAddress.addLinkedAddress(destAdd);
+         evicting.set(false);
+      }
+   }
 
-            }
+   /**
+    * @return the nodes of the wildcard addresses matching the address
+    */
+   private Set<Node> matchingWildcards(final SimpleString address)
+   {
+      Set<Node> nodes = new LinkedHashSet<Node>();
+
+      root.match(address.split(DELIM), 0, nodes);
+
+      // the trie gives what the wildcards mean, this is what the addresses always matched
+      Address add = new AddressImpl(address);
+
+      Set<Node> matching = new LinkedHashSet<Node>();
+
+      for (Node node : nodes)
+      {
+         if (add.matches(node.address))
+         {
+            matching.add(node);
          }
       }
-      return actualAddress;
+
+      return matching;
    }
 
-   private void addAddress(final SimpleString address, final Address actualAddress)
+   /**
+    * Must be called holding this
+    */
+   private Address addWildcard(final SimpleString address)
    {
-      if (actualAddress.containsWildCard())
+      SimpleString[] parts = address.split(DELIM);
+
+      root = root.add(parts, 0, address);
+
+      wildcardBindings++;
+
+      return root.find(parts).address;
+   }
+
+   /**
+    * Must be called holding this
+    */
+   private Address removeWildcard(final SimpleString address)
+   {
+      SimpleString[] parts = address.split(DELIM);
+
+      Node node = root.find(parts);
+
+      if (node == null || node.bindings == 0)
       {
-         wildCardAddresses.put(address, actualAddress);
+         return node != null && node.address != null ? node.address : new AddressImpl(address);
       }
-      else
+
+      Node newRoot = root.remove(parts, 0);
+
+      root = newRoot != null ? newRoot : Node.EMPTY;
+
+      wildcardBindings--;
+
+      return node.address;
+   }
+
+   /**
+    * @return the addresses without wildcard with bindings of their own
+    */
+   private Set<SimpleString> boundAddresses()
+   {
+      Set<SimpleString> addresses = new HashSet<SimpleString>();
+
+      for (Binding binding : getBindings().values())
       {
-         addresses.put(address, actualAddress);
+         if (!containsWildCard(binding.getAddress()))
+         {
+            addresses.add(binding.getAddress());
+         }
       }
+
+      return addresses;
    }
 
-   private synchronized void removeAndUpdateAddressMap(final Address address) throws Exception
+   private static boolean hasOwnBindings(final SimpleString address, final Bindings bindings)
    {
-      // we only remove if there are no bindings left
-      Bindings bindings = super.getBindingsForRoutingAddress(address.getAddress());
-      if (bindings == null || bindings.getBindings().size() == 0)
+      for (Binding binding : bindings.getBindings())
       {
-         List<Address> addresses = address.getLinkedAddresses();
-         for (Address address1 : addresses)
+         if (binding.getAddress().equals(address))
          {
-            address1.removeLinkedAddress(address);
-            Bindings linkedBindings = super.getBindingsForRoutingAddress(address1.getAddress());
-            if (linkedBindings == null || linkedBindings.getBindings().size() == 0)
+            return true;
+         }
+      }
+
+      return false;
+   }
+
+   private void removeCopy(final SimpleString address, final SimpleString uniqueName) throws Exception
+   {
+      Bindings bindings = super.getBindingsForRoutingAddress(address);
+
+      if (bindings != null)
+      {
+         for (Binding binding : bindings.getBindings())
+         {
+            if (binding.getUniqueName().equals(uniqueName))
             {
-               removeAddress(address1);
+               super.removeBindingInternal(address, uniqueName);
+
+               return;
             }
          }
-         removeAddress(address);
       }
    }
 
-   private void removeAddress(final Address add)
+   /**
+    * A part of the wildcard addresses, with the wildcard address ending there if it has bindings. Nodes are never
+    * changed, adding or removing a wildcard address returns new nodes for its path.
+    */
+   private static final class Node
    {
-      if (add.containsWildCard())
+      static final Node EMPTY = new Node(Collections.<SimpleString, Node>emptyMap(), null, 0);
+
+      final Map<SimpleString, Node> children;
+
+      final Address address;
+
+      final int bindings;
+
+      Node(final Map<SimpleString, Node> children, final Address address, final int bindings)
       {
-         wildCardAddresses.remove(add.getAddress());
+         this.children = children;
+         this.address = address;
+         this.bindings = bindings;
       }
-      else
+
+      Node add(final SimpleString[] parts, final int index, final SimpleString wildcard)
+      {
+         if (index == parts.length)
+         {
+            return new Node(children, address != null ? address : new AddressImpl(wildcard), bindings + 1);
+         }
+
+         Node child = children.get(parts[index]);
+
+         return withChild(parts[index], (child != null ? child : EMPTY).add(parts, index + 1, wildcard));
+      }
+
+      /**
+       * @return the node without a binding of the wildcard address, null if nothing is left of it
+       */
+      Node remove(final SimpleString[] parts, final int index)
+      {
+         Node node;
+
+         if (index == parts.length)
+         {
+            node = bindings > 1 ? new Node(children, address, bindings - 1) : new Node(children, null, 0);
+         }
+         else
+         {
+            node = withChild(parts[index], children.get(parts[index]).remove(parts, index + 1));
+         }
+
+         return node.bindings == 0 && node.children.isEmpty() ? null : node;
+      }
+
+      Node find(final SimpleString[] parts)
+      {
+         Node node = this;
+
+         for (int i = 0; i < parts.length && node != null; i++)
+         {
+            node = node.children.get(parts[i]);
+         }
+
+         return node;
+      }
+
+      private Node withChild(final SimpleString part, final Node child)
+      {
+         Map<SimpleString, Node> copy = new HashMap<SimpleString, Node>(children);
+
+         if (child == null)
+         {
+            copy.remove(part);
+         }
+         else
+         {
+            copy.put(part, child);
+         }
+
+         return new Node(copy, address, bindings);
+      }
+
+      void match(final SimpleString[] parts, final int index, final Set<Node> matches)
+      {
+         if (index == parts.length)
+         {
+            if (bindings > 0)
+            {
+               matches.add(this);
+            }
+         }
+         else
+         {
+            Node child = children.get(parts[index]);
+
+            if (child != null)
+            {
+               child.match(parts, index + 1, matches);
+            }
+
+            child = children.get(SINGLE_WORD_SIMPLESTRING);
+
+            if (child != null)
+            {
+               child.match(parts, index + 1, matches);
+            }
+         }
+
+         Node anyWords = children.get(ANY_WORDS_SIMPLESTRING);
+
+         if (anyWords != null)
+         {
+            // none or any number of the parts left
+            for (int i = index; i <= parts.length; i++)
+            {
+               anyWords.match(parts, i, matches);
+            }
+         }
+      }
+   }
+
+   private static final class Resolved
+   {
+      final Bindings bindings;
+
+      // set when routed to again, cleared by the evictions sweeping over it, so addresses routed to once go first
+      volatile boolean used;
+
+      Resolved(final Bindings bindings)
       {
-         addresses.remove(add.getAddress());
+         this.bindings = bindings;
       }
    }
 }
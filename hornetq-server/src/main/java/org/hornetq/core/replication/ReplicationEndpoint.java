@@ -71,6 +71,7 @@ import org.hornetq.core.replication.ReplicationManager.ADD_OPERATION_TYPE;
 import org.hornetq.core.server.HornetQComponent;
 import org.hornetq.core.server.HornetQMessageBundle;
 import org.hornetq.core.server.HornetQServerLogger;
+import org.hornetq.core.server.JournalType;
 import org.hornetq.core.server.ServerMessage;
 import org.hornetq.core.server.cluster.qourum.SharedNothingBackupQuorum;
 import org.hornetq.core.server.impl.HornetQServerImpl;
@@ -296,7 +297,8 @@ public final class ReplicationEndpoint implements ChannelHandler, HornetQCompone
                                                             config.getJournalBufferSize_NIO(),
                                                             server.getScheduledPool(),
                                                             server.getExecutorFactory(),
-                                                            config.isJournalSyncNonTransactional(), criticalErrorListener),
+                                                            config.isJournalSyncNonTransactional(), criticalErrorListener,
+                                                            config.getJournalType() == JournalType.MAPPED),
                                   server.getAddressSettingsRepository());
 
          pageManager.start();
@@ -134,6 +134,10 @@ public interface HornetQServerLogger extends BasicLogger
    @Message(id = 221013, value = "Using NIO Journal", format = Message.Format.MESSAGE_FORMAT)
    void journalUseNIO();
 
+   @LogMessage(level = Logger.Level.INFO)
+   @Message(id = 221051, value = "Using Memory Mapped Journal", format = Message.Format.MESSAGE_FORMAT)
+   void journalUseMapped();
+
    @LogMessage(level = Logger.Level.INFO)
    @Message(id = 221014, value = "{0}% loaded", format = Message.Format.MESSAGE_FORMAT)
    void percentLoaded(Long percent);
@@ -1112,6 +1116,12 @@ public interface HornetQServerLogger extends BasicLogger
          format = Message.Format.MESSAGE_FORMAT)
    void disallowedProtocol(String protocol);
 
+   @LogMessage(level = Logger.Level.WARN)
+   @Message(id = 222191,
+         value = "Starting paging on address ''{0}''; size is currently: {1} bytes; the size of all the addresses is {2} bytes; global-max-size: {3}",
+         format = Message.Format.MESSAGE_FORMAT)
+   void pageStoreStartGlobal(SimpleString storeName, long addressSize, long globalSize, long globalMaxSize);
+
    @LogMessage(level = Logger.Level.ERROR)
    @Message(id = 224000, value = "Failure in initialisation", format = Message.Format.MESSAGE_FORMAT)
    void initializationError(@Cause Throwable e);
@@ -86,6 +86,12 @@ public interface Queue extends Bindable
 
    void deliverAsync();
 
+   /**
+    * Same as {@link #deliverAsync()}, called when the consumer may take messages again (it received credits, was
+    * started, finished sending a large message...)
+    */
+   void deliverAsync(Consumer consumer);
+
    void unproposed(SimpleString groupID);
 
    /**
@@ -107,6 +113,11 @@ public interface Queue extends Bindable
 
    int getScheduledCount();
 
+   /**
+    * The references waiting for their redelivery delay, part of the {@link #getScheduledCount()}.
+    */
+   int getDelayedRedeliveryCount();
+
    List<MessageReference> getScheduledMessages();
 
    /**
@@ -74,6 +74,12 @@ public class BridgeImpl implements Bridge, SessionFailureListener, SendAcknowled
 
    private static final boolean isTrace = HornetQServerLogger.LOGGER.isTraceEnabled();
 
+   /**
+    * How many messages a core bridge sends at most in a transaction, so the target routes them together, 0 sends each
+    * message on its own
+    */
+   private static final int SEND_BATCH_SIZE = Integer.getInteger("org.hornetq.opt.bridgeSendBatchSize", 100);
+
    // Attributes ----------------------------------------------------
 
    private static final SimpleString JMS_QUEUE_ADDRESS_PREFIX = new SimpleString("jms.queue.");
@@ -143,6 +149,22 @@ public class BridgeImpl implements Bridge, SessionFailureListener, SendAcknowled
 
    private boolean deliveringLargeMessage;
 
+   /**
+    * Whether the messages are sent in transactions, their references are then acknowledged once committed
+    */
+   private volatile boolean transacted;
+
+   // the messages sent since the last commit, guarded by this
+   private int uncommitted;
+
+   private final Runnable commitRunnable = new Runnable()
+   {
+      public void run()
+      {
+         commitSends();
+      }
+   };
+
    private int reconnectAttemptsInUse;
 
    private int retryCount = 0;
@@ -274,6 +296,12 @@ public class BridgeImpl implements Bridge, SessionFailureListener, SendAcknowled
 
    private void cancelRefs()
    {
+      synchronized (this)
+      {
+         // cancelled with the others, the transaction of the session they were sent in is gone
+         uncommitted = 0;
+      }
+
       MessageReference ref;
 
       LinkedList<MessageReference> list = new LinkedList<MessageReference>();
@@ -481,26 +509,80 @@ public class BridgeImpl implements Bridge, SessionFailureListener, SendAcknowled
 
    public void sendAcknowledged(final Message message)
    {
-      if (active)
+      if (active && !transacted)
       {
-         try
-         {
-            final MessageReference ref = refs.poll();
+         acknowledge(refs.poll());
+      }
+   }
 
-            if (ref != null)
+   private void acknowledge(final MessageReference ref)
+   {
+      try
+      {
+         if (ref != null)
+         {
+            if (isTrace)
             {
-               if (isTrace)
-               {
-                  HornetQServerLogger.LOGGER.trace(this + " Acking " + ref + " on queue " + ref.getQueue());
-               }
-               ref.getQueue().acknowledge(ref);
-               pendingAcks.countDown();
+               HornetQServerLogger.LOGGER.trace(this + " Acking " + ref + " on queue " + ref.getQueue());
             }
+            ref.getQueue().acknowledge(ref);
+            pendingAcks.countDown();
          }
-         catch (Exception e)
-         {
-            HornetQServerLogger.LOGGER.bridgeFailedToAck(e);
-         }
+      }
+      catch (Exception e)
+      {
+         HornetQServerLogger.LOGGER.bridgeFailedToAck(e);
+      }
+   }
+
+   /**
+    * Commits the messages sent since the last commit and acknowledges their references, called on the executor so
+    * the messages sent meanwhile make the next transaction.
+    */
+   private void commitSends()
+   {
+      ClientSessionInternal committing;
+
+      int count;
+
+      synchronized (this)
+      {
+         committing = session;
+
+         count = uncommitted;
+
+         uncommitted = 0;
+      }
+
+      if (count == 0 || committing == null)
+      {
+         return;
+      }
+
+      try
+      {
+         committing.commit();
+      }
+      catch (HornetQException e)
+      {
+         HornetQServerLogger.LOGGER.warn(e.getMessage(), e);
+
+         // as when a send fails, the references are cancelled and sent again once reconnected
+         connectionFailed(e, false);
+
+         return;
+      }
+
+      // the references are in the order their messages were sent, the ones sent after the commit are left
+      for (int i = 0; i < count; i++)
+      {
+         acknowledge(refs.poll());
+      }
+
+      // the bridge may have been busy waiting for the commit
+      if (queue != null)
+      {
+         queue.deliverAsync();
       }
    }
 
@@ -564,6 +646,12 @@ public class BridgeImpl implements Bridge, SessionFailureListener, SendAcknowled
             return HandleStatus.BUSY;
          }
 
+         if (transacted && uncommitted >= SEND_BATCH_SIZE)
+         {
+            // delivered again once committed
+            return HandleStatus.BUSY;
+         }
+
          if (isTrace)
          {
             HornetQServerLogger.LOGGER.trace("Bridge " + this + " is handling reference=" + ref);
@@ -591,16 +679,26 @@ public class BridgeImpl implements Bridge, SessionFailureListener, SendAcknowled
 
          try
          {
+            HandleStatus status;
+
             if (message.isLargeMessage())
             {
                deliveringLargeMessage = true;
                deliverLargeMessage(dest, ref, (LargeServerMessage) message);
-               return HandleStatus.HANDLED;
+               status = HandleStatus.HANDLED;
             }
             else
             {
-               return deliverStandardMessage(dest, ref, message);
+               status = deliverStandardMessage(dest, ref, message);
+            }
+
+            // a commit is scheduled for the first message of a transaction, it takes the ones sent until it runs
+            if (transacted && status == HandleStatus.HANDLED && uncommitted++ == 0)
+            {
+               executor.execute(commitRunnable);
             }
+
+            return status;
          }
          catch (Exception e)
          {
@@ -719,7 +817,7 @@ public class BridgeImpl implements Bridge, SessionFailureListener, SendAcknowled
 
                if (queue != null)
                {
-                  queue.deliverAsync();
+                  queue.deliverAsync(BridgeImpl.this);
                }
             }
             catch (final HornetQException e)
@@ -933,8 +1031,12 @@ public class BridgeImpl implements Bridge, SessionFailureListener, SendAcknowled
                   scheduleRetryConnect();
                   return;
                }
+               // the cluster connection bridges send more than the messages of the queue on their session, and
+               // without duplicate detection a message resent after a failure would reject its whole transaction
+               transacted = SEND_BATCH_SIZE > 0 && isPlainCoreBridge() && useDuplicateDetection;
+
                // Session is pre-acknowledge
-               session = (ClientSessionInternal) csf.createSession(user, password, false, true, true, true, 1);
+               session = (ClientSessionInternal) csf.createSession(user, password, false, !transacted, true, true, 1);
             }
 
             if (forwardingAddress != null)
@@ -1157,6 +1259,9 @@ public class BridgeImpl implements Bridge, SessionFailureListener, SendAcknowled
             HornetQServerLogger.LOGGER.debug("stopping bridge " + BridgeImpl.this);
             queue.removeConsumer(BridgeImpl.this);
 
+            // the references are acknowledged by the commit, which would otherwise run after this
+            commitSends();
+
             if (!pendingAcks.await(10, TimeUnit.SECONDS))
             {
                HornetQServerLogger.LOGGER.timedOutWaitingCompletions(BridgeImpl.this.toString(),
@@ -1225,6 +1330,8 @@ public class BridgeImpl implements Bridge, SessionFailureListener, SendAcknowled
          {
             queue.removeConsumer(BridgeImpl.this);
 
+            commitSends();
+
             if (!pendingAcks.await(60, TimeUnit.SECONDS))
             {
                HornetQServerLogger.LOGGER.timedOutWaitingCompletions(BridgeImpl.this.toString(),
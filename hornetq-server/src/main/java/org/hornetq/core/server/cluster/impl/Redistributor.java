@@ -192,7 +192,7 @@ public class Redistributor implements Consumer
 
                      count++;
 
-                     queue.deliverAsync();
+                     queue.deliverAsync(Redistributor.this);
                   }
                }
                catch (Exception e)
@@ -292,7 +292,7 @@ public class Redistributor implements Consumer
          {
             active = true;
 
-            queue.deliverAsync();
+            queue.deliverAsync(Redistributor.this);
          }
       }
    }
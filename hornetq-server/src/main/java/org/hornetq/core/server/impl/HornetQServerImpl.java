@@ -65,6 +65,7 @@ import org.hornetq.core.journal.impl.SyncSpeedTest;
 import org.hornetq.core.management.impl.HornetQServerControlImpl;
 import org.hornetq.core.paging.PagingManager;
 import org.hornetq.core.paging.cursor.PageSubscription;
+import org.hornetq.core.paging.impl.PageIOScheduler;
 import org.hornetq.core.paging.impl.PagingManagerImpl;
 import org.hornetq.core.paging.impl.PagingStoreFactoryNIO;
 import org.hornetq.core.persistence.GroupingInfo;
@@ -197,6 +198,8 @@ public class HornetQServerImpl implements HornetQServer
 
    private volatile QueueFactory queueFactory;
 
+   private volatile ScheduledDeliveryTimerWheel scheduledDeliveryTimerWheel;
+
    private volatile PagingManager pagingManager;
 
    private volatile PostOffice postOffice;
@@ -688,6 +691,8 @@ public class HornetQServerImpl implements HornetQServer
 
       stopComponent(postOffice);
 
+      stopComponent(scheduledDeliveryTimerWheel);
+
       if (scheduledPool != null && !scheduledPoolSupplied)
       {
          // we just interrupt all running tasks, these are supposed to be pings and the like.
@@ -727,6 +732,7 @@ public class HornetQServerImpl implements HornetQServer
       resourceManager = null;
       postOffice = null;
       queueFactory = null;
+      scheduledDeliveryTimerWheel = null;
       resourceManager = null;
       messagingServerControl = null;
       memoryManager = null;
@@ -1482,8 +1488,11 @@ public class HornetQServerImpl implements HornetQServer
                                                              scheduledPool,
                                                              executorFactory,
                                                              configuration.isJournalSyncNonTransactional(),
-                                                             shutdownOnCriticalIO),
-                                   addressSettingsRepository);
+                                                             shutdownOnCriticalIO,
+                                                             configuration.getJournalType() == JournalType.MAPPED),
+                                   addressSettingsRepository,
+                                   new PageIOScheduler(configuration.getPageMaxConcurrentIO(), threadPool),
+                                   configuration.getGlobalMaxSize());
    }
 
    /**
@@ -1643,7 +1652,22 @@ public class HornetQServerImpl implements HornetQServer
                                             configuration.getClusterPassword(),
                                             managementService);
 
-      queueFactory = new QueueFactoryImpl(executorFactory, scheduledPool, addressSettingsRepository, storageManager);
+      QueueFactoryImpl queueFactoryImpl = new QueueFactoryImpl(executorFactory,
+                                                               scheduledPool,
+                                                               addressSettingsRepository,
+                                                               storageManager);
+
+      if (configuration.getScheduledDeliveryTimerWheelTick() > 0)
+      {
+         scheduledDeliveryTimerWheel = new ScheduledDeliveryTimerWheel(scheduledPool,
+                                                                       configuration.getScheduledDeliveryTimerWheelTick());
+
+         scheduledDeliveryTimerWheel.start();
+
+         queueFactoryImpl.setScheduledDeliveryTimerWheel(scheduledDeliveryTimerWheel);
+      }
+
+      queueFactory = queueFactoryImpl;
 
       pagingManager = createPagingManager();
 
@@ -26,6 +26,7 @@ import org.hornetq.core.postoffice.PostOffice;
 import org.hornetq.core.server.HornetQServerLogger;
 import org.hornetq.core.server.MessageReference;
 import org.hornetq.core.server.Queue;
+import org.hornetq.core.server.ScheduledDeliveryHandler;
 import org.hornetq.core.server.ServerMessage;
 import org.hornetq.core.settings.HierarchicalRepository;
 import org.hornetq.core.settings.impl.AddressSettings;
@@ -56,6 +57,35 @@ public class LastValueQueue extends QueueImpl
                          final StorageManager storageManager,
                          final HierarchicalRepository<AddressSettings> addressSettingsRepository,
                          final Executor executor)
+   {
+      this(persistenceID,
+           address,
+           name,
+           filter,
+           pageSubscription,
+           durable,
+           temporary,
+           scheduledExecutor,
+           postOffice,
+           storageManager,
+           addressSettingsRepository,
+           executor,
+           null);
+   }
+
+   public LastValueQueue(final long persistenceID,
+                         final SimpleString address,
+                         final SimpleString name,
+                         final Filter filter,
+                         final PageSubscription pageSubscription,
+                         final boolean durable,
+                         final boolean temporary,
+                         final ScheduledExecutorService scheduledExecutor,
+                         final PostOffice postOffice,
+                         final StorageManager storageManager,
+                         final HierarchicalRepository<AddressSettings> addressSettingsRepository,
+                         final Executor executor,
+                         final ScheduledDeliveryHandler scheduledDeliveryHandler)
    {
       super(persistenceID,
             address,
@@ -68,7 +98,8 @@ public class LastValueQueue extends QueueImpl
             postOffice,
             storageManager,
             addressSettingsRepository,
-            executor);
+            executor,
+            scheduledDeliveryHandler);
       new Exception("LastValueQeue " + this ).toString();
    }
 
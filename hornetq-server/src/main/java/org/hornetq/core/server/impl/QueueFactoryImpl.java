@@ -21,6 +21,7 @@ import org.hornetq.core.persistence.StorageManager;
 import org.hornetq.core.postoffice.PostOffice;
 import org.hornetq.core.server.Queue;
 import org.hornetq.core.server.QueueFactory;
+import org.hornetq.core.server.ScheduledDeliveryHandler;
 import org.hornetq.core.settings.HierarchicalRepository;
 import org.hornetq.core.settings.impl.AddressSettings;
 import org.hornetq.utils.ExecutorFactory;
@@ -46,6 +47,9 @@ public class QueueFactoryImpl implements QueueFactory
 
    protected final ExecutorFactory executorFactory;
 
+   /** When set, the queues schedule their deliveries on it instead of on the scheduled executor */
+   protected ScheduledDeliveryTimerWheel scheduledDeliveryTimerWheel;
+
    public QueueFactoryImpl(final ExecutorFactory executorFactory,
                            final ScheduledExecutorService scheduledExecutor,
                            final HierarchicalRepository<AddressSettings> addressSettingsRepository,
@@ -65,6 +69,11 @@ public class QueueFactoryImpl implements QueueFactory
       this.postOffice = postOffice;
    }
 
+   public void setScheduledDeliveryTimerWheel(final ScheduledDeliveryTimerWheel scheduledDeliveryTimerWheel)
+   {
+      this.scheduledDeliveryTimerWheel = scheduledDeliveryTimerWheel;
+   }
+
    public Queue createQueue(final long persistenceID,
                             final SimpleString address,
                             final SimpleString name,
@@ -75,6 +84,9 @@ public class QueueFactoryImpl implements QueueFactory
    {
       AddressSettings addressSettings = addressSettingsRepository.getMatch(address.toString());
 
+      ScheduledDeliveryHandler scheduledDeliveryHandler = scheduledDeliveryTimerWheel == null ? null
+         : scheduledDeliveryTimerWheel.createHandler();
+
       Queue queue;
       if (addressSettings.isLastValueQueue())
       {
@@ -89,7 +101,8 @@ public class QueueFactoryImpl implements QueueFactory
                                     postOffice,
                                     storageManager,
                                     addressSettingsRepository,
-                                    executorFactory.getExecutor());
+                                    executorFactory.getExecutor(),
+                                    scheduledDeliveryHandler);
       }
       else
       {
@@ -104,7 +117,8 @@ public class QueueFactoryImpl implements QueueFactory
                                postOffice,
                                storageManager,
                                addressSettingsRepository,
-                               executorFactory.getExecutor());
+                               executorFactory.getExecutor(),
+                               scheduledDeliveryHandler);
       }
 
       return queue;
@@ -17,8 +17,10 @@ import java.io.StringWriter;
 import java.math.BigDecimal;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
@@ -44,6 +46,7 @@ import org.hornetq.api.core.management.ManagementHelper;
 import org.hornetq.core.filter.Filter;
 import org.hornetq.core.journal.IOAsyncTask;
 import org.hornetq.core.message.impl.MessageImpl;
+import org.hornetq.core.paging.PagingStore;
 import org.hornetq.core.paging.cursor.PageSubscription;
 import org.hornetq.core.paging.cursor.PagedReference;
 import org.hornetq.core.persistence.StorageManager;
@@ -78,6 +81,7 @@ import org.hornetq.core.transaction.impl.TransactionImpl;
 import org.hornetq.spi.core.protocol.RemotingConnection;
 import org.hornetq.utils.ConcurrentHashSet;
 import org.hornetq.utils.FutureLatch;
+import org.hornetq.utils.IDSupplier;
 import org.hornetq.utils.LinkedListIterator;
 import org.hornetq.utils.PriorityLinkedList;
 import org.hornetq.utils.PriorityLinkedListImpl;
@@ -99,6 +103,14 @@ public class QueueImpl implements Queue
 {
    private static final boolean isTrace = HornetQServerLogger.LOGGER.isTraceEnabled();
 
+   private static final IDSupplier<MessageReference> MESSAGE_ID_SUPPLIER = new IDSupplier<MessageReference>()
+   {
+      public long getID(final MessageReference ref)
+      {
+         return ref.getMessage().getMessageID();
+      }
+   };
+
    public static final int REDISTRIBUTOR_BATCH_SIZE = 100;
 
    public static final int NUM_PRIORITIES = 10;
@@ -145,6 +157,10 @@ public class QueueImpl implements Queue
    // This is where messages are stored
    private final PriorityLinkedList<MessageReference> messageReferences = new PriorityLinkedListImpl<MessageReference>(QueueImpl.NUM_PRIORITIES);
 
+   // Whether messageReferences is indexed by message ID, as configured on the address settings.
+   // The index is kept from the creation of the queue, a change of the settings is applied on the executor
+   private volatile boolean messageIDIndex = AddressSettings.DEFAULT_MESSAGE_ID_INDEX;
+
    // The quantity of pagedReferences on messageReferences priority list
    private final AtomicInteger pagedReferences = new AtomicInteger(0);
 
@@ -156,8 +172,25 @@ public class QueueImpl implements Queue
 
    private final List<ConsumerHolder> consumerList = new CopyOnWriteArrayList<ConsumerHolder>();
 
+   // When set, delivery only visits the consumers in readyConsumers (see deliverToReadyConsumers)
+   private final boolean readyConsumerDelivery;
+
+   // The positions on consumerList of the consumers that may take messages, guarded by this
+   private final BitSet readyConsumers = new BitSet();
+
+   // The position of every consumer on consumerList, rebuilt when the consumers change, guarded by this
+   private final Map<Consumer, Integer> consumerPositions = new IdentityHashMap<Consumer, Integer>();
+
+   // The consumers that told they may take messages again, moved to readyConsumers by the delivery
+   private final java.util.Queue<Consumer> consumersGettingReady = new ConcurrentLinkedQueue<Consumer>();
+
+   // Where to look for the next busy consumer to give another chance to, guarded by this
+   private int busyConsumerProbe;
+
    private final ScheduledDeliveryHandler scheduledDeliveryHandler;
 
+   private final RedeliveryDelayHandler redeliveryDelayHandler;
+
    private long messagesAdded;
 
    private long messagesAcknowledged;
@@ -343,6 +376,39 @@ public class QueueImpl implements Queue
                     final StorageManager storageManager,
                     final HierarchicalRepository<AddressSettings> addressSettingsRepository,
                     final Executor executor)
+   {
+      this(id,
+           address,
+           name,
+           filter,
+           pageSubscription,
+           durable,
+           temporary,
+           scheduledExecutor,
+           postOffice,
+           storageManager,
+           addressSettingsRepository,
+           executor,
+           null);
+   }
+
+   /**
+    * @param scheduledDeliveryHandler where the scheduled references go, {@code null} for a
+    *                                 {@link ScheduledDeliveryHandlerImpl} on the {@code scheduledExecutor}
+    */
+   public QueueImpl(final long id,
+                    final SimpleString address,
+                    final SimpleString name,
+                    final Filter filter,
+                    final PageSubscription pageSubscription,
+                    final boolean durable,
+                    final boolean temporary,
+                    final ScheduledExecutorService scheduledExecutor,
+                    final PostOffice postOffice,
+                    final StorageManager storageManager,
+                    final HierarchicalRepository<AddressSettings> addressSettingsRepository,
+                    final Executor executor,
+                    final ScheduledDeliveryHandler scheduledDeliveryHandler)
    {
       this.id = id;
 
@@ -366,7 +432,20 @@ public class QueueImpl implements Queue
 
       this.scheduledExecutor = scheduledExecutor;
 
-      scheduledDeliveryHandler = new ScheduledDeliveryHandlerImpl(scheduledExecutor);
+      this.scheduledDeliveryHandler = scheduledDeliveryHandler == null ? new ScheduledDeliveryHandlerImpl(scheduledExecutor)
+         : scheduledDeliveryHandler;
+
+      redeliveryDelayHandler = new RedeliveryDelayHandler(this, scheduledExecutor);
+
+      messageReferences.setIDSupplier(MESSAGE_ID_SUPPLIER);
+
+      AddressSettings settings = addressSettingsRepository == null ? null : addressSettingsRepository.getMatch(address.toString());
+
+      readyConsumerDelivery = settings != null && settings.isReadyConsumerDelivery();
+
+      messageIDIndex = settings != null && settings.isMessageIDIndex();
+
+      messageReferences.setIDIndex(messageIDIndex);
 
       if (addressSettingsRepository != null)
       {
@@ -505,7 +584,7 @@ public class QueueImpl implements Queue
    public synchronized void addHead(final MessageReference ref)
    {
       flushDeliveriesInTransit();
-      if (scheduledDeliveryHandler.checkAndSchedule(ref, false))
+      if (redeliveryDelayHandler.checkAndSchedule(ref, false) || scheduledDeliveryHandler.checkAndSchedule(ref, false))
       {
          return;
       }
@@ -646,6 +725,16 @@ public class QueueImpl implements Queue
       deliverAsync();
    }
 
+   public void deliverAsync(final Consumer consumer)
+   {
+      if (readyConsumerDelivery)
+      {
+         consumersGettingReady.add(consumer);
+      }
+
+      deliverAsync();
+   }
+
    public void deliverAsync()
    {
       if (scheduledRunners.get() < MAX_SCHEDULED_RUNNERS)
@@ -942,65 +1031,25 @@ public class QueueImpl implements Queue
 
    public synchronized MessageReference removeReferenceWithID(final long id1) throws Exception
    {
-      LinkedListIterator<MessageReference> iterator = iterator();
+      MessageReference removed = removeReference(id1);
 
-      try
+      if (removed == null)
       {
-
-         MessageReference removed = null;
-
-         while (iterator.hasNext())
-         {
-            MessageReference ref = iterator.next();
-
-            if (ref.getMessage().getMessageID() == id1)
-            {
-               iterator.remove();
-               refRemoved(ref);
-
-               removed = ref;
-
-               break;
-            }
-         }
-
-         if (removed == null)
-         {
-            // Look in scheduled deliveries
-            removed = scheduledDeliveryHandler.removeReferenceWithID(id1);
-         }
-
-         return removed;
+         // Look in scheduled deliveries
+         removed = scheduledDeliveryHandler.removeReferenceWithID(id1);
       }
-      finally
+
+      if (removed == null)
       {
-         iterator.close();
+         removed = redeliveryDelayHandler.removeReferenceWithID(id1);
       }
+
+      return removed;
    }
 
    public synchronized MessageReference getReference(final long id1)
    {
-      LinkedListIterator<MessageReference> iterator = iterator();
-
-      try
-      {
-
-         while (iterator.hasNext())
-         {
-            MessageReference ref = iterator.next();
-
-            if (ref.getMessage().getMessageID() == id1)
-            {
-               return ref;
-            }
-         }
-
-         return null;
-      }
-      finally
-      {
-         iterator.close();
-      }
+      return findReference(id1);
    }
 
    public long getMessageCount()
@@ -1024,12 +1073,55 @@ public class QueueImpl implements Queue
 
    public synchronized int getScheduledCount()
    {
-      return scheduledDeliveryHandler.getScheduledCount();
+      return scheduledDeliveryHandler.getScheduledCount() + redeliveryDelayHandler.getScheduledCount();
+   }
+
+   public int getDelayedRedeliveryCount()
+   {
+      return redeliveryDelayHandler.getScheduledCount();
    }
 
    public synchronized List<MessageReference> getScheduledMessages()
    {
-      return scheduledDeliveryHandler.getScheduledReferences();
+      List<MessageReference> scheduled = scheduledDeliveryHandler.getScheduledReferences();
+
+      List<MessageReference> redeliveries = redeliveryDelayHandler.getScheduledReferences();
+
+      if (redeliveries.isEmpty())
+      {
+         return scheduled;
+      }
+
+      // both are in delivery order, merged so the list is too
+      List<MessageReference> refs = new ArrayList<MessageReference>(scheduled.size() + redeliveries.size());
+
+      Iterator<MessageReference> scheduledIterator = scheduled.iterator();
+
+      Iterator<MessageReference> redeliveryIterator = redeliveries.iterator();
+
+      MessageReference nextScheduled = scheduledIterator.hasNext() ? scheduledIterator.next() : null;
+
+      MessageReference nextRedelivery = redeliveryIterator.next();
+
+      while (nextScheduled != null || nextRedelivery != null)
+      {
+         // at the same time a redelivery goes first, as it goes back to the head of the queue
+         if (nextScheduled == null ||
+            nextRedelivery != null && nextRedelivery.getScheduledDeliveryTime() <= nextScheduled.getScheduledDeliveryTime())
+         {
+            refs.add(nextRedelivery);
+
+            nextRedelivery = redeliveryIterator.hasNext() ? redeliveryIterator.next() : null;
+         }
+         else
+         {
+            refs.add(nextScheduled);
+
+            nextScheduled = scheduledIterator.hasNext() ? scheduledIterator.next() : null;
+         }
+      }
+
+      return refs;
    }
 
    public Map<String, List<MessageReference>> getDeliveringMessages()
@@ -1167,7 +1259,8 @@ public class QueueImpl implements Queue
    {
       if (checkRedelivery(reference, timeBase, false))
       {
-         if (!scheduledDeliveryHandler.checkAndSchedule(reference, false))
+         if (!redeliveryDelayHandler.checkAndSchedule(reference, false) &&
+            !scheduledDeliveryHandler.checkAndSchedule(reference, false))
          {
             internalAddHead(reference);
          }
@@ -1218,7 +1311,11 @@ public class QueueImpl implements Queue
    @Override
    public List<MessageReference> cancelScheduledMessages()
    {
-      return scheduledDeliveryHandler.cancel(null);
+      List<MessageReference> refs = scheduledDeliveryHandler.cancel(null);
+
+      refs.addAll(redeliveryDelayHandler.cancel(null));
+
+      return refs;
    }
 
    public long getMessagesAdded()
@@ -1313,6 +1410,7 @@ public class QueueImpl implements Queue
 
          if (txCount > 0)
          {
+            messageAction.beforeCommit(tx);
             tx.commit();
 
             tx = new TransactionImpl(storageManager);
@@ -1321,6 +1419,8 @@ public class QueueImpl implements Queue
          }
 
          List<MessageReference> cancelled = scheduledDeliveryHandler.cancel(filter1);
+
+         cancelled.addAll(redeliveryDelayHandler.cancel(filter1));
          for (MessageReference messageReference : cancelled)
          {
             messageAction.actMessage(tx, messageReference);
@@ -1330,6 +1430,7 @@ public class QueueImpl implements Queue
 
          if (txCount > 0)
          {
+            messageAction.beforeCommit(tx);
             tx.commit();
             tx = new TransactionImpl(storageManager);
             txCount = 0;
@@ -1356,6 +1457,7 @@ public class QueueImpl implements Queue
 
                if (txCount > 0 && txCount % flushLimit == 0)
                {
+                  messageAction.beforeCommit(tx);
                   tx.commit();
                   tx = new TransactionImpl(storageManager);
                   txCount = 0;
@@ -1365,6 +1467,7 @@ public class QueueImpl implements Queue
 
          if (txCount > 0)
          {
+            messageAction.beforeCommit(tx);
             tx.commit();
             tx = null;
          }
@@ -1399,38 +1502,28 @@ public class QueueImpl implements Queue
 
       Transaction tx = new TransactionImpl(storageManager);
 
-      LinkedListIterator<MessageReference> iter = iterator();
-      try
-      {
+      MessageReference ref = removeReference(messageID);
 
-         while (iter.hasNext())
-         {
-            MessageReference ref = iter.next();
-            if (ref.getMessage().getMessageID() == messageID)
-            {
-               incDelivering();
-               acknowledge(tx, ref);
-               iter.remove();
-               refRemoved(ref);
-               deleted = true;
-               break;
-            }
-         }
+      if (ref != null)
+      {
+         incDelivering();
+         acknowledge(tx, ref);
+         deleted = true;
+      }
+      else
+      {
+         // Look in scheduled deliveries
+         deleted = scheduledDeliveryHandler.removeReferenceWithID(messageID) != null ? true : false;
 
          if (!deleted)
          {
-            // Look in scheduled deliveries
-            deleted = scheduledDeliveryHandler.removeReferenceWithID(messageID) != null ? true : false;
+            deleted = redeliveryDelayHandler.removeReferenceWithID(messageID) != null;
          }
+      }
 
-         tx.commit();
+      tx.commit();
 
-         return deleted;
-      }
-      finally
-      {
-         iter.close();
-      }
+      return deleted;
    }
 
    public void deleteQueue() throws Exception
@@ -1494,28 +1587,23 @@ public class QueueImpl implements Queue
          return false;
       }
 
-      LinkedListIterator<MessageReference> iter = iterator();
-      try
-      {
+      MessageReference ref = removeReference(messageID);
 
-         while (iter.hasNext())
+      if (ref != null)
+      {
+         incDelivering();
+         try
          {
-            MessageReference ref = iter.next();
-            if (ref.getMessage().getMessageID() == messageID)
-            {
-               incDelivering();
-               expire(ref);
-               iter.remove();
-               refRemoved(ref);
-               return true;
-            }
+            expire(ref);
          }
-         return false;
-      }
-      finally
-      {
-         iter.close();
+         catch (Exception e)
+         {
+            decDelivering();
+            throw e;
+         }
+         return true;
       }
+      return false;
    }
 
    public synchronized int expireReferences(final Filter filter) throws Exception
@@ -1640,28 +1728,23 @@ public class QueueImpl implements Queue
 
    public synchronized boolean sendMessageToDeadLetterAddress(final long messageID) throws Exception
    {
-      LinkedListIterator<MessageReference> iter = iterator();
+      MessageReference ref = removeReference(messageID);
 
-      try
+      if (ref != null)
       {
-         while (iter.hasNext())
+         incDelivering();
+         try
          {
-            MessageReference ref = iter.next();
-            if (ref.getMessage().getMessageID() == messageID)
-            {
-               incDelivering();
-               sendToDeadLetterAddress(ref);
-               iter.remove();
-               refRemoved(ref);
-               return true;
-            }
+            sendToDeadLetterAddress(ref);
          }
-         return false;
-      }
-      finally
-      {
-         iter.close();
+         catch (Exception e)
+         {
+            decDelivering();
+            throw e;
+         }
+         return true;
       }
+      return false;
    }
 
    public synchronized int sendMessagesToDeadLetterAddress(Filter filter) throws Exception
@@ -1700,36 +1783,23 @@ public class QueueImpl implements Queue
                                              final SimpleString toAddress,
                                              final boolean rejectDuplicate) throws Exception
    {
-      LinkedListIterator<MessageReference> iter = iterator();
+      MessageReference ref = removeReference(messageID);
 
-      try
+      if (ref != null)
       {
-         while (iter.hasNext())
+         incDelivering();
+         try
          {
-            MessageReference ref = iter.next();
-            if (ref.getMessage().getMessageID() == messageID)
-            {
-               iter.remove();
-               refRemoved(ref);
-               incDelivering();
-               try
-               {
-                  move(toAddress, ref, false, rejectDuplicate);
-               }
-               catch (Exception e)
-               {
-                  decDelivering();
-                  throw e;
-               }
-               return true;
-            }
+            move(toAddress, ref, false, rejectDuplicate);
          }
-         return false;
-      }
-      finally
-      {
-         iter.close();
+         catch (Exception e)
+         {
+            decDelivering();
+            throw e;
+         }
+         return true;
       }
+      return false;
    }
 
    public int moveReferences(final Filter filter, final SimpleString toAddress) throws Exception
@@ -1746,6 +1816,9 @@ public class QueueImpl implements Queue
 
       return iterQueue(flushLimit, filter, new QueueIterateAction()
       {
+         // the copies are routed in batches
+         private final List<ServerMessage> copies = new ArrayList<ServerMessage>();
+
          @Override
          public void actMessage(Transaction tx, MessageReference ref) throws Exception
          {
@@ -1769,7 +1842,34 @@ public class QueueImpl implements Queue
 
             if (!ignored)
             {
-               move(toAddress, tx, ref, false, rejectDuplicates);
+               ServerMessage copyMessage = makeCopy(ref, false);
+
+               copyMessage.setAddress(toAddress);
+
+               copies.add(copyMessage);
+
+               acknowledge(tx, ref);
+
+               if (copies.size() >= flushLimit)
+               {
+                  route(tx);
+               }
+            }
+         }
+
+         @Override
+         public void beforeCommit(Transaction tx) throws Exception
+         {
+            route(tx);
+         }
+
+         private void route(final Transaction tx) throws Exception
+         {
+            if (!copies.isEmpty())
+            {
+               postOffice.route(copies, tx, false, rejectDuplicates);
+
+               copies.clear();
             }
          }
       });
@@ -1789,30 +1889,16 @@ public class QueueImpl implements Queue
 
    public synchronized boolean changeReferencePriority(final long messageID, final byte newPriority) throws Exception
    {
-      LinkedListIterator<MessageReference> iter = iterator();
-
-      try
-      {
-
-         while (iter.hasNext())
-         {
-            MessageReference ref = iter.next();
-            if (ref.getMessage().getMessageID() == messageID)
-            {
-               iter.remove();
-               refRemoved(ref);
-               ref.getMessage().setPriority(newPriority);
-               addTail(ref, false);
-               return true;
-            }
-         }
+      MessageReference ref = removeReference(messageID);
 
-         return false;
-      }
-      finally
+      if (ref != null)
       {
-         iter.close();
+         ref.getMessage().setPriority(newPriority);
+         addTail(ref, false);
+         return true;
       }
+
+      return false;
    }
 
    public synchronized int changeReferencesPriority(final Filter filter, final byte newPriority) throws Exception
@@ -1982,6 +2068,12 @@ public class QueueImpl implements Queue
 
       doInternalPoll();
 
+      if (readyConsumerDelivery)
+      {
+         deliverToReadyConsumers();
+         return;
+      }
+
       // Either the iterator is empty or the consumer is busy
       int noDelivery = 0;
 
@@ -2189,7 +2281,277 @@ public class QueueImpl implements Queue
       checkDepage();
    }
 
-   private void checkDepage()
+   /**
+    * {@link #deliver()} for the queues with ready-consumer-delivery. Only the consumers in {@link #readyConsumers} are
+    * visited, in the same round robin order. A consumer leaves the set when it is busy and comes back when it calls
+    * {@link #deliverAsync(Consumer)}, so the busy consumers of a queue with thousands of them cost nothing.
+    */
+   private void deliverToReadyConsumers()
+   {
+      // The visits in a row to consumers that had nothing to take
+      int idle = 0;
+
+      int handled = 0;
+
+      long timeout = System.currentTimeMillis() + DELIVERY_TIMEOUT;
+
+      synchronized (this)
+      {
+         updateReadyConsumers();
+
+         probeBusyConsumer();
+      }
+
+      while (true)
+      {
+         if (handled == MAX_DELIVERIES_IN_LOOP)
+         {
+            deliverAsync();
+
+            return;
+         }
+
+         if (System.currentTimeMillis() > timeout)
+         {
+            if (isTrace)
+            {
+               HornetQServerLogger.LOGGER.trace("delivery has been running for too long. Scheduling another delivery task now");
+            }
+
+            deliverAsync();
+
+            return;
+         }
+
+         MessageReference ref;
+
+         Consumer handledconsumer = null;
+
+         synchronized (this)
+         {
+            if (paused || consumerList.isEmpty())
+            {
+               return;
+            }
+
+            if (messageReferences.size() == 0)
+            {
+               break;
+            }
+
+            updateReadyConsumers();
+
+            int ready = readyConsumers.cardinality();
+
+            if (ready == 0 || idle >= ready)
+            {
+               if (HornetQServerLogger.LOGGER.isDebugEnabled())
+               {
+                  HornetQServerLogger.LOGGER.debug(this + "::All the ready consumers were busy, giving up now");
+               }
+               break;
+            }
+
+            pos = nextReadyConsumer(pos);
+
+            ConsumerHolder holder = consumerList.get(pos);
+
+            Consumer consumer = holder.consumer;
+            Consumer groupConsumer = null;
+
+            if (holder.iter == null)
+            {
+               holder.iter = messageReferences.iterator();
+            }
+
+            ref = holder.iter.hasNext() ? holder.iter.next() : null;
+
+            HandleStatus status = null;
+
+            if (ref == null)
+            {
+               idle++;
+            }
+            else
+            {
+               if (checkExpired(ref))
+               {
+                  if (isTrace)
+                  {
+                     HornetQServerLogger.LOGGER.trace("Reference " + ref + " being expired");
+                  }
+                  holder.iter.remove();
+
+                  refRemoved(ref);
+
+                  handled++;
+
+                  continue;
+               }
+
+               if (isTrace)
+               {
+                  HornetQServerLogger.LOGGER.trace("Queue " + this.getName() + " is delivering reference " + ref);
+               }
+
+               // If a group id is set, then this overrides the consumer chosen round-robin
+
+               SimpleString groupID = extractGroupID(ref);
+
+               if (groupID != null)
+               {
+                  groupConsumer = groups.get(groupID);
+
+                  if (groupConsumer != null)
+                  {
+                     consumer = groupConsumer;
+                  }
+               }
+
+               status = handle(ref, consumer);
+
+               if (status == HandleStatus.HANDLED)
+               {
+                  deliveriesInTransit.countUp();
+
+                  handledconsumer = consumer;
+
+                  holder.iter.remove();
+
+                  refRemoved(ref);
+
+                  if (groupID != null && groupConsumer == null)
+                  {
+                     groups.put(groupID, consumer);
+                  }
+
+                  handled++;
+
+                  idle = 0;
+               }
+               else if (status == HandleStatus.BUSY)
+               {
+                  holder.iter.repeat();
+
+                  consumerBusy(consumer);
+
+                  if (groupConsumer != null)
+                  {
+                     // this consumer is stuck behind the group's message until the group's consumer is ready
+                     idle++;
+                  }
+               }
+            }
+
+            // When using group we don't need to load balance to the next position, unless its consumer was busy
+            if (groupConsumer == null || status == HandleStatus.BUSY)
+            {
+               pos++;
+            }
+
+            if (pos >= consumerList.size())
+            {
+               pos = 0;
+            }
+         }
+
+         if (handledconsumer != null)
+         {
+            proceedDeliver(handledconsumer, ref);
+         }
+      }
+
+      checkDepage();
+   }
+
+   /**
+    * Rebuilds the ready consumers when the consumers changed, every consumer being ready then, or adds the ones that
+    * got ready since the last call. Called holding the lock.
+    */
+   private void updateReadyConsumers()
+   {
+      if (consumersChanged)
+      {
+         consumersChanged = false;
+
+         consumersGettingReady.clear();
+
+         consumerPositions.clear();
+
+         readyConsumers.clear();
+
+         for (int i = 0; i < consumerList.size(); i++)
+         {
+            consumerPositions.put(consumerList.get(i).consumer, i);
+         }
+
+         readyConsumers.set(0, consumerList.size());
+
+         if (pos >= consumerList.size())
+         {
+            pos = 0;
+         }
+
+         return;
+      }
+
+      Consumer consumer;
+
+      while ((consumer = consumersGettingReady.poll()) != null)
+      {
+         Integer position = consumerPositions.get(consumer);
+
+         if (position != null)
+         {
+            readyConsumers.set(position);
+         }
+      }
+   }
+
+   /**
+    * A consumer could get ready without calling {@link #deliverAsync(Consumer)}, so every delivery gives one of the
+    * busy consumers another chance. Called holding the lock.
+    */
+   private void probeBusyConsumer()
+   {
+      int size = consumerList.size();
+
+      int busy = readyConsumers.nextClearBit(busyConsumerProbe);
+
+      if (busy >= size)
+      {
+         busy = readyConsumers.nextClearBit(0);
+      }
+
+      if (busy < size)
+      {
+         readyConsumers.set(busy);
+
+         busyConsumerProbe = busy + 1;
+      }
+   }
+
+   /**
+    * @return the position of the first ready consumer from {@code start}, wrapping around, -1 if none is ready
+    */
+   private int nextReadyConsumer(final int start)
+   {
+      int next = readyConsumers.nextSetBit(start);
+
+      return next >= 0 ? next : readyConsumers.nextSetBit(0);
+   }
+
+   private void consumerBusy(final Consumer consumer)
+   {
+      Integer position = consumerPositions.get(consumer);
+
+      if (position != null)
+      {
+         readyConsumers.clear(position);
+      }
+   }
+
+   private void checkDepage()
    {
       if (pageIterator != null && pageSubscription.isPaging() && !depagePending && needsDepage() && pageIterator.hasNext())
       {
@@ -2206,7 +2568,17 @@ public class QueueImpl implements Queue
     */
    private boolean needsDepage()
    {
-      return queueMemorySize.get() < pageSubscription.getPagingStore().getMaxSize();
+      PagingStore store = pageSubscription.getPagingStore();
+
+      long maxSize = store.getMaxSize();
+
+      if (maxSize <= 0)
+      {
+         // paging was started by the global max size, a page worth of messages is kept in memory
+         maxSize = store.getPageSizeBytes();
+      }
+
+      return queueMemorySize.get() < maxSize;
    }
 
    private SimpleString extractGroupID(MessageReference ref)
@@ -2675,6 +3047,11 @@ public class QueueImpl implements Queue
             return true;
          }
 
+         if (readyConsumerDelivery)
+         {
+            return deliverDirectToReadyConsumer(ref);
+         }
+
          int startPos = pos;
 
          int size = consumerList.size();
@@ -2738,6 +3115,77 @@ public class QueueImpl implements Queue
       }
    }
 
+   /**
+    * {@link #deliverDirect(MessageReference)} for the queues with ready-consumer-delivery, called holding the lock.
+    */
+   private boolean deliverDirectToReadyConsumer(final MessageReference ref)
+   {
+      updateReadyConsumers();
+
+      // every consumer ready when we started gets a chance, those with a filter not matching stay ready
+      int attempts = readyConsumers.cardinality();
+
+      while (attempts-- > 0 && !readyConsumers.isEmpty())
+      {
+         pos = nextReadyConsumer(pos);
+
+         Consumer consumer = consumerList.get(pos).consumer;
+
+         Consumer groupConsumer = null;
+
+         SimpleString groupID = extractGroupID(ref);
+
+         if (groupID != null)
+         {
+            groupConsumer = groups.get(groupID);
+
+            if (groupConsumer != null)
+            {
+               consumer = groupConsumer;
+            }
+         }
+
+         if (groupConsumer == null)
+         {
+            pos++;
+         }
+
+         if (pos == consumerList.size())
+         {
+            pos = 0;
+         }
+
+         HandleStatus status = handle(ref, consumer);
+
+         if (status == HandleStatus.HANDLED)
+         {
+            if (groupID != null && groupConsumer == null)
+            {
+               groups.put(groupID, consumer);
+            }
+
+            messagesAdded++;
+
+            deliveriesInTransit.countUp();
+            proceedDeliver(consumer, ref);
+            return true;
+         }
+
+         if (status == HandleStatus.BUSY)
+         {
+            consumerBusy(consumer);
+
+            if (groupConsumer != null)
+            {
+               // only the group's consumer can take it
+               return false;
+            }
+         }
+      }
+
+      return false;
+   }
+
    private void proceedDeliver(Consumer consumer, MessageReference reference)
    {
       try
@@ -3037,6 +3485,13 @@ public class QueueImpl implements Queue
    abstract class QueueIterateAction
    {
       public abstract void actMessage(Transaction tx, MessageReference ref) throws Exception;
+
+      /**
+       * Called before committing the transaction the messages were acted on with
+       */
+      public void beforeCommit(Transaction tx) throws Exception
+      {
+      }
    }
 
    /* For external use we need to use a synchronized version since the list is not thread safe */
@@ -3175,6 +3630,55 @@ public class QueueImpl implements Queue
       this.expiryAddress = settings == null ? null : settings.getExpiryAddress();
    }
 
+   private void configureMessageIDIndex(final AddressSettings settings)
+   {
+      boolean enabled = settings != null && settings.isMessageIDIndex();
+
+      if (enabled == messageIDIndex)
+      {
+         return;
+      }
+
+      messageIDIndex = enabled;
+
+      // Not applied right away as the repository calls this while holding its own lock
+      getExecutor().execute(new Runnable()
+      {
+         public void run()
+         {
+            synchronized (QueueImpl.this)
+            {
+               messageReferences.setIDIndex(messageIDIndex);
+            }
+         }
+      });
+   }
+
+   /**
+    * Looks up a message on messageReferences, in constant time if the queue is indexed by message ID.
+    * It must be called while holding the queue lock.
+    */
+   private MessageReference findReference(final long messageID)
+   {
+      return messageReferences.getWithID(messageID);
+   }
+
+   /**
+    * Removes a message from messageReferences, in constant time if the queue is indexed by message ID.
+    * It must be called while holding the queue lock.
+    */
+   private MessageReference removeReference(final long messageID)
+   {
+      MessageReference ref = messageReferences.removeWithID(messageID);
+
+      if (ref != null)
+      {
+         refRemoved(ref);
+      }
+
+      return ref;
+   }
+
    private void configureSlowConsumerReaper(final AddressSettings settings)
    {
       if (settings == null || settings.getSlowConsumerThreshold() == AddressSettings.DEFAULT_SLOW_CONSUMER_THRESHOLD)
@@ -3234,6 +3738,7 @@ public class QueueImpl implements Queue
          AddressSettings settings = addressSettingsRepository.getMatch(address.toString());
          configureExpiry(settings);
          configureSlowConsumerReaper(settings);
+         configureMessageIDIndex(settings);
       }
    }
 
@@ -0,0 +1,336 @@
+/*
+ * Copyright 2005-2014 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.hornetq.core.server.impl;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.hornetq.core.filter.Filter;
+import org.hornetq.core.server.HornetQServerLogger;
+import org.hornetq.core.server.MessageReference;
+import org.hornetq.core.server.Queue;
+import org.hornetq.core.server.ScheduledDeliveryHandler;
+
+/**
+ * Holds the references of a queue waiting for their redelivery delay, instead of scheduling each of them on a
+ * {@link ScheduledDeliveryHandlerImpl}.
+ * <p/>
+ * The references are kept in a FIFO per backoff level, their delivery count: references of the same level are
+ * cancelled with the same delay, so each FIFO is in delivery time order and adding a reference is an append. A single
+ * task is scheduled at a time, for the earliest due reference. It gives the queue all the references due by then in
+ * one {@link Queue#addHead(java.util.List)} and schedules itself again for the next one, so an outage making millions
+ * of messages go back with a delay doesn't schedule millions of tasks.
+ * <p/>
+ * References that aren't redeliveries (never delivered) and references due before the last one of their level, as
+ * when the redelivery delay was changed, are left for the scheduled delivery handler of the queue.
+ */
+public class RedeliveryDelayHandler implements ScheduledDeliveryHandler
+{
+   private static final boolean trace = HornetQServerLogger.LOGGER.isTraceEnabled();
+
+   private static final Comparator<MessageReference> DELIVERY_TIME_ORDER = new Comparator<MessageReference>()
+   {
+      public int compare(final MessageReference ref1, final MessageReference ref2)
+      {
+         long time1 = ref1.getScheduledDeliveryTime();
+         long time2 = ref2.getScheduledDeliveryTime();
+         return time1 < time2 ? -1 : time1 == time2 ? 0 : 1;
+      }
+   };
+
+   private final Queue queue;
+
+   private final ScheduledExecutorService scheduledExecutor;
+
+   // guarded by this
+   private final Map<Integer, ArrayDeque<MessageReference>> levels = new HashMap<Integer, ArrayDeque<MessageReference>>();
+
+   private int count;
+
+   private Redelivery pending;
+
+   public RedeliveryDelayHandler(final Queue queue, final ScheduledExecutorService scheduledExecutor)
+   {
+      this.queue = queue;
+      this.scheduledExecutor = scheduledExecutor;
+   }
+
+   public boolean checkAndSchedule(final MessageReference ref, final boolean tail)
+   {
+      long deliveryTime = ref.getScheduledDeliveryTime();
+
+      if (deliveryTime <= 0 || ref.getDeliveryCount() == 0 || scheduledExecutor == null)
+      {
+         return false;
+      }
+
+      synchronized (this)
+      {
+         ArrayDeque<MessageReference> level = levels.get(ref.getDeliveryCount());
+
+         if (level == null)
+         {
+            level = new ArrayDeque<MessageReference>();
+            levels.put(ref.getDeliveryCount(), level);
+         }
+         else if (!level.isEmpty() && level.peekLast().getScheduledDeliveryTime() > deliveryTime)
+         {
+            // it would have to wait for the ones before it
+            return false;
+         }
+
+         level.add(ref);
+
+         count++;
+
+         if (trace)
+         {
+            HornetQServerLogger.LOGGER.trace("Delaying the redelivery of " + ref + " to " + deliveryTime);
+         }
+
+         if (pending == null || deliveryTime < pending.deliveryTime)
+         {
+            schedule(deliveryTime);
+         }
+      }
+
+      return true;
+   }
+
+   public synchronized int getScheduledCount()
+   {
+      return count;
+   }
+
+   public List<MessageReference> getScheduledReferences()
+   {
+      List<MessageReference> refs = new ArrayList<MessageReference>();
+
+      synchronized (this)
+      {
+         for (ArrayDeque<MessageReference> level : levels.values())
+         {
+            refs.addAll(level);
+         }
+      }
+
+      return inDeliveryOrder(refs);
+   }
+
+   public List<MessageReference> cancel(final Filter filter)
+   {
+      List<MessageReference> refs = new ArrayList<MessageReference>();
+
+      synchronized (this)
+      {
+         Iterator<ArrayDeque<MessageReference>> levelIterator = levels.values().iterator();
+
+         while (levelIterator.hasNext())
+         {
+            ArrayDeque<MessageReference> level = levelIterator.next();
+
+            Iterator<MessageReference> iterator = level.iterator();
+
+            while (iterator.hasNext())
+            {
+               MessageReference ref = iterator.next();
+
+               if (filter == null || filter.match(ref.getMessage()))
+               {
+                  iterator.remove();
+                  refs.add(ref);
+                  count--;
+               }
+            }
+
+            if (level.isEmpty())
+            {
+               levelIterator.remove();
+            }
+         }
+      }
+
+      return inDeliveryOrder(refs);
+   }
+
+   public synchronized MessageReference removeReferenceWithID(final long id)
+   {
+      Iterator<ArrayDeque<MessageReference>> levelIterator = levels.values().iterator();
+
+      while (levelIterator.hasNext())
+      {
+         ArrayDeque<MessageReference> level = levelIterator.next();
+
+         Iterator<MessageReference> iterator = level.iterator();
+
+         while (iterator.hasNext())
+         {
+            MessageReference ref = iterator.next();
+
+            if (ref.getMessage().getMessageID() == id)
+            {
+               iterator.remove();
+
+               count--;
+
+               if (level.isEmpty())
+               {
+                  levelIterator.remove();
+               }
+
+               return ref;
+            }
+         }
+      }
+
+      return null;
+   }
+
+   // Private -------------------------------------------------------
+
+   private void schedule(final long deliveryTime)
+   {
+      if (pending != null)
+      {
+         pending.future.cancel(false);
+      }
+
+      pending = new Redelivery(deliveryTime);
+
+      pending.future = scheduledExecutor.schedule(pending,
+                                                  Math.max(0, deliveryTime - System.currentTimeMillis()),
+                                                  TimeUnit.MILLISECONDS);
+   }
+
+   /**
+    * Removes the references due at {@code now}, in the order they are to be delivered.
+    */
+   private List<MessageReference> pollDue(final long now)
+   {
+      List<MessageReference> due = new ArrayList<MessageReference>();
+
+      Iterator<ArrayDeque<MessageReference>> levelIterator = levels.values().iterator();
+
+      while (levelIterator.hasNext())
+      {
+         ArrayDeque<MessageReference> level = levelIterator.next();
+
+         while (!level.isEmpty() && level.peekFirst().getScheduledDeliveryTime() <= now)
+         {
+            due.add(level.pollFirst());
+            count--;
+         }
+
+         if (level.isEmpty())
+         {
+            levelIterator.remove();
+         }
+      }
+
+      return inDeliveryOrder(due);
+   }
+
+   /**
+    * Sorts references taken from the levels in their order.
+    */
+   private static List<MessageReference> inDeliveryOrder(final List<MessageReference> refs)
+   {
+      // like the other references going back to the head, the last one cancelled at a given time goes first
+      Collections.reverse(refs);
+
+      Collections.sort(refs, DELIVERY_TIME_ORDER);
+
+      return refs;
+   }
+
+   private long nextDeliveryTime()
+   {
+      long next = Long.MAX_VALUE;
+
+      for (ArrayDeque<MessageReference> level : levels.values())
+      {
+         next = Math.min(next, level.peekFirst().getScheduledDeliveryTime());
+      }
+
+      return next;
+   }
+
+   private final class Redelivery implements Runnable
+   {
+      final long deliveryTime;
+
+      ScheduledFuture<?> future;
+
+      Redelivery(final long deliveryTime)
+      {
+         this.deliveryTime = deliveryTime;
+      }
+
+      public void run()
+      {
+         List<MessageReference> due;
+
+         synchronized (RedeliveryDelayHandler.this)
+         {
+            if (pending != this)
+            {
+               // replaced by an earlier one
+               return;
+            }
+
+            pending = null;
+
+            due = pollDue(System.currentTimeMillis());
+
+            long next = nextDeliveryTime();
+
+            if (next != Long.MAX_VALUE)
+            {
+               schedule(next);
+            }
+         }
+
+         if (due.isEmpty())
+         {
+            return;
+         }
+
+         // addHead puts each reference in front of the previous one
+         LinkedList<MessageReference> refs = new LinkedList<MessageReference>();
+
+         for (MessageReference ref : due)
+         {
+            ref.setScheduledDeliveryTime(0);
+
+            refs.addFirst(ref);
+         }
+
+         if (trace)
+         {
+            HornetQServerLogger.LOGGER.trace("Redelivering " + refs.size() + " references on queue " + queue);
+         }
+
+         queue.addHead(refs);
+      }
+   }
+}
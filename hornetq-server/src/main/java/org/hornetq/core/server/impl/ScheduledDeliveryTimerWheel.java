@@ -0,0 +1,513 @@
+/*
+ * Copyright 2005-2014 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.hornetq.core.server.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.hornetq.core.filter.Filter;
+import org.hornetq.core.server.HornetQComponent;
+import org.hornetq.core.server.HornetQServerLogger;
+import org.hornetq.core.server.MessageReference;
+import org.hornetq.core.server.Queue;
+import org.hornetq.core.server.ScheduledDeliveryHandler;
+
+/**
+ * A hashed timer wheel holding the scheduled references of all the queues of a server, an alternative to a
+ * {@link ScheduledDeliveryHandlerImpl} per queue when there are many scheduled messages.
+ * <p/>
+ * Time is cut in ticks of {@code tickMillis} and a reference goes in the bucket of the first tick at or after its
+ * delivery time, so adding or removing one is a couple of links whatever the number scheduled, and the only task on
+ * the scheduled executor is the tick. A reference is delivered by the first tick it is due at, up to a tick late but
+ * never early, and the references due on a tick are handed to each of their queues in one
+ * {@link Queue#addHead(LinkedList)}. A reference scheduled further than a turn of the wheel stays in its bucket until
+ * the turn it is due.
+ * <p/>
+ * Each queue gets a {@link ScheduledDeliveryHandler} from {@link #createHandler()}, which keeps the references of the
+ * queue linked together for management, and delivers them in the same order as a {@link ScheduledDeliveryHandlerImpl}.
+ */
+public final class ScheduledDeliveryTimerWheel implements HornetQComponent
+{
+   private static final boolean trace = HornetQServerLogger.LOGGER.isTraceEnabled();
+
+   public static final int DEFAULT_WHEEL_SIZE = 1024;
+
+   private static final Comparator<Timeout> DELIVERY_ORDER = new Comparator<Timeout>()
+   {
+      public int compare(final Timeout t1, final Timeout t2)
+      {
+         if (t1.deliveryTime != t2.deliveryTime)
+         {
+            return t1.deliveryTime < t2.deliveryTime ? -1 : 1;
+         }
+
+         if (t1.tail != t2.tail)
+         {
+            return t1.tail ? 1 : -1;
+         }
+
+         // the last reference added to the head goes first, the first one added to the tail goes first
+         if (t1.tail)
+         {
+            return t1.sequence < t2.sequence ? -1 : t1.sequence == t2.sequence ? 0 : 1;
+         }
+
+         return t1.sequence > t2.sequence ? -1 : t1.sequence == t2.sequence ? 0 : 1;
+      }
+   };
+
+   private final ScheduledExecutorService scheduledExecutor;
+
+   private final long tickMillis;
+
+   private final int mask;
+
+   // guarded by this
+   private final Timeout[] buckets;
+
+   private long lastTick;
+
+   private long sequence;
+
+   private int size;
+
+   private ScheduledFuture<?> future;
+
+   public ScheduledDeliveryTimerWheel(final ScheduledExecutorService scheduledExecutor, final long tickMillis)
+   {
+      this(scheduledExecutor, tickMillis, DEFAULT_WHEEL_SIZE);
+   }
+
+   /**
+    * @param wheelSize the number of buckets, rounded up to a power of 2
+    */
+   public ScheduledDeliveryTimerWheel(final ScheduledExecutorService scheduledExecutor,
+                                      final long tickMillis,
+                                      final int wheelSize)
+   {
+      if (tickMillis <= 0)
+      {
+         throw new IllegalArgumentException("tickMillis must be greater than 0");
+      }
+
+      this.scheduledExecutor = scheduledExecutor;
+
+      this.tickMillis = tickMillis;
+
+      int buckets = Integer.highestOneBit(Math.max(1, wheelSize - 1)) << 1;
+
+      this.buckets = new Timeout[buckets];
+
+      this.mask = buckets - 1;
+
+      this.lastTick = System.currentTimeMillis() / tickMillis;
+   }
+
+   public synchronized void start()
+   {
+      if (future != null)
+      {
+         return;
+      }
+
+      future = scheduledExecutor.scheduleAtFixedRate(new Runnable()
+      {
+         public void run()
+         {
+            try
+            {
+               tick(System.currentTimeMillis());
+            }
+            catch (Throwable e)
+            {
+               HornetQServerLogger.LOGGER.warn(e.getMessage(), e);
+            }
+         }
+      }, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+   }
+
+   public synchronized void stop()
+   {
+      if (future != null)
+      {
+         future.cancel(false);
+
+         future = null;
+      }
+   }
+
+   public synchronized boolean isStarted()
+   {
+      return future != null;
+   }
+
+   public ScheduledDeliveryHandler createHandler()
+   {
+      return new Handler();
+   }
+
+   public long getTickMillis()
+   {
+      return tickMillis;
+   }
+
+   public synchronized int getScheduledCount()
+   {
+      return size;
+   }
+
+   /**
+    * Delivers the references due at {@code now}, also covering the ticks missed since the last call.
+    */
+   void tick(final long now)
+   {
+      final long nowTick = now / tickMillis;
+
+      List<Timeout> expired = null;
+
+      synchronized (this)
+      {
+         if (nowTick <= lastTick)
+         {
+            return;
+         }
+
+         // a whole turn of the wheel already visits every bucket
+         long from = Math.max(lastTick + 1, nowTick - mask);
+
+         lastTick = nowTick;
+
+         if (size == 0)
+         {
+            return;
+         }
+
+         for (long tick = from; tick <= nowTick; tick++)
+         {
+            Timeout timeout = buckets[(int) (tick & mask)];
+
+            while (timeout != null)
+            {
+               Timeout next = timeout.next;
+
+               if (timeout.deadline <= nowTick)
+               {
+                  remove(timeout);
+
+                  if (expired == null)
+                  {
+                     expired = new ArrayList<Timeout>();
+                  }
+
+                  expired.add(timeout);
+               }
+
+               timeout = next;
+            }
+         }
+      }
+
+      if (expired != null)
+      {
+         deliver(expired);
+      }
+   }
+
+   // Private -------------------------------------------------------
+
+   private void deliver(final List<Timeout> expired)
+   {
+      Map<Queue, List<Timeout>> perQueue = new HashMap<Queue, List<Timeout>>();
+
+      for (Timeout timeout : expired)
+      {
+         Queue queue = timeout.ref.getQueue();
+
+         List<Timeout> timeouts = perQueue.get(queue);
+
+         if (timeouts == null)
+         {
+            timeouts = new ArrayList<Timeout>();
+            perQueue.put(queue, timeouts);
+         }
+
+         timeouts.add(timeout);
+      }
+
+      for (Map.Entry<Queue, List<Timeout>> entry : perQueue.entrySet())
+      {
+         List<Timeout> timeouts = entry.getValue();
+
+         Collections.sort(timeouts, DELIVERY_ORDER);
+
+         // addHead puts each reference in front of the previous one
+         LinkedList<MessageReference> refs = new LinkedList<MessageReference>();
+
+         for (Timeout timeout : timeouts)
+         {
+            timeout.ref.setScheduledDeliveryTime(0);
+
+            refs.addFirst(timeout.ref);
+         }
+
+         if (trace)
+         {
+            HornetQServerLogger.LOGGER.trace("Delivering " + refs.size() + " scheduled references to queue " + entry.getKey());
+         }
+
+         entry.getKey().addHead(refs);
+      }
+   }
+
+   private synchronized void add(final Timeout timeout)
+   {
+      // the first tick not before the delivery time, or the next one when it is already due
+      long deadline = (timeout.deliveryTime + tickMillis - 1) / tickMillis;
+
+      timeout.deadline = Math.max(deadline, lastTick + 1);
+
+      timeout.sequence = sequence++;
+
+      int bucket = (int) (timeout.deadline & mask);
+
+      timeout.next = buckets[bucket];
+
+      if (timeout.next != null)
+      {
+         timeout.next.prev = timeout;
+      }
+
+      buckets[bucket] = timeout;
+
+      timeout.handler.link(timeout);
+
+      size++;
+   }
+
+   private void remove(final Timeout timeout)
+   {
+      if (timeout.prev == null)
+      {
+         buckets[(int) (timeout.deadline & mask)] = timeout.next;
+      }
+      else
+      {
+         timeout.prev.next = timeout.next;
+      }
+
+      if (timeout.next != null)
+      {
+         timeout.next.prev = timeout.prev;
+      }
+
+      timeout.prev = null;
+
+      timeout.next = null;
+
+      timeout.handler.unlink(timeout);
+
+      size--;
+   }
+
+   /**
+    * A scheduled reference, linked in its bucket and with the other references of its queue.
+    */
+   private static final class Timeout
+   {
+      final Handler handler;
+
+      final MessageReference ref;
+
+      final long deliveryTime;
+
+      final boolean tail;
+
+      long deadline;
+
+      long sequence;
+
+      Timeout prev;
+
+      Timeout next;
+
+      Timeout queuePrev;
+
+      Timeout queueNext;
+
+      Timeout(final Handler handler, final MessageReference ref, final long deliveryTime, final boolean tail)
+      {
+         this.handler = handler;
+         this.ref = ref;
+         this.deliveryTime = deliveryTime;
+         this.tail = tail;
+      }
+   }
+
+   private final class Handler implements ScheduledDeliveryHandler
+   {
+      // guarded by the wheel
+      private Timeout head;
+
+      private int count;
+
+      public boolean checkAndSchedule(final MessageReference ref, final boolean tail)
+      {
+         long deliveryTime = ref.getScheduledDeliveryTime();
+
+         if (deliveryTime <= 0)
+         {
+            return false;
+         }
+
+         if (trace)
+         {
+            HornetQServerLogger.LOGGER.trace("Scheduling delivery for " + ref + " to occur at " + deliveryTime);
+         }
+
+         add(new Timeout(this, ref, deliveryTime, tail));
+
+         return true;
+      }
+
+      public int getScheduledCount()
+      {
+         synchronized (ScheduledDeliveryTimerWheel.this)
+         {
+            return count;
+         }
+      }
+
+      public List<MessageReference> getScheduledReferences()
+      {
+         List<Timeout> timeouts = new ArrayList<Timeout>();
+
+         synchronized (ScheduledDeliveryTimerWheel.this)
+         {
+            for (Timeout timeout = head; timeout != null; timeout = timeout.queueNext)
+            {
+               timeouts.add(timeout);
+            }
+         }
+
+         return sortedReferences(timeouts);
+      }
+
+      public List<MessageReference> cancel(final Filter filter)
+      {
+         List<Timeout> timeouts = new ArrayList<Timeout>();
+
+         synchronized (ScheduledDeliveryTimerWheel.this)
+         {
+            Timeout timeout = head;
+
+            while (timeout != null)
+            {
+               Timeout next = timeout.queueNext;
+
+               if (filter == null || filter.match(timeout.ref.getMessage()))
+               {
+                  remove(timeout);
+                  timeouts.add(timeout);
+               }
+
+               timeout = next;
+            }
+         }
+
+         return sortedReferences(timeouts);
+      }
+
+      public MessageReference removeReferenceWithID(final long id)
+      {
+         synchronized (ScheduledDeliveryTimerWheel.this)
+         {
+            for (Timeout timeout = head; timeout != null; timeout = timeout.queueNext)
+            {
+               if (timeout.ref.getMessage().getMessageID() == id)
+               {
+                  remove(timeout);
+                  return timeout.ref;
+               }
+            }
+         }
+
+         return null;
+      }
+
+      private List<MessageReference> sortedReferences(final List<Timeout> timeouts)
+      {
+         Collections.sort(timeouts, DELIVERY_ORDER);
+
+         List<MessageReference> refs = new ArrayList<MessageReference>(timeouts.size());
+
+         for (Timeout timeout : timeouts)
+         {
+            refs.add(timeout.ref);
+         }
+
+         return refs;
+      }
+
+      void link(final Timeout timeout)
+      {
+         timeout.queueNext = head;
+
+         if (head != null)
+         {
+            head.queuePrev = timeout;
+         }
+
+         head = timeout;
+
+         count++;
+      }
+
+      void unlink(final Timeout timeout)
+      {
+         if (timeout.queuePrev == null)
+         {
+            head = timeout.queueNext;
+         }
+         else
+         {
+            timeout.queuePrev.queueNext = timeout.queueNext;
+         }
+
+         if (timeout.queueNext != null)
+         {
+            timeout.queueNext.queuePrev = timeout.queuePrev;
+         }
+
+         timeout.queuePrev = null;
+
+         timeout.queueNext = null;
+
+         count--;
+      }
+   }
+
+   @Override
+   public synchronized String toString()
+   {
+      return "ScheduledDeliveryTimerWheel(tickMillis=" + tickMillis + ", buckets=" + buckets.length + ", scheduled=" +
+         size + ")";
+   }
+}
@@ -963,7 +963,7 @@ public class ServerConsumerImpl implements ServerConsumer, ReadyListener
       }
       else
       {
-         messageQueue.deliverAsync();
+         messageQueue.deliverAsync(this);
       }
    }
 
@@ -39,6 +39,7 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicLong;
 
 import org.hornetq.api.core.HornetQException;
+import org.hornetq.api.core.HornetQInternalErrorException;
 import org.hornetq.api.core.HornetQNonExistentQueueException;
 import org.hornetq.api.core.Message;
 import org.hornetq.api.core.Pair;
@@ -105,6 +106,11 @@ public class ServerSessionImpl implements ServerSession, FailureListener
 
    private static final boolean isTrace = HornetQServerLogger.LOGGER.isTraceEnabled();
 
+   /**
+    * How many sends of a local transaction are routed together, 0 routes each send on its own
+    */
+   private static final int SEND_BATCH_SIZE = Integer.getInteger("org.hornetq.opt.sendBatchSize", 100);
+
    // Static -------------------------------------------------------------------------------
 
    // Attributes ----------------------------------------------------------------------------
@@ -156,6 +162,12 @@ public class ServerSessionImpl implements ServerSession, FailureListener
 
    protected final RoutingContext routingContext = new RoutingContextImpl(null);
 
+   // The sends of the transaction not routed yet, routed together when there are SEND_BATCH_SIZE of them or before
+   // the transaction or the session goes on without them
+   private final List<ServerMessage> pendingSends = new ArrayList<ServerMessage>();
+
+   private boolean pendingSendsDirect;
+
    protected final SessionCallback callback;
 
    private volatile SimpleString defaultAddress;
@@ -837,6 +849,16 @@ public class ServerSessionImpl implements ServerSession, FailureListener
       {
          if (tx != null)
          {
+            try
+            {
+               routePendingSends();
+            }
+            catch (Exception e)
+            {
+               tx.rollback();
+               throw e;
+            }
+
             tx.commit();
          }
       }
@@ -865,6 +887,9 @@ public class ServerSessionImpl implements ServerSession, FailureListener
     */
    private synchronized void rollback(final boolean clientFailed, final boolean considerLastMessageAsDelivered) throws Exception
    {
+      // never routed, so there is nothing to undo
+      pendingSends.clear();
+
       if (tx == null)
       {
          // Might be null if XA
@@ -1831,6 +1856,30 @@ public class ServerSessionImpl implements ServerSession, FailureListener
          throw e;
       }
 
+      if (tx != null && !autoCommitSends && !xa && SEND_BATCH_SIZE > 0 && !msg.isLargeMessage())
+      {
+         if (pendingSendsDirect != direct)
+         {
+            routePendingSends();
+
+            pendingSendsDirect = direct;
+         }
+
+         pendingSends.add(msg);
+
+         addTargetAddressInfo(msg);
+
+         if (pendingSends.size() >= SEND_BATCH_SIZE)
+         {
+            routePendingSends();
+         }
+
+         return;
+      }
+
+      // routed after the sends before it
+      routePendingSends();
+
       if (tx == null || autoCommitSends)
       {
       }
@@ -1843,17 +1892,7 @@ public class ServerSessionImpl implements ServerSession, FailureListener
       {
          postOffice.route(msg, routingContext, direct);
 
-         Pair<UUID, AtomicLong> value = targetAddressInfos.get(msg.getAddress());
-
-         if (value == null)
-         {
-            targetAddressInfos.put(msg.getAddress(), new Pair<UUID, AtomicLong>(msg.getUserID(), new AtomicLong(1)));
-         }
-         else
-         {
-            value.setA(msg.getUserID());
-            value.getB().incrementAndGet();
-         }
+         addTargetAddressInfo(msg);
       }
       finally
       {
@@ -1861,6 +1900,53 @@ public class ServerSessionImpl implements ServerSession, FailureListener
       }
    }
 
+   private void addTargetAddressInfo(final ServerMessage msg)
+   {
+      Pair<UUID, AtomicLong> value = targetAddressInfos.get(msg.getAddress());
+
+      if (value == null)
+      {
+         targetAddressInfos.put(msg.getAddress(), new Pair<UUID, AtomicLong>(msg.getUserID(), new AtomicLong(1)));
+      }
+      else
+      {
+         value.setA(msg.getUserID());
+         value.getB().incrementAndGet();
+      }
+   }
+
+   /**
+    * Routes the pending sends of the transaction in one batch, sharing the lookups of the messages to the same
+    * address and storing them in one go. As a send routed later doesn't fail on its own, the transaction can only be
+    * rolled back if they can't be routed.
+    */
+   private void routePendingSends() throws Exception
+   {
+      if (pendingSends.isEmpty())
+      {
+         return;
+      }
+
+      List<ServerMessage> messages = new ArrayList<ServerMessage>(pendingSends);
+
+      pendingSends.clear();
+
+      try
+      {
+         postOffice.route(messages, tx, pendingSendsDirect, true);
+      }
+      catch (HornetQException e)
+      {
+         tx.markAsRollbackOnly(e);
+         throw e;
+      }
+      catch (Exception e)
+      {
+         tx.markAsRollbackOnly(new HornetQInternalErrorException(e.getMessage(), e));
+         throw e;
+      }
+   }
+
 
    @Override
    public List<MessageReference> getInTXMessagesForConsumer(long consumerId)
@@ -64,6 +64,25 @@ public class AddressSettings implements Mergeable<AddressSettings>, Serializable
 
    public static final SlowConsumerPolicy DEFAULT_SLOW_CONSUMER_POLICY = SlowConsumerPolicy.NOTIFY;
 
+   public static final boolean DEFAULT_MESSAGE_ID_INDEX = false;
+
+   public static final boolean DEFAULT_COMPACT_ID_CACHE = false;
+
+   public static final long DEFAULT_ID_CACHE_EXPIRY = -1;
+
+   public static final boolean DEFAULT_ID_CACHE_BLOOM_FILTER = false;
+
+   public static final boolean DEFAULT_PAGE_INDEX = false;
+
+   // a twentieth of the heap, so the page caches of a few paging addresses can't take all of it
+   public static final long DEFAULT_PAGE_CACHE_MAX_BYTES = Runtime.getRuntime().maxMemory() / 20;
+
+   public static final int DEFAULT_PAGE_READ_AHEAD = 0;
+
+   public static final boolean DEFAULT_PAGE_COMPRESSION = false;
+
+   public static final boolean DEFAULT_READY_CONSUMER_DELIVERY = false;
+
    private AddressFullMessagePolicy addressFullMessagePolicy = null;
 
    private Long maxSizeBytes = null;
@@ -102,6 +121,24 @@ public class AddressSettings implements Mergeable<AddressSettings>, Serializable
 
    private SlowConsumerPolicy slowConsumerPolicy = null;
 
+   private Boolean messageIDIndex = null;
+
+   private Boolean compactIDCache = null;
+
+   private Long idCacheExpiry = null;
+
+   private Boolean idCacheBloomFilter = null;
+
+   private Boolean pageIndex = null;
+
+   private Long pageCacheMaxBytes = null;
+
+   private Integer pageReadAhead = null;
+
+   private Boolean pageCompression = null;
+
+   private Boolean readyConsumerDelivery = null;
+
    public AddressSettings(AddressSettings other)
    {
       this.addressFullMessagePolicy = other.addressFullMessagePolicy;
@@ -123,6 +160,15 @@ public class AddressSettings implements Mergeable<AddressSettings>, Serializable
       this.slowConsumerThreshold = other.slowConsumerThreshold;
       this.slowConsumerCheckPeriod = other.slowConsumerCheckPeriod;
       this.slowConsumerPolicy = other.slowConsumerPolicy;
+      this.messageIDIndex = other.messageIDIndex;
+      this.compactIDCache = other.compactIDCache;
+      this.idCacheExpiry = other.idCacheExpiry;
+      this.idCacheBloomFilter = other.idCacheBloomFilter;
+      this.pageIndex = other.pageIndex;
+      this.pageCacheMaxBytes = other.pageCacheMaxBytes;
+      this.pageReadAhead = other.pageReadAhead;
+      this.pageCompression = other.pageCompression;
+      this.readyConsumerDelivery = other.readyConsumerDelivery;
    }
 
    public AddressSettings()
@@ -315,6 +361,96 @@ public class AddressSettings implements Mergeable<AddressSettings>, Serializable
       this.slowConsumerPolicy = slowConsumerPolicy;
    }
 
+   public boolean isMessageIDIndex()
+   {
+      return messageIDIndex != null ? messageIDIndex : AddressSettings.DEFAULT_MESSAGE_ID_INDEX;
+   }
+
+   public void setMessageIDIndex(final boolean messageIDIndex)
+   {
+      this.messageIDIndex = messageIDIndex;
+   }
+
+   public boolean isCompactIDCache()
+   {
+      return compactIDCache != null ? compactIDCache : AddressSettings.DEFAULT_COMPACT_ID_CACHE;
+   }
+
+   public void setCompactIDCache(final boolean compactIDCache)
+   {
+      this.compactIDCache = compactIDCache;
+   }
+
+   public long getIDCacheExpiry()
+   {
+      return idCacheExpiry != null ? idCacheExpiry : AddressSettings.DEFAULT_ID_CACHE_EXPIRY;
+   }
+
+   public void setIDCacheExpiry(final long idCacheExpiry)
+   {
+      this.idCacheExpiry = idCacheExpiry;
+   }
+
+   public boolean isIDCacheBloomFilter()
+   {
+      return idCacheBloomFilter != null ? idCacheBloomFilter : AddressSettings.DEFAULT_ID_CACHE_BLOOM_FILTER;
+   }
+
+   public void setIDCacheBloomFilter(final boolean idCacheBloomFilter)
+   {
+      this.idCacheBloomFilter = idCacheBloomFilter;
+   }
+
+   public boolean isPageIndex()
+   {
+      return pageIndex != null ? pageIndex : AddressSettings.DEFAULT_PAGE_INDEX;
+   }
+
+   public void setPageIndex(final boolean pageIndex)
+   {
+      this.pageIndex = pageIndex;
+   }
+
+   public long getPageCacheMaxBytes()
+   {
+      return pageCacheMaxBytes != null ? pageCacheMaxBytes : AddressSettings.DEFAULT_PAGE_CACHE_MAX_BYTES;
+   }
+
+   public void setPageCacheMaxBytes(final long pageCacheMaxBytes)
+   {
+      this.pageCacheMaxBytes = pageCacheMaxBytes;
+   }
+
+   public int getPageReadAhead()
+   {
+      return pageReadAhead != null ? pageReadAhead : AddressSettings.DEFAULT_PAGE_READ_AHEAD;
+   }
+
+   public void setPageReadAhead(final int pageReadAhead)
+   {
+      this.pageReadAhead = pageReadAhead;
+   }
+
+   public boolean isPageCompression()
+   {
+      return pageCompression != null ? pageCompression : AddressSettings.DEFAULT_PAGE_COMPRESSION;
+   }
+
+   public void setPageCompression(final boolean pageCompression)
+   {
+      this.pageCompression = pageCompression;
+   }
+
+   public boolean isReadyConsumerDelivery()
+   {
+      return readyConsumerDelivery != null ? readyConsumerDelivery : AddressSettings.DEFAULT_READY_CONSUMER_DELIVERY;
+   }
+
+   public void setReadyConsumerDelivery(final boolean readyConsumerDelivery)
+   {
+      this.readyConsumerDelivery = readyConsumerDelivery;
+   }
+
    /**
     * merge 2 objects in to 1
     *
@@ -394,6 +530,42 @@ public class AddressSettings implements Mergeable<AddressSettings>, Serializable
       {
          slowConsumerPolicy = merged.slowConsumerPolicy;
       }
+      if (messageIDIndex == null)
+      {
+         messageIDIndex = merged.messageIDIndex;
+      }
+      if (compactIDCache == null)
+      {
+         compactIDCache = merged.compactIDCache;
+      }
+      if (idCacheExpiry == null)
+      {
+         idCacheExpiry = merged.idCacheExpiry;
+      }
+      if (idCacheBloomFilter == null)
+      {
+         idCacheBloomFilter = merged.idCacheBloomFilter;
+      }
+      if (pageIndex == null)
+      {
+         pageIndex = merged.pageIndex;
+      }
+      if (pageCacheMaxBytes == null)
+      {
+         pageCacheMaxBytes = merged.pageCacheMaxBytes;
+      }
+      if (pageReadAhead == null)
+      {
+         pageReadAhead = merged.pageReadAhead;
+      }
+      if (pageCompression == null)
+      {
+         pageCompression = merged.pageCompression;
+      }
+      if (readyConsumerDelivery == null)
+      {
+         readyConsumerDelivery = merged.readyConsumerDelivery;
+      }
    }
 
    @Override
@@ -454,6 +626,51 @@ public class AddressSettings implements Mergeable<AddressSettings>, Serializable
       {
          slowConsumerPolicy = null;
       }
+
+      if (buffer.readableBytes() > 0)
+      {
+         messageIDIndex = BufferHelper.readNullableBoolean(buffer);
+      }
+
+      if (buffer.readableBytes() > 0)
+      {
+         compactIDCache = BufferHelper.readNullableBoolean(buffer);
+      }
+
+      if (buffer.readableBytes() > 0)
+      {
+         idCacheExpiry = BufferHelper.readNullableLong(buffer);
+      }
+
+      if (buffer.readableBytes() > 0)
+      {
+         idCacheBloomFilter = BufferHelper.readNullableBoolean(buffer);
+      }
+
+      if (buffer.readableBytes() > 0)
+      {
+         pageIndex = BufferHelper.readNullableBoolean(buffer);
+      }
+
+      if (buffer.readableBytes() > 0)
+      {
+         pageCacheMaxBytes = BufferHelper.readNullableLong(buffer);
+      }
+
+      if (buffer.readableBytes() > 0)
+      {
+         pageReadAhead = BufferHelper.readNullableInteger(buffer);
+      }
+
+      if (buffer.readableBytes() > 0)
+      {
+         pageCompression = BufferHelper.readNullableBoolean(buffer);
+      }
+
+      if (buffer.readableBytes() > 0)
+      {
+         readyConsumerDelivery = BufferHelper.readNullableBoolean(buffer);
+      }
    }
 
    @Override
@@ -478,7 +695,16 @@ public class AddressSettings implements Mergeable<AddressSettings>, Serializable
          BufferHelper.sizeOfNullableBoolean(sendToDLAOnNoRoute) +
          BufferHelper.sizeOfNullableLong(slowConsumerCheckPeriod) +
          BufferHelper.sizeOfNullableLong(slowConsumerThreshold) +
-         BufferHelper.sizeOfNullableSimpleString(slowConsumerPolicy != null ? slowConsumerPolicy.toString() : null);
+         BufferHelper.sizeOfNullableSimpleString(slowConsumerPolicy != null ? slowConsumerPolicy.toString() : null) +
+         BufferHelper.sizeOfNullableBoolean(messageIDIndex) +
+         BufferHelper.sizeOfNullableBoolean(compactIDCache) +
+         BufferHelper.sizeOfNullableLong(idCacheExpiry) +
+         BufferHelper.sizeOfNullableBoolean(idCacheBloomFilter) +
+         BufferHelper.sizeOfNullableBoolean(pageIndex) +
+         BufferHelper.sizeOfNullableLong(pageCacheMaxBytes) +
+         BufferHelper.sizeOfNullableInteger(pageReadAhead) +
+         BufferHelper.sizeOfNullableBoolean(pageCompression) +
+         BufferHelper.sizeOfNullableBoolean(readyConsumerDelivery);
    }
 
    @Override
@@ -522,6 +748,24 @@ public class AddressSettings implements Mergeable<AddressSettings>, Serializable
       BufferHelper.writeNullableLong(buffer, slowConsumerCheckPeriod);
 
       buffer.writeNullableSimpleString(slowConsumerPolicy != null ? new SimpleString(slowConsumerPolicy.toString()) : null);
+
+      BufferHelper.writeNullableBoolean(buffer, messageIDIndex);
+
+      BufferHelper.writeNullableBoolean(buffer, compactIDCache);
+
+      BufferHelper.writeNullableLong(buffer, idCacheExpiry);
+
+      BufferHelper.writeNullableBoolean(buffer, idCacheBloomFilter);
+
+      BufferHelper.writeNullableBoolean(buffer, pageIndex);
+
+      BufferHelper.writeNullableLong(buffer, pageCacheMaxBytes);
+
+      BufferHelper.writeNullableInteger(buffer, pageReadAhead);
+
+      BufferHelper.writeNullableBoolean(buffer, pageCompression);
+
+      BufferHelper.writeNullableBoolean(buffer, readyConsumerDelivery);
    }
 
    /* (non-Javadoc)
@@ -552,6 +796,15 @@ public class AddressSettings implements Mergeable<AddressSettings>, Serializable
       result = prime * result + ((slowConsumerThreshold == null) ? 0 : slowConsumerThreshold.hashCode());
       result = prime * result + ((slowConsumerCheckPeriod == null) ? 0 : slowConsumerCheckPeriod.hashCode());
       result = prime * result + ((slowConsumerPolicy == null) ? 0 : slowConsumerPolicy.hashCode());
+      result = prime * result + ((messageIDIndex == null) ? 0 : messageIDIndex.hashCode());
+      result = prime * result + ((compactIDCache == null) ? 0 : compactIDCache.hashCode());
+      result = prime * result + ((idCacheExpiry == null) ? 0 : idCacheExpiry.hashCode());
+      result = prime * result + ((idCacheBloomFilter == null) ? 0 : idCacheBloomFilter.hashCode());
+      result = prime * result + ((pageIndex == null) ? 0 : pageIndex.hashCode());
+      result = prime * result + ((pageCacheMaxBytes == null) ? 0 : pageCacheMaxBytes.hashCode());
+      result = prime * result + ((pageReadAhead == null) ? 0 : pageReadAhead.hashCode());
+      result = prime * result + ((pageCompression == null) ? 0 : pageCompression.hashCode());
+      result = prime * result + ((readyConsumerDelivery == null) ? 0 : readyConsumerDelivery.hashCode());
       return result;
    }
 
@@ -701,6 +954,69 @@ public class AddressSettings implements Mergeable<AddressSettings>, Serializable
       }
       else if (!slowConsumerPolicy.equals(other.slowConsumerPolicy))
          return false;
+      if (messageIDIndex == null)
+      {
+         if (other.messageIDIndex != null)
+            return false;
+      }
+      else if (!messageIDIndex.equals(other.messageIDIndex))
+         return false;
+      if (compactIDCache == null)
+      {
+         if (other.compactIDCache != null)
+            return false;
+      }
+      else if (!compactIDCache.equals(other.compactIDCache))
+         return false;
+      if (idCacheExpiry == null)
+      {
+         if (other.idCacheExpiry != null)
+            return false;
+      }
+      else if (!idCacheExpiry.equals(other.idCacheExpiry))
+         return false;
+      if (idCacheBloomFilter == null)
+      {
+         if (other.idCacheBloomFilter != null)
+            return false;
+      }
+      else if (!idCacheBloomFilter.equals(other.idCacheBloomFilter))
+         return false;
+      if (pageIndex == null)
+      {
+         if (other.pageIndex != null)
+            return false;
+      }
+      else if (!pageIndex.equals(other.pageIndex))
+         return false;
+      if (pageCacheMaxBytes == null)
+      {
+         if (other.pageCacheMaxBytes != null)
+            return false;
+      }
+      else if (!pageCacheMaxBytes.equals(other.pageCacheMaxBytes))
+         return false;
+      if (pageReadAhead == null)
+      {
+         if (other.pageReadAhead != null)
+            return false;
+      }
+      else if (!pageReadAhead.equals(other.pageReadAhead))
+         return false;
+      if (pageCompression == null)
+      {
+         if (other.pageCompression != null)
+            return false;
+      }
+      else if (!pageCompression.equals(other.pageCompression))
+         return false;
+      if (readyConsumerDelivery == null)
+      {
+         if (other.readyConsumerDelivery != null)
+            return false;
+      }
+      else if (!readyConsumerDelivery.equals(other.readyConsumerDelivery))
+         return false;
       return true;
    }
 
@@ -747,6 +1063,24 @@ public class AddressSettings implements Mergeable<AddressSettings>, Serializable
          slowConsumerCheckPeriod +
          ", slowConsumerPolicy=" +
          slowConsumerPolicy +
+         ", messageIDIndex=" +
+         messageIDIndex +
+         ", compactIDCache=" +
+         compactIDCache +
+         ", idCacheExpiry=" +
+         idCacheExpiry +
+         ", idCacheBloomFilter=" +
+         idCacheBloomFilter +
+         ", pageIndex=" +
+         pageIndex +
+         ", pageCacheMaxBytes=" +
+         pageCacheMaxBytes +
+         ", pageReadAhead=" +
+         pageReadAhead +
+         ", pageCompression=" +
+         pageCompression +
+         ", readyConsumerDelivery=" +
+         readyConsumerDelivery +
          "]";
    }
 }
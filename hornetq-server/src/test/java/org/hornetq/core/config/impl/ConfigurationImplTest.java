@@ -230,6 +230,14 @@ public class ConfigurationImplTest extends UnitTestCase
          conf.setJournalCompactMinFiles(i);
          Assert.assertEquals(i, conf.getJournalCompactMinFiles());
 
+         i = RandomUtil.randomInt();
+         conf.setJournalLoadThreads(i);
+         Assert.assertEquals(i, conf.getJournalLoadThreads());
+
+         i = RandomUtil.randomInt();
+         conf.setJournalBufferTargetLatency(i);
+         Assert.assertEquals(i, conf.getJournalBufferTargetLatency());
+
          i = RandomUtil.randomInt();
          conf.setJournalCompactPercentage(i);
          Assert.assertEquals(i, conf.getJournalCompactPercentage());
@@ -443,6 +451,14 @@ public class ConfigurationImplTest extends UnitTestCase
       conf.setJournalCompactMinFiles(i);
       Assert.assertEquals(i, conf.getJournalCompactMinFiles());
 
+      i = RandomUtil.randomInt();
+      conf.setJournalLoadThreads(i);
+      Assert.assertEquals(i, conf.getJournalLoadThreads());
+
+      i = RandomUtil.randomInt();
+      conf.setJournalBufferTargetLatency(i);
+      Assert.assertEquals(i, conf.getJournalBufferTargetLatency());
+
       i = RandomUtil.randomInt();
       conf.setJournalCompactPercentage(i);
       Assert.assertEquals(i, conf.getJournalCompactPercentage());
@@ -100,6 +100,10 @@ public class DefaultsFileConfigurationTest extends ConfigurationImplTest
 
       Assert.assertEquals(HornetQDefaultConfiguration.getDefaultJournalCompactMinFiles(), conf.getJournalCompactMinFiles());
 
+      Assert.assertEquals(HornetQDefaultConfiguration.getDefaultJournalLoadThreads(), conf.getJournalLoadThreads());
+
+      Assert.assertEquals(HornetQDefaultConfiguration.getDefaultJournalBufferTargetLatency(), conf.getJournalBufferTargetLatency());
+
       Assert.assertEquals(HornetQDefaultConfiguration.getDefaultJournalCompactPercentage(), conf.getJournalCompactPercentage());
 
       Assert.assertEquals(HornetQDefaultConfiguration.getDefaultJournalMinFiles(), conf.getJournalMinFiles());
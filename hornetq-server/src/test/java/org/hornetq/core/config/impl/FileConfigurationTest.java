@@ -27,6 +27,7 @@ import org.hornetq.core.config.HAPolicyConfiguration;
 import org.hornetq.core.config.ha.LiveOnlyPolicyConfiguration;
 import org.hornetq.core.security.Role;
 import org.hornetq.core.server.JournalType;
+import org.hornetq.core.settings.impl.AddressSettings;
 import org.hornetq.core.settings.impl.SlowConsumerPolicy;
 import org.junit.Assert;
 import org.junit.Test;
@@ -48,6 +49,7 @@ public class FileConfigurationTest extends ConfigurationImplTest
       Assert.assertEquals(true, conf.isClustered());
       Assert.assertEquals(true, conf.isFileDeploymentEnabled());
       Assert.assertEquals(12345, conf.getScheduledThreadPoolMaxSize());
+      Assert.assertEquals(23, conf.getScheduledDeliveryTimerWheelTick());
       Assert.assertEquals(54321, conf.getThreadPoolMaxSize());
       Assert.assertEquals(false, conf.isSecurityEnabled());
       Assert.assertEquals(5423, conf.getSecurityInvalidationInterval());
@@ -74,6 +76,7 @@ public class FileConfigurationTest extends ConfigurationImplTest
       Assert.assertEquals(false, conf.isCreateBindingsDir());
 
       Assert.assertEquals("max concurrent io", 17, conf.getPageMaxConcurrentIO());
+      Assert.assertEquals(1234567, conf.getGlobalMaxSize());
       Assert.assertEquals("somedir2", conf.getJournalDirectory());
       Assert.assertEquals(false, conf.isCreateJournalDir());
       Assert.assertEquals(JournalType.NIO, conf.getJournalType());
@@ -86,6 +89,8 @@ public class FileConfigurationTest extends ConfigurationImplTest
       Assert.assertEquals(12345678, conf.getJournalFileSize());
       Assert.assertEquals(100, conf.getJournalMinFiles());
       Assert.assertEquals(123, conf.getJournalCompactMinFiles());
+      Assert.assertEquals(4, conf.getJournalLoadThreads());
+      Assert.assertEquals(1000000, conf.getJournalBufferTargetLatency());
       Assert.assertEquals(33, conf.getJournalCompactPercentage());
 
       Assert.assertEquals("largemessagesdir", conf.getLargeMessagesDirectory());
@@ -293,6 +298,15 @@ public class FileConfigurationTest extends ConfigurationImplTest
       assertEquals(10, conf.getAddressesSettings().get("a1").getSlowConsumerThreshold());
       assertEquals(5, conf.getAddressesSettings().get("a1").getSlowConsumerCheckPeriod());
       assertEquals(SlowConsumerPolicy.NOTIFY, conf.getAddressesSettings().get("a1").getSlowConsumerPolicy());
+      assertTrue(conf.getAddressesSettings().get("a1").isMessageIDIndex());
+      assertTrue(conf.getAddressesSettings().get("a1").isCompactIDCache());
+      assertEquals(60000, conf.getAddressesSettings().get("a1").getIDCacheExpiry());
+      assertTrue(conf.getAddressesSettings().get("a1").isIDCacheBloomFilter());
+      assertTrue(conf.getAddressesSettings().get("a1").isPageIndex());
+      assertEquals(1048576, conf.getAddressesSettings().get("a1").getPageCacheMaxBytes());
+      assertEquals(2, conf.getAddressesSettings().get("a1").getPageReadAhead());
+      assertTrue(conf.getAddressesSettings().get("a1").isPageCompression());
+      assertTrue(conf.getAddressesSettings().get("a1").isReadyConsumerDelivery());
 
       assertEquals("a2.1", conf.getAddressesSettings().get("a2").getDeadLetterAddress().toString());
       assertEquals("a2.2", conf.getAddressesSettings().get("a2").getExpiryAddress().toString());
@@ -304,6 +318,15 @@ public class FileConfigurationTest extends ConfigurationImplTest
       assertEquals(20, conf.getAddressesSettings().get("a2").getSlowConsumerThreshold());
       assertEquals(15, conf.getAddressesSettings().get("a2").getSlowConsumerCheckPeriod());
       assertEquals(SlowConsumerPolicy.KILL, conf.getAddressesSettings().get("a2").getSlowConsumerPolicy());
+      assertFalse(conf.getAddressesSettings().get("a2").isMessageIDIndex());
+      assertFalse(conf.getAddressesSettings().get("a2").isCompactIDCache());
+      assertEquals(-1, conf.getAddressesSettings().get("a2").getIDCacheExpiry());
+      assertFalse(conf.getAddressesSettings().get("a2").isIDCacheBloomFilter());
+      assertFalse(conf.getAddressesSettings().get("a2").isPageIndex());
+      assertEquals(AddressSettings.DEFAULT_PAGE_CACHE_MAX_BYTES, conf.getAddressesSettings().get("a2").getPageCacheMaxBytes());
+      assertEquals(0, conf.getAddressesSettings().get("a2").getPageReadAhead());
+      assertFalse(conf.getAddressesSettings().get("a2").isPageCompression());
+      assertFalse(conf.getAddressesSettings().get("a2").isReadyConsumerDelivery());
 
 
       assertEquals(2, conf.getQueueConfigurations().size());
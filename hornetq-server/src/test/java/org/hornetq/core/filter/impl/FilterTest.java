@@ -18,6 +18,7 @@ import org.hornetq.api.core.SimpleString;
 import org.hornetq.core.filter.Filter;
 import org.hornetq.core.server.ServerMessage;
 import org.hornetq.core.server.impl.ServerMessageImpl;
+import org.hornetq.selector.SelectorParser;
 import org.hornetq.tests.util.RandomUtil;
 import org.hornetq.tests.util.SilentTestCase;
 import org.junit.Assert;
@@ -65,6 +66,45 @@ public class FilterTest extends SilentTestCase
       Assert.assertFalse(filter.match(message));
    }
 
+   @Test
+   public void testCompiledMatchesInterpreted() throws Exception
+   {
+      String[] selectors = {"x = 5", "x <> 5", "x > 5", "x >= 5", "x < 5", "x <= 5", "x = 5.0", "x > 4.5",
+         "x < -3", "x BETWEEN 1 AND 10", "x NOT BETWEEN 1 AND 10", "x = 'red'", "x <> 'red'", "x = TRUE",
+         "x = FALSE", "x", "NOT x", "x IS NULL", "x IS NOT NULL", "x LIKE 'r%'", "x NOT LIKE 'r_d'",
+         "x IN ('red', 'blue')", "x NOT IN ('red', 'blue')", "x > 3 AND x < 8", "x < 3 OR x > 8",
+         "(x > 3 AND y = 'red') OR NOT (x = 5)", "x + 1 > 5", "5 < x", "HQPriority > 3", "HQPriority = 4.0",
+         "HQTimestamp > 1000", "HQSize > 10", "HQExpiration = 0", "HQDurable = 'DURABLE'",
+         "HQDurable IN ('NON_DURABLE')", "HQUserID IS NULL", "x = 2147483648", "x > 1.0E10"};
+
+      Object[] values = {null, 5, 7, -4, (byte) 5, (short) 12, 5L, 3000000000L, 5.0f, 4.75f, 5.0d, Double.NaN,
+         -0.0d, true, false, "red", "rod", "blue", "5", 'r'};
+
+      for (String selector : selectors)
+      {
+         FilterImpl compiled = (FilterImpl) FilterImpl.createFilter(selector);
+
+         FilterCompiler.Node interpreted = FilterCompiler.interpret(SelectorParser.parse(selector));
+
+         for (Object value : values)
+         {
+            message = new ServerMessageImpl(1, 1000);
+            message.setPriority((byte) 4);
+            message.setTimestamp(2000);
+            message.putStringProperty("y", "red");
+
+            if (value != null)
+            {
+               message.putObjectProperty("x", value);
+            }
+
+            Assert.assertEquals(selector + " with x = " + value,
+                                compiled.match(message, interpreted),
+                                compiled.match(message));
+         }
+      }
+   }
+
    @Test
    public void testInvalidString() throws Exception
    {
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2005-2014 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.hornetq.core.filter.impl;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.hornetq.core.server.ServerMessage;
+import org.hornetq.core.server.impl.ServerMessageImpl;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SelectorIndexTest extends Assert
+{
+   @Test
+   public void testIndexable() throws Exception
+   {
+      SelectorIndex<String> index = new SelectorIndex<String>();
+
+      assertTrue(index.add("eq", FilterImpl.createFilter("region = 'r1'")));
+      assertTrue(index.add("in", FilterImpl.createFilter("type IN ('a', 'b', 'a')")));
+      assertTrue(index.add("and", FilterImpl.createFilter("weight > 5 AND region = 'r2' AND type IN ('a', 'b')")));
+
+      assertFalse(index.add("none", null));
+      assertFalse(index.add("gt", FilterImpl.createFilter("weight > 5")));
+      assertFalse(index.add("or", FilterImpl.createFilter("region = 'r1' OR type = 'a'")));
+      assertFalse(index.add("not", FilterImpl.createFilter("region <> 'r1'")));
+      assertFalse(index.add("notIn", FilterImpl.createFilter("type NOT IN ('a', 'b')")));
+      assertFalse(index.add("number", FilterImpl.createFilter("region = 1")));
+      assertFalse(index.add("header", FilterImpl.createFilter("HQDurable = 'DURABLE'")));
+
+      assertEquals(3, index.size());
+   }
+
+   @Test
+   public void testMatch() throws Exception
+   {
+      SelectorIndex<String> index = new SelectorIndex<String>();
+
+      index.add("eq", FilterImpl.createFilter("region = 'r1'"));
+      index.add("in", FilterImpl.createFilter("type IN ('a', 'b')"));
+      index.add("and", FilterImpl.createFilter("weight > 5 AND region = 'r2' AND type IN ('a', 'b')"));
+
+      assertEquals(set("eq", "in"), match(index, "r1", "a"));
+      assertEquals(set("and", "in"), match(index, "r2", "b"));
+      assertEquals(set(), match(index, "r3", "c"));
+      assertEquals(set("eq"), match(index, "r1", null));
+
+      // the term with the fewest values is the one indexed
+      assertEquals(set("and"), match(index, "r2", "c"));
+
+      ServerMessage message = new ServerMessageImpl(1, 1000);
+      message.putIntProperty("region", 1);
+      assertEquals(set(), match(index, message));
+
+      assertTrue(index.remove("eq"));
+      assertFalse(index.remove("eq"));
+      assertEquals(set("in"), match(index, "r1", "a"));
+
+      assertTrue(index.remove("in"));
+      assertTrue(index.remove("and"));
+      assertTrue(index.isEmpty());
+      assertEquals(set(), match(index, "r2", "a"));
+   }
+
+   private static Set<String> match(final SelectorIndex<String> index, final String region, final String type)
+   {
+      ServerMessage message = new ServerMessageImpl(1, 1000);
+
+      if (region != null)
+      {
+         message.putStringProperty("region", region);
+      }
+
+      if (type != null)
+      {
+         message.putStringProperty("type", type);
+      }
+
+      return match(index, message);
+   }
+
+   private static Set<String> match(final SelectorIndex<String> index, final ServerMessage message)
+   {
+      Set<String> candidates = new HashSet<String>();
+
+      index.match(message, candidates);
+
+      return candidates;
+   }
+
+   private static Set<String> set(final String... items)
+   {
+      Set<String> set = new HashSet<String>();
+
+      for (String item : items)
+      {
+         set.add(item);
+      }
+
+      return set;
+   }
+}
@@ -19,6 +19,7 @@ import org.junit.Test;
 import org.junit.Assert;
 
 
+import org.hornetq.utils.IDSupplier;
 import org.hornetq.utils.LinkedListIterator;
 import org.hornetq.utils.PriorityLinkedListImpl;
 
@@ -895,6 +896,145 @@ public final class PriorityLinkedListTest extends Assert
       iter.remove();
    }
 
+   @Test
+   public void testGetAndRemoveWithID()
+   {
+      list.setIDSupplier(new WibbleIDSupplier());
+
+      checkGetAndRemoveWithID();
+   }
+
+   @Test
+   public void testGetAndRemoveWithIDIndexed()
+   {
+      list.setIDSupplier(new WibbleIDSupplier());
+
+      list.setIDIndex(true);
+
+      checkGetAndRemoveWithID();
+   }
+
+   @Test
+   public void testIDIndexBuiltFromExistingElements()
+   {
+      list.setIDSupplier(new WibbleIDSupplier());
+
+      list.addTail(a, 0);
+      list.addTail(b, 5);
+
+      list.setIDIndex(true);
+
+      assertEquals(a, list.getWithID('a'));
+      assertEquals(b, list.removeWithID('b'));
+      assertEquals(1, list.size());
+
+      list.setIDIndex(false);
+
+      assertEquals(a, list.removeWithID('a'));
+      assertTrue(list.isEmpty());
+   }
+
+   @Test
+   public void testIDIndexWithSharedIDs()
+   {
+      list.setIDSupplier(new WibbleIDSupplier());
+
+      list.setIDIndex(true);
+
+      Wibble a2 = new Wibble("a2");
+      Wibble a3 = new Wibble("a3");
+
+      list.addTail(a, 0);
+      list.addTail(a2, 0);
+      list.addTail(a3, 0);
+
+      // removing an element leaves the others with the same ID in the index, whichever was indexed
+      assertEquals(a3, list.removeWithID('a'));
+      assertEquals(a, list.poll());
+      assertEquals(a2, list.getWithID('a'));
+      assertEquals(a2, list.removeWithID('a'));
+      assertNull(list.getWithID('a'));
+      assertTrue(list.isEmpty());
+   }
+
+   @Test
+   public void testWithIDAfterIteratorRemove()
+   {
+      list.setIDSupplier(new WibbleIDSupplier());
+
+      list.addTail(a, 1);
+      list.addTail(b, 3);
+      list.addTail(c, 3);
+
+      LinkedListIterator<Wibble> iter = list.iterator();
+
+      assertTrue(iter.hasNext());
+      assertEquals(b, iter.next());
+      iter.remove();
+      assertTrue(iter.hasNext());
+      assertEquals(c, iter.next());
+      iter.remove();
+      iter.close();
+
+      // the lower levels are still looked at once the highest one is emptied by the iterator
+      assertEquals(a, list.getWithID('a'));
+
+      list.addTail(d, 1);
+
+      assertEquals(d, list.removeWithID('d'));
+      assertEquals(a, list.poll());
+      assertTrue(list.isEmpty());
+   }
+
+   private void checkGetAndRemoveWithID()
+   {
+      list.addTail(a, 0);
+      list.addTail(b, 3);
+      list.addTail(c, 3);
+      list.addTail(d, 9);
+
+      LinkedListIterator<Wibble> iter = list.iterator();
+
+      assertTrue(iter.hasNext());
+      assertEquals(d, iter.next());
+      assertTrue(iter.hasNext());
+      assertEquals(b, iter.next());
+
+      assertEquals(c, list.getWithID('c'));
+      assertNull(list.getWithID('z'));
+      assertNull(list.removeWithID('z'));
+
+      assertEquals(b, list.removeWithID('b'));
+      assertNull(list.getWithID('b'));
+      assertEquals(3, list.size());
+
+      // the iterator was on the removed element
+      assertTrue(iter.hasNext());
+      assertEquals(c, iter.next());
+      iter.close();
+
+      assertEquals(d, list.removeWithID('d'));
+      assertEquals(c, list.poll());
+      assertNull(list.getWithID('c'));
+
+      list.addHead(e, 2);
+      list.clear();
+      assertNull(list.getWithID('e'));
+
+      list.addTail(f, 1);
+      assertEquals(f, list.removeWithID('f'));
+      assertTrue(list.isEmpty());
+      assertNull(list.poll());
+   }
+
+   static class WibbleIDSupplier implements IDSupplier<Wibble>
+   {
+      public long getID(final Wibble wibble)
+      {
+         return wibble.s1.charAt(0);
+      }
+   }
+
    static class Wibble
    {
       String s1;
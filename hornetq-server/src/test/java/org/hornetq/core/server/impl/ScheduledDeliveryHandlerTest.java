@@ -24,6 +24,7 @@ import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -42,6 +43,7 @@ import org.hornetq.core.server.HornetQServer;
 import org.hornetq.core.server.MessageReference;
 import org.hornetq.core.server.Queue;
 import org.hornetq.core.server.RoutingContext;
+import org.hornetq.core.server.ScheduledDeliveryHandler;
 import org.hornetq.core.server.ServerMessage;
 import org.hornetq.core.transaction.Transaction;
 import org.hornetq.tests.util.RandomUtil;
@@ -209,10 +211,14 @@ public class ScheduledDeliveryHandlerTest extends Assert
    }
 
    private void internalSchedule(ExecutorService executor, ScheduledThreadPoolExecutor scheduler) throws Exception
+   {
+      internalSchedule(executor, new ScheduledDeliveryHandlerImpl(scheduler));
+   }
+
+   private void internalSchedule(ExecutorService executor, final ScheduledDeliveryHandler handler) throws Exception
    {
       final int NUMBER_OF_MESSAGES = 200;
       int NUMBER_OF_THREADS = 20;
-      final ScheduledDeliveryHandlerImpl handler = new ScheduledDeliveryHandlerImpl(scheduler);
       final FakeQueueForScheduleUnitTest fakeQueue = new FakeQueueForScheduleUnitTest(NUMBER_OF_MESSAGES * NUMBER_OF_THREADS);
 
       final long now = System.currentTimeMillis();
@@ -260,7 +266,250 @@ public class ScheduledDeliveryHandlerTest extends Assert
       }
    }
 
-   private void validateSequence(ScheduledDeliveryHandlerImpl handler)
+   @Test
+   public void testTimerWheelOrder() throws Exception
+   {
+      ScheduledDeliveryTimerWheel wheel = new ScheduledDeliveryTimerWheel(null, 10);
+      ScheduledDeliveryHandler handler = wheel.createHandler();
+      FakeQueueForScheduleUnitTest fakeQueue = new FakeQueueForScheduleUnitTest(18);
+
+      long base = System.currentTimeMillis() + 1000;
+
+      checkAndSchedule(handler, 1, base + 48, true, fakeQueue);
+      checkAndSchedule(handler, 2, base + 48, true, fakeQueue);
+      checkAndSchedule(handler, 3, base + 48, true, fakeQueue);
+      checkAndSchedule(handler, 4, base + 48, true, fakeQueue);
+      checkAndSchedule(handler, 5, base + 48, true, fakeQueue);
+      checkAndSchedule(handler, 0, base + 48, false, fakeQueue);
+
+      checkAndSchedule(handler, 13, base + 59, true, fakeQueue);
+      checkAndSchedule(handler, 14, base + 59, true, fakeQueue);
+      checkAndSchedule(handler, 15, base + 59, true, fakeQueue);
+      checkAndSchedule(handler, 16, base + 59, true, fakeQueue);
+      checkAndSchedule(handler, 17, base + 59, true, fakeQueue);
+      checkAndSchedule(handler, 12, base + 59, false, fakeQueue);
+
+      checkAndSchedule(handler, 7, base + 49, true, fakeQueue);
+      checkAndSchedule(handler, 8, base + 49, true, fakeQueue);
+      checkAndSchedule(handler, 9, base + 49, true, fakeQueue);
+      checkAndSchedule(handler, 10, base + 49, true, fakeQueue);
+      checkAndSchedule(handler, 11, base + 49, true, fakeQueue);
+      checkAndSchedule(handler, 6, base + 49, false, fakeQueue);
+
+      assertEquals(18, handler.getScheduledCount());
+      validateSequence(handler);
+
+      wheel.tick(base + 100);
+
+      assertEquals(0, handler.getScheduledCount());
+      assertEquals(0, wheel.getScheduledCount());
+      assertTrue(fakeQueue.waitCompletion(0, TimeUnit.SECONDS));
+
+      long id = 0;
+      for (MessageReference ref : fakeQueue.messages)
+      {
+         assertEquals(id++, ref.getMessage().getMessageID());
+         assertEquals(0, ref.getScheduledDeliveryTime());
+      }
+   }
+
+   @Test
+   public void testTimerWheelNeverEarly() throws Exception
+   {
+      // 4 buckets of 10 milliseconds, a turn of the wheel is 40 milliseconds
+      ScheduledDeliveryTimerWheel wheel = new ScheduledDeliveryTimerWheel(null, 10, 4);
+      ScheduledDeliveryHandler handler = wheel.createHandler();
+      FakeQueueForScheduleUnitTest fakeQueue = new FakeQueueForScheduleUnitTest(3);
+
+      long base = System.currentTimeMillis();
+
+      checkAndSchedule(handler, 0, base + 15, false, fakeQueue);
+      checkAndSchedule(handler, 1, base + 135, false, fakeQueue);
+      // already due, goes with the next tick
+      checkAndSchedule(handler, 2, base - 1000, false, fakeQueue);
+
+      wheel.tick(base + 10);
+      assertEquals(2, handler.getScheduledCount());
+      assertEquals(2, fakeQueue.messages.getFirst().getMessage().getMessageID());
+
+      wheel.tick(base + 14);
+      assertEquals(2, handler.getScheduledCount());
+
+      wheel.tick(base + 25);
+      assertEquals(1, handler.getScheduledCount());
+
+      for (long time = base + 30; time < base + 135; time += 5)
+      {
+         wheel.tick(time);
+         assertEquals(1, handler.getScheduledCount());
+      }
+
+      wheel.tick(base + 145);
+      assertEquals(0, handler.getScheduledCount());
+      assertTrue(fakeQueue.waitCompletion(0, TimeUnit.SECONDS));
+   }
+
+   @Test
+   public void testTimerWheelCancel() throws Exception
+   {
+      ScheduledDeliveryTimerWheel wheel = new ScheduledDeliveryTimerWheel(null, 10);
+      ScheduledDeliveryHandler handler1 = wheel.createHandler();
+      ScheduledDeliveryHandler handler2 = wheel.createHandler();
+      FakeQueueForScheduleUnitTest fakeQueue1 = new FakeQueueForScheduleUnitTest(0);
+      FakeQueueForScheduleUnitTest fakeQueue2 = new FakeQueueForScheduleUnitTest(0);
+
+      long base = System.currentTimeMillis() + 1000;
+
+      for (int i = 0; i < 10; i++)
+      {
+         checkAndSchedule(handler1, i, base + i, true, fakeQueue1);
+         checkAndSchedule(handler2, i, base + i, true, fakeQueue2);
+      }
+
+      assertEquals(20, wheel.getScheduledCount());
+
+      assertEquals(5, handler1.removeReferenceWithID(5).getMessage().getMessageID());
+      assertNull(handler1.removeReferenceWithID(5));
+      assertEquals(9, handler1.getScheduledCount());
+      assertEquals(10, handler2.getScheduledCount());
+
+      List<MessageReference> cancelled = handler1.cancel(null);
+      assertEquals(9, cancelled.size());
+      assertEquals(0, cancelled.get(0).getMessage().getMessageID());
+      assertEquals(9, cancelled.get(8).getMessage().getMessageID());
+
+      assertEquals(0, handler1.getScheduledCount());
+      assertEquals(10, wheel.getScheduledCount());
+
+      wheel.tick(base + 100);
+
+      assertTrue(fakeQueue1.messages.isEmpty());
+      assertEquals(10, fakeQueue2.messages.size());
+   }
+
+   @Test
+   public void testTimerWheelScheduleNow() throws Exception
+   {
+      ExecutorService executor = Executors.newFixedThreadPool(20);
+      ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1);
+      ScheduledDeliveryTimerWheel wheel = new ScheduledDeliveryTimerWheel(scheduler, 5);
+      wheel.start();
+      try
+      {
+         for (int i = 0; i < 10; i++)
+         {
+            internalSchedule(executor, wheel.createHandler());
+         }
+      }
+      finally
+      {
+         wheel.stop();
+         scheduler.shutdownNow();
+         executor.shutdownNow();
+      }
+   }
+
+   @Test
+   public void testRedeliveryDelay() throws Exception
+   {
+      final AtomicInteger scheduled = new AtomicInteger(0);
+      ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1)
+      {
+         @Override
+         public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit)
+         {
+            scheduled.incrementAndGet();
+            return super.schedule(command, delay, unit);
+         }
+      };
+
+      try
+      {
+         FakeQueueForScheduleUnitTest fakeQueue = new FakeQueueForScheduleUnitTest(1000);
+         RedeliveryDelayHandler handler = new RedeliveryDelayHandler(fakeQueue, scheduler);
+
+         long now = System.currentTimeMillis();
+
+         // two backoff levels, the second one due first, each cancelled back to the head as on a rollback
+         for (int i = 499; i >= 0; i--)
+         {
+            assertTrue(handler.checkAndSchedule(redelivery(500 + i, now + 200, 2, fakeQueue), false));
+         }
+         for (int i = 499; i >= 0; i--)
+         {
+            assertTrue(handler.checkAndSchedule(redelivery(i, now + 100, 1, fakeQueue), false));
+         }
+
+         // never delivered, or due before the last one of its level: left to the scheduled delivery handler
+         assertFalse(handler.checkAndSchedule(redelivery(1000, now + 100, 0, fakeQueue), false));
+         assertFalse(handler.checkAndSchedule(redelivery(1001, now + 50, 1, fakeQueue), false));
+
+         assertEquals(1000, handler.getScheduledCount());
+         assertEquals(1000, handler.getScheduledReferences().size());
+         assertEquals(0, handler.getScheduledReferences().get(0).getMessage().getMessageID());
+
+         assertTrue(fakeQueue.waitCompletion(10, TimeUnit.SECONDS));
+         assertEquals(0, handler.getScheduledCount());
+
+         // the second level went back to the head after the first one
+         long id = 500;
+         for (MessageReference ref : fakeQueue.messages)
+         {
+            assertEquals(id++ % 1000, ref.getMessage().getMessageID());
+            assertEquals(0, ref.getScheduledDeliveryTime());
+         }
+
+         // not one per reference: the first level, the second one as it is due earlier, the first one again
+         assertEquals(3, scheduled.get());
+      }
+      finally
+      {
+         scheduler.shutdownNow();
+      }
+   }
+
+   @Test
+   public void testRedeliveryDelayCancel() throws Exception
+   {
+      FakeQueueForScheduleUnitTest fakeQueue = new FakeQueueForScheduleUnitTest(0);
+      ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1);
+
+      try
+      {
+         RedeliveryDelayHandler handler = new RedeliveryDelayHandler(fakeQueue, scheduler);
+
+         long time = System.currentTimeMillis() + 60000;
+
+         for (int i = 0; i < 10; i++)
+         {
+            handler.checkAndSchedule(redelivery(i, time + i, 1 + i % 2, fakeQueue), false);
+         }
+
+         assertEquals(3, handler.removeReferenceWithID(3).getMessage().getMessageID());
+         assertNull(handler.removeReferenceWithID(3));
+         assertEquals(9, handler.getScheduledCount());
+
+         List<MessageReference> cancelled = handler.cancel(null);
+         assertEquals(9, cancelled.size());
+         assertEquals(0, cancelled.get(0).getMessage().getMessageID());
+         assertEquals(9, cancelled.get(8).getMessage().getMessageID());
+         assertEquals(0, handler.getScheduledCount());
+      }
+      finally
+      {
+         scheduler.shutdownNow();
+      }
+   }
+
+   private MessageReference redelivery(long messageID, long deliveryTime, int deliveryCount, Queue queue)
+   {
+      MessageReferenceImpl refImpl = new MessageReferenceImpl(new FakeMessage(messageID), queue);
+      refImpl.setScheduledDeliveryTime(deliveryTime);
+      refImpl.setDeliveryCount(deliveryCount);
+      return refImpl;
+   }
+
+   private void validateSequence(ScheduledDeliveryHandler handler)
    {
       long lastSequence = -1;
       for (MessageReference ref : handler.getScheduledReferences())
@@ -277,7 +526,7 @@ public class ScheduledDeliveryHandlerTest extends Assert
       handler.addInPlace(nextScheduledTime, refImpl, tail);
    }
 
-   private void checkAndSchedule(ScheduledDeliveryHandlerImpl handler, long nextMessageID, long nextScheduledTime, boolean tail, Queue queue)
+   private void checkAndSchedule(ScheduledDeliveryHandler handler, long nextMessageID, long nextScheduledTime, boolean tail, Queue queue)
    {
       MessageReferenceImpl refImpl = new MessageReferenceImpl(new FakeMessage(nextMessageID), queue);
       refImpl.setScheduledDeliveryTime(nextScheduledTime);
@@ -1114,8 +1363,9 @@ public class ScheduledDeliveryHandlerTest extends Assert
 
       private void addFirst(MessageReference ref)
       {
-         expectedElements.countDown();
+         // added before counting down, the test reads the messages once they all arrived
          this.messages.addFirst(ref);
+         expectedElements.countDown();
       }
 
       @Override
@@ -1160,6 +1410,12 @@ public class ScheduledDeliveryHandlerTest extends Assert
 
       }
 
+      @Override
+      public void deliverAsync(Consumer consumer)
+      {
+
+      }
+
       @Override
       public void forceDelivery()
       {
@@ -1208,6 +1464,12 @@ public class ScheduledDeliveryHandlerTest extends Assert
          return 0;
       }
 
+      @Override
+      public int getDelayedRedeliveryCount()
+      {
+         return 0;
+      }
+
       @Override
       public List<MessageReference> getScheduledMessages()
       {
@@ -13,6 +13,8 @@
 package org.hornetq.tests.integration.client;
 
 import org.hornetq.api.core.SimpleString;
+import org.hornetq.api.core.client.ClientConsumer;
+import org.hornetq.api.core.client.ClientMessage;
 import org.hornetq.api.core.client.ClientProducer;
 import org.hornetq.api.core.client.ClientSession;
 import org.hornetq.api.core.client.ClientSessionFactory;
@@ -105,4 +107,61 @@ public class TransactionalSendTest extends ServiceTestBase
       session.close();
    }
 
+   @Test
+   public void testSendManyDurableWithCommit() throws Exception
+   {
+      HornetQServer server = createServer(true);
+      server.start();
+      ClientSessionFactory cf = createSessionFactory(locator);
+      ClientSession session = cf.createSession(false, false, false);
+      SimpleString addressB = new SimpleString("addressB");
+      session.createQueue(addressA, queueA, true);
+      session.createQueue(addressB, queueB, true);
+      ClientProducer cp = session.createProducer();
+      // more than are routed together, to two addresses in turns
+      int numMessages = 250;
+      for (int i = 0; i < numMessages; i++)
+      {
+         ClientMessage message = session.createMessage(true);
+         message.putIntProperty("i", i);
+         cp.send(i / 10 % 2 == 0 ? addressA : addressB, message);
+      }
+      Queue q = (Queue) server.getPostOffice().getBinding(queueA).getBindable();
+      Assert.assertEquals(0, getMessageCount(q));
+      session.rollback();
+      for (int i = 0; i < numMessages; i++)
+      {
+         ClientMessage message = session.createMessage(true);
+         message.putIntProperty("i", i);
+         cp.send(i / 10 % 2 == 0 ? addressA : addressB, message);
+      }
+      session.commit();
+      Assert.assertEquals(130, getMessageCount(q));
+      session.close();
+      cf.close();
+
+      server.stop();
+      server.start();
+
+      cf = createSessionFactory(locator);
+      session = cf.createSession(false, true, true);
+      session.start();
+      assertReceivedInOrder(session.createConsumer(queueA), 0, numMessages, 0);
+      assertReceivedInOrder(session.createConsumer(queueB), 0, numMessages, 1);
+      session.close();
+   }
+
+   private void assertReceivedInOrder(final ClientConsumer consumer, final int first, final int last, final int run) throws Exception
+   {
+      for (int i = first; i < last; i++)
+      {
+         if (i / 10 % 2 == run)
+         {
+            ClientMessage message = consumer.receive(5000);
+            Assert.assertNotNull(message);
+            Assert.assertEquals(i, message.getIntProperty("i").intValue());
+         }
+      }
+      Assert.assertNull(consumer.receiveImmediate());
+   }
 }
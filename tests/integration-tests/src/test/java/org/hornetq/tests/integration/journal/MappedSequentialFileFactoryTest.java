@@ -0,0 +1,61 @@
+/*
+ * Copyright 2005-2014 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.hornetq.tests.integration.journal;
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.hornetq.core.journal.SequentialFile;
+import org.hornetq.core.journal.SequentialFileFactory;
+import org.hornetq.core.journal.impl.MappedSequentialFileFactory;
+import org.hornetq.tests.unit.core.journal.impl.SequentialFileFactoryTestBase;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * A MappedSequentialFileFactoryTest
+ */
+public class MappedSequentialFileFactoryTest extends SequentialFileFactoryTestBase
+{
+
+   @Override
+   protected SequentialFileFactory createFactory()
+   {
+      return new MappedSequentialFileFactory(getTestDir(), true);
+   }
+
+   @Test
+   public void testGrownFileTruncatedOnClose() throws Exception
+   {
+      byte[] bytes = "aardvark".getBytes(StandardCharsets.UTF_8);
+
+      for (int i = 0; i < 100; i++)
+      {
+         SequentialFile sf = factory.createSequentialFile("grown" + i + ".hq", 1);
+
+         sf.open();
+
+         // the mapping grows past the data
+         sf.writeDirect(ByteBuffer.wrap(bytes), true);
+
+         sf.close();
+
+         Assert.assertEquals(bytes.length, new File(getTestDir(), "grown" + i + ".hq").length());
+
+         sf.delete();
+
+         Assert.assertFalse(new File(getTestDir(), "grown" + i + ".hq").exists());
+      }
+   }
+
+}
@@ -18,6 +18,7 @@ import java.util.Set;
 import org.hornetq.api.config.HornetQDefaultConfiguration;
 import org.hornetq.api.core.SimpleString;
 import org.hornetq.api.core.TransportConfiguration;
+import org.hornetq.api.core.client.ClientConsumer;
 import org.hornetq.api.core.client.ClientMessage;
 import org.hornetq.api.core.client.ClientProducer;
 import org.hornetq.api.core.client.ClientSession;
@@ -272,6 +273,56 @@ public class AddressControlTest extends ManagementTestBase
       Assert.assertEquals(serverQueue.getPageSubscription().getPagingStore().getAddressSize(), addressControl.getAddressSize());
    }
 
+   @Test
+   public void testPageCacheMetrics() throws Exception
+   {
+      SimpleString address = RandomUtil.randomSimpleString();
+
+      session.close();
+      server.stop();
+      server.getConfiguration().setPersistenceEnabled(true);
+
+      AddressSettings addressSettings = new AddressSettings();
+      addressSettings.setPageSizeBytes(2048);
+      addressSettings.setMaxSizeBytes(10 * 1024);
+      addressSettings.setPageCacheMaxSize(1);
+
+      server.getAddressSettingsRepository().addMatch(address.toString(), addressSettings);
+      server.start();
+      ServerLocator locator2 = HornetQClient.createServerLocatorWithoutHA(new TransportConfiguration(
+         UnitTestCase.INVM_CONNECTOR_FACTORY));
+      addServerLocator(locator2);
+      ClientSessionFactory sf2 = createSessionFactory(locator2);
+
+      session = sf2.createSession(false, true, true);
+      session.start();
+      session.createQueue(address, address, true);
+
+      ClientProducer producer = session.createProducer(address);
+
+      for (int i = 0; i < 100; i++)
+      {
+         ClientMessage msg = session.createMessage(true);
+         msg.getBodyBuffer().writeBytes(new byte[512]);
+         producer.send(msg);
+      }
+
+      ClientConsumer consumer = session.createConsumer(address);
+
+      for (int i = 0; i < 100; i++)
+      {
+         ClientMessage msg = consumer.receive(5000);
+         Assert.assertNotNull(msg);
+         msg.acknowledge();
+      }
+
+      AddressControl addressControl = createManagementControl(address);
+      Assert.assertTrue(addressControl.getPageCacheMisses() > 1);
+      Assert.assertTrue(addressControl.getPageCacheHits() > 0);
+      Assert.assertTrue(addressControl.getPageCacheEvictions() > 0);
+      Assert.assertTrue(addressControl.getPageCacheSize() >= 0);
+   }
+
    @Test
    public void testGetNumberOfBytesPerPage() throws Exception
    {
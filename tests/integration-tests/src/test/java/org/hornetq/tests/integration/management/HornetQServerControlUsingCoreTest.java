@@ -511,6 +511,21 @@ public class HornetQServerControlUsingCoreTest extends HornetQServerControlTest
             return (Integer) proxy.retrieveAttributeValue("JournalBufferTimeout");
          }
 
+         public int getJournalBufferCurrentTimeout()
+         {
+            return (Integer) proxy.retrieveAttributeValue("JournalBufferCurrentTimeout");
+         }
+
+         public long getJournalBufferFlushCount()
+         {
+            return (Long) proxy.retrieveAttributeValue("JournalBufferFlushCount");
+         }
+
+         public long getJournalBufferSyncFlushCount()
+         {
+            return (Long) proxy.retrieveAttributeValue("JournalBufferSyncFlushCount");
+         }
+
          public int getJournalCompactMinFiles()
          {
             return (Integer) proxy.retrieveAttributeValue("JournalCompactMinFiles");
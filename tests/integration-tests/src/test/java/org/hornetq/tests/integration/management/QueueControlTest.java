@@ -372,6 +372,45 @@ public class QueueControlTest extends ManagementTestBase
       session.deleteQueue(queue);
    }
 
+   @Test
+   public void testGetDelayedRedeliveryCount() throws Exception
+   {
+      long delay = 500;
+      SimpleString address = RandomUtil.randomSimpleString();
+      SimpleString queue = RandomUtil.randomSimpleString();
+
+      AddressSettings addressSettings = new AddressSettings();
+      addressSettings.setRedeliveryDelay(delay);
+      server.getAddressSettingsRepository().addMatch(address.toString(), addressSettings);
+
+      session.createQueue(address, queue, null, false);
+
+      QueueControl queueControl = createManagementControl(address, queue);
+      Assert.assertEquals(0, queueControl.getDelayedRedeliveryCount());
+
+      ClientProducer producer = session.createProducer(address);
+      producer.send(session.createMessage(false));
+
+      ClientConsumer consumer = session.createConsumer(queue);
+      ClientMessage message = consumer.receive(500);
+      Assert.assertNotNull(message);
+      message.acknowledge();
+      session.rollback();
+      consumer.close();
+
+      Assert.assertEquals(1, queueControl.getDelayedRedeliveryCount());
+      Assert.assertEquals(1, queueControl.getScheduledCount());
+      ManagementTestBase.consumeMessages(0, session, queue);
+
+      Thread.sleep(delay * 2);
+
+      Assert.assertEquals(0, queueControl.getDelayedRedeliveryCount());
+      Assert.assertEquals(0, queueControl.getScheduledCount());
+      ManagementTestBase.consumeMessages(1, session, queue);
+
+      session.deleteQueue(queue);
+   }
+
    //https://issues.jboss.org/browse/HORNETQ-1231
    @Test
    public void testListDeliveringMessagesWithRASession() throws Exception
@@ -560,6 +599,53 @@ public class QueueControlTest extends ManagementTestBase
       session.deleteQueue(queue);
    }
 
+   @Test
+   public void testListScheduledMessagesWithDelayedRedelivery() throws Exception
+   {
+      SimpleString address = RandomUtil.randomSimpleString();
+      SimpleString queue = RandomUtil.randomSimpleString();
+
+      AddressSettings addressSettings = new AddressSettings();
+      addressSettings.setRedeliveryDelay(5000);
+      server.getAddressSettingsRepository().addMatch(address.toString(), addressSettings);
+
+      session.createQueue(address, queue, null, false);
+
+      QueueControl queueControl = createManagementControl(address, queue);
+
+      long now = System.currentTimeMillis();
+
+      ClientProducer producer = session.createProducer(address);
+      ClientMessage message = session.createMessage(false);
+      message.putLongProperty(Message.HDR_SCHEDULED_DELIVERY_TIME, now + 3000);
+      message.putIntProperty(new SimpleString("key"), 1);
+      producer.send(message);
+      message = session.createMessage(false);
+      message.putLongProperty(Message.HDR_SCHEDULED_DELIVERY_TIME, now + 60000);
+      message.putIntProperty(new SimpleString("key"), 3);
+      producer.send(message);
+      message = session.createMessage(false);
+      message.putIntProperty(new SimpleString("key"), 2);
+      producer.send(message);
+
+      // redelivered in 5 seconds, between the two scheduled messages
+      ClientConsumer consumer = session.createConsumer(queue);
+      message = consumer.receive(500);
+      Assert.assertNotNull(message);
+      message.acknowledge();
+      session.rollback();
+      consumer.close();
+
+      Map<String, Object>[] messages = queueControl.listScheduledMessages();
+      Assert.assertEquals(3, messages.length);
+      for (int i = 0; i < 3; i++)
+      {
+         Assert.assertEquals(i + 1, ((Number) messages[i].get("key")).intValue());
+      }
+
+      session.deleteQueue(queue);
+   }
+
    @Test
    public void testListScheduledMessagesAsJSON() throws Exception
    {
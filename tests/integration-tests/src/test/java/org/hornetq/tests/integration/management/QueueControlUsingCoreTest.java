@@ -149,6 +149,11 @@ public class QueueControlUsingCoreTest extends QueueControlTest
             return (Long) proxy.retrieveAttributeValue("scheduledCount", Long.class);
          }
 
+         public long getDelayedRedeliveryCount()
+         {
+            return (Long) proxy.retrieveAttributeValue("delayedRedeliveryCount", Long.class);
+         }
+
          public boolean isDurable()
          {
             return (Boolean) proxy.retrieveAttributeValue("durable");
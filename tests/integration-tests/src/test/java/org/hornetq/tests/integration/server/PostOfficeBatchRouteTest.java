@@ -0,0 +1,137 @@
+/*
+ * Copyright 2005-2014 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.hornetq.tests.integration.server;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.hornetq.api.core.SimpleString;
+import org.hornetq.core.server.HornetQServer;
+import org.hornetq.core.server.Queue;
+import org.hornetq.core.server.ServerMessage;
+import org.hornetq.core.server.impl.ServerMessageImpl;
+import org.hornetq.core.transaction.Transaction;
+import org.hornetq.core.transaction.impl.TransactionImpl;
+import org.hornetq.tests.util.ServiceTestBase;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Routes batches of messages through {@link org.hornetq.core.postoffice.PostOffice#route(List, Transaction, boolean, boolean)}.
+ */
+public class PostOfficeBatchRouteTest extends ServiceTestBase
+{
+   private static final SimpleString ADDRESS_A = new SimpleString("A");
+
+   private static final SimpleString ADDRESS_B = new SimpleString("B");
+
+   private static final SimpleString QUEUE_A1 = new SimpleString("a1");
+
+   private static final SimpleString QUEUE_A2 = new SimpleString("a2");
+
+   private static final SimpleString QUEUE_B1 = new SimpleString("b1");
+
+   private HornetQServer server;
+
+   @Override
+   @Before
+   public void setUp() throws Exception
+   {
+      super.setUp();
+
+      server = createServer(true);
+      server.start();
+
+      server.createQueue(ADDRESS_A, QUEUE_A1, null, true, false);
+      server.createQueue(ADDRESS_A, QUEUE_A2, new SimpleString("color='red'"), true, false);
+      server.createQueue(ADDRESS_B, QUEUE_B1, null, false, false);
+   }
+
+   @Test
+   public void testRouteBatch() throws Exception
+   {
+      Transaction tx = new TransactionImpl(server.getStorageManager());
+
+      server.getPostOffice().route(createMessages(100), tx, false, true);
+
+      assertEquals(0, getMessageCount(queue(QUEUE_A1)));
+      assertEquals(0, getMessageCount(queue(QUEUE_A2)));
+      assertEquals(0, getMessageCount(queue(QUEUE_B1)));
+
+      tx.commit();
+
+      server.getStorageManager().waitOnOperations();
+
+      assertEquals(50, getMessageCount(queue(QUEUE_A1)));
+      assertEquals(25, getMessageCount(queue(QUEUE_A2)));
+      assertEquals(50, getMessageCount(queue(QUEUE_B1)));
+
+      server.stop();
+      server.start();
+
+      assertEquals(50, getMessageCount(queue(QUEUE_A1)));
+      assertEquals(25, getMessageCount(queue(QUEUE_A2)));
+
+      // b1 wasn't durable
+      assertNull(queue(QUEUE_B1));
+   }
+
+   @Test
+   public void testRouteBatchRollback() throws Exception
+   {
+      Transaction tx = new TransactionImpl(server.getStorageManager());
+
+      server.getPostOffice().route(createMessages(100), tx, false, true);
+
+      tx.rollback();
+
+      server.getStorageManager().waitOnOperations();
+
+      assertEquals(0, getMessageCount(queue(QUEUE_A1)));
+      assertEquals(0, getMessageCount(queue(QUEUE_A2)));
+      assertEquals(0, getMessageCount(queue(QUEUE_B1)));
+
+      assertEquals(0, server.getPagingManager().getPageStore(ADDRESS_A).getAddressSize());
+      assertEquals(0, server.getPagingManager().getPageStore(ADDRESS_B).getAddressSize());
+
+      server.stop();
+      server.start();
+
+      assertEquals(0, getMessageCount(queue(QUEUE_A1)));
+      assertEquals(0, getMessageCount(queue(QUEUE_A2)));
+   }
+
+   /**
+    * Durable messages to A and B in runs of 10, half of them red
+    */
+   private List<ServerMessage> createMessages(final int count)
+   {
+      List<ServerMessage> messages = new ArrayList<ServerMessage>();
+
+      for (int i = 0; i < count; i++)
+      {
+         ServerMessage message = new ServerMessageImpl(server.getStorageManager().generateID(), 1000);
+         message.setAddress(i / 10 % 2 == 0 ? ADDRESS_A : ADDRESS_B);
+         message.setDurable(true);
+         message.putStringProperty("color", i % 2 == 0 ? "red" : "blue");
+         messages.add(message);
+      }
+
+      return messages;
+   }
+
+   private Queue queue(final SimpleString name) throws Exception
+   {
+      return server.locateQueue(name);
+   }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2005-2014 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.hornetq.tests.benchmarks.filter;
+
+import java.util.concurrent.TimeUnit;
+
+import org.hornetq.api.core.SimpleString;
+import org.hornetq.core.filter.Filter;
+import org.hornetq.core.filter.impl.FilterImpl;
+import org.hornetq.core.server.ServerMessage;
+import org.hornetq.tests.benchmarks.utils.BenchmarkUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures a single {@link FilterImpl} matched by a growing number of threads, as the filter of a binding or a
+ * consumer shared by all the sessions sending to its address. The throughput should grow with the threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(value = 2)
+public class SharedFilterBenchmark
+{
+   private static final SimpleString ADDRESS = new SimpleString("benchmark.address");
+
+   @Param({"color = 'red' AND weight > 50",
+      "HQPriority > 3 OR color LIKE 'r%'"})
+   public String selector;
+
+   private Filter filter;
+
+   private ServerMessage message;
+
+   @Setup(Level.Trial)
+   public void setUp() throws Exception
+   {
+      filter = FilterImpl.createFilter(selector);
+
+      message = BenchmarkUtil.createMessage(10, ADDRESS, 0);
+   }
+
+   @Benchmark
+   @Threads(1)
+   public boolean oneThread()
+   {
+      return filter.match(message);
+   }
+
+   @Benchmark
+   @Threads(4)
+   public boolean fourThreads()
+   {
+      return filter.match(message);
+   }
+
+   @Benchmark
+   @Threads(Threads.MAX)
+   public boolean allThreads()
+   {
+      return filter.match(message);
+   }
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2005-2014 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.hornetq.tests.benchmarks.journal;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.hornetq.core.journal.impl.JournalConstants;
+import org.hornetq.core.journal.impl.JournalImpl;
+import org.hornetq.core.journal.impl.MappedSequentialFileFactory;
+import org.hornetq.core.journal.impl.NIOSequentialFileFactory;
+import org.hornetq.tests.benchmarks.utils.BenchmarkUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link JournalImpl} appends going through the NIO {@link org.hornetq.core.journal.impl.TimedBuffer},
+ * on NIO files or on memory mapped files.
+ * <p/>
+ * Every added record is deleted on the next invocation so the journal stays on a bounded number of files
+ * and the reclaimer is exercised the same way it is on a broker with a steady consumer.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(value = 2)
+public class JournalAppendBenchmark
+{
+   private static final byte RECORD_TYPE = 1;
+
+   @Param({"100", "1024"})
+   public int recordSize;
+
+   @Param({"false", "true"})
+   public boolean sync;
+
+   @Param({"NIO", "MAPPED"})
+   public String fileType;
+
+   private final AtomicLong sequence = new AtomicLong(0);
+
+   private File directory;
+
+   private NIOSequentialFileFactory fileFactory;
+
+   private JournalImpl journal;
+
+   private byte[] record;
+
+   @Setup(Level.Trial)
+   public void setUp() throws Exception
+   {
+      directory = BenchmarkUtil.createTemporaryDirectory("journal");
+
+      if ("MAPPED".equals(fileType))
+      {
+         fileFactory = new MappedSequentialFileFactory(directory.getAbsolutePath(),
+                                                       true,
+                                                       JournalConstants.DEFAULT_JOURNAL_BUFFER_SIZE_NIO,
+                                                       JournalConstants.DEFAULT_JOURNAL_BUFFER_TIMEOUT_NIO,
+                                                       false,
+                                                       null);
+      }
+      else
+      {
+         fileFactory = new NIOSequentialFileFactory(directory.getAbsolutePath(),
+                                                    true,
+                                                    JournalConstants.DEFAULT_JOURNAL_BUFFER_SIZE_NIO,
+                                                    JournalConstants.DEFAULT_JOURNAL_BUFFER_TIMEOUT_NIO,
+                                                    false);
+      }
+
+      journal = new JournalImpl(10 * 1024 * 1024, 2, 0, 0, fileFactory, "hornetq-data", "hq", 1);
+
+      fileFactory.start();
+
+      journal.start();
+
+      journal.loadInternalOnly();
+
+      record = new byte[recordSize];
+   }
+
+   @TearDown(Level.Trial)
+   public void tearDown() throws Exception
+   {
+      journal.stop();
+
+      fileFactory.stop();
+
+      BenchmarkUtil.deleteDirectory(directory);
+   }
+
+   @Benchmark
+   public long appendAddDelete() throws Exception
+   {
+      long id = sequence.incrementAndGet();
+
+      journal.appendAddRecord(id, RECORD_TYPE, record, sync);
+
+      journal.appendDeleteRecord(id, false);
+
+      return id;
+   }
+
+   @Benchmark
+   public long appendTransactional() throws Exception
+   {
+      long txID = sequence.incrementAndGet();
+      long id = sequence.incrementAndGet();
+
+      journal.appendAddRecordTransactional(txID, id, RECORD_TYPE, record);
+
+      journal.appendCommitRecord(txID, sync);
+
+      journal.appendDeleteRecord(id, false);
+
+      return id;
+   }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2005-2014 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.hornetq.tests.benchmarks.message;
+
+import java.util.concurrent.TimeUnit;
+
+import org.hornetq.api.core.HornetQBuffer;
+import org.hornetq.api.core.HornetQBuffers;
+import org.hornetq.api.core.SimpleString;
+import org.hornetq.core.server.ServerMessage;
+import org.hornetq.core.server.impl.ServerMessageImpl;
+import org.hornetq.tests.benchmarks.utils.BenchmarkUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the journal/paging encoding of {@link org.hornetq.core.message.impl.MessageImpl}, decoding the
+ * same way JournalStorageManager does while loading the message journal.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(value = 2)
+public class MessageEncodingBenchmark
+{
+   private static final SimpleString ADDRESS = new SimpleString("benchmark.address");
+
+   @Param({"0", "1024", "10240"})
+   public int bodySize;
+
+   private ServerMessage message;
+
+   private HornetQBuffer encodeBuffer;
+
+   private HornetQBuffer encoded;
+
+   @Setup(Level.Trial)
+   public void setUp()
+   {
+      message = BenchmarkUtil.createMessage(1, ADDRESS, bodySize);
+
+      encodeBuffer = HornetQBuffers.fixedBuffer(message.getEncodeSize());
+
+      encoded = HornetQBuffers.fixedBuffer(message.getEncodeSize());
+
+      message.encode(encoded);
+   }
+
+   @Benchmark
+   public HornetQBuffer encode()
+   {
+      encodeBuffer.clear();
+
+      message.encode(encodeBuffer);
+
+      return encodeBuffer;
+   }
+
+   @Benchmark
+   public ServerMessage decode()
+   {
+      encoded.readerIndex(0);
+
+      ServerMessage decoded = new ServerMessageImpl(-1, 50);
+
+      decoded.decode(encoded);
+
+      return decoded;
+   }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2005-2014 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.hornetq.tests.benchmarks.postoffice;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.hornetq.api.core.SimpleString;
+import org.hornetq.core.config.impl.ConfigurationImpl;
+import org.hornetq.core.postoffice.PostOffice;
+import org.hornetq.core.server.HornetQServer;
+import org.hornetq.core.server.HornetQServers;
+import org.hornetq.core.server.ServerMessage;
+import org.hornetq.core.transaction.Transaction;
+import org.hornetq.core.transaction.impl.TransactionImpl;
+import org.hornetq.tests.benchmarks.utils.BenchmarkUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link PostOffice#route(ServerMessage, Transaction, boolean)} on a non persistent embedded server
+ * where the target address is matched by wildcard bindings ({@code #} and {@code *}) as well as by
+ * {@code bindings} exact-address queues, half of them filtered.
+ * <p/>
+ * Messages are routed within a transaction that is rolled back, so the queues don't grow during the measurement.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(value = 2)
+public class PostOfficeRouteBenchmark
+{
+   private static final SimpleString ADDRESS = new SimpleString("news.europe.sport");
+
+   private static final SimpleString[] WILDCARD_ADDRESSES = {new SimpleString("news.#"),
+      new SimpleString("news.*.sport"),
+      new SimpleString("news.europe.*"),
+      new SimpleString("#")};
+
+   @Param({"1", "10", "100"})
+   public int bindings;
+
+   private final AtomicLong sequence = new AtomicLong(0);
+
+   private File directory;
+
+   private HornetQServer server;
+
+   private PostOffice postOffice;
+
+   @Setup(Level.Trial)
+   public void setUp() throws Exception
+   {
+      directory = BenchmarkUtil.createTemporaryDirectory("postoffice");
+
+      ConfigurationImpl configuration = new ConfigurationImpl();
+      configuration.setPersistenceEnabled(false);
+      configuration.setSecurityEnabled(false);
+      configuration.setJMXManagementEnabled(false);
+      configuration.setWildcardRoutingEnabled(true);
+      configuration.setBindingsDirectory(new File(directory, "bindings").getAbsolutePath());
+      configuration.setJournalDirectory(new File(directory, "journal").getAbsolutePath());
+      configuration.setPagingDirectory(new File(directory, "paging").getAbsolutePath());
+      configuration.setLargeMessagesDirectory(new File(directory, "large-messages").getAbsolutePath());
+
+      server = HornetQServers.newHornetQServer(configuration, false);
+
+      server.start();
+
+      for (int i = 0; i < WILDCARD_ADDRESSES.length; i++)
+      {
+         server.createQueue(WILDCARD_ADDRESSES[i], new SimpleString("wildcard" + i), null, false, false);
+      }
+
+      for (int i = 0; i < bindings; i++)
+      {
+         SimpleString filter = i % 2 == 0 ? null : new SimpleString("color = 'red' AND weight > " + (i % 100));
+
+         server.createQueue(ADDRESS, new SimpleString("queue" + i), filter, false, false);
+      }
+
+      postOffice = server.getPostOffice();
+   }
+
+   @TearDown(Level.Trial)
+   public void tearDown() throws Exception
+   {
+      server.stop();
+
+      BenchmarkUtil.deleteDirectory(directory);
+   }
+
+   @Benchmark
+   public ServerMessage route() throws Exception
+   {
+      ServerMessage message = BenchmarkUtil.createMessage(sequence.incrementAndGet(), ADDRESS, 0);
+
+      Transaction tx = new TransactionImpl(server.getStorageManager());
+
+      postOffice.route(message, tx, false);
+
+      tx.rollback();
+
+      return message;
+   }
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright 2005-2014 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.hornetq.tests.benchmarks.server;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.hornetq.api.core.SimpleString;
+import org.hornetq.core.filter.Filter;
+import org.hornetq.core.server.Consumer;
+import org.hornetq.core.server.HandleStatus;
+import org.hornetq.core.server.MessageReference;
+import org.hornetq.core.server.ServerMessage;
+import org.hornetq.core.server.impl.QueueImpl;
+import org.hornetq.core.settings.impl.AddressSettings;
+import org.hornetq.core.settings.impl.HierarchicalObjectRepository;
+import org.hornetq.tests.benchmarks.utils.BenchmarkUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the delivery of a queue where all the consumers but {@code readyConsumers} are busy, as when most of
+ * thousands of consumers ran out of credits, with and without {@link AddressSettings#isReadyConsumerDelivery()}.
+ * Each invocation adds a batch of references and waits until all of them were acknowledged.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(value = 2)
+public class QueueBusyConsumersBenchmark
+{
+   private static final int BATCH = 1000;
+
+   private static final SimpleString ADDRESS = new SimpleString("benchmark.address");
+
+   @Param({"100", "2000"})
+   public int consumers;
+
+   @Param({"1", "10"})
+   public int readyConsumers;
+
+   @Param({"false", "true"})
+   public boolean readyConsumerDelivery;
+
+   private final AtomicLong delivered = new AtomicLong(0);
+
+   private ScheduledExecutorService scheduledExecutor;
+
+   private ExecutorService executor;
+
+   private QueueImpl queue;
+
+   private ServerMessage message;
+
+   private final AtomicLong sent = new AtomicLong(0);
+
+   @Setup(Level.Trial)
+   public void setUp() throws Exception
+   {
+      scheduledExecutor = Executors.newSingleThreadScheduledExecutor();
+
+      executor = Executors.newSingleThreadExecutor();
+
+      AddressSettings settings = new AddressSettings();
+
+      settings.setReadyConsumerDelivery(readyConsumerDelivery);
+
+      HierarchicalObjectRepository<AddressSettings> addressSettingsRepository = new HierarchicalObjectRepository<AddressSettings>();
+
+      addressSettingsRepository.setDefault(settings);
+
+      queue = new QueueImpl(1, ADDRESS, ADDRESS, null, false, false, scheduledExecutor, null, null, addressSettingsRepository, executor);
+
+      // the ready consumers are spread among the busy ones
+      int every = Math.max(1, consumers / readyConsumers);
+
+      for (int i = 0; i < consumers; i++)
+      {
+         queue.addConsumer(new BenchmarkConsumer(i % every == every - 1));
+      }
+
+      message = BenchmarkUtil.createMessage(1, ADDRESS, 0);
+   }
+
+   @TearDown(Level.Trial)
+   public void tearDown() throws Exception
+   {
+      queue.close();
+
+      executor.shutdownNow();
+
+      scheduledExecutor.shutdownNow();
+   }
+
+   @Benchmark
+   @OperationsPerInvocation(BATCH)
+   public long addTailAndDeliver()
+   {
+      long target = sent.addAndGet(BATCH);
+
+      for (int i = 0; i < BATCH; i++)
+      {
+         queue.addTail(message.createReference(queue));
+      }
+
+      while (delivered.get() < target)
+      {
+         Thread.yield();
+      }
+
+      return target;
+   }
+
+   private final class BenchmarkConsumer implements Consumer
+   {
+      private final boolean ready;
+
+      BenchmarkConsumer(final boolean ready)
+      {
+         this.ready = ready;
+      }
+
+      public HandleStatus handle(final MessageReference reference) throws Exception
+      {
+         if (!ready)
+         {
+            return HandleStatus.BUSY;
+         }
+
+         reference.getQueue().referenceHandled();
+
+         return HandleStatus.HANDLED;
+      }
+
+      public void proceedDeliver(final MessageReference reference) throws Exception
+      {
+         reference.getQueue().acknowledge(reference);
+
+         delivered.incrementAndGet();
+      }
+
+      public Filter getFilter()
+      {
+         return null;
+      }
+
+      public List<MessageReference> getDeliveringMessages()
+      {
+         return Collections.emptyList();
+      }
+
+      public String debug()
+      {
+         return toString();
+      }
+
+      public String toManagementString()
+      {
+         return toString();
+      }
+
+      public void disconnect()
+      {
+      }
+   }
+}
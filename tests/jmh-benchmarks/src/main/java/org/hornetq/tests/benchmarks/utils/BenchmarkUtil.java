@@ -0,0 +1,84 @@
+/*
+ * Copyright 2005-2014 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.hornetq.tests.benchmarks.utils;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.hornetq.api.core.SimpleString;
+import org.hornetq.core.server.ServerMessage;
+import org.hornetq.core.server.impl.ServerMessageImpl;
+
+/**
+ * Helpers shared by the benchmarks of this module.
+ */
+public final class BenchmarkUtil
+{
+   private BenchmarkUtil()
+   {
+   }
+
+   public static File createTemporaryDirectory(final String prefix) throws IOException
+   {
+      File file = File.createTempFile("hornetq-benchmark-" + prefix, "");
+
+      if (!file.delete() || !file.mkdirs())
+      {
+         throw new IOException("Could not create directory " + file);
+      }
+
+      return file;
+   }
+
+   public static void deleteDirectory(final File directory)
+   {
+      File[] files = directory.listFiles();
+
+      if (files != null)
+      {
+         for (File file : files)
+         {
+            if (file.isDirectory())
+            {
+               deleteDirectory(file);
+            }
+            else
+            {
+               file.delete();
+            }
+         }
+      }
+
+      directory.delete();
+   }
+
+   /**
+    * Creates a message with a body of {@code bodySize} bytes and the properties the filter benchmarks select on.
+    */
+   public static ServerMessage createMessage(final long id, final SimpleString address, final int bodySize)
+   {
+      ServerMessage message = new ServerMessageImpl(id, 50 + bodySize);
+
+      message.setAddress(address);
+
+      message.getBodyBuffer().writeBytes(new byte[bodySize]);
+
+      message.putStringProperty("color", (id & 1) == 0 ? "red" : "blue");
+
+      message.putIntProperty("weight", (int) (id % 100));
+
+      message.putLongProperty("timestamp", id);
+
+      return message;
+   }
+}
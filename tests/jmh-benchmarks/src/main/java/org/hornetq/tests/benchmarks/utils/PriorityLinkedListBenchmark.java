@@ -0,0 +1,124 @@
+/*
+ * Copyright 2005-2014 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.hornetq.tests.benchmarks.utils;
+
+import java.util.concurrent.TimeUnit;
+
+import org.hornetq.utils.LinkedListIterator;
+import org.hornetq.utils.PriorityLinkedListImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the {@link PriorityLinkedListImpl} operations used by {@link org.hornetq.core.server.impl.QueueImpl}:
+ * adding at the tail, polling, and iterating with removal the way a consumer iterator does.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(value = 2)
+public class PriorityLinkedListBenchmark
+{
+   private static final int PRIORITIES = 10;
+
+   private static final int ELEMENTS = 10000;
+
+   /**
+    * Number of distinct priorities actually used by the elements
+    */
+   @Param({"1", "10"})
+   public int usedPriorities;
+
+   private PriorityLinkedListImpl<Integer> list;
+
+   private Integer[] values;
+
+   @Setup(Level.Trial)
+   public void setUpValues()
+   {
+      values = new Integer[ELEMENTS];
+
+      for (int i = 0; i < ELEMENTS; i++)
+      {
+         values[i] = i;
+      }
+   }
+
+   @Setup(Level.Invocation)
+   public void setUp()
+   {
+      list = new PriorityLinkedListImpl<Integer>(PRIORITIES);
+   }
+
+   @Benchmark
+   @OperationsPerInvocation(ELEMENTS)
+   public int addTailAndPoll()
+   {
+      fill();
+
+      int sum = 0;
+
+      Integer value;
+
+      while ((value = list.poll()) != null)
+      {
+         sum += value;
+      }
+
+      return sum;
+   }
+
+   @Benchmark
+   @OperationsPerInvocation(ELEMENTS)
+   public void addTailAndIterateRemove(final Blackhole blackhole)
+   {
+      fill();
+
+      LinkedListIterator<Integer> iterator = list.iterator();
+
+      try
+      {
+         while (iterator.hasNext())
+         {
+            blackhole.consume(iterator.next());
+            iterator.remove();
+         }
+      }
+      finally
+      {
+         iterator.close();
+      }
+   }
+
+   private void fill()
+   {
+      for (int i = 0; i < ELEMENTS; i++)
+      {
+         list.addTail(values[i], i % usedPriorities);
+      }
+   }
+}
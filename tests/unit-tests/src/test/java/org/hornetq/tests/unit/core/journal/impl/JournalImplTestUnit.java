@@ -13,11 +13,17 @@
 package org.hornetq.tests.unit.core.journal.impl;
 
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.hornetq.api.core.HornetQException;
 import org.hornetq.api.core.HornetQIOErrorException;
 import org.hornetq.core.journal.EncodingSupport;
+import org.hornetq.core.journal.PreparedTransactionInfo;
 import org.hornetq.core.journal.RecordInfo;
 import org.hornetq.core.journal.SequentialFile;
 import org.hornetq.core.journal.impl.JournalImpl;
@@ -3088,6 +3094,147 @@ public abstract class JournalImplTestUnit extends JournalImplTestBase
       loadAndCheck();
    }
 
+   @Test
+   public void testLoadWithParallelReaders() throws Exception
+   {
+      setup(2, 10 * 1024, true);
+
+      createJournal();
+      startJournal();
+      load();
+
+      for (long i = 1; i <= 100; i++)
+      {
+         add(i);
+      }
+
+      addTx(1000, 1001, 1002, 1003, 1004);
+      update(2, 4, 6);
+      prepare(1000, new SimpleEncoding(10, (byte) 0));
+
+      for (long i = 101; i <= 200; i++)
+      {
+         add(i);
+      }
+
+      deleteTx(2000, 1, 3, 5);
+      commit(2000);
+      addTx(3000, 3001);
+      delete(7, 101);
+      rollback(3000);
+      commit(1000);
+
+      int files = journal.getDataFilesCount();
+
+      Assert.assertTrue("records should be spread over several files, were on " + files, files > 4);
+
+      stopJournal();
+      createJournal();
+      ((JournalImpl) journal).setLoadThreads(3);
+      startJournal();
+      loadAndCheck();
+
+      Assert.assertEquals(files, journal.getDataFilesCount());
+   }
+
+   @Test
+   public void testConcurrentAppends() throws Exception
+   {
+      setup(2, 100 * 1024, false);
+
+      createJournal();
+      startJournal();
+      load();
+
+      final int threads = 10;
+
+      final int recordsPerThread = 100;
+
+      final CountDownLatch start = new CountDownLatch(1);
+
+      final AtomicReference<Exception> failure = new AtomicReference<Exception>();
+
+      Thread[] appenders = new Thread[threads];
+
+      for (int t = 0; t < threads; t++)
+      {
+         final long base = t * 10000L;
+
+         appenders[t] = new Thread()
+         {
+            @Override
+            public void run()
+            {
+               try
+               {
+                  start.await();
+
+                  for (long id = base; id < base + recordsPerThread; id++)
+                  {
+                     journal.appendAddRecord(id, (byte) 1, new SimpleEncoding(10, (byte) 1), false);
+                     journal.appendUpdateRecord(id, (byte) 1, new SimpleEncoding(10, (byte) 2), false);
+
+                     if (id % 2 == 0)
+                     {
+                        journal.appendDeleteRecord(id, false);
+                     }
+                  }
+
+                  long txID = base + recordsPerThread;
+
+                  journal.appendAddRecordTransactional(txID, txID, (byte) 1, new SimpleEncoding(10, (byte) 3));
+                  journal.appendCommitRecord(txID, false);
+               }
+               catch (Exception e)
+               {
+                  failure.set(e);
+               }
+            }
+         };
+
+         appenders[t].start();
+      }
+
+      start.countDown();
+
+      for (Thread appender : appenders)
+      {
+         appender.join();
+      }
+
+      if (failure.get() != null)
+      {
+         throw failure.get();
+      }
+
+      stopJournal();
+      createJournal();
+      startJournal();
+
+      List<RecordInfo> committed = new ArrayList<RecordInfo>();
+
+      journal.load(committed, new ArrayList<PreparedTransactionInfo>(), null);
+
+      Set<Long> ids = new HashSet<Long>();
+
+      for (RecordInfo info : committed)
+      {
+         if (!info.isUpdate)
+         {
+            ids.add(info.id);
+         }
+      }
+
+      Assert.assertEquals(threads * (recordsPerThread / 2 + 1), ids.size());
+
+      for (int t = 0; t < threads; t++)
+      {
+         Assert.assertTrue(ids.contains(t * 10000L + 1));
+         Assert.assertFalse(ids.contains(t * 10000L + 2));
+         Assert.assertTrue(ids.contains(t * 10000L + recordsPerThread));
+      }
+   }
+
    @Test
    public void testReclaimAfterUpdate() throws Exception
    {
@@ -3224,6 +3371,101 @@ public abstract class JournalImplTestUnit extends JournalImplTestBase
 
    }
 
+   @Test
+   public void testUpdateAndDeleteWhileCompacting() throws Exception
+   {
+      setup(2, 60 * 1024, true);
+
+      createJournal();
+      startJournal();
+      load();
+
+      add(ids(1, 100));
+      update(ids(1, 10));
+      delete(ids(91, 100));
+
+      journal.forceMoveNextFile();
+
+      // compacting is held once the files were read, before its records are merged back
+      startCompact();
+
+      // records handed over to the compactor
+      update(ids(11, 20));
+      delete(ids(21, 30));
+
+      // records added while compacting
+      add(ids(101, 120));
+      update(ids(101, 110));
+      delete(ids(111, 120));
+
+      finishCompact();
+
+      update(ids(31, 35));
+      delete(ids(36, 40));
+      update(ids(101, 105));
+
+      stopJournal();
+      createJournal();
+      startJournal();
+      loadAndCheck();
+
+      journal.forceMoveNextFile();
+
+      // and without holding it, while another thread keeps updating and deleting
+      final AtomicReference<Exception> error = new AtomicReference<Exception>();
+
+      Thread updater = new Thread()
+      {
+         @Override
+         public void run()
+         {
+            try
+            {
+               for (long id = 41; id <= 90; id++)
+               {
+                  if (id % 2 == 0)
+                  {
+                     update(id);
+                  }
+                  else
+                  {
+                     delete(id);
+                  }
+               }
+            }
+            catch (Exception e)
+            {
+               error.set(e);
+            }
+         }
+      };
+
+      updater.start();
+
+      journal.testCompact();
+
+      updater.join();
+
+      Assert.assertNull(error.get());
+
+      stopJournal();
+      createJournal();
+      startJournal();
+      loadAndCheck();
+   }
+
+   private static long[] ids(final long first, final long last)
+   {
+      long[] ids = new long[(int) (last - first + 1)];
+
+      for (int i = 0; i < ids.length; i++)
+      {
+         ids[i] = first + i;
+      }
+
+      return ids;
+   }
+
    protected abstract int getAlignment();
 
 }
@@ -402,4 +402,68 @@ public class TimedBufferTest extends UnitTestCase
          timedBuffer.stop();
       }
    }
+
+   @Test
+   public void testAdaptiveTimeout() throws Exception
+   {
+      final CountDownLatch flushLatch = new CountDownLatch(2);
+
+      class TestObserver implements TimedBufferObserver
+      {
+         public void flushBuffer(final ByteBuffer buffer, final boolean sync, final List<IOAsyncTask> callbacks)
+         {
+            for (IOAsyncTask callback : callbacks)
+            {
+               callback.done();
+            }
+            flushLatch.countDown();
+         }
+
+         public ByteBuffer newBuffer(final int minSize, final int maxSize)
+         {
+            return ByteBuffer.allocate(maxSize);
+         }
+
+         public int getRemainingBytes()
+         {
+            return 1024 * 1024;
+         }
+      }
+
+      int configuredTimeout = TimedBufferTest.ONE_SECOND_IN_NANOS / 10;
+
+      TimedBuffer timedBuffer = new TimedBuffer(100, configuredTimeout, false);
+
+      timedBuffer.start();
+
+      try
+      {
+         timedBuffer.setObserver(new TestObserver());
+
+         // a millisecond is far less than the interval between the syncs below,
+         // so there is nothing to batch and the buffer should be flushed right away
+         timedBuffer.setTargetLatency(TimedBufferTest.ONE_SECOND_IN_NANOS / 1000);
+
+         for (int i = 0; i < 2; i++)
+         {
+            timedBuffer.checkSize(10);
+            timedBuffer.addBytes(HornetQBuffers.wrappedBuffer(new byte[10]), true, dummyCallback);
+            Thread.sleep(300);
+         }
+
+         Assert.assertTrue(flushLatch.await(10, TimeUnit.SECONDS));
+
+         Assert.assertEquals(TimedBuffer.MIN_ADAPTIVE_TIMEOUT, timedBuffer.getTimeout());
+         Assert.assertEquals(2, timedBuffer.getFlushCount());
+         Assert.assertEquals(2, timedBuffer.getSyncFlushCount());
+
+         timedBuffer.setTargetLatency(0);
+
+         Assert.assertEquals(configuredTimeout, timedBuffer.getTimeout());
+      }
+      finally
+      {
+         timedBuffer.stop();
+      }
+   }
 }
@@ -708,6 +708,11 @@ public class FakeSequentialFileFactory implements SequentialFileFactory
    {
    }
 
+   public TimedBuffer getTimedBuffer()
+   {
+      return null;
+   }
+
    @Override
    public void flush()
    {
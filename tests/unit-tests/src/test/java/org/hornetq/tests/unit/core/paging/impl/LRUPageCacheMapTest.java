@@ -0,0 +1,106 @@
+/*
+ * Copyright 2005-2014 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.hornetq.tests.unit.core.paging.impl;
+
+import org.hornetq.core.paging.cursor.PageCache;
+import org.hornetq.core.paging.cursor.impl.LRUPageCacheMap;
+import org.hornetq.core.paging.cursor.impl.LivePageCacheImpl;
+import org.hornetq.tests.util.UnitTestCase;
+import org.junit.Test;
+
+public class LRUPageCacheMapTest extends UnitTestCase
+{
+   @Test
+   public void testEvictLeastRecentlyUsed()
+   {
+      LRUPageCacheMap map = new LRUPageCacheMap(2, -1);
+
+      PageCache cache1 = newCache();
+      PageCache cache2 = newCache();
+      PageCache cache3 = newCache();
+
+      map.put(1, cache1);
+      map.put(2, cache2);
+
+      // touching 1 makes 2 the least recently used one
+      assertSame(cache1, map.get(1));
+
+      map.put(3, cache3);
+
+      assertEquals(2, map.size());
+      assertEquals(1, map.getEvictions());
+      assertTrue(map.containsKey(1));
+      assertFalse(map.containsKey(2));
+      assertTrue(map.containsKey(3));
+   }
+
+   @Test
+   public void testEvictBySize()
+   {
+      LRUPageCacheMap map = new LRUPageCacheMap(-1, 100);
+
+      map.put(1, newCache());
+      map.setSize(1, 60);
+      map.put(2, newCache());
+      map.setSize(2, 30);
+
+      assertEquals(90, map.getSizeInBytes());
+      assertEquals(2, map.size());
+
+      map.put(3, newCache());
+      map.setSize(3, 30);
+
+      assertEquals(60, map.getSizeInBytes());
+      assertFalse(map.containsKey(1));
+
+      // the most recently used cache stays even when it is bigger than the limit
+      map.put(4, newCache());
+      map.setSize(4, 500);
+
+      assertEquals(1, map.size());
+      assertTrue(map.containsKey(4));
+      assertEquals(500, map.getSizeInBytes());
+
+      map.remove(4);
+
+      assertEquals(0, map.getSizeInBytes());
+   }
+
+   @Test
+   public void testLiveCacheNotEvicted()
+   {
+      LRUPageCacheMap map = new LRUPageCacheMap(1, -1);
+
+      PageCache live = new LivePageCacheImpl(null);
+
+      map.put(1, live);
+      map.put(2, newCache());
+
+      assertEquals(2, map.size());
+      assertTrue(map.containsKey(1));
+
+      live.close();
+      map.setMaxElements(1);
+
+      assertEquals(1, map.size());
+      assertFalse(map.containsKey(1));
+      assertTrue(map.containsKey(2));
+   }
+
+   private static PageCache newCache()
+   {
+      PageCache cache = new LivePageCacheImpl(null);
+      cache.close();
+      return cache;
+   }
+}
@@ -0,0 +1,225 @@
+/*
+ * Copyright 2005-2014 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.hornetq.tests.unit.core.paging.impl;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import org.hornetq.api.core.SimpleString;
+import org.hornetq.core.paging.PagingStore;
+import org.hornetq.core.paging.impl.PageIOScheduler;
+import org.hornetq.tests.util.UnitTestCase;
+import org.junit.Test;
+
+public class PageIOSchedulerTest extends UnitTestCase
+{
+   private final LinkedList<Runnable> tasks = new LinkedList<Runnable>();
+
+   private final Executor executor = new Executor()
+   {
+      public void execute(final Runnable command)
+      {
+         tasks.add(command);
+      }
+   };
+
+   @Test
+   public void testMaxConcurrentIO()
+   {
+      PageIOScheduler scheduler = new PageIOScheduler(2, executor);
+
+      PagingStore store = newStore("a", 10);
+
+      final List<Integer> reads = new ArrayList<Integer>();
+
+      for (int i = 0; i < 5; i++)
+      {
+         scheduler.execute(store, new Read(reads, i));
+      }
+
+      assertEquals(2, scheduler.getRunningReads());
+      assertEquals(3, scheduler.getWaitingReads());
+      assertEquals(2, tasks.size());
+
+      runAll();
+
+      assertEquals(0, scheduler.getRunningReads());
+      assertEquals(0, scheduler.getWaitingReads());
+      assertEquals(5, scheduler.getGrantedReads());
+      assertEquals(5, reads.size());
+   }
+
+   @Test
+   public void testFairness()
+   {
+      PageIOScheduler scheduler = new PageIOScheduler(1, executor);
+
+      PagingStore storeA = newStore("a", 10);
+      PagingStore storeB = newStore("b", 10);
+
+      List<Integer> reads = new ArrayList<Integer>();
+
+      for (int i = 0; i < 10; i++)
+      {
+         scheduler.execute(storeA, new Read(reads, 0));
+      }
+
+      for (int i = 0; i < 10; i++)
+      {
+         scheduler.execute(storeB, new Read(reads, 1));
+      }
+
+      runAll();
+
+      assertEquals(20, reads.size());
+
+      // b didn't have to wait for all the reads of a
+      int readsOfB = 0;
+      for (int read : reads.subList(0, 10))
+      {
+         readsOfB += read;
+      }
+      assertTrue("reads of b " + readsOfB, readsOfB >= 4);
+   }
+
+   @Test
+   public void testBacklogWeight()
+   {
+      PageIOScheduler scheduler = new PageIOScheduler(1, executor);
+
+      PagingStore deep = newStore("deep", 1000);
+      PagingStore shallow = newStore("shallow", 0);
+
+      List<Integer> reads = new ArrayList<Integer>();
+
+      for (int i = 0; i < 20; i++)
+      {
+         scheduler.execute(deep, new Read(reads, 1));
+         scheduler.execute(shallow, new Read(reads, 0));
+      }
+
+      runAll();
+
+      int readsOfDeep = 0;
+      for (int read : reads.subList(0, 20))
+      {
+         readsOfDeep += read;
+      }
+      assertTrue("reads of deep " + readsOfDeep, readsOfDeep >= 15);
+   }
+
+   @Test
+   public void testBeforeReadBlocks() throws Exception
+   {
+      final PageIOScheduler scheduler = new PageIOScheduler(1, executor);
+
+      final PagingStore storeA = newStore("a", 10);
+      final PagingStore storeB = newStore("b", 10);
+
+      scheduler.beforeRead(storeA);
+
+      final CountDownLatch granted = new CountDownLatch(1);
+
+      Thread reader = new Thread()
+      {
+         @Override
+         public void run()
+         {
+            try
+            {
+               scheduler.beforeRead(storeB);
+               granted.countDown();
+               scheduler.afterRead(storeB, 100);
+            }
+            catch (InterruptedException e)
+            {
+               // the test will fail
+            }
+         }
+      };
+
+      reader.start();
+
+      assertFalse(granted.await(100, TimeUnit.MILLISECONDS));
+      assertEquals(1, scheduler.getWaitingReads());
+
+      scheduler.afterRead(storeA, 100);
+
+      assertTrue(granted.await(5, TimeUnit.SECONDS));
+
+      reader.join(5000);
+
+      assertEquals(0, scheduler.getRunningReads());
+      assertEquals(0, scheduler.getWaitingReads());
+   }
+
+   private void runAll()
+   {
+      while (!tasks.isEmpty())
+      {
+         tasks.removeFirst().run();
+      }
+   }
+
+   private static PagingStore newStore(final String name, final int numberOfPages)
+   {
+      final SimpleString storeName = new SimpleString(name);
+
+      return (PagingStore) Proxy.newProxyInstance(PagingStore.class.getClassLoader(),
+                                                  new Class[]{PagingStore.class},
+                                                  new InvocationHandler()
+                                                  {
+                                                     public Object invoke(Object proxy, Method method, Object[] args)
+                                                     {
+                                                        if (method.getName().equals("getStoreName"))
+                                                        {
+                                                           return storeName;
+                                                        }
+                                                        if (method.getName().equals("getNumberOfPages"))
+                                                        {
+                                                           return numberOfPages;
+                                                        }
+                                                        if (method.getName().equals("getPageSizeBytes"))
+                                                        {
+                                                           return 10L * 1024;
+                                                        }
+                                                        throw new UnsupportedOperationException(method.getName());
+                                                     }
+                                                  });
+   }
+
+   private static final class Read implements Runnable
+   {
+      private final List<Integer> reads;
+
+      private final int value;
+
+      Read(final List<Integer> reads, final int value)
+      {
+         this.reads = reads;
+         this.value = value;
+      }
+
+      public void run()
+      {
+         reads.add(value);
+      }
+   }
+}
@@ -67,9 +67,197 @@ public class PageTest extends UnitTestCase
       testAdd(new FakeSequentialFileFactory(1, false), 10);
    }
 
+   @Test
+   public void testIndexedPageWithNIO() throws Exception
+   {
+      recreateDirectory(getTestDir());
+
+      SequentialFileFactory factory = new NIOSequentialFileFactory(getTestDir());
+
+      SequentialFile file = factory.createSequentialFile("00010.page", 1);
+
+      Page impl = new Page(new SimpleString("something"), new NullStorageManager(), factory, file, 10);
+      impl.setIndexed(true);
+      impl.open();
+
+      addPageElements(new SimpleString("Test"), impl, 100);
+
+      impl.close();
+
+      Assert.assertEquals(1, factory.listFiles("index").size());
+
+      impl = new Page(new SimpleString("something"), new NullStorageManager(), factory, file, 10);
+      impl.setIndexed(true);
+      impl.open();
+
+      List<PagedMessage> msgs = impl.read(new NullStorageManager(), 42, 1);
+      Assert.assertEquals(1, msgs.size());
+      Assert.assertEquals(42, msgs.get(0).getMessage().getMessageID());
+
+      msgs = impl.read(new NullStorageManager(), 97, 3);
+      Assert.assertEquals(3, msgs.size());
+      Assert.assertEquals(99, msgs.get(2).getMessage().getMessageID());
+
+      msgs = impl.read(new NullStorageManager(), 10, 5);
+      Assert.assertEquals(5, msgs.size());
+      for (int i = 0; i < 5; i++)
+      {
+         Assert.assertEquals(10 + i, msgs.get(i).getMessage().getMessageID());
+      }
+
+      Assert.assertNull(impl.read(new NullStorageManager(), 98, 3));
+      Assert.assertNull(impl.read(new NullStorageManager(), 100, 1));
+
+      impl.delete(null);
+
+      Assert.assertEquals(0, factory.listFiles("page").size());
+      Assert.assertEquals(0, factory.listFiles("index").size());
+   }
+
+   @Test
+   public void testIndexOnReadWithNIO() throws Exception
+   {
+      recreateDirectory(getTestDir());
+
+      SequentialFileFactory factory = new NIOSequentialFileFactory(getTestDir());
+
+      SequentialFile file = factory.createSequentialFile("00010.page", 1);
+
+      // a page written before the index was enabled
+      Page impl = new Page(new SimpleString("something"), new NullStorageManager(), factory, file, 10);
+      impl.open();
+      addPageElements(new SimpleString("Test"), impl, 10);
+      impl.close();
+
+      Assert.assertEquals(0, factory.listFiles("index").size());
+
+      impl = new Page(new SimpleString("something"), new NullStorageManager(), factory, file, 10);
+      impl.setIndexed(true);
+      impl.open();
+
+      Assert.assertNull(impl.read(new NullStorageManager(), 5, 1));
+
+      Assert.assertEquals(10, impl.read(new NullStorageManager()).size());
+
+      impl.close();
+
+      Assert.assertEquals(1, factory.listFiles("index").size());
+
+      impl = new Page(new SimpleString("something"), new NullStorageManager(), factory, file, 10);
+      impl.setIndexed(true);
+      impl.open();
+
+      Assert.assertEquals(5, impl.read(new NullStorageManager(), 5, 1).get(0).getMessage().getMessageID());
+
+      impl.close();
+   }
+
    /**
     * Validate if everything we add is recovered
     */
+   @Test
+   public void testCompressedPageWithNIO() throws Exception
+   {
+      recreateDirectory(getTestDir());
+
+      SequentialFileFactory factory = new NIOSequentialFileFactory(getTestDir());
+
+      SequentialFile file = factory.createSequentialFile("00010.page", 1);
+
+      Page impl = new Page(new SimpleString("something"), new NullStorageManager(), factory, file, 10);
+      impl.setIndexed(true);
+      impl.open();
+
+      // a page can mix plain and compressed records
+      addRepetitiveMessages(impl, 0, 10);
+      int plainSize = impl.getSize();
+
+      impl.setCompressed(true);
+      addRepetitiveMessages(impl, 10, 40);
+      Assert.assertTrue(impl.getSize() - plainSize < plainSize);
+
+      impl.close();
+
+      impl = new Page(new SimpleString("something"), new NullStorageManager(), factory, file, 10);
+      impl.setIndexed(true);
+      impl.open();
+
+      List<PagedMessage> msgs = impl.read(new NullStorageManager());
+      Assert.assertEquals(50, msgs.size());
+
+      // the compressed messages decode like the plain ones
+      int bodySize = msgs.get(0).getMessage().getBodyBuffer().readableBytes();
+
+      for (int i = 0; i < 50; i++)
+      {
+         ServerMessage msg = msgs.get(i).getMessage();
+         Assert.assertEquals(i, msg.getMessageID());
+         Assert.assertEquals(bodySize, msg.getBodyBuffer().readableBytes());
+      }
+
+      msgs = impl.read(new NullStorageManager(), 42, 1);
+      Assert.assertEquals(1, msgs.size());
+      Assert.assertEquals(42, msgs.get(0).getMessage().getMessageID());
+
+      impl.delete(null);
+   }
+
+   @Test
+   public void testWriteBufferWithNIO() throws Exception
+   {
+      recreateDirectory(getTestDir());
+
+      SequentialFileFactory factory = new NIOSequentialFileFactory(getTestDir());
+
+      SequentialFile file = factory.createSequentialFile("00010.page", 1);
+
+      Page impl = new Page(new SimpleString("something"), new NullStorageManager(), factory, file, 10);
+      impl.setIndexed(true);
+      impl.setWriteBufferSize(64 * 1024);
+      impl.open();
+
+      addRepetitiveMessages(impl, 0, 10);
+
+      // nothing reached the file yet
+      Assert.assertEquals(0, file.size());
+      Assert.assertEquals(10, impl.getNumberOfMessages());
+
+      impl.flush();
+
+      Assert.assertEquals(impl.getSize(), file.size());
+
+      // the records before a compressed one stay in order
+      addRepetitiveMessages(impl, 10, 10);
+      impl.setCompressed(true);
+      addRepetitiveMessages(impl, 20, 10);
+
+      // reading sees what is still buffered
+      List<PagedMessage> msgs = impl.read(new NullStorageManager());
+      Assert.assertEquals(30, msgs.size());
+
+      addRepetitiveMessages(impl, 30, 10);
+
+      impl.close();
+
+      impl = new Page(new SimpleString("something"), new NullStorageManager(), factory, file, 10);
+      impl.setIndexed(true);
+      impl.open();
+
+      msgs = impl.read(new NullStorageManager());
+      Assert.assertEquals(40, msgs.size());
+
+      for (int i = 0; i < 40; i++)
+      {
+         Assert.assertEquals(i, msgs.get(i).getMessage().getMessageID());
+      }
+
+      msgs = impl.read(new NullStorageManager(), 25, 1);
+      Assert.assertEquals(1, msgs.size());
+      Assert.assertEquals(25, msgs.get(0).getMessage().getMessageID());
+
+      impl.delete(null);
+   }
+
    @Test
    public void testDamagedPage() throws Exception
    {
@@ -245,5 +433,22 @@ public class PageTest extends UnitTestCase
 
    // Private -------------------------------------------------------
 
+   private void addRepetitiveMessages(final Page page, final int firstID, final int numberOfMessages) throws Exception
+   {
+      for (int i = firstID; i < firstID + numberOfMessages; i++)
+      {
+         ServerMessage msg = new ServerMessageImpl(i, 1100);
+
+         for (int j = 0; j < 1000; j++)
+         {
+            msg.getBodyBuffer().writeByte((byte) 'x');
+         }
+
+         msg.setAddress(new SimpleString("Test"));
+
+         page.write(new PagedMessageImpl(msg, new long[0]));
+      }
+   }
+
    // Inner classes -------------------------------------------------
 }
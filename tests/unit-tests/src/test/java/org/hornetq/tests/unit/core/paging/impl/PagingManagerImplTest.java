@@ -100,6 +100,95 @@ public class PagingManagerImplTest extends UnitTestCase
 
    }
 
+   @Test
+   public void testGlobalMaxSize() throws Exception
+   {
+      HierarchicalRepository<AddressSettings> addressSettings = new HierarchicalObjectRepository<AddressSettings>();
+      AddressSettings settings = new AddressSettings();
+      settings.setAddressFullMessagePolicy(AddressFullMessagePolicy.PAGE);
+      settings.setMaxSizeBytes(-1);
+      addressSettings.setDefault(settings);
+
+      final StorageManager storageManager = new NullStorageManager();
+
+      PagingStoreFactoryNIO storeFactory =
+         new PagingStoreFactoryNIO(storageManager, getPageDir(), 100, null, getOrderedExecutor(), true, null);
+
+      PagingManagerImpl managerImpl = new PagingManagerImpl(storeFactory, addressSettings, null, 1000);
+
+      managerImpl.start();
+
+      PagingStore fast = managerImpl.getPageStore(new SimpleString("fast"));
+      PagingStore slow = managerImpl.getPageStore(new SimpleString("slow"));
+
+      // fast is consumed as soon as it receives, nothing is consumed from slow
+      for (int i = 0; i < 10; i++)
+      {
+         fast.addSize(500);
+         fast.addSize(-500);
+      }
+
+      Thread.sleep(10);
+
+      slow.addSize(600);
+      fast.addSize(600);
+
+      Assert.assertEquals(1200, managerImpl.getGlobalSize());
+      Assert.assertTrue(slow.isPaging());
+      Assert.assertFalse(fast.isPaging());
+
+      slow.addSize(-600);
+      fast.addSize(-600);
+
+      Assert.assertEquals(0, managerImpl.getGlobalSize());
+
+      managerImpl.stop();
+   }
+
+   @Test
+   public void testDeleteStoreNotPaging() throws Exception
+   {
+      HierarchicalRepository<AddressSettings> addressSettings = new HierarchicalObjectRepository<AddressSettings>();
+      AddressSettings settings = new AddressSettings();
+      settings.setAddressFullMessagePolicy(AddressFullMessagePolicy.PAGE);
+      settings.setMaxSizeBytes(-1);
+      addressSettings.setDefault(settings);
+
+      AddressSettings blockSettings = new AddressSettings();
+      blockSettings.setAddressFullMessagePolicy(AddressFullMessagePolicy.BLOCK);
+      blockSettings.setMaxSizeBytes(10000);
+      addressSettings.addMatch("block", blockSettings);
+
+      final StorageManager storageManager = new NullStorageManager();
+
+      PagingStoreFactoryNIO storeFactory =
+         new PagingStoreFactoryNIO(storageManager, getPageDir(), 100, null, getOrderedExecutor(), true, null);
+
+      PagingManagerImpl managerImpl = new PagingManagerImpl(storeFactory, addressSettings, null, 100000);
+
+      managerImpl.start();
+
+      PagingStore paged = managerImpl.getPageStore(new SimpleString("paged"));
+      PagingStore blocked = managerImpl.getPageStore(new SimpleString("block"));
+
+      paged.addSize(600);
+      blocked.addSize(400);
+
+      // only the paging store counts in the global size
+      Assert.assertEquals(600, managerImpl.getGlobalSize());
+      Assert.assertEquals(400, blocked.getAddressSize());
+
+      managerImpl.deletePageStore(new SimpleString("block"));
+
+      Assert.assertEquals(600, managerImpl.getGlobalSize());
+
+      managerImpl.deletePageStore(new SimpleString("paged"));
+
+      Assert.assertEquals(0, managerImpl.getGlobalSize());
+
+      managerImpl.stop();
+   }
+
    @Override
    @Before
    public void setUp() throws Exception
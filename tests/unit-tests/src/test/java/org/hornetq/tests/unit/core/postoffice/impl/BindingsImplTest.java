@@ -24,6 +24,7 @@ import javax.transaction.xa.Xid;
 import org.hornetq.api.core.HornetQException;
 import org.hornetq.api.core.SimpleString;
 import org.hornetq.core.filter.Filter;
+import org.hornetq.core.filter.impl.FilterImpl;
 import org.hornetq.core.postoffice.Binding;
 import org.hornetq.core.postoffice.BindingType;
 import org.hornetq.core.postoffice.Bindings;
@@ -79,6 +80,90 @@ public class BindingsImplTest extends UnitTestCase
       }
    }
 
+   @Test
+   public void testRouteWithSelectorIndex() throws Exception
+   {
+      final Bindings bind = new BindingsImpl(null, null, null);
+
+      String[] regions = {"r0", "r1", "r2", "r3"};
+
+      FakeBinding[] bindings = new FakeBinding[100];
+
+      for (int i = 0; i < bindings.length; i++)
+      {
+         String selector;
+
+         switch (i % 5)
+         {
+            case 0:
+               selector = "weight > 5";
+               break;
+            case 1:
+               selector = "region = '" + regions[i % 4] + "'";
+               break;
+            case 2:
+               selector = "region = '" + regions[i % 4] + "' AND type IN ('a', 'b')";
+               break;
+            case 3:
+               selector = "type IN ('" + (char) ('a' + i % 3) + "') AND weight < 10";
+               break;
+            default:
+               selector = null;
+               break;
+         }
+
+         bindings[i] = new FakeBinding(new SimpleString("sub" + i), FilterImpl.createFilter(selector));
+
+         bind.addBinding(bindings[i]);
+      }
+
+      // an indexed binding sharing its routing name with a binding without a filter
+      FakeBinding shared = new FakeBinding(new SimpleString("sub4"), FilterImpl.createFilter("region = 'r1'"));
+      bind.addBinding(shared);
+
+      bind.removeBinding(bindings[6]);
+
+      for (String region : regions)
+      {
+         for (String type : new String[]{"a", "b", "c"})
+         {
+            for (int weight = 0; weight < 15; weight += 7)
+            {
+               ServerMessage message = new ServerMessageImpl(1, 100);
+               message.putStringProperty("region", region);
+               message.putStringProperty("type", type);
+               message.putIntProperty("weight", weight);
+
+               for (FakeBinding binding : bindings)
+               {
+                  binding.routed = 0;
+               }
+
+               shared.routed = 0;
+
+               bind.route(message, new RoutingContextImpl(new FakeTransaction()));
+
+               // one binding of a routing name gets the message
+               assertEquals(1, bindings[4].routed + shared.routed);
+
+               for (int i = 0; i < bindings.length; i++)
+               {
+                  if (i == 4)
+                  {
+                     continue;
+                  }
+
+                  Filter filter = bindings[i].getFilter();
+
+                  boolean expected = i != 6 && (filter == null || filter.match(message));
+
+                  assertEquals(region + ", " + type + ", " + weight + " on " + i, expected ? 1 : 0, bindings[i].routed);
+               }
+            }
+         }
+      }
+   }
+
    private void internalTest(final boolean route) throws Exception
    {
       final FakeBinding fake = new FakeBinding(new SimpleString("a"));
@@ -301,9 +386,19 @@ public class BindingsImplTest extends UnitTestCase
 
       final SimpleString name;
 
+      final Filter filter;
+
+      int routed;
+
       FakeBinding(final SimpleString name)
+      {
+         this(name, new FakeFilter());
+      }
+
+      FakeBinding(final SimpleString name, final Filter filter)
       {
          this.name = name;
+         this.filter = filter;
       }
 
       public SimpleString getAddress()
@@ -342,7 +437,7 @@ public class BindingsImplTest extends UnitTestCase
        */
       public Filter getFilter()
       {
-         return new FakeFilter();
+         return filter;
       }
 
       public long getID()
@@ -387,7 +482,7 @@ public class BindingsImplTest extends UnitTestCase
 
       public void route(final ServerMessage message, final RoutingContext context) throws Exception
       {
-
+         routed++;
       }
 
       /* (non-Javadoc)
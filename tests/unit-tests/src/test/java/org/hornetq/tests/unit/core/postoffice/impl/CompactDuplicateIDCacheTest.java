@@ -0,0 +1,254 @@
+/*
+ * Copyright 2005-2014 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.hornetq.tests.unit.core.postoffice.impl;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.hornetq.api.core.Pair;
+import org.hornetq.api.core.SimpleString;
+import org.hornetq.core.persistence.impl.nullpm.NullStorageManager;
+import org.hornetq.core.postoffice.DuplicateIDCache;
+import org.hornetq.core.postoffice.impl.CompactDuplicateIDCacheImpl;
+import org.hornetq.core.transaction.Transaction;
+import org.hornetq.core.transaction.impl.TransactionImpl;
+import org.hornetq.tests.util.UnitTestCase;
+import org.junit.Test;
+
+public class CompactDuplicateIDCacheTest extends UnitTestCase
+{
+   private static final SimpleString ADDRESS = new SimpleString("address");
+
+   private final RecordingStorageManager storageManager = new RecordingStorageManager();
+
+   @Test
+   public void testAddContainsDelete() throws Exception
+   {
+      DuplicateIDCache cache = new CompactDuplicateIDCacheImpl(ADDRESS, 100, storageManager, true, -1, false);
+
+      assertFalse(cache.contains(id(1)));
+
+      cache.addToCache(id(1), null);
+      cache.addToCache(id(2), null);
+
+      assertTrue(cache.contains(id(1)));
+      assertTrue(cache.contains(id(2)));
+      assertFalse(cache.contains(id(3)));
+      assertEquals(2, storageManager.stored.size());
+
+      cache.deleteFromCache(id(1));
+
+      assertFalse(cache.contains(id(1)));
+      assertTrue(cache.contains(id(2)));
+      assertEquals(1, storageManager.deleted.size());
+      assertEquals(1, cache.getMap().size());
+
+      cache.clear();
+
+      assertFalse(cache.contains(id(2)));
+      assertTrue(cache.getMap().isEmpty());
+      assertEquals(2, storageManager.deleted.size());
+   }
+
+   @Test
+   public void testZeroSize() throws Exception
+   {
+      DuplicateIDCache cache = new CompactDuplicateIDCacheImpl(ADDRESS, 0, storageManager, true, -1, true);
+
+      cache.addToCache(id(1), null);
+
+      assertTrue(cache.contains(id(1)));
+
+      cache.addToCache(id(2), null);
+
+      // a cache holds at least one id
+      assertFalse(cache.contains(id(1)));
+      assertTrue(cache.contains(id(2)));
+      assertEquals(1, cache.getMap().size());
+   }
+
+   @Test
+   public void testRotation() throws Exception
+   {
+      testRotation(false);
+   }
+
+   @Test
+   public void testRotationWithBloomFilter() throws Exception
+   {
+      testRotation(true);
+   }
+
+   private void testRotation(final boolean bloomFilter) throws Exception
+   {
+      final int size = 1000;
+
+      DuplicateIDCache cache = new CompactDuplicateIDCacheImpl(ADDRESS, size, storageManager, true, -1, bloomFilter);
+
+      Random random = new Random(1);
+
+      for (int i = 0; i < size * 5; i++)
+      {
+         cache.addToCache(id(i), null);
+
+         // deleting some ids on the way, so the ring has holes
+         if (random.nextInt(10) == 0)
+         {
+            cache.deleteFromCache(id(random.nextInt(i + 1)));
+         }
+      }
+
+      Set<Long> remaining = new HashSet<Long>();
+
+      for (Pair<byte[], Long> entry : cache.getMap())
+      {
+         remaining.add(entry.getB());
+      }
+
+      for (int i = 0; i < size * 4; i++)
+      {
+         assertFalse(cache.contains(id(i)));
+      }
+
+      assertEquals(remaining.size(), storageManager.stored.size() - storageManager.deleted.size());
+
+      for (int i = size * 4; i < size * 5; i++)
+      {
+         assertEquals(cache.contains(id(i)), remaining.contains(storageManager.recordOf(i)));
+      }
+   }
+
+   @Test
+   public void testExpiry() throws Exception
+   {
+      DuplicateIDCache cache = new CompactDuplicateIDCacheImpl(ADDRESS, 100, storageManager, true, 100, false);
+
+      cache.addToCache(id(1), null);
+
+      assertTrue(cache.contains(id(1)));
+
+      Thread.sleep(150);
+
+      assertFalse(cache.contains(id(1)));
+      assertTrue(storageManager.deleted.isEmpty());
+
+      cache.addToCache(id(2), null);
+
+      assertFalse(cache.contains(id(1)));
+      assertTrue(cache.contains(id(2)));
+      assertEquals(1, storageManager.deleted.size());
+      assertEquals(1, cache.getMap().size());
+   }
+
+   @Test
+   public void testTransaction() throws Exception
+   {
+      DuplicateIDCache cache = new CompactDuplicateIDCacheImpl(ADDRESS, 100, storageManager, true, -1, true);
+
+      Transaction tx = new TransactionImpl(storageManager);
+
+      cache.addToCache(id(1), tx);
+
+      assertFalse(cache.contains(id(1)));
+
+      tx.commit();
+
+      assertTrue(cache.contains(id(1)));
+
+      tx = new TransactionImpl(storageManager);
+
+      cache.addToCache(id(2), tx);
+
+      tx.rollback();
+
+      assertFalse(cache.contains(id(2)));
+   }
+
+   @Test
+   public void testLoad() throws Exception
+   {
+      List<Pair<byte[], Long>> ids = new ArrayList<Pair<byte[], Long>>();
+
+      for (int i = 0; i < 20; i++)
+      {
+         ids.add(new Pair<byte[], Long>(id(i), (long) i));
+      }
+
+      DuplicateIDCache cache = new CompactDuplicateIDCacheImpl(ADDRESS, 10, storageManager, true, -1, true);
+
+      cache.load(ids);
+
+      for (int i = 0; i < 10; i++)
+      {
+         assertTrue(cache.contains(id(i)));
+      }
+
+      for (int i = 10; i < 20; i++)
+      {
+         assertFalse(cache.contains(id(i)));
+      }
+
+      // the records beyond the cache size are deleted
+      assertEquals(10, storageManager.deleted.size());
+   }
+
+   private static byte[] id(final int i)
+   {
+      return ("id" + i).getBytes();
+   }
+
+   private static final class RecordingStorageManager extends NullStorageManager
+   {
+      private final List<Long> stored = new ArrayList<Long>();
+
+      private final List<String> storedIDs = new ArrayList<String>();
+
+      private final Set<Long> deleted = new HashSet<Long>();
+
+      @Override
+      public void storeDuplicateID(final SimpleString address, final byte[] duplID, final long recordID)
+      {
+         stored.add(recordID);
+         storedIDs.add(new String(duplID));
+      }
+
+      @Override
+      public void storeDuplicateIDTransactional(final long txID,
+                                                final SimpleString address,
+                                                final byte[] duplID,
+                                                final long recordID)
+      {
+         storeDuplicateID(address, duplID, recordID);
+      }
+
+      @Override
+      public void deleteDuplicateID(final long recordID)
+      {
+         assertTrue(deleted.add(recordID));
+      }
+
+      @Override
+      public void deleteDuplicateIDTransactional(final long txID, final long recordID)
+      {
+         deleteDuplicateID(recordID);
+      }
+
+      private Long recordOf(final int i)
+      {
+         return stored.get(storedIDs.lastIndexOf(new String(id(i))));
+      }
+   }
+}
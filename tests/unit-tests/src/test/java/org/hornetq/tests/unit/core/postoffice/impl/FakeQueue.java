@@ -250,6 +250,12 @@ public class FakeQueue implements Queue
 
    }
 
+   @Override
+   public void deliverAsync(Consumer consumer)
+   {
+      // no-op
+   }
+
    @Override
    public void expire(final MessageReference ref) throws Exception
    {
@@ -395,6 +401,13 @@ public class FakeQueue implements Queue
       return 0;
    }
 
+   @Override
+   public int getDelayedRedeliveryCount()
+   {
+      // no-op
+      return 0;
+   }
+
    @Override
    public List<MessageReference> getScheduledMessages()
    {
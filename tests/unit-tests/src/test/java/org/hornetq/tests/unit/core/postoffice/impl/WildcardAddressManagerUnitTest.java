@@ -14,6 +14,8 @@ package org.hornetq.tests.unit.core.postoffice.impl;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
 
 import org.hornetq.api.core.SimpleString;
 import org.hornetq.core.filter.Filter;
@@ -21,6 +23,7 @@ import org.hornetq.core.postoffice.Binding;
 import org.hornetq.core.postoffice.BindingType;
 import org.hornetq.core.postoffice.Bindings;
 import org.hornetq.core.postoffice.BindingsFactory;
+import org.hornetq.core.postoffice.impl.AddressImpl;
 import org.hornetq.core.postoffice.impl.WildcardAddressManager;
 import org.hornetq.core.server.Bindable;
 import org.hornetq.core.server.Queue;
@@ -74,6 +77,125 @@ public class WildcardAddressManagerUnitTest extends UnitTestCase
       assertEquals("Exception happened during the process", 0, errors);
    }
 
+   @Test
+   public void testRoutingAddressesMatchWildcards() throws Exception
+   {
+      String[] wildcards = {"#", "a.#", "a.*", "*.b", "a.#.c", "a.*.c", "#.c", "a.b.#", "*.*.*", "a.#.b.c", "#.#"};
+
+      String[] addresses = {"a", "b", "a.b", "a.c", "x.b", "a.b.c", "a.x.c", "a.b.x.c", "a.b.x.b.c", "x.y.z", "x.y", "a.b"};
+
+      WildcardAddressManager ad = new WildcardAddressManager(new BindingFactoryFake());
+
+      for (int i = 0; i < wildcards.length; i++)
+      {
+         ad.addBinding(new BindingFake(wildcards[i], "w" + i));
+      }
+
+      // addresses with bindings of their own, before and after the wildcards
+      ad.addBinding(new BindingFake("a.b", "own1"));
+      ad.addBinding(new BindingFake("a.b", "own2"));
+      ad.addBinding(new BindingFake("x.y.z", "own3"));
+      ad.addBinding(new BindingFake("x.y", "own4"));
+      ad.removeBinding(SimpleString.toSimpleString("own4"), null);
+      ad.removeBinding(SimpleString.toSimpleString("w1"), null);
+      ad.addBinding(new BindingFake("a.#", "w1"));
+
+      for (String address : addresses)
+      {
+         Set<String> expected = new HashSet<String>();
+
+         for (Binding binding : ad.getBindings().values())
+         {
+            AddressImpl add = new AddressImpl(SimpleString.toSimpleString(address));
+
+            if (add.matches(new AddressImpl(binding.getAddress())))
+            {
+               expected.add(binding.getUniqueName().toString());
+            }
+         }
+
+         assertEquals(address, expected, names(ad.getBindingsForRoutingAddress(SimpleString.toSimpleString(address))));
+      }
+   }
+
+   @Test
+   public void testResolvedAddressesAreBounded() throws Exception
+   {
+      WildcardAddressManager ad = new WildcardAddressManager(new BindingFactoryFake(), 100);
+
+      ad.addBinding(new BindingFake("device.*.events", "events"));
+      ad.addBinding(new BindingFake("device.#", "all"));
+
+      for (int i = 0; i < 10000; i++)
+      {
+         SimpleString address = SimpleString.toSimpleString("device." + i + ".events");
+
+         assertEquals(set("events", "all"), names(ad.getBindingsForRoutingAddress(address)));
+
+         assertNull(ad.getBindingsForRoutingAddress(SimpleString.toSimpleString("other." + i)));
+      }
+
+      assertTrue(ad.getResolvedAddressCount() <= 100);
+
+      ad.removeBinding(SimpleString.toSimpleString("all"), null);
+
+      assertEquals(set("events"), names(ad.getBindingsForRoutingAddress(SimpleString.toSimpleString("device.9999.events"))));
+      assertNull(ad.getBindingsForRoutingAddress(SimpleString.toSimpleString("device.9999")));
+
+      ad.removeBinding(SimpleString.toSimpleString("events"), null);
+
+      assertNull(ad.getBindingsForRoutingAddress(SimpleString.toSimpleString("device.9999.events")));
+   }
+
+   @Test
+   public void testUsedResolvedAddressesKept() throws Exception
+   {
+      WildcardAddressManager ad = new WildcardAddressManager(new BindingFactoryFake(), 10);
+
+      ad.addBinding(new BindingFake("device.#", "all"));
+
+      SimpleString hot = SimpleString.toSimpleString("device.hot");
+
+      Bindings hotBindings = ad.getBindingsForRoutingAddress(hot);
+
+      for (int i = 0; i < 1000; i++)
+      {
+         ad.getBindingsForRoutingAddress(SimpleString.toSimpleString("device." + i));
+
+         // still the bindings resolved first, as the address is used between the evictions
+         assertSame(hotBindings, ad.getBindingsForRoutingAddress(hot));
+      }
+
+      assertTrue(ad.getResolvedAddressCount() <= 10);
+   }
+
+   private static Set<String> names(final Bindings bindings)
+   {
+      Set<String> names = new HashSet<String>();
+
+      if (bindings != null)
+      {
+         for (Binding binding : bindings.getBindings())
+         {
+            names.add(binding.getUniqueName().toString());
+         }
+      }
+
+      return names;
+   }
+
+   private static Set<String> set(final String... names)
+   {
+      Set<String> set = new HashSet<String>();
+
+      for (String name : names)
+      {
+         set.add(name);
+      }
+
+      return set;
+   }
+
    class BindingFactoryFake implements BindingsFactory
    {
       public Bindings createBindings(SimpleString address) throws Exception
@@ -21,6 +21,7 @@ import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 
+import org.hornetq.api.core.Message;
 import org.hornetq.api.core.SimpleString;
 import org.hornetq.api.core.client.ClientMessage;
 import org.hornetq.api.core.client.ClientProducer;
@@ -39,6 +40,7 @@ import org.hornetq.core.server.Queue;
 import org.hornetq.core.server.ServerMessage;
 import org.hornetq.core.server.impl.QueueImpl;
 import org.hornetq.core.settings.impl.AddressSettings;
+import org.hornetq.core.settings.impl.HierarchicalObjectRepository;
 import org.hornetq.tests.unit.core.server.impl.fakes.FakeConsumer;
 import org.hornetq.tests.unit.core.server.impl.fakes.FakeFilter;
 import org.hornetq.tests.unit.core.server.impl.fakes.FakePostOffice;
@@ -1212,6 +1214,155 @@ public class QueueImplTest extends UnitTestCase
       Assert.assertEquals(20, queue.getDeliveringCount());
    }
 
+   @Test
+   public void testReadyConsumerDeliveryRoundRobin() throws Exception
+   {
+      QueueImpl queue = newReadyConsumerDeliveryQueue();
+
+      List<MessageReference> refs = new ArrayList<MessageReference>();
+
+      for (int i = 0; i < 30; i++)
+      {
+         MessageReference ref = generateReference(queue, i);
+         refs.add(ref);
+         queue.addTail(ref);
+      }
+
+      FakeConsumer[] consumers = new FakeConsumer[3];
+
+      for (int i = 0; i < consumers.length; i++)
+      {
+         consumers[i] = new FakeConsumer();
+         queue.addConsumer(consumers[i]);
+      }
+
+      queue.deliverNow();
+
+      for (int i = 0; i < 30; i++)
+      {
+         Assert.assertEquals(refs.get(i), consumers[i % 3].getReferences().get(i / 3));
+      }
+   }
+
+   @Test
+   public void testReadyConsumerDeliveryBusyConsumer() throws Exception
+   {
+      QueueImpl queue = newReadyConsumerDeliveryQueue();
+
+      FakeConsumer busy = new FakeConsumer();
+      busy.setStatusImmediate(HandleStatus.BUSY);
+
+      FakeConsumer ready = new FakeConsumer();
+
+      queue.addConsumer(busy);
+      queue.addConsumer(ready);
+
+      queue.pause();
+
+      for (int i = 0; i < 10; i++)
+      {
+         queue.addTail(generateReference(queue, i));
+      }
+
+      queue.resume();
+      awaitExecution();
+
+      Assert.assertTrue(busy.getReferences().isEmpty());
+      Assert.assertEquals(10, ready.getReferences().size());
+
+      ready.setStatusImmediate(HandleStatus.BUSY);
+      busy.setStatusImmediate(HandleStatus.HANDLED);
+      queue.deliverAsync(busy);
+
+      queue.pause();
+
+      for (int i = 10; i < 20; i++)
+      {
+         queue.addTail(generateReference(queue, i));
+      }
+
+      queue.resume();
+      awaitExecution();
+
+      Assert.assertEquals(10, busy.getReferences().size());
+      Assert.assertEquals(10, ready.getReferences().size());
+      Assert.assertEquals(0, getMessageCount(queue) - queue.getDeliveringCount());
+   }
+
+   @Test
+   public void testReadyConsumerDeliveryGroups() throws Exception
+   {
+      QueueImpl queue = newReadyConsumerDeliveryQueue();
+
+      FakeConsumer cons1 = new FakeConsumer();
+      FakeConsumer cons2 = new FakeConsumer();
+
+      queue.addConsumer(cons1);
+      queue.addConsumer(cons2);
+
+      queue.pause();
+
+      for (int i = 0; i < 10; i++)
+      {
+         MessageReference ref = generateReference(queue, i);
+         ref.getMessage().putStringProperty(Message.HDR_GROUP_ID, new SimpleString("group"));
+         queue.addTail(ref);
+      }
+
+      queue.resume();
+      awaitExecution();
+
+      // the group sticks to the consumer that got its first message
+      Assert.assertEquals(10, cons1.getReferences().size() + cons2.getReferences().size());
+      Assert.assertTrue(cons1.getReferences().isEmpty() || cons2.getReferences().isEmpty());
+
+      FakeConsumer groupConsumer = cons1.getReferences().isEmpty() ? cons2 : cons1;
+      FakeConsumer other = groupConsumer == cons1 ? cons2 : cons1;
+
+      // while the group's consumer is busy, its messages wait and the others still go round robin
+      groupConsumer.setStatusImmediate(HandleStatus.BUSY);
+
+      queue.pause();
+
+      MessageReference grouped = generateReference(queue, 10);
+      grouped.getMessage().putStringProperty(Message.HDR_GROUP_ID, new SimpleString("group"));
+      queue.addTail(grouped);
+
+      queue.resume();
+      awaitExecution();
+
+      Assert.assertTrue(other.getReferences().isEmpty());
+      Assert.assertEquals(10, groupConsumer.getReferences().size());
+
+      groupConsumer.setStatusImmediate(HandleStatus.HANDLED);
+      queue.deliverAsync(groupConsumer);
+      awaitExecution();
+
+      Assert.assertEquals(11, groupConsumer.getReferences().size());
+      Assert.assertEquals(grouped, groupConsumer.getReferences().get(10));
+   }
+
+   private QueueImpl newReadyConsumerDeliveryQueue()
+   {
+      AddressSettings settings = new AddressSettings();
+      settings.setReadyConsumerDelivery(true);
+
+      HierarchicalObjectRepository<AddressSettings> repository = new HierarchicalObjectRepository<AddressSettings>();
+      repository.setDefault(settings);
+
+      return new QueueImpl(1,
+                           QueueImplTest.address1,
+                           QueueImplTest.queue1,
+                           null,
+                           false,
+                           true,
+                           scheduledExecutor,
+                           null,
+                           null,
+                           repository,
+                           executor);
+   }
+
    // Private ------------------------------------------------------------------------------
 
    private void testConsumerWithFilters(final boolean direct) throws Exception
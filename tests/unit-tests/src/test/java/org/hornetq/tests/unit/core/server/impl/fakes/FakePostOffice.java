@@ -12,6 +12,7 @@
  */
 package org.hornetq.tests.unit.core.server.impl.fakes;
 
+import java.util.List;
 import java.util.Map;
 
 import org.hornetq.api.core.Pair;
@@ -184,6 +185,13 @@ public class FakePostOffice implements PostOffice
    {
 
 
+   }
+
+   @Override
+   public void route(List<ServerMessage> messages, Transaction tx, boolean direct, boolean rejectDuplicates) throws Exception
+   {
+
+
    }
 
    @Override
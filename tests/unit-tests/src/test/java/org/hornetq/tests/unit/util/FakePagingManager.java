@@ -19,6 +19,7 @@ import org.hornetq.api.core.SimpleString;
 import org.hornetq.core.paging.PageTransactionInfo;
 import org.hornetq.core.paging.PagingManager;
 import org.hornetq.core.paging.PagingStore;
+import org.hornetq.core.paging.impl.PageIOScheduler;
 import org.hornetq.core.postoffice.PostOffice;
 import org.hornetq.core.server.ServerMessage;
 
@@ -48,6 +49,25 @@ public final class FakePagingManager implements PagingManager
       return 0;
    }
 
+   public PageIOScheduler getIOScheduler()
+   {
+      return null;
+   }
+
+   public void addGlobalSize(final int size)
+   {
+   }
+
+   public long getGlobalSize()
+   {
+      return 0;
+   }
+
+   public long getGlobalMaxSize()
+   {
+      return -1;
+   }
+
    public SimpleString[] getStoreNames()
    {
       return null;